@@ -16,13 +16,14 @@ import android.view.MenuItem;
 import android.widget.Toast;
 
 import org.skylon07.familymapclient.R;
+import org.skylon07.familymapclient.server.AsyncServerProxy;
 import org.skylon07.familymapclient.server.ServerProxy;
 import org.skylon07.familymapclient.utilities.DataCache;
 
+import java.io.File;
 import java.io.IOException;
-import java.net.MalformedURLException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
 
 import models.AuthToken;
 import models.Event;
@@ -31,12 +32,10 @@ import services.responses.LoginResponse;
 import services.responses.RegisterResponse;
 
 public class MainActivity extends AppCompatActivity {
-    /** The executor to run background tasks with */
-    private ExecutorService executor;
     /** A launcher for starting the settings activity */
     ActivityResultLauncher<Intent> settingsLauncher;
-    /** A boolean value indicating if the executor is handling a login callback currently */
-    private boolean loginThreadActive;
+    /** A boolean value indicating if a login/register call is running currently */
+    private volatile boolean loginThreadActive;
     /** A boolean indicating if a user is logged in or not */
     private boolean loggedIn;
 
@@ -48,8 +47,9 @@ public class MainActivity extends AppCompatActivity {
         this.setTitle(R.string.mainActivityLabel);
         this.loggedIn = false;
 
-        this.executor = Executors.newSingleThreadExecutor();
         this.loginThreadActive = false;
+        // lets the next login show the map from disk while fresh data downloads
+        DataCache.getInstance().useSnapshotDirectory(new File(this.getFilesDir(), "snapshots"));
 
         // pass arguments to fragment
         FragmentManager manager = this.getSupportFragmentManager();
@@ -62,7 +62,7 @@ public class MainActivity extends AppCompatActivity {
                 new ActivityResultContracts.StartActivityForResult(),
                 // lambda functions work here!
                 (ActivityResult result) -> {
-                    this.renderMap();
+                    // logging out throws the map away, so there's no point refiltering it first
                     if (result.getResultCode() == Activity.RESULT_OK) {
                         boolean shouldLogout = result.getData().getBooleanExtra(
                                 "shouldLogout",
@@ -72,8 +72,17 @@ public class MainActivity extends AppCompatActivity {
                             DataCache.getInstance().invalidateCache();
                             this.loggedIn = false;
                             this.renderLogin();
+                            return;
                         }
                     }
+
+                    // the map only has to change the markers the new settings hide or show
+                    Fragment current = this.getSupportFragmentManager().findFragmentById(R.id.mainFrameLayout);
+                    if (current instanceof MapFragment) {
+                        ((MapFragment) current).refreshEventFilter();
+                    } else {
+                        this.renderMap();
+                    }
                 }
         );
     }
@@ -144,12 +153,17 @@ public class MainActivity extends AppCompatActivity {
             String password = state.getPassword();
 
             DataCache data = DataCache.getInstance(server);
-            try {
-                LoginResponse loginResponse = server.login(username, password);
+            return new AsyncServerProxy(server).login(username, password).thenAccept((LoginResponse loginResponse) -> {
                 if (loginResponse.success) {
                     AuthToken authToken = new AuthToken(loginResponse.authtoken, loginResponse.username);
                     data.recordLogin(loginResponse.personID, authToken);
-                    Person person = data.getPersonByID(loginResponse.personID);
+                    Person person;
+                    try {
+                        person = data.getPersonByID(loginResponse.personID);
+                    } catch (IOException err) {
+                        this.displayBadLogin("(" + err.getMessage() + ")");
+                        return;
+                    }
                     if (person != null) {
                         this.displayGoodLogin(person.getFirstName(), person.getLastName());
                         this.loggedIn = true;
@@ -160,13 +174,10 @@ public class MainActivity extends AppCompatActivity {
                 } else {
                     this.displayBadLogin();
                 }
-            } catch (IOException err) {
-                this.displayBadLogin("(" + err.getMessage() + ")");
-            }
-            // redundant code... apparently
-//            catch (MalformedURLException err) {
-//                this.displayBadLogin("(" + err.getMessage() + ")");
-//            }
+            }).exceptionally((Throwable err) -> {
+                this.displayBadLogin("(" + AsyncServerProxy.unwrap(err).getMessage() + ")");
+                return null;
+            });
         });
     }
 
@@ -186,11 +197,10 @@ public class MainActivity extends AppCompatActivity {
             String gender = state.getGender().toLowerCase().substring(0, 1);
 
             DataCache data = DataCache.getInstance(server);
-            try {
-                RegisterResponse registerResponse = server.register(
-                        username, password, email,
-                        firstName, lastName, gender
-                );
+            return new AsyncServerProxy(server).register(
+                    username, password, email,
+                    firstName, lastName, gender
+            ).thenAccept((RegisterResponse registerResponse) -> {
                 if (registerResponse.success) {
                     AuthToken authToken = new AuthToken(registerResponse.authtoken, registerResponse.username);
                     data.recordLogin(registerResponse.personID, authToken);
@@ -200,11 +210,10 @@ public class MainActivity extends AppCompatActivity {
                 } else {
                     this.displayBadRegister();
                 }
-            } catch (MalformedURLException err) {
-                this.displayBadRegister("(" + err.getMessage() + ")");
-            } catch (IOException err) {
-                this.displayBadRegister("(" + err.getMessage() + ")");
-            }
+            }).exceptionally((Throwable err) -> {
+                this.displayBadRegister("(" + AsyncServerProxy.unwrap(err).getMessage() + ")");
+                return null;
+            });
         });
     }
 
@@ -222,15 +231,14 @@ public class MainActivity extends AppCompatActivity {
 
     /**
      * Ensures only one login/register attempt runs at a time. This function does nothing if
-     * a previously scheduled login/register thread has not yet finished
+     * a previously started login/register call has not yet finished
      *
-     * @param callback is the specific login/register callback the executor should execute
+     * @param callback starts the specific login/register call, returning a future for when it's done
      */
-    private void executeLoginThread(Runnable callback) {
+    private void executeLoginThread(Supplier<CompletableFuture<?>> callback) {
         if (!this.loginThreadActive) {
             this.loginThreadActive = true;
-            this.executor.submit(() -> {
-                callback.run();
+            callback.get().whenComplete((Object result, Throwable err) -> {
                 this.loginThreadActive = false;
             });
         }
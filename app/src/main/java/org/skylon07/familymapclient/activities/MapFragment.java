@@ -1,14 +1,18 @@
 package org.skylon07.familymapclient.activities;
 
+import android.content.Context;
 import android.content.Intent;
 import android.content.SharedPreferences;
 import android.graphics.drawable.Drawable;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
 
 import androidx.fragment.app.Fragment;
 import androidx.preference.PreferenceManager;
 
 import android.os.CountDownTimer;
+import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -21,8 +25,10 @@ import com.google.android.gms.maps.CameraUpdate;
 import com.google.android.gms.maps.CameraUpdateFactory;
 import com.google.android.gms.maps.GoogleMap;
 import com.google.android.gms.maps.SupportMapFragment;
+import com.google.android.gms.maps.model.BitmapDescriptor;
 import com.google.android.gms.maps.model.BitmapDescriptorFactory;
 import com.google.android.gms.maps.model.LatLng;
+import com.google.android.gms.maps.model.LatLngBounds;
 import com.google.android.gms.maps.model.Marker;
 import com.google.android.gms.maps.model.MarkerOptions;
 import com.google.android.gms.maps.model.Polyline;
@@ -30,15 +36,25 @@ import com.google.android.gms.maps.model.PolylineOptions;
 
 import org.skylon07.familymapclient.R;
 import org.skylon07.familymapclient.utilities.DataCache;
+import org.skylon07.familymapclient.utilities.EventColorTable;
+import org.skylon07.familymapclient.utilities.EventClusterer;
 import org.skylon07.familymapclient.utilities.EventManager;
-import org.skylon07.familymapclient.utilities.FamilyUtils;
+import org.skylon07.familymapclient.utilities.FamilyGraph;
+import org.skylon07.familymapclient.utilities.MarkerBatcher;
+import org.skylon07.familymapclient.utilities.SpatialIndex;
+import org.skylon07.familymapclient.utilities.TaskScheduler;
 import org.w3c.dom.Text;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executor;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 
 import models.Event;
 import models.Person;
@@ -55,6 +71,15 @@ public class MapFragment extends Fragment {
     private static int FATHER_LINE_COLOR = 0xff00aa00;
     private static int LIFE_LINE_COLOR = 0xff0000aa;
     private static float BASE_LINE_WIDTH = 15;
+    private static final String LOG_TAG = "MapFragment";
+    /** The color of markers standing in for a cluster of events */
+    private static final float CLUSTER_MARKER_COLOR = BitmapDescriptorFactory.HUE_VIOLET;
+    /** How many zoom levels clicking a cluster zooms in by */
+    private static final int CLUSTER_EXPAND_ZOOM_LEVELS = 2;
+    /** How far past each edge of the screen markers are kept, as a fraction of the screen's size */
+    private static final double VIEWPORT_MARGIN = 0.5;
+    /** The most markers that are ever on the map at once */
+    private static final int MAX_LIVE_MARKERS = 1_500;
 
     // the fragment initialization parameters, e.g. ARG_ITEM_NUMBER
     private static final String EVENT_ID_PARAM = "param1";
@@ -93,6 +118,24 @@ public class MapFragment extends Fragment {
     /** an array tracking all currently drawn Polylines on the map */
     private ArrayList<Polyline> drawnLines;
     private OnDetailsClicCallback onDetailsClickCallback;
+    /** groups the (filtered) events into clusters for each zoom level */
+    private volatile EventClusterer clusterer;
+    /** the markers currently on the map, by their key (only touched on the UI thread) */
+    private final Map<Object, Marker> shownMarkers;
+    /** the batcher adding the current markers (only touched on the UI thread) */
+    private MarkerBatcher<PreparedMarker> markerBatcher;
+    /** the zoom level the current markers are for (only touched on the UI thread) */
+    private int shownZoomLevel;
+    /** the area the current markers cover (only touched on the UI thread) */
+    private SpatialIndex.Bounds shownBounds;
+    /** counts up every time the markers are redrawn (only touched on the UI thread) */
+    private int markerGeneration;
+    /** whether the time it took to show the first marker has been logged yet */
+    private boolean loggedFirstMarker;
+    /** runs this map's background work (and is cancelled when the map is destroyed) */
+    private final TaskScheduler.TaskGroup tasks;
+    /** queues work (like marker batches) to run later on the UI thread */
+    private final Handler uiHandler;
 
     /**
      * Creates a new instance of a MapFragment.
@@ -103,6 +146,15 @@ public class MapFragment extends Fragment {
         this.focusEventID = null;
         this.focusedEvent = null;
         this.drawnLines = new ArrayList<>();
+        this.clusterer = null;
+        this.shownMarkers = new HashMap<>();
+        this.markerBatcher = null;
+        this.shownZoomLevel = -1;
+        this.shownBounds = null;
+        this.markerGeneration = 0;
+        this.loggedFirstMarker = false;
+        this.tasks = TaskScheduler.getInstance().newTaskGroup();
+        this.uiHandler = new Handler(Looper.getMainLooper());
     }
 
     @Override
@@ -124,9 +176,9 @@ public class MapFragment extends Fragment {
         mapFragment.getMapAsync((GoogleMap map) -> {
             this.map = map;
             map.setOnMapLoadedCallback(() -> {
-                ExecutorService executor = Executors.newSingleThreadExecutor();
                 // this is required to avoid server-on-UI-thread exceptions
-                executor.submit(this::loadMapMarkers);
+                Context appContext = this.getActivity().getApplicationContext();
+                this.tasks.runIO(() -> this.loadMapMarkers(appContext));
                 map.setOnMarkerClickListener(this::onMarkerClick);
                 View mapBottom = this.getView().findViewById(R.id.mapBottomView);
                 mapBottom.setOnClickListener(this::onDetailsClick);
@@ -138,39 +190,82 @@ public class MapFragment extends Fragment {
         return view;
     }
 
+    @Override
+    public void onDestroy() {
+        super.onDestroy();
+        // nothing queued up for this map should run once it's gone
+        this.tasks.cancelAll();
+        if (this.markerBatcher != null) {
+            this.markerBatcher.cancel();
+        }
+        Log.i(LOG_TAG, "Map destroyed (" + TaskScheduler.getInstance().describeMetrics() + ")");
+    }
+
     /**
-     * This function takes the events from the data cache and creates map markers for them.
-     * (This particular function gave me HOURS of pain... I eventually found out that google's
+     * Runs something on the UI thread for a background task. Tasks that were already running
+     * when the map was destroyed keep going (see TaskScheduler.TaskGroup.cancelAll()), so this
+     * drops whatever they hand over once that happens; by then getActivity() may be null, and
+     * there is nothing left to update anyway.
+     *
+     * @param task is the UI work to run
+     */
+    private void runOnUiThread(Runnable task) {
+        if (this.tasks.isCancelled()) {
+            return;
+        }
+        this.uiHandler.post(() -> {
+            if (!this.tasks.isCancelled() && this.isAdded()) {
+                task.run();
+            }
+        });
+    }
+
+    /**
+     * This function takes the events from the data cache and sets up the clusters the map
+     * markers are made from (see showClusters()).
+     * (The markers gave me HOURS of pain... I eventually found out that google's
      * addMarker() function hangs completely if it is not run on the UI thread; lesson learned)
+     *
+     * @param appContext is the application context (taken on the UI thread, since the fragment
+     *      may be detached by the time this runs)
      */
-    private void loadMapMarkers() {
+    private void loadMapMarkers(Context appContext) {
+        DataCache data = DataCache.getInstance();
+        try {
+            // everything started downloading at login; waiting on that beats asking again
+            data.awaitPrefetch();
+        } catch (IOException err) {
+            // the filter below will just try the downloads again itself
+        }
+        // (taken before the events are read, so a refresh finishing in between isn't missed)
+        CompletableFuture<Boolean> snapshotRefresh = data.getSnapshotRefresh();
+
         EventManager eventsManager = new EventManager();
-        Event[] events = eventsManager.getEventsWithSettingsFilter(this.getContext());
-        for (Event event : events) {
-            LatLng eventPosition = new LatLng(event.getLatitude(), event.getLongitude());
-            float eventColor = eventsManager.getEventColor(event);
-            // running on UI thread is required to keep map.addMarker() from hanging
-            this.getActivity().runOnUiThread(() -> {
-                Marker newMarker = this.map.addMarker(
-                        new MarkerOptions()
-                        .title(event.getEventType())
-                        .position(eventPosition)
-                        .icon(BitmapDescriptorFactory.defaultMarker(eventColor))
-                );
-                newMarker.setTag(event);
+        Event[] events = eventsManager.getEventsWithSettingsFilter(appContext);
+        this.clusterer = new EventClusterer(events);
+        if (snapshotRefresh != null) {
+            // the markers came from the snapshot saved last login; once the fresh data is in,
+            // the markers that changed are swapped out
+            snapshotRefresh.thenAccept((Boolean refreshed) -> {
+                if (refreshed) {
+                    this.runOnUiThread(this::refreshEventFilter);
+                }
             });
         }
+        this.runOnUiThread(() -> {
+            this.map.setOnCameraIdleListener(this::onCameraIdle);
+            this.onCameraIdle();
+        });
 
         if (this.focusEventID != null) {
-            ExecutorService executor = Executors.newSingleThreadExecutor();
-            executor.submit(() -> {
+            this.tasks.runIO(() -> {
                 try {
                     Event event = DataCache.getInstance().getEventByID(this.focusEventID);
-                    this.getActivity().runOnUiThread(() -> {
+                    this.runOnUiThread(() -> {
                         this.focusOnEvent(event, true);
                     });
                 } catch (IOException err) {
-                    this.getActivity().runOnUiThread(() -> {
+                    this.runOnUiThread(() -> {
                         Toast.makeText(this.getActivity(), "Uh oh! Couldn't focus on event", Toast.LENGTH_LONG).show();
                     });
                 }
@@ -178,15 +273,215 @@ public class MapFragment extends Fragment {
         }
     }
 
+    /**
+     * Updates the markers whenever the map settles somewhere new (runs on the UI thread). Only
+     * the clusters on screen (plus a margin around it) get markers, so small pans that stay
+     * inside the margin don't have to do anything at all.
+     */
+    private void onCameraIdle() {
+        EventClusterer clusterer = this.clusterer;
+        if (clusterer == null) {
+            return;
+        }
+        int zoomLevel = (int) this.map.getCameraPosition().zoom;
+        LatLngBounds visibleRegion = this.map.getProjection().getVisibleRegion().latLngBounds;
+        SpatialIndex.Bounds visibleBounds = new SpatialIndex.Bounds(
+                visibleRegion.southwest.latitude, visibleRegion.southwest.longitude,
+                visibleRegion.northeast.latitude, visibleRegion.northeast.longitude
+        );
+        if (zoomLevel == this.shownZoomLevel && this.shownBounds != null && this.shownBounds.contains(visibleBounds)) {
+            return;
+        }
+
+        SpatialIndex.Bounds bounds = visibleBounds.expand(VIEWPORT_MARGIN);
+        this.shownZoomLevel = zoomLevel;
+        this.shownBounds = bounds;
+        Set<Object> shownKeys = new HashSet<>(this.shownMarkers.keySet());
+        int generation = ++this.markerGeneration;
+        this.tasks.runCPU(() -> this.showClusters(clusterer, zoomLevel, bounds, shownKeys, generation));
+    }
+
+    /**
+     * @param colors is the color table for the events being shown
+     * @param event is the event to get an icon for
+     * @return the (shared) icon for the event's type
+     */
+    private static BitmapDescriptor getEventIcon(EventColorTable colors, Event event) {
+        int typeCode = colors.getTypeCode(event.getEventType());
+        if (typeCode == EventColorTable.UNKNOWN_TYPE) {
+            return BitmapDescriptorFactory.defaultMarker(colors.getHue(event.getEventType()));
+        }
+        return colors.getMarkerIcon(typeCode);
+    }
+
+    /**
+     * Works out the clusters in an area at a zoom level, and then updates the markers on the map
+     * to match: markers that are no longer wanted are removed, and markers (prepared here, off of
+     * the UI thread) are added for the clusters that don't have one yet. Clusters of one event are
+     * drawn as that event.
+     *
+     * @param clusterer is the clusterer for the events being shown
+     * @param zoomLevel is the zoom level to cluster for
+     * @param bounds is the area to show markers in
+     * @param shownKeys are the keys (see PreparedMarker) of the markers on the map when this started
+     * @param generation identifies this update (it is dropped if another update starts first)
+     */
+    private void showClusters(EventClusterer clusterer, int zoomLevel, SpatialIndex.Bounds bounds,
+                              Set<Object> shownKeys, int generation) {
+        DataCache data = DataCache.getInstance();
+        EventColorTable colors = new EventManager().getEventColorTable();
+        List<EventClusterer.Cluster> clusters = clusterer.getClusterIndex(zoomLevel).query(bounds, MAX_LIVE_MARKERS);
+        Set<Object> wantedKeys = new HashSet<>();
+        List<PreparedMarker> prepared = new ArrayList<>();
+        for (EventClusterer.Cluster cluster : clusters) {
+            if (cluster.isSingleEvent()) {
+                Event event = cluster.getFirstEvent();
+                wantedKeys.add(cluster.getKey());
+                if (!shownKeys.contains(cluster.getKey())) {
+                    prepared.add(new PreparedMarker(cluster.getKey(), event, new MarkerOptions()
+                            .title(event.getEventType())
+                            .position(new LatLng(event.getLatitude(), event.getLongitude()))
+                            .icon(MapFragment.getEventIcon(colors, event))
+                    ));
+                }
+            } else {
+                wantedKeys.add(cluster.getKey());
+                if (!shownKeys.contains(cluster.getKey())) {
+                    prepared.add(new PreparedMarker(cluster.getKey(), cluster, new MarkerOptions()
+                            .title(cluster.getSize() + " events")
+                            .position(new LatLng(cluster.getLatitude(), cluster.getLongitude()))
+                            .icon(BitmapDescriptorFactory.defaultMarker(CLUSTER_MARKER_COLOR))
+                    ));
+                }
+            }
+        }
+
+        this.runOnUiThread(() -> {
+            if (generation != this.markerGeneration) {
+                return;
+            }
+            if (this.markerBatcher != null) {
+                this.markerBatcher.cancel();
+            }
+            int numRemoved = 0;
+            Iterator<Map.Entry<Object, Marker>> shownEntries = this.shownMarkers.entrySet().iterator();
+            while (shownEntries.hasNext()) {
+                Map.Entry<Object, Marker> entry = shownEntries.next();
+                if (!wantedKeys.contains(entry.getKey())) {
+                    entry.getValue().remove();
+                    shownEntries.remove();
+                    ++numRemoved;
+                }
+            }
+            int removedMarkers = numRemoved;
+
+            // running on UI thread is required to keep map.addMarker() from hanging; markers
+            // are added a frame's worth at a time. (this runs on the UI thread already, so the
+            // batches have to be posted; Activity.runOnUiThread() would run them all right here)
+            MarkerBatcher<PreparedMarker> batcher = new MarkerBatcher<>(
+                    this.uiHandler::post,
+                    (PreparedMarker marker) -> {
+                        // an earlier (cancelled) update may have gotten to this one already
+                        if (this.shownMarkers.containsKey(marker.key)) {
+                            return;
+                        }
+                        Marker newMarker = this.map.addMarker(marker.options);
+                        newMarker.setTag(marker.tag);
+                        this.shownMarkers.put(marker.key, newMarker);
+                    }
+            );
+            batcher.setProgressListener(new MarkerBatcher.ProgressListener() {
+                private boolean loggedDone = false;
+
+                @Override
+                public void onBatchApplied(MarkerBatcher<?> markers) {
+                    if (!MapFragment.this.loggedFirstMarker && markers.getAppliedCount() > 0 && data.getLoginTimeNanos() != 0) {
+                        MapFragment.this.loggedFirstMarker = true;
+                        long elapsedMillis = (System.nanoTime() - data.getLoginTimeNanos()) / 1_000_000;
+                        Log.i(LOG_TAG, "First marker shown " + elapsedMillis + " ms after login");
+                    }
+                    if (!this.loggedDone && markers.isDone()) {
+                        this.loggedDone = true;
+                        Log.i(LOG_TAG, String.format(
+                                "Showing %d markers for %d events at zoom %d (%d added in %d batches, %d removed; avg %.1f ms, max %.1f ms per batch)",
+                                MapFragment.this.shownMarkers.size(), clusterer.getEventCount(), zoomLevel,
+                                markers.getAppliedCount(), markers.getBatchCount(), removedMarkers,
+                                markers.getAverageBatchMillis(), markers.getMaxBatchMillis()
+                        ));
+                    }
+                }
+            });
+            this.markerBatcher = batcher;
+            batcher.addAll(prepared);
+            batcher.finish();
+        });
+    }
+
+    /**
+     * Filters the events on the map again (like after the settings change). Only the markers of
+     * events (or clusters) that were hidden or shown are removed or added; the rest of the
+     * markers, and the map itself, stay put.
+     */
+    public void refreshEventFilter() {
+        if (this.clusterer == null) {
+            // the markers haven't loaded yet, and will use the new settings when they do
+            return;
+        }
+        Context appContext = this.getActivity().getApplicationContext();
+        this.tasks.runIO(() -> {
+            EventManager eventsManager = new EventManager();
+            Event[] events = eventsManager.getEventsWithSettingsFilter(appContext);
+            this.clusterer = new EventClusterer(events);
+            this.runOnUiThread(() -> {
+                // makes onCameraIdle() diff against the new clusters, even if the camera hasn't moved
+                this.shownBounds = null;
+                this.onCameraIdle();
+            });
+
+            // the lines depend on the settings too
+            Event focusedEvent = this.focusedEvent;
+            if (focusedEvent == null) {
+                return;
+            }
+            if (!eventsManager.isShownWithSettingsFilter(focusedEvent, appContext)) {
+                this.runOnUiThread(this::clearFocus);
+                return;
+            }
+            try {
+                Person person = DataCache.getInstance().getPersonByID(focusedEvent.getPersonID());
+                this.updatePolyLines(focusedEvent, person, appContext);
+            } catch (IOException err) {
+                this.runOnUiThread(() -> {
+                    Toast.makeText(this.getActivity(), "Drawing lines failed!", Toast.LENGTH_LONG).show();
+                });
+            }
+        });
+    }
+
+    /**
+     * Deselects the focused event (runs on the UI thread)
+     */
+    private void clearFocus() {
+        this.focusedEvent = null;
+        for (Polyline line : this.drawnLines) {
+            line.remove();
+        }
+        this.drawnLines.clear();
+        TextView details = this.getView().findViewById(R.id.mapBottomText);
+        details.setText(MapFragment.NO_EVENT_SELECTED_TEXT);
+        ImageView icon = this.getView().findViewById(R.id.mapBottomIcon);
+        icon.setImageResource(0);
+    }
+
     private void focusOnEvent(Event event, boolean shouldZoom) {
         this.focusedEvent = event;
+        Context appContext = this.getActivity().getApplicationContext();
 
-        ExecutorService executor = Executors.newSingleThreadExecutor();
-        executor.submit(() -> {
+        this.tasks.runIO(() -> {
             try {
                 Person person = DataCache.getInstance().getPersonByID(event.getPersonID());
 
-                this.getActivity().runOnUiThread(() -> {
+                this.runOnUiThread(() -> {
                     TextView text = this.getView().findViewById(R.id.mapBottomText);
                     text.setText(String.format(
                             "%s %s\n%s: %s, %s (%d)",
@@ -221,18 +516,18 @@ public class MapFragment extends Fragment {
                     }
                 });
 
-                this.updatePolyLines(event, person);
+                this.updatePolyLines(event, person, appContext);
             } catch (IOException err) {
-                this.getActivity().runOnUiThread(() -> {
+                this.runOnUiThread(() -> {
                     Toast.makeText(this.getActivity(), "Uh oh! Something went wrong", Toast.LENGTH_LONG).show();
                 });
             }
         });
     }
 
-    private void updatePolyLines(Event event, Person associatedPerson) throws IOException {
+    private void updatePolyLines(Event event, Person associatedPerson, Context appContext) throws IOException {
         // first, clear all lines
-        this.getActivity().runOnUiThread(() -> {
+        this.runOnUiThread(() -> {
             for (Polyline line : this.drawnLines) {
                 line.remove();
             }
@@ -246,24 +541,29 @@ public class MapFragment extends Fragment {
         // ideally I'd have abstracted out the data-getting and business logic off of the UI
         // thread, then run updating functions on the ui thread, but I don't have time
         // to refactor it right now
-        ExecutorService executor = Executors.newSingleThreadExecutor();
-        executor.submit(() -> {
+        this.tasks.runIO(() -> {
             LatLng origin = new LatLng(event.getLatitude(), event.getLongitude());
-            EventManager eventManager = new EventManager();
-            FamilyUtils familyUtils = new FamilyUtils();
 
-            SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(this.getActivity());
+            SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(appContext);
             boolean useSpouseLines =        prefs.getBoolean("spouseLines",     false);
             boolean useFamilyTreeLines =    prefs.getBoolean("familyTreeLines", false);
             boolean useStoryLines =         prefs.getBoolean("storyLines",      false);
 
             try {
+                // everything below walks the graph by handle, so the only ID ever looked up
+                // is the person's own
+                FamilyGraph graph = DataCache.getInstance().getFamilyGraph();
+                int personIdx = graph.getPersonIndex(associatedPerson.getPersonID());
+                if (personIdx == FamilyGraph.NONE) {
+                    return;
+                }
+
                 // set spouse line
                 if (useSpouseLines) {
-                    Person spouse = familyUtils.getSpouseOf(associatedPerson);
-                    Event[] spouseEvents = eventManager.getSortedEventsForPerson(spouse);
-                    if (spouseEvents != null && spouseEvents.length > 0) {
-                        Event spouseFirstEvent = spouseEvents[0];
+                    int spouseIdx = graph.getSpouseIndex(personIdx);
+                    int spouseEventIdx = spouseIdx == FamilyGraph.NONE ? FamilyGraph.NONE : graph.getFirstEventIndex(spouseIdx);
+                    if (spouseEventIdx != FamilyGraph.NONE) {
+                        Event spouseFirstEvent = graph.getEvent(spouseEventIdx);
                         LatLng spouseLocation = new LatLng(
                                 spouseFirstEvent.getLatitude(),
                                 spouseFirstEvent.getLongitude()
@@ -274,23 +574,22 @@ public class MapFragment extends Fragment {
 
                 // set family tree lines
                 if (useFamilyTreeLines) {
-                    this.drawAncestorLines(origin, associatedPerson);
+                    this.drawAncestorLines(graph, origin, personIdx, BASE_LINE_WIDTH);
                 }
 
                 // set life story lines
                 if (useStoryLines) {
-                    Event currEvent = null;
-                    for (Event nextEvent : eventManager.getSortedEventsForPerson(associatedPerson)) {
-                        if (currEvent != null) {
-                            LatLng lineStart = new LatLng(currEvent.getLatitude(), currEvent.getLongitude());
-                            LatLng lineEnd = new LatLng(nextEvent.getLatitude(), nextEvent.getLongitude());
-                            this.drawPolyLine(lineStart, lineEnd, LIFE_LINE_COLOR);
-                        }
-                        currEvent = nextEvent;
+                    int timelineEnd = graph.getTimelineEnd(personIdx);
+                    for (int eventIdx = graph.getTimelineStart(personIdx) + 1; eventIdx < timelineEnd; ++eventIdx) {
+                        Event currEvent = graph.getEvent(eventIdx - 1);
+                        Event nextEvent = graph.getEvent(eventIdx);
+                        LatLng lineStart = new LatLng(currEvent.getLatitude(), currEvent.getLongitude());
+                        LatLng lineEnd = new LatLng(nextEvent.getLatitude(), nextEvent.getLongitude());
+                        this.drawPolyLine(lineStart, lineEnd, LIFE_LINE_COLOR);
                     }
                 }
             } catch (IOException err) {
-                this.getActivity().runOnUiThread(() -> {
+                this.runOnUiThread(() -> {
                     Toast.makeText(this.getActivity(), "Drawing lines failed!", Toast.LENGTH_LONG).show();
                 });
             }
@@ -298,7 +597,7 @@ public class MapFragment extends Fragment {
     }
 
     private void drawPolyLine(LatLng start, LatLng end, int color) {
-        this.getActivity().runOnUiThread(() -> {
+        this.runOnUiThread(() -> {
             Polyline newLine = this.map.addPolyline(
                     new PolylineOptions()
                     .add(start)
@@ -311,7 +610,7 @@ public class MapFragment extends Fragment {
     }
 
     private void drawPolyLine(LatLng start, LatLng end, int color, float width) {
-        this.getActivity().runOnUiThread(() -> {
+        this.runOnUiThread(() -> {
             Polyline newLine = this.map.addPolyline(
                     new PolylineOptions()
                     .add(start)
@@ -323,34 +622,22 @@ public class MapFragment extends Fragment {
         });
     }
 
-    private void drawAncestorLines(LatLng start, Person person) throws IOException {
-        this.drawAncestorLines(start, person, BASE_LINE_WIDTH);
+    private void drawAncestorLines(FamilyGraph graph, LatLng start, int personIdx, float width) {
+        this.drawParentLine(graph, start, graph.getMotherIndex(personIdx), MOTHER_LINE_COLOR, width);
+        this.drawParentLine(graph, start, graph.getFatherIndex(personIdx), FATHER_LINE_COLOR, width);
     }
 
-    private void drawAncestorLines(LatLng start, Person person, float width) throws IOException {
-        EventManager eventManager = new EventManager();
-        FamilyUtils familyUtils = new FamilyUtils();
-
-        Person mother = familyUtils.getMotherOf(person);
-        if (mother != null) {
-            Event[] motherEvents = eventManager.getSortedEventsForPerson(mother);
-            if (motherEvents != null && motherEvents.length > 0) {
-                Event motherEvent = motherEvents[0];
-                LatLng motherLineEnd = new LatLng(motherEvent.getLatitude(), motherEvent.getLongitude());
-                this.drawPolyLine(start, motherLineEnd, (int) (MOTHER_LINE_COLOR), width);
-                this.drawAncestorLines(motherLineEnd, mother, width * (float) 0.7);
-            }
+    private void drawParentLine(FamilyGraph graph, LatLng start, int parentIdx, int color, float width) {
+        if (parentIdx == FamilyGraph.NONE) {
+            return;
         }
 
-        Person father = familyUtils.getFatherOf(person);
-        if (father != null) {
-            Event[] fatherEvents = eventManager.getSortedEventsForPerson(father);
-            if (fatherEvents != null && fatherEvents.length > 0) {
-                Event fatherEvent = fatherEvents[0];
-                LatLng fatherLineEnd = new LatLng(fatherEvent.getLatitude(), fatherEvent.getLongitude());
-                this.drawPolyLine(start, fatherLineEnd, (int) (FATHER_LINE_COLOR), width);
-                this.drawAncestorLines(fatherLineEnd, father, width * (float) 0.7);
-            }
+        int parentEventIdx = graph.getFirstEventIndex(parentIdx);
+        if (parentEventIdx != FamilyGraph.NONE) {
+            Event parentEvent = graph.getEvent(parentEventIdx);
+            LatLng parentLineEnd = new LatLng(parentEvent.getLatitude(), parentEvent.getLongitude());
+            this.drawPolyLine(start, parentLineEnd, color, width);
+            this.drawAncestorLines(graph, parentLineEnd, parentIdx, width * (float) 0.7);
         }
     }
 
@@ -361,6 +648,15 @@ public class MapFragment extends Fragment {
      * @return true; all clicks are consumed here
      */
     private boolean onMarkerClick(Marker marker) {
+        if (marker.getTag() instanceof EventClusterer.Cluster) {
+            // clusters split back up into their events as the map zooms in
+            CameraUpdate camera = CameraUpdateFactory.newLatLngZoom(
+                    marker.getPosition(),
+                    this.map.getCameraPosition().zoom + CLUSTER_EXPAND_ZOOM_LEVELS
+            );
+            this.map.animateCamera(camera);
+            return true;
+        }
         Event event = (Event) marker.getTag();
         this.focusOnEvent(event, false);
         return true;
@@ -379,4 +675,21 @@ public class MapFragment extends Fragment {
         }
         return true;
     }
-}
\ No newline at end of file
+
+    /**
+     * A marker that is ready to be added to the map, along with what it stands for
+     */
+    private static class PreparedMarker {
+        /** identifies the marker between updates (see EventClusterer.Cluster.getKey()) */
+        final Object key;
+        /** the Event (or EventClusterer.Cluster) the marker is for */
+        final Object tag;
+        final MarkerOptions options;
+
+        PreparedMarker(Object key, Object tag, MarkerOptions options) {
+            this.key = key;
+            this.tag = tag;
+            this.options = options;
+        }
+    }
+}
@@ -17,11 +17,11 @@ import org.skylon07.familymapclient.R;
 import org.skylon07.familymapclient.utilities.DataCache;
 import org.skylon07.familymapclient.utilities.EventManager;
 import org.skylon07.familymapclient.utilities.FamilyUtils;
+import org.skylon07.familymapclient.utilities.TaskScheduler;
 
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.List;
 
 import models.Event;
 import models.Person;
@@ -35,6 +35,8 @@ public class PersonActivity extends AppCompatActivity {
     public static int SPOUSE_RELATION_TYPE = 5;
 
     private Person shownPerson;
+    /** runs this page's background work (and is cancelled when the page is destroyed) */
+    private TaskScheduler.TaskGroup tasks;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -43,10 +45,17 @@ public class PersonActivity extends AppCompatActivity {
         this.setTitle(R.string.personActivityLabel);
         this.getSupportActionBar().setDisplayHomeAsUpEnabled(true);
 
+        this.tasks = TaskScheduler.getInstance().newTaskGroup();
         String personID = this.getIntent().getStringExtra("personID");
         this.loadPerson(personID);
     }
 
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        this.tasks.cancelAll();
+    }
+
     @Override
     public boolean onOptionsItemSelected(MenuItem button) {
         if (button.getItemId() == android.R.id.home) {
@@ -55,21 +64,37 @@ public class PersonActivity extends AppCompatActivity {
         return true;
     }
 
+    /**
+     * Shows the result of a background task on the UI thread, unless the page was destroyed while
+     * the task ran (cancelAll() doesn't stop tasks that already started)
+     *
+     * @param task is the UI work to run
+     */
+    private void runOnUiThreadWhileAlive(Runnable task) {
+        if (this.tasks.isCancelled()) {
+            return;
+        }
+        this.runOnUiThread(() -> {
+            if (!this.tasks.isCancelled() && !this.isDestroyed()) {
+                task.run();
+            }
+        });
+    }
+
     private void loadPerson(String personID) {
-        ExecutorService executor = Executors.newSingleThreadExecutor();
-        executor.submit(() -> {
+        this.tasks.runIO(() -> {
             try {
                 Person person = DataCache.getInstance().getPersonByID(personID);
                 this.shownPerson = person;
 
                 EventManager eventManager = new EventManager();
-                Event[] lifeEvents = eventManager.getSortedEventsForPerson(person);
+                List<Event> lifeEvents = eventManager.getSortedEventsForPerson(person);
 
                 FamilyUtils familyUtils = new FamilyUtils();
                 Person father = familyUtils.getFatherOf(person);
                 Person mother = familyUtils.getMotherOf(person);
                 Person spouse = familyUtils.getSpouseOf(person);
-                Person[] children = familyUtils.getChildrenOf(person);
+                List<Person> children = familyUtils.getChildrenOf(person);
                 ArrayList<FamilyPerson> familyMembersList = new ArrayList<>();
                 if (father != null) {
                     familyMembersList.add(new FamilyPerson(father, FATHER_RELATION_TYPE));
@@ -85,7 +110,7 @@ public class PersonActivity extends AppCompatActivity {
                 }
                 FamilyPerson[] familyMembers = familyMembersList.toArray(new FamilyPerson[familyMembersList.size()]);
 
-                this.runOnUiThread(() -> {
+                this.runOnUiThreadWhileAlive(() -> {
                     ((TextView) this.findViewById(R.id.firstName)).setText(person.getFirstName());
                     ((TextView) this.findViewById(R.id.lastName)).setText(person.getLastName());
                     if (person.getGender().equals("m")) {
@@ -97,7 +122,7 @@ public class PersonActivity extends AppCompatActivity {
                     expandableList.setAdapter(new ListAdapter(lifeEvents, familyMembers));
                 });
             } catch (IOException err) {
-                this.runOnUiThread(() -> {
+                this.runOnUiThreadWhileAlive(() -> {
                     Toast.makeText(this, "Uh oh, the person could not be loaded!", Toast.LENGTH_LONG).show();
                 });
             }
@@ -106,9 +131,9 @@ public class PersonActivity extends AppCompatActivity {
 
     private class ListAdapter extends BaseExpandableListAdapter {
         private FamilyPerson[] personList;
-        private Event[] eventList;
+        private List<Event> eventList;
 
-        public ListAdapter(Event[] events, FamilyPerson[] persons) {
+        public ListAdapter(List<Event> events, FamilyPerson[] persons) {
             this.eventList = events;
             this.personList = persons;
         }
@@ -121,7 +146,7 @@ public class PersonActivity extends AppCompatActivity {
         @Override
         public int getChildrenCount(int groupPosition) {
             if (groupPosition == LIFE_EVENTS_LIST_TYPE) {
-                return this.eventList.length;
+                return this.eventList.size();
             } else {
                 return this.personList.length;
             }
@@ -139,7 +164,7 @@ public class PersonActivity extends AppCompatActivity {
         @Override
         public Object getChild(int groupPosition, int childPosition) {
             if (groupPosition == LIFE_EVENTS_LIST_TYPE) {
-                return this.eventList[childPosition];
+                return this.eventList.get(childPosition);
             } else {
                 return this.personList[childPosition];
             }
@@ -176,7 +201,7 @@ public class PersonActivity extends AppCompatActivity {
         public View getChildView(int groupPosition, int childPosition, boolean isLastChild, View dunnoWatThisIs, ViewGroup parent) {
             View itemView = PersonActivity.this.getLayoutInflater().inflate(R.layout.search_item, parent, false);
             if (groupPosition == LIFE_EVENTS_LIST_TYPE) {
-                Event lifeEvent = this.eventList[childPosition];
+                Event lifeEvent = this.eventList.get(childPosition);
                 ((ImageView) itemView.findViewById(R.id.resultIcon)).setImageResource(R.drawable.marker);
                 // TODO: this string formatting is reused... should probably be abstracted to a utility
                 ((TextView) itemView.findViewById(R.id.resultFirstLine)).setText(String.format(
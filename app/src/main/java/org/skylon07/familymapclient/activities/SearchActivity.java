@@ -22,10 +22,11 @@ import android.widget.Toast;
 import org.skylon07.familymapclient.R;
 import org.skylon07.familymapclient.utilities.DataCache;
 import org.skylon07.familymapclient.utilities.SearchManager;
+import org.skylon07.familymapclient.utilities.SearchPipeline;
+import org.skylon07.familymapclient.utilities.TaskScheduler;
 
 import java.io.IOException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.function.BooleanSupplier;
 
 import models.Event;
 import models.Person;
@@ -36,6 +37,10 @@ public class SearchActivity extends AppCompatActivity {
     private static int SEARCH_DELAY = 300;
 
     private CountDownTimer currentTimer;
+    /** runs this page's background work (and is cancelled when the page is destroyed) */
+    private TaskScheduler.TaskGroup tasks;
+    /** runs the searches, where each new one cancels the last */
+    private SearchPipeline<SearchResults> searchPipeline;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -43,6 +48,22 @@ public class SearchActivity extends AppCompatActivity {
         this.setTitle(R.string.searchActivityLabel);
         this.setContentView(R.layout.activity_search);
         this.getSupportActionBar().setDisplayHomeAsUpEnabled(true);
+        this.tasks = TaskScheduler.getInstance().newTaskGroup();
+        this.searchPipeline = new SearchPipeline<>(
+                this::search,
+                this::runOnUiThread,
+                new SearchPipeline.Listener<SearchResults>() {
+                    @Override
+                    public void onResults(String query, SearchResults results) {
+                        SearchActivity.this.displayResults(query, results);
+                    }
+
+                    @Override
+                    public void onError(String query, IOException err) {
+                        SearchActivity.this.displayError(query, err);
+                    }
+                }
+        );
 
         RecyclerView searchResults = this.findViewById(R.id.searchResults);
         searchResults.setLayoutManager(new LinearLayoutManager(this));
@@ -70,6 +91,32 @@ public class SearchActivity extends AppCompatActivity {
         });
     }
 
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        this.cancelLastSearch();
+        this.searchPipeline.shutdown();
+        this.tasks.cancelAll();
+    }
+
+    /**
+     * Runs something on the UI thread for a background task. Tasks that were already running
+     * when this page was destroyed keep going (see TaskScheduler.TaskGroup.cancelAll()), so this
+     * drops whatever they hand over once that happens; there is nothing left to update by then.
+     *
+     * @param task is the UI work to run
+     */
+    private void runOnUiThreadWhileAlive(Runnable task) {
+        if (this.tasks.isCancelled()) {
+            return;
+        }
+        this.runOnUiThread(() -> {
+            if (!this.tasks.isCancelled() && !this.isDestroyed()) {
+                task.run();
+            }
+        });
+    }
+
     private void delayThenSearch(String searchQuery) {
         CountDownTimer timer = new CountDownTimer(SEARCH_DELAY, SEARCH_DELAY) {
             @Override
@@ -77,10 +124,7 @@ public class SearchActivity extends AppCompatActivity {
 
             @Override
             public void onFinish() {
-                ExecutorService executor = Executors.newSingleThreadExecutor();
-                executor.submit(() -> {
-                    SearchActivity.this.searchAndDisplayResults(searchQuery);
-                });
+                SearchActivity.this.searchPipeline.submit(searchQuery);
             }
         };
         timer.start();
@@ -92,30 +136,52 @@ public class SearchActivity extends AppCompatActivity {
             this.currentTimer.cancel();
             this.currentTimer = null;
         }
+        // a search already running for older text stops, and its results are never shown
+        this.searchPipeline.cancel();
     }
 
-    private void searchAndDisplayResults(String searchQuery) {
+    /**
+     * Searches for a query (on the search pipeline's worker thread)
+     *
+     * @param searchQuery is the query to search for
+     * @param isCancelled returns true once a newer query has come along
+     * @return the results (or null when there is nothing to search for)
+     * @throws IOException when the persons or events couldn't be loaded
+     */
+    private SearchResults search(String searchQuery, BooleanSupplier isCancelled) throws IOException {
         if (searchQuery == null || searchQuery.equals("")) {
-            this.runOnUiThread(() -> {
-                RecyclerView searchResults = this.findViewById(R.id.searchResults);
-                searchResults.setAdapter(null);
-            });
-            return;
+            return null;
         }
 
         SearchManager searcher = new SearchManager();
-        try {
-            Person[] people = searcher.searchPeople(searchQuery);
-            Event[] events = searcher.searchEvents(searchQuery, this);
+        Person[] people = searcher.searchPeople(searchQuery, isCancelled);
+        Event[] events = searcher.searchEvents(searchQuery, this, isCancelled);
+        return new SearchResults(people, events);
+    }
 
-            this.runOnUiThread(() -> {
-                RecyclerView searchResults = this.findViewById(R.id.searchResults);
-                searchResults.setAdapter(new SearchAdapter(people, events));
-            });
-        } catch (IOException err) {
-            this.runOnUiThread(() -> {
-                Toast.makeText(this, "Search failed due to an error", Toast.LENGTH_LONG).show();
-            });
+    private void displayResults(String searchQuery, SearchResults results) {
+        RecyclerView searchResults = this.findViewById(R.id.searchResults);
+        if (results == null) {
+            searchResults.setAdapter(null);
+        } else {
+            searchResults.setAdapter(new SearchAdapter(results.people, results.events));
+        }
+    }
+
+    private void displayError(String searchQuery, IOException err) {
+        Toast.makeText(this, "Search failed due to an error", Toast.LENGTH_LONG).show();
+    }
+
+    /**
+     * The people and events found for one query
+     */
+    private static class SearchResults {
+        final Person[] people;
+        final Event[] events;
+
+        SearchResults(Person[] people, Event[] events) {
+            this.people = people;
+            this.events = events;
         }
     }
 
@@ -220,11 +286,10 @@ public class SearchActivity extends AppCompatActivity {
 
             // yes, I normally would abstract this into different functions but I am
             // RUNNING OUT OF TIME
-            ExecutorService executor = Executors.newSingleThreadExecutor();
-            executor.submit(() -> {
+            SearchActivity.this.tasks.runIO(() -> {
                 try {
                     Person person = DataCache.getInstance().getPersonByID(event.getPersonID());
-                    SearchActivity.this.runOnUiThread(() -> {
+                    SearchActivity.this.runOnUiThreadWhileAlive(() -> {
                         TextView result2 = this.itemView.findViewById(R.id.resultSecondLine);
                         result2.setText(String.format(
                                 "%s %s",
@@ -233,7 +298,7 @@ public class SearchActivity extends AppCompatActivity {
                         ));
                     });
                 } catch (IOException err) {
-                    SearchActivity.this.runOnUiThread(() -> {
+                    SearchActivity.this.runOnUiThreadWhileAlive(() -> {
                         Toast.makeText(SearchActivity.this, "An event couldn't get a person", Toast.LENGTH_LONG).show();
                     });
                 }
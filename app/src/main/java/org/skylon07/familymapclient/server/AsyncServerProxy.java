@@ -0,0 +1,276 @@
+package org.skylon07.familymapclient.server;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import services.responses.EventResponse;
+import services.responses.LoginResponse;
+import services.responses.PersonResponse;
+import services.responses.RegisterResponse;
+
+/**
+ * A non-blocking version of ServerProxy. Every call returns right away with a CompletableFuture,
+ * and the actual work runs on a single app-wide pool of I/O threads (so there's no need to spin
+ * up a new executor for every call). Cancelling a returned future stops the call if it hasn't
+ * started yet, and interrupts it if it has.
+ */
+public class AsyncServerProxy {
+    /** The most calls that will ever be running at once (more calls wait in line) */
+    public static final int MAX_IO_THREADS = 4;
+    /** How long an idle I/O thread sticks around before it is stopped, in seconds */
+    private static final long IO_THREAD_KEEP_ALIVE_SECONDS = 30;
+
+    /** The executor every call (from every AsyncServerProxy) runs on */
+    private static final ExecutorService ioExecutor = AsyncServerProxy.createIOExecutor();
+
+    /**
+     * @return the app-wide executor that server calls run on
+     */
+    public static ExecutorService getIOExecutor() {
+        return AsyncServerProxy.ioExecutor;
+    }
+
+    /**
+     * Finds the exception that actually caused a future to fail (CompletableFutures like to
+     * wrap them in CompletionExceptions)
+     *
+     * @param err is the exception a future failed with
+     * @return the underlying exception
+     */
+    public static Throwable unwrap(Throwable err) {
+        while ((err instanceof CompletionException || err instanceof ExecutionException) && err.getCause() != null) {
+            err = err.getCause();
+        }
+        return err;
+    }
+
+    private static ExecutorService createIOExecutor() {
+        AtomicInteger threadCount = new AtomicInteger();
+        ThreadFactory threadFactory = (Runnable task) -> {
+            Thread thread = new Thread(task, "ServerProxy-io-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                MAX_IO_THREADS, MAX_IO_THREADS,
+                IO_THREAD_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(),
+                threadFactory
+        );
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /** The (blocking) proxy that does the actual work */
+    private final ServerProxy server;
+
+    /**
+     * Creates a new AsyncServerProxy
+     *
+     * @param server is the ServerProxy to make calls through
+     */
+    public AsyncServerProxy(ServerProxy server) {
+        this.server = server;
+    }
+
+    /**
+     * @return the (blocking) ServerProxy calls are made through
+     */
+    public ServerProxy getServerProxy() {
+        return this.server;
+    }
+
+    /**
+     * Logs a user in given their username and password
+     *
+     * @param username is the username to log in with
+     * @param password is the password for the user
+     * @return a future LoginResponse (see ServerProxy.login())
+     */
+    public CompletableFuture<LoginResponse> login(String username, String password) {
+        return this.call(() -> this.server.login(username, password));
+    }
+
+    /**
+     * Registers a new user given a username, password, and other information
+     *
+     * @param username is the new username to register with
+     * @param password is the password for the user
+     * @param email is the user's email
+     * @param firstName is the first name of the user
+     * @param lastName is the last name of the user
+     * @param gender is the gender of the user
+     * @return a future RegisterResponse (see ServerProxy.register())
+     */
+    public CompletableFuture<RegisterResponse> register(String username, String password, String email,
+                                                        String firstName, String lastName, String gender) {
+        return this.call(() -> this.server.register(username, password, email, firstName, lastName, gender));
+    }
+
+    /**
+     * Gets a person given their ID
+     *
+     * @param personID is the person ID of the desired person to get
+     * @param authToken is the login auth token given to the user
+     * @return a future PersonResponse (see ServerProxy.getPerson())
+     */
+    public CompletableFuture<PersonResponse> getPerson(String personID, String authToken) {
+        return this.call(() -> this.server.getPerson(personID, authToken));
+    }
+
+    /**
+     * Gets all persons for a user
+     *
+     * @param authToken is the login auth token given to the user
+     * @return a future PersonResponse (see ServerProxy.getAllPersons())
+     */
+    public CompletableFuture<PersonResponse> getAllPersons(String authToken) {
+        return this.call(() -> this.server.getAllPersons(authToken));
+    }
+
+    /**
+     * Gets an event given its ID
+     *
+     * @param eventID is the event ID of the desired event to get
+     * @param authToken is the login auth token given to the user
+     * @return a future EventResponse (see ServerProxy.getEvent())
+     */
+    public CompletableFuture<EventResponse> getEvent(String eventID, String authToken) {
+        return this.call(() -> this.server.getEvent(eventID, authToken));
+    }
+
+    /**
+     * Gets all events for a user
+     *
+     * @param authToken is the login auth token given to the user
+     * @return a future EventResponse (see ServerProxy.getAllEvents())
+     */
+    public CompletableFuture<EventResponse> getAllEvents(String authToken) {
+        return this.call(() -> this.server.getAllEvents(authToken));
+    }
+
+    /**
+     * Logs a user in, and then fetches all of their persons and events at the same time. If the
+     * login fails, nothing else is fetched. Cancelling the returned future cancels whichever
+     * calls are still running.
+     *
+     * @param username is the username to log in with
+     * @param password is the password for the user
+     * @return a future LoginData holding all three responses
+     */
+    public CompletableFuture<LoginData> loginAndLoadAll(String username, String password) {
+        CompletableFuture<LoginData> result = new CompletableFuture<>();
+        CompletableFuture<LoginResponse> loginCall = this.login(username, password);
+        result.whenComplete((LoginData data, Throwable err) -> {
+            if (result.isCancelled()) {
+                loginCall.cancel(true);
+            }
+        });
+
+        loginCall.whenComplete((LoginResponse loginResponse, Throwable loginErr) -> {
+            if (loginErr != null) {
+                result.completeExceptionally(AsyncServerProxy.unwrap(loginErr));
+                return;
+            }
+            if (!loginResponse.success) {
+                result.complete(new LoginData(loginResponse, null, null));
+                return;
+            }
+
+            CompletableFuture<PersonResponse> personsCall = this.getAllPersons(loginResponse.authtoken);
+            CompletableFuture<EventResponse> eventsCall = this.getAllEvents(loginResponse.authtoken);
+            result.whenComplete((LoginData data, Throwable err) -> {
+                if (result.isCancelled()) {
+                    personsCall.cancel(true);
+                    eventsCall.cancel(true);
+                }
+            });
+            CompletableFuture.allOf(personsCall, eventsCall).whenComplete((Void ignored, Throwable loadErr) -> {
+                if (loadErr != null) {
+                    result.completeExceptionally(AsyncServerProxy.unwrap(loadErr));
+                } else {
+                    result.complete(new LoginData(loginResponse, personsCall.join(), eventsCall.join()));
+                }
+            });
+        });
+        return result;
+    }
+
+    /**
+     * Runs a blocking call on the I/O executor
+     *
+     * @param call is the call to make
+     * @param <ResponseType> is the type of response the call returns
+     * @return a future for the call's response, which fails with whatever the call threw
+     */
+    private <ResponseType> CompletableFuture<ResponseType> call(Call<ResponseType> call) {
+        CallFuture<ResponseType> future = new CallFuture<>();
+        future.task = AsyncServerProxy.ioExecutor.submit(() -> {
+            if (future.isDone()) {
+                return;
+            }
+            try {
+                future.complete(call.run());
+            } catch (IOException | RuntimeException err) {
+                future.completeExceptionally(err);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * A blocking call to make on the I/O executor
+     *
+     * @param <ResponseType> is the type of response the call returns
+     */
+    private interface Call<ResponseType> {
+        public ResponseType run() throws IOException;
+    }
+
+    /**
+     * A CompletableFuture that also cancels (and interrupts) the task computing it
+     *
+     * @param <ResponseType> is the type of response the future holds
+     */
+    private static class CallFuture<ResponseType> extends CompletableFuture<ResponseType> {
+        /** The task running the call */
+        private volatile Future<?> task;
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            boolean cancelled = super.cancel(mayInterruptIfRunning);
+            Future<?> task = this.task;
+            if (cancelled && task != null) {
+                task.cancel(true);
+            }
+            return cancelled;
+        }
+    }
+
+    /**
+     * Everything loginAndLoadAll() fetches
+     */
+    public static class LoginData {
+        /** The response to the login itself */
+        public final LoginResponse login;
+        /** All of the user's persons (null if the login failed) */
+        public final PersonResponse persons;
+        /** All of the user's events (null if the login failed) */
+        public final EventResponse events;
+
+        public LoginData(LoginResponse login, PersonResponse persons, EventResponse events) {
+            this.login = login;
+            this.persons = persons;
+            this.events = events;
+        }
+    }
+}
@@ -1,13 +1,21 @@
 package org.skylon07.familymapclient.server;
 
+import com.google.gson.Gson;
+
 import services.requests.*;
 import services.responses.*;
 
+import org.skylon07.familymapclient.server.adapters.JsonAdapters;
 import org.skylon07.familymapclient.server.handlers.*;
 
 import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import models.Event;
+import models.Person;
 
 /**
  * Provides an interface for the FamilyMapServer endpoints.
@@ -18,6 +26,10 @@ public class ServerProxy {
     private String hostname;
     /** The port to use on all API calls */
     private String port;
+    /** The Gson shared by every call (building one is expensive, and it caches its adapters) */
+    private final Gson gson;
+    /** Keeps connections to the server alive between calls (and tracks stats about them) */
+    private final ConnectionPool connections;
 
     /**
      * Creates a new ServerProxy instance, given a hostname/port to interact on
@@ -28,6 +40,25 @@ public class ServerProxy {
     public ServerProxy(String hostname, String port) {
         this.hostname = hostname;
         this.port = port;
+        this.gson = JsonAdapters.createGson();
+        this.connections = new ConnectionPool();
+    }
+
+    /**
+     * Changes how long calls wait on the server before giving up with a SocketTimeoutException
+     *
+     * @param connectTimeoutMillis is how long to wait for a connection to be made
+     * @param readTimeoutMillis is how long to wait for the server to send more data
+     */
+    public void setTimeouts(int connectTimeoutMillis, int readTimeoutMillis) {
+        this.connections.setTimeouts(connectTimeoutMillis, readTimeoutMillis);
+    }
+
+    /**
+     * @return how many calls were made to each endpoint, and how long they took
+     */
+    public Map<String, ConnectionPool.EndpointStats> getEndpointStats() {
+        return this.connections.getStats();
     }
 
     /**
@@ -42,7 +73,7 @@ public class ServerProxy {
         request.username = username;
         request.password = password;
 
-        LoginHandler handler = new LoginHandler();
+        LoginHandler handler = new LoginHandler(this.gson, this.connections);
         return handler.handle(this.generateURL(), request);
     }
 
@@ -67,7 +98,7 @@ public class ServerProxy {
         request.lastName = lastName;
         request.gender = gender;
 
-        RegisterHandler handler = new RegisterHandler();
+        RegisterHandler handler = new RegisterHandler(this.gson, this.connections);
         return handler.handle(this.generateURL(), request);
     }
 
@@ -86,7 +117,7 @@ public class ServerProxy {
         request.authtoken = authToken;
         request.personID = personID;
 
-        PersonHandler handler = new PersonHandler();
+        PersonHandler handler = new PersonHandler(this.gson, this.connections);
         return handler.handle(this.generateURL(), request);
     }
 
@@ -102,10 +133,28 @@ public class ServerProxy {
         request.authtoken = authToken;
         request.all = true;
 
-        PersonHandler handler = new PersonHandler();
+        PersonHandler handler = new PersonHandler(this.gson, this.connections);
         return handler.handle(this.generateURL(), request);
     }
 
+    /**
+     * Gets all persons for a user, handing each one to a consumer as soon as it is read off the
+     * network (instead of collecting them all into an array first). This endpoint has an
+     * authorization barrier, so it requires an auth token to work.
+     *
+     * @param authToken is the login auth token given to the user
+     * @param personConsumer receives each Person as it is read
+     * @return a PersonResponse, indicating success/failure (its data is always null)
+     */
+    public PersonResponse streamAllPersons(String authToken, Consumer<Person> personConsumer) throws MalformedURLException, IOException {
+        PersonRequest request = new PersonRequest();
+        request.authtoken = authToken;
+        request.all = true;
+
+        PersonHandler handler = new PersonHandler(this.gson, this.connections);
+        return handler.handleStreaming(this.generateURL(), request, Person.class, personConsumer);
+    }
+
     /**
      * Gets an event given their ID. This endpoint has an authorization
      * barrier, so it requires an auth token to work.
@@ -119,7 +168,7 @@ public class ServerProxy {
         request.authtoken = authToken;
         request.eventID = eventID;
 
-        EventHandler handler = new EventHandler();
+        EventHandler handler = new EventHandler(this.gson, this.connections);
         return handler.handle(this.generateURL(), request);
     }
 
@@ -135,10 +184,38 @@ public class ServerProxy {
         request.authtoken = authToken;
         request.all = true;
 
-        EventHandler handler = new EventHandler();
+        EventHandler handler = new EventHandler(this.gson, this.connections);
         return handler.handle(this.generateURL(), request);
     }
 
+    /**
+     * Gets all events for a user, handing each one to a consumer as soon as it is read off the
+     * network (instead of collecting them all into an array first). This endpoint has an
+     * authorization barrier, so it requires an auth token to work.
+     *
+     * @param authToken is the login auth token given to the user
+     * @param eventConsumer receives each Event as it is read
+     * @return an EventResponse, indicating success/failure (its data is always null)
+     */
+    public EventResponse streamAllEvents(String authToken, Consumer<Event> eventConsumer) throws MalformedURLException, IOException {
+        EventRequest request = new EventRequest();
+        request.authtoken = authToken;
+        request.all = true;
+
+        EventHandler handler = new EventHandler(this.gson, this.connections);
+        return handler.handleStreaming(this.generateURL(), request, Event.class, eventConsumer);
+    }
+
+    /**
+     * Returns a key identifying which server this proxy talks to, for telling apart data
+     * that came from different servers
+     *
+     * @return a String like "hostname:port"
+     */
+    public String getServerKey() {
+        return this.hostname + ":" + this.port;
+    }
+
     private String generateURL() {
         return "http://" + this.hostname + ":" + this.port;
     }
@@ -0,0 +1,95 @@
+package org.skylon07.familymapclient.server.adapters;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
+import models.Event;
+
+/**
+ * Reads and writes Events without going through reflection
+ */
+public class EventAdapter extends TypeAdapter<Event> {
+    @Override
+    public void write(JsonWriter out, Event event) throws IOException {
+        if (event == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        out.name("eventID").value(event.getEventID());
+        out.name("associatedUsername").value(event.getAssociatedUsername());
+        out.name("personID").value(event.getPersonID());
+        out.name("latitude").value(Float.valueOf(event.getLatitude()));
+        out.name("longitude").value(Float.valueOf(event.getLongitude()));
+        out.name("country").value(event.getCountry());
+        out.name("city").value(event.getCity());
+        out.name("eventType").value(event.getEventType());
+        out.name("year").value(event.getYear());
+        out.endObject();
+    }
+
+    @Override
+    public Event read(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return null;
+        }
+
+        String eventID = null;
+        String associatedUsername = null;
+        String personID = null;
+        float latitude = 0;
+        float longitude = 0;
+        String country = null;
+        String city = null;
+        String eventType = null;
+        int year = 0;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "eventID":
+                    eventID = JsonAdapters.nextNullableString(reader);
+                    break;
+                case "associatedUsername":
+                    associatedUsername = JsonAdapters.nextNullableString(reader);
+                    break;
+                case "personID":
+                    personID = JsonAdapters.nextNullableString(reader);
+                    break;
+                case "latitude":
+                    if (!JsonAdapters.skipNull(reader)) {
+                        latitude = (float) reader.nextDouble();
+                    }
+                    break;
+                case "longitude":
+                    if (!JsonAdapters.skipNull(reader)) {
+                        longitude = (float) reader.nextDouble();
+                    }
+                    break;
+                case "country":
+                    country = JsonAdapters.nextNullableString(reader);
+                    break;
+                case "city":
+                    city = JsonAdapters.nextNullableString(reader);
+                    break;
+                case "eventType":
+                    eventType = JsonAdapters.nextNullableString(reader);
+                    break;
+                case "year":
+                    if (!JsonAdapters.skipNull(reader)) {
+                        year = reader.nextInt();
+                    }
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+        reader.endObject();
+        return new Event(eventID, associatedUsername, personID, latitude, longitude, country, city, eventType, year);
+    }
+}
@@ -0,0 +1,100 @@
+package org.skylon07.familymapclient.server.adapters;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import models.Event;
+import services.responses.EventResponse;
+
+/**
+ * Reads and writes EventResponses (from both /event and /event/[eventID]) without going
+ * through reflection
+ */
+class EventResponseAdapter extends GenericResponseAdapter<EventResponse> {
+    private final EventAdapter eventAdapter;
+
+    EventResponseAdapter(EventAdapter eventAdapter) {
+        this.eventAdapter = eventAdapter;
+    }
+
+    @Override
+    protected EventResponse createResponse() {
+        return new EventResponse();
+    }
+
+    @Override
+    protected boolean readField(String fieldName, JsonReader reader, EventResponse response) throws IOException {
+        switch (fieldName) {
+            case "data":
+                if (!JsonAdapters.skipNull(reader)) {
+                    List<Event> data = new ArrayList<>();
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        data.add(this.eventAdapter.read(reader));
+                    }
+                    reader.endArray();
+                    response.data = data.toArray(new Event[0]);
+                }
+                return true;
+            case "eventID":
+                response.eventID = JsonAdapters.nextNullableString(reader);
+                return true;
+            case "associatedUsername":
+                response.associatedUsername = JsonAdapters.nextNullableString(reader);
+                return true;
+            case "personID":
+                response.personID = JsonAdapters.nextNullableString(reader);
+                return true;
+            case "latitude":
+                if (!JsonAdapters.skipNull(reader)) {
+                    response.latitude = (float) reader.nextDouble();
+                }
+                return true;
+            case "longitude":
+                if (!JsonAdapters.skipNull(reader)) {
+                    response.longitude = (float) reader.nextDouble();
+                }
+                return true;
+            case "country":
+                response.country = JsonAdapters.nextNullableString(reader);
+                return true;
+            case "city":
+                response.city = JsonAdapters.nextNullableString(reader);
+                return true;
+            case "eventType":
+                response.eventType = JsonAdapters.nextNullableString(reader);
+                return true;
+            case "year":
+                if (!JsonAdapters.skipNull(reader)) {
+                    response.year = reader.nextInt();
+                }
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    @Override
+    protected void writeFields(JsonWriter out, EventResponse response) throws IOException {
+        if (response.data != null) {
+            out.name("data").beginArray();
+            for (Event event : response.data) {
+                this.eventAdapter.write(out, event);
+            }
+            out.endArray();
+        }
+        out.name("eventID").value(response.eventID);
+        out.name("associatedUsername").value(response.associatedUsername);
+        out.name("personID").value(response.personID);
+        out.name("latitude").value(Float.valueOf(response.latitude));
+        out.name("longitude").value(Float.valueOf(response.longitude));
+        out.name("country").value(response.country);
+        out.name("city").value(response.city);
+        out.name("eventType").value(response.eventType);
+        out.name("year").value(response.year);
+    }
+}
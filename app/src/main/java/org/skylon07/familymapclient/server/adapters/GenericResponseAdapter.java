@@ -0,0 +1,83 @@
+package org.skylon07.familymapclient.server.adapters;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
+import services.responses.GenericResponse;
+
+/**
+ * Handles the parts of reading and writing responses that every response type shares (the
+ * "message" and "success" fields, nulls, and skipping fields the client doesn't know about),
+ * so the specific response adapters only have to deal with their own fields
+ *
+ * @param <ResponseType> is the specific response type
+ */
+abstract class GenericResponseAdapter<ResponseType extends GenericResponse> extends TypeAdapter<ResponseType> {
+    @Override
+    public void write(JsonWriter out, ResponseType response) throws IOException {
+        if (response == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        this.writeFields(out, response);
+        out.name("message").value(response.message);
+        out.name("success").value(response.success);
+        out.endObject();
+    }
+
+    @Override
+    public ResponseType read(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return null;
+        }
+
+        ResponseType response = this.createResponse();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String fieldName = reader.nextName();
+            if (fieldName.equals("message")) {
+                response.message = JsonAdapters.nextNullableString(reader);
+            } else if (fieldName.equals("success")) {
+                if (!JsonAdapters.skipNull(reader)) {
+                    response.success = reader.nextBoolean();
+                }
+            } else if (!this.readField(fieldName, reader, response)) {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return response;
+    }
+
+    /**
+     * @return a new, empty response to read fields into
+     */
+    protected abstract ResponseType createResponse();
+
+    /**
+     * Reads one of the fields specific to this response type
+     *
+     * @param fieldName is the name of the field being read
+     * @param reader is the reader positioned at the field's value
+     * @param response is the response to store the value in
+     * @return true if the field was read, or false if it isn't a field this adapter knows
+     *      about (in which case the value must be left unread)
+     * @throws IOException when the JSON is broken
+     */
+    protected abstract boolean readField(String fieldName, JsonReader reader, ResponseType response) throws IOException;
+
+    /**
+     * Writes all the fields specific to this response type
+     *
+     * @param out is the writer to write the fields to
+     * @param response is the response to write
+     * @throws IOException when the writer can't be written to
+     */
+    protected abstract void writeFields(JsonWriter out, ResponseType response) throws IOException;
+}
@@ -0,0 +1,73 @@
+package org.skylon07.familymapclient.server.adapters;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+
+import models.Event;
+import models.Person;
+import services.responses.EventResponse;
+import services.responses.LoginResponse;
+import services.responses.PersonResponse;
+import services.responses.RegisterResponse;
+
+/**
+ * Builds the Gson instance used to talk to the server. Gson's default (reflection based)
+ * binding is pretty slow on Android, so every model and response the client reads gets a
+ * hand-written TypeAdapter instead. Anything without one (like the requests) still falls back
+ * to reflection, which is fine since those are tiny.
+ */
+public class JsonAdapters {
+    /**
+     * Creates a new Gson with all of the client's TypeAdapters registered. Gson instances are
+     * thread safe (and cache a lot internally), so callers should create one and share it
+     *
+     * @return the new Gson
+     */
+    public static Gson createGson() {
+        PersonAdapter personAdapter = new PersonAdapter();
+        EventAdapter eventAdapter = new EventAdapter();
+        return new GsonBuilder()
+                .registerTypeAdapter(Person.class, personAdapter)
+                .registerTypeAdapter(Event.class, eventAdapter)
+                .registerTypeAdapter(PersonResponse.class, new PersonResponseAdapter(personAdapter))
+                .registerTypeAdapter(EventResponse.class, new EventResponseAdapter(eventAdapter))
+                .registerTypeAdapter(LoginResponse.class, new LoginResponseAdapter())
+                .registerTypeAdapter(RegisterResponse.class, new RegisterResponseAdapter())
+                .create();
+    }
+
+    /**
+     * Reads a string value, which may be null
+     *
+     * @param reader is the reader positioned at the value
+     * @return the string, or null if the value was null
+     * @throws IOException when the value isn't a string (or the JSON is broken)
+     */
+    static String nextNullableString(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return null;
+        }
+        return reader.nextString();
+    }
+
+    /**
+     * Checks if the next value is null, and skips over it if so. Gson leaves primitive fields
+     * alone when their value is null, so the adapters do the same using this.
+     *
+     * @param reader is the reader positioned at the value
+     * @return true if the value was null (and was skipped)
+     * @throws IOException when the JSON is broken
+     */
+    static boolean skipNull(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,42 @@
+package org.skylon07.familymapclient.server.adapters;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
+import services.responses.LoginResponse;
+
+/**
+ * Reads and writes LoginResponses without going through reflection
+ */
+class LoginResponseAdapter extends GenericResponseAdapter<LoginResponse> {
+    @Override
+    protected LoginResponse createResponse() {
+        return new LoginResponse();
+    }
+
+    @Override
+    protected boolean readField(String fieldName, JsonReader reader, LoginResponse response) throws IOException {
+        switch (fieldName) {
+            case "authtoken":
+                response.authtoken = JsonAdapters.nextNullableString(reader);
+                return true;
+            case "username":
+                response.username = JsonAdapters.nextNullableString(reader);
+                return true;
+            case "personID":
+                response.personID = JsonAdapters.nextNullableString(reader);
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    @Override
+    protected void writeFields(JsonWriter out, LoginResponse response) throws IOException {
+        out.name("authtoken").value(response.authtoken);
+        out.name("username").value(response.username);
+        out.name("personID").value(response.personID);
+    }
+}
@@ -0,0 +1,84 @@
+package org.skylon07.familymapclient.server.adapters;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
+import models.Person;
+
+/**
+ * Reads and writes Persons without going through reflection
+ */
+public class PersonAdapter extends TypeAdapter<Person> {
+    @Override
+    public void write(JsonWriter out, Person person) throws IOException {
+        if (person == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        out.name("personID").value(person.getPersonID());
+        out.name("associatedUsername").value(person.getAssociatedUsername());
+        out.name("firstName").value(person.getFirstName());
+        out.name("lastName").value(person.getLastName());
+        out.name("gender").value(person.getGender());
+        out.name("fatherID").value(person.getFatherID());
+        out.name("motherID").value(person.getMotherID());
+        out.name("spouseID").value(person.getSpouseID());
+        out.endObject();
+    }
+
+    @Override
+    public Person read(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return null;
+        }
+
+        String personID = null;
+        String associatedUsername = null;
+        String firstName = null;
+        String lastName = null;
+        String gender = null;
+        String fatherID = null;
+        String motherID = null;
+        String spouseID = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "personID":
+                    personID = JsonAdapters.nextNullableString(reader);
+                    break;
+                case "associatedUsername":
+                    associatedUsername = JsonAdapters.nextNullableString(reader);
+                    break;
+                case "firstName":
+                    firstName = JsonAdapters.nextNullableString(reader);
+                    break;
+                case "lastName":
+                    lastName = JsonAdapters.nextNullableString(reader);
+                    break;
+                case "gender":
+                    gender = JsonAdapters.nextNullableString(reader);
+                    break;
+                case "fatherID":
+                    fatherID = JsonAdapters.nextNullableString(reader);
+                    break;
+                case "motherID":
+                    motherID = JsonAdapters.nextNullableString(reader);
+                    break;
+                case "spouseID":
+                    spouseID = JsonAdapters.nextNullableString(reader);
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+        reader.endObject();
+        return new Person(personID, associatedUsername, firstName, lastName, gender, fatherID, motherID, spouseID);
+    }
+}
@@ -0,0 +1,90 @@
+package org.skylon07.familymapclient.server.adapters;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import models.Person;
+import services.responses.PersonResponse;
+
+/**
+ * Reads and writes PersonResponses (from both /person and /person/[personID]) without going
+ * through reflection
+ */
+class PersonResponseAdapter extends GenericResponseAdapter<PersonResponse> {
+    private final PersonAdapter personAdapter;
+
+    PersonResponseAdapter(PersonAdapter personAdapter) {
+        this.personAdapter = personAdapter;
+    }
+
+    @Override
+    protected PersonResponse createResponse() {
+        return new PersonResponse();
+    }
+
+    @Override
+    protected boolean readField(String fieldName, JsonReader reader, PersonResponse response) throws IOException {
+        switch (fieldName) {
+            case "data":
+                if (!JsonAdapters.skipNull(reader)) {
+                    List<Person> data = new ArrayList<>();
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        data.add(this.personAdapter.read(reader));
+                    }
+                    reader.endArray();
+                    response.data = data.toArray(new Person[0]);
+                }
+                return true;
+            case "personID":
+                response.personID = JsonAdapters.nextNullableString(reader);
+                return true;
+            case "associatedUsername":
+                response.associatedUsername = JsonAdapters.nextNullableString(reader);
+                return true;
+            case "firstName":
+                response.firstName = JsonAdapters.nextNullableString(reader);
+                return true;
+            case "lastName":
+                response.lastName = JsonAdapters.nextNullableString(reader);
+                return true;
+            case "gender":
+                response.gender = JsonAdapters.nextNullableString(reader);
+                return true;
+            case "fatherID":
+                response.fatherID = JsonAdapters.nextNullableString(reader);
+                return true;
+            case "motherID":
+                response.motherID = JsonAdapters.nextNullableString(reader);
+                return true;
+            case "spouseID":
+                response.spouseID = JsonAdapters.nextNullableString(reader);
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    @Override
+    protected void writeFields(JsonWriter out, PersonResponse response) throws IOException {
+        if (response.data != null) {
+            out.name("data").beginArray();
+            for (Person person : response.data) {
+                this.personAdapter.write(out, person);
+            }
+            out.endArray();
+        }
+        out.name("personID").value(response.personID);
+        out.name("associatedUsername").value(response.associatedUsername);
+        out.name("firstName").value(response.firstName);
+        out.name("lastName").value(response.lastName);
+        out.name("gender").value(response.gender);
+        out.name("fatherID").value(response.fatherID);
+        out.name("motherID").value(response.motherID);
+        out.name("spouseID").value(response.spouseID);
+    }
+}
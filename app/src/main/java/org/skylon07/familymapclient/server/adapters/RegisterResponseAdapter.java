@@ -0,0 +1,42 @@
+package org.skylon07.familymapclient.server.adapters;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
+import services.responses.RegisterResponse;
+
+/**
+ * Reads and writes RegisterResponses without going through reflection
+ */
+class RegisterResponseAdapter extends GenericResponseAdapter<RegisterResponse> {
+    @Override
+    protected RegisterResponse createResponse() {
+        return new RegisterResponse();
+    }
+
+    @Override
+    protected boolean readField(String fieldName, JsonReader reader, RegisterResponse response) throws IOException {
+        switch (fieldName) {
+            case "authtoken":
+                response.authtoken = JsonAdapters.nextNullableString(reader);
+                return true;
+            case "username":
+                response.username = JsonAdapters.nextNullableString(reader);
+                return true;
+            case "personID":
+                response.personID = JsonAdapters.nextNullableString(reader);
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    @Override
+    protected void writeFields(JsonWriter out, RegisterResponse response) throws IOException {
+        out.name("authtoken").value(response.authtoken);
+        out.name("username").value(response.username);
+        out.name("personID").value(response.personID);
+    }
+}
@@ -0,0 +1,192 @@
+package org.skylon07.familymapclient.server.handlers;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Opens and releases the connections every handler uses to talk to a server.
+ *
+ * HttpURLConnection already keeps idle sockets around for reuse, but only when a response body
+ * is read all the way to the end and closed (and disconnect() is never called, since that closes
+ * the socket outright). This makes sure every handler plays by those rules, so back-to-back calls
+ * (like fetching ancestors one at a time) share a socket instead of each doing a new handshake.
+ * It also applies the timeouts, and keeps some simple stats about each endpoint.
+ */
+public class ConnectionPool {
+    /** How long to wait for a connection to be made (by default), in milliseconds */
+    public static final int DEFAULT_CONNECT_TIMEOUT_MILLIS = 10_000;
+    /** How long to wait for the server to send more data (by default), in milliseconds */
+    public static final int DEFAULT_READ_TIMEOUT_MILLIS = 30_000;
+
+    /** How long to wait for a connection to be made, in milliseconds */
+    private volatile int connectTimeoutMillis;
+    /** How long to wait for the server to send more data, in milliseconds */
+    private volatile int readTimeoutMillis;
+    /** The stats of every endpoint that has been called, by endpoint name */
+    private final Map<String, EndpointStats> statsByEndpoint;
+
+    /**
+     * Creates a new pool that uses the default timeouts
+     */
+    public ConnectionPool() {
+        this.connectTimeoutMillis = DEFAULT_CONNECT_TIMEOUT_MILLIS;
+        this.readTimeoutMillis = DEFAULT_READ_TIMEOUT_MILLIS;
+        this.statsByEndpoint = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Changes the timeouts used by connections opened from now on
+     *
+     * @param connectTimeoutMillis is how long to wait for a connection to be made
+     * @param readTimeoutMillis is how long to wait for the server to send more data
+     */
+    public void setTimeouts(int connectTimeoutMillis, int readTimeoutMillis) {
+        if (connectTimeoutMillis < 0 || readTimeoutMillis < 0) {
+            throw new IllegalArgumentException("Timeouts can't be negative");
+        }
+        this.connectTimeoutMillis = connectTimeoutMillis;
+        this.readTimeoutMillis = readTimeoutMillis;
+    }
+
+    public int getConnectTimeoutMillis() {
+        return this.connectTimeoutMillis;
+    }
+
+    public int getReadTimeoutMillis() {
+        return this.readTimeoutMillis;
+    }
+
+    /**
+     * Opens a connection (reusing an idle socket to the same server, if there is one)
+     *
+     * @param url is the URL to connect to
+     * @param requestMethod is the HTTP method to use
+     * @return the new connection, ready to have its request written
+     * @throws IOException when the connection can't be opened
+     */
+    HttpURLConnection open(URL url, String requestMethod) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setRequestMethod(requestMethod);
+        connection.setConnectTimeout(this.connectTimeoutMillis);
+        connection.setReadTimeout(this.readTimeoutMillis);
+        connection.setUseCaches(false);
+        connection.setRequestProperty("Connection", "keep-alive");
+        return connection;
+    }
+
+    /**
+     * Finishes with a connection. When the call went well, whatever is left of the response body
+     * is read and thrown away so the socket can go back to be reused. When it didn't, the socket
+     * is in an unknown state, so it is closed instead.
+     *
+     * @param connection is the connection to release
+     * @param responseBody is the response body that was read from (null if there wasn't one)
+     * @param succeeded is whether the call finished without any errors
+     */
+    void release(HttpURLConnection connection, InputStream responseBody, boolean succeeded) {
+        if (!succeeded) {
+            connection.disconnect();
+            return;
+        }
+        if (responseBody != null) {
+            try {
+                byte[] buffer = new byte[4096];
+                while (responseBody.read(buffer) != -1) {
+                    // drain it; a partly read body keeps the socket from being reused
+                }
+                responseBody.close();
+            } catch (IOException err) {
+                connection.disconnect();
+            }
+        }
+    }
+
+    /**
+     * Records that a call to an endpoint finished
+     *
+     * @param endpoint is the name of the endpoint (like "GET /person/{personID}")
+     * @param elapsedNanos is how long the call took
+     * @param succeeded is whether the call finished without any errors
+     */
+    void recordCall(String endpoint, long elapsedNanos, boolean succeeded) {
+        EndpointStats stats = this.statsByEndpoint.get(endpoint);
+        if (stats == null) {
+            stats = this.statsByEndpoint.computeIfAbsent(endpoint, (String key) -> new EndpointStats());
+        }
+        stats.record(elapsedNanos, succeeded);
+    }
+
+    /**
+     * @return the stats of every endpoint that has been called, by endpoint name (sorted)
+     */
+    public Map<String, EndpointStats> getStats() {
+        return Collections.unmodifiableMap(new TreeMap<>(this.statsByEndpoint));
+    }
+
+    /**
+     * Counts the calls made to a single endpoint, and how long they took
+     */
+    public static class EndpointStats {
+        private final AtomicLong callCount = new AtomicLong();
+        private final AtomicLong failureCount = new AtomicLong();
+        private final AtomicLong totalNanos = new AtomicLong();
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        private void record(long elapsedNanos, boolean succeeded) {
+            this.callCount.incrementAndGet();
+            if (!succeeded) {
+                this.failureCount.incrementAndGet();
+            }
+            this.totalNanos.addAndGet(elapsedNanos);
+            long max = this.maxNanos.get();
+            while (elapsedNanos > max && !this.maxNanos.compareAndSet(max, elapsedNanos)) {
+                max = this.maxNanos.get();
+            }
+        }
+
+        /**
+         * @return how many calls were made (including failed ones)
+         */
+        public long getCallCount() {
+            return this.callCount.get();
+        }
+
+        /**
+         * @return how many calls failed with an exception (like a timeout)
+         */
+        public long getFailureCount() {
+            return this.failureCount.get();
+        }
+
+        /**
+         * @return the average time a call took, in milliseconds
+         */
+        public double getAverageMillis() {
+            long calls = this.callCount.get();
+            if (calls == 0) {
+                return 0;
+            }
+            return this.totalNanos.get() / 1e6 / calls;
+        }
+
+        /**
+         * @return the longest time a call took, in milliseconds
+         */
+        public double getMaxMillis() {
+            return this.maxNanos.get() / 1e6;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d calls (%d failed), avg %.1f ms, max %.1f ms",
+                    this.getCallCount(), this.getFailureCount(), this.getAverageMillis(), this.getMaxMillis());
+        }
+    }
+}
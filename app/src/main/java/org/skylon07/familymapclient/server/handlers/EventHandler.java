@@ -1,9 +1,15 @@
 package org.skylon07.familymapclient.server.handlers;
 
+import com.google.gson.Gson;
+
 import services.requests.EventRequest;
 import services.responses.EventResponse;
 
 public class EventHandler extends GenericHandler<EventRequest, EventResponse> {
+    public EventHandler(Gson gson, ConnectionPool connections) {
+        super(gson, connections);
+    }
+
     @Override
     protected String getEndpointURL(EventRequest request) {
         if (request.all) {
@@ -13,6 +19,15 @@ public class EventHandler extends GenericHandler<EventRequest, EventResponse> {
         }
     }
 
+    @Override
+    protected String getEndpointName(EventRequest request) {
+        if (request.all) {
+            return "GET /event";
+        } else {
+            return "GET /event/{eventID}";
+        }
+    }
+
     @Override
     protected String getEndpointMethod(EventRequest request) {
         return "GET";
@@ -1,6 +1,11 @@
 package org.skylon07.familymapclient.server.handlers;
 
 import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
 
 import java.io.IOException;
 import java.io.InputStream;
@@ -11,11 +16,32 @@ import java.io.OutputStreamWriter;
 import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Consumer;
 
 /**
  * Provides an interface to interact with all types of Handlers
  */
 public abstract class GenericHandler<RequestType, ResponseType> {
+    /** The name of the response field holding the list of results for "get all" endpoints */
+    private static final String STREAMED_FIELD = "data";
+
+    /** The Gson used to write requests and read responses (shared with the ServerProxy) */
+    private final Gson gson;
+    /** Where connections come from and go back to (shared with the ServerProxy) */
+    private final ConnectionPool connections;
+
+    /**
+     * Creates a new handler
+     *
+     * @param gson is the Gson to convert requests and responses with
+     * @param connections is the pool to get connections from
+     */
+    protected GenericHandler(Gson gson, ConnectionPool connections) {
+        this.gson = gson;
+        this.connections = connections;
+    }
+
     /**
      * Performs the operations necessary to call the endpoint and retrieve a response.
      * All handlers can do this, but must provide specific details for their specific endpoint
@@ -26,36 +52,74 @@ public abstract class GenericHandler<RequestType, ResponseType> {
      * @return the specific response returned from the server
      */
     public ResponseType handle(String serverUrl, RequestType request) throws MalformedURLException, IOException {
+        return this.handle(serverUrl, request, this::readResponseJson);
+    }
+
+    /**
+     * Works like handle(), except the items in the response's "data" list are handed to a
+     * consumer one at a time as they are parsed, instead of all being collected into an array
+     * first. Only one item is ever held onto at a time, so this takes (almost) no extra memory
+     * no matter how big the response is. The returned response will always have null data.
+     *
+     * @param serverUrl is the root URL of the server to send the request to
+     * @param request is the specific request for the handler to process
+     * @param itemClass is the .class of the items in the "data" list
+     * @param itemConsumer receives each item in the "data" list, in order
+     * @return the specific response returned from the server (minus its data)
+     */
+    public <ItemType> ResponseType handleStreaming(String serverUrl, RequestType request, Class<ItemType> itemClass,
+                                                   Consumer<ItemType> itemConsumer) throws MalformedURLException, IOException {
+        return this.handle(serverUrl, request, (InputStream responseBody) -> {
+            return this.streamResponseJson(responseBody, itemClass, itemConsumer);
+        });
+    }
+
+    /**
+     * The shared implementation of handle() and handleStreaming()
+     *
+     * @param serverUrl is the root URL of the server to send the request to
+     * @param request is the specific request for the handler to process
+     * @param responseReader converts the response body into the specific response
+     * @return the specific response returned from the server
+     */
+    private ResponseType handle(String serverUrl, RequestType request, ResponseReader<ResponseType> responseReader) throws MalformedURLException, IOException {
         String urlStr = this.getEndpointURL(request);
         URL url = new URL(serverUrl + urlStr);
+        String requestMethod = this.getEndpointMethod(request);
 
-        Gson gson = new Gson();
-        String requestJson = gson.toJson(request);
+        long startTime = System.nanoTime();
+        HttpURLConnection connection = this.connections.open(url, requestMethod);
+        InputStream responseBody = null;
+        boolean succeeded = false;
+        try {
+            connection.setRequestProperty("Authorization", this.getAuthHeader(request));
 
-        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-        String requestMethod = this.getEndpointMethod(request);
-        connection.setRequestMethod(requestMethod);
-        connection.setRequestProperty("Authorization", this.getAuthHeader(request));
-
-        boolean hasBody = requestMethod == "POST";
-        connection.setDoOutput(hasBody);
-        if (hasBody) {
-            try (OutputStream requestBody = connection.getOutputStream()) {
-                this.writeRequestJson(request, requestBody);
-                requestBody.flush();
+            boolean hasBody = requestMethod.equals("POST");
+            connection.setDoOutput(hasBody);
+            if (hasBody) {
+                try (OutputStream requestBody = connection.getOutputStream()) {
+                    this.writeRequestJson(request, requestBody);
+                    requestBody.flush();
+                }
             }
-        }
 
-        ResponseType response;
-        if (connection.getResponseCode() == HttpURLConnection.HTTP_OK) {
-            response = this.readResponseJson(connection.getInputStream());
-        } else {
-            String errMsg = connection.getResponseMessage();
-            // TODO: should log errMsg somewhere... somehow...
-            response = this.readResponseJson(connection.getErrorStream());
+            if (connection.getResponseCode() == HttpURLConnection.HTTP_OK) {
+                responseBody = connection.getInputStream();
+            } else {
+                String errMsg = connection.getResponseMessage();
+                // TODO: should log errMsg somewhere... somehow...
+                responseBody = connection.getErrorStream();
+                if (responseBody == null) {
+                    throw new IOException("Server responded with no body: " + errMsg);
+                }
+            }
+            ResponseType response = responseReader.read(responseBody);
+            succeeded = true;
+            return response;
+        } finally {
+            this.connections.release(connection, responseBody, succeeded);
+            this.connections.recordCall(this.getEndpointName(request), System.nanoTime() - startTime, succeeded);
         }
-        connection.disconnect();
-        return response;
     }
 
     /**
@@ -69,6 +133,17 @@ public abstract class GenericHandler<RequestType, ResponseType> {
         return "(none)";
     }
 
+    /**
+     * Overridable method that names the endpoint a request goes to, for keeping stats. Endpoints
+     * that put IDs in their URL should override this, so all their calls get counted together
+     *
+     * @param request is the request given to handle()
+     * @return the name of the endpoint (like "GET /person/{personID}")
+     */
+    protected String getEndpointName(RequestType request) {
+        return this.getEndpointMethod(request) + " " + this.getEndpointURL(request);
+    }
+
     /**
      * Provides a necessary implementation detail for handle()
      *
@@ -99,11 +174,8 @@ public abstract class GenericHandler<RequestType, ResponseType> {
      * @throws IOException when the network breaks its legs and decides not to work
      */
     private void writeRequestJson(RequestType request, OutputStream requestBody) throws IOException {
-        Gson gson = new Gson();
-        String requestJson = gson.toJson(request);
-
-        try (OutputStreamWriter requestBodyWriter = new OutputStreamWriter(requestBody)) {
-            requestBodyWriter.write(requestJson);
+        try (OutputStreamWriter requestBodyWriter = new OutputStreamWriter(requestBody, StandardCharsets.UTF_8)) {
+            this.gson.toJson(request, requestBodyWriter);
         }
     }
 
@@ -114,8 +186,51 @@ public abstract class GenericHandler<RequestType, ResponseType> {
      * @throws IOException when the network breaks its arms and decides not to work
      */
     private ResponseType readResponseJson(InputStream responseBody) throws IOException {
-        Gson gson = new Gson();
-        InputStreamReader responseBodyReader = new InputStreamReader(responseBody);
-        return gson.fromJson(responseBodyReader, this.getResponseClass());
+        InputStreamReader responseBodyReader = new InputStreamReader(responseBody, StandardCharsets.UTF_8);
+        return this.gson.fromJson(responseBodyReader, this.getResponseClass());
+    }
+
+    /**
+     * Reads a response body, passing each item of its "data" list to a consumer as soon as it is
+     * parsed, and converts everything else into a specific response
+     *
+     * @param responseBody is the response body to read from
+     * @param itemClass is the .class of the items in the "data" list
+     * @param itemConsumer receives each item in the "data" list, in order
+     * @throws IOException when the network breaks its legs AND its arms
+     */
+    private <ItemType> ResponseType streamResponseJson(InputStream responseBody, Class<ItemType> itemClass,
+                                                       Consumer<ItemType> itemConsumer) throws IOException {
+        TypeAdapter<ItemType> itemAdapter = this.gson.getAdapter(itemClass);
+        TypeAdapter<JsonElement> fieldAdapter = this.gson.getAdapter(JsonElement.class);
+        // everything but the data list is small, so it's fine to collect it before converting
+        JsonObject otherFields = new JsonObject();
+
+        // (the reader isn't closed here; the ConnectionPool drains and closes the body)
+        JsonReader reader = new JsonReader(new InputStreamReader(responseBody, StandardCharsets.UTF_8));
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String fieldName = reader.nextName();
+            if (fieldName.equals(STREAMED_FIELD) && reader.peek() == JsonToken.BEGIN_ARRAY) {
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    itemConsumer.accept(itemAdapter.read(reader));
+                }
+                reader.endArray();
+            } else {
+                otherFields.add(fieldName, fieldAdapter.read(reader));
+            }
+        }
+        reader.endObject();
+        return this.gson.fromJson(otherFields, this.getResponseClass());
+    }
+
+    /**
+     * Converts a response body into a specific response
+     *
+     * @param <ResponseType> is the specific response type
+     */
+    private interface ResponseReader<ResponseType> {
+        public ResponseType read(InputStream responseBody) throws IOException;
     }
 }
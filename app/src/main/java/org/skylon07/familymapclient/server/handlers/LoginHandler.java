@@ -1,9 +1,15 @@
 package org.skylon07.familymapclient.server.handlers;
 
+import com.google.gson.Gson;
+
 import services.requests.LoginRequest;
 import services.responses.LoginResponse;
 
 public class LoginHandler extends GenericHandler<LoginRequest, LoginResponse> {
+    public LoginHandler(Gson gson, ConnectionPool connections) {
+        super(gson, connections);
+    }
+
     @Override
     protected String getEndpointURL(LoginRequest request) {
         return "/user/login";
@@ -1,9 +1,15 @@
 package org.skylon07.familymapclient.server.handlers;
 
+import com.google.gson.Gson;
+
 import services.requests.PersonRequest;
 import services.responses.PersonResponse;
 
 public class PersonHandler extends GenericHandler<PersonRequest, PersonResponse> {
+    public PersonHandler(Gson gson, ConnectionPool connections) {
+        super(gson, connections);
+    }
+
     @Override
     protected String getEndpointURL(PersonRequest request) {
         if (request.all) {
@@ -13,6 +19,15 @@ public class PersonHandler extends GenericHandler<PersonRequest, PersonResponse>
         }
     }
 
+    @Override
+    protected String getEndpointName(PersonRequest request) {
+        if (request.all) {
+            return "GET /person";
+        } else {
+            return "GET /person/{personID}";
+        }
+    }
+
     @Override
     protected String getEndpointMethod(PersonRequest request) {
         return "GET";
@@ -1,9 +1,15 @@
 package org.skylon07.familymapclient.server.handlers;
 
+import com.google.gson.Gson;
+
 import services.requests.RegisterRequest;
 import services.responses.RegisterResponse;
 
 public class RegisterHandler extends GenericHandler<RegisterRequest, RegisterResponse> {
+    public RegisterHandler(Gson gson, ConnectionPool connections) {
+        super(gson, connections);
+    }
+
     @Override
     protected String getEndpointURL(RegisterRequest request) { return "/user/register"; }
 
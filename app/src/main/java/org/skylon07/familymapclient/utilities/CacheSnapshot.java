@@ -0,0 +1,277 @@
+package org.skylon07.familymapclient.utilities;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import models.Event;
+import models.Person;
+
+/**
+ * A compact binary copy of every person and event for a user, saved to disk so the next login
+ * can show the map right away instead of waiting on the server.
+ *
+ * The format is versioned; snapshots written by a different version (or that are cut off or
+ * otherwise damaged) are simply treated as missing. The header also records which server and user
+ * the snapshot belongs to, and a snapshot is never read back for anyone else. Every distinct
+ * string is stored once in a table after the header, and records refer to strings by their index
+ * in that table.
+ */
+public class CacheSnapshot {
+    /** Marks the start of every snapshot file ("FMCS") */
+    private static final int MAGIC = 0x464d4353;
+    /** The current version of the file format; bump this whenever the format changes */
+    static final int FORMAT_VERSION = 2;
+    /** The string index used for null strings */
+    private static final int NULL_STRING = -1;
+
+    /**
+     * Returns the file a snapshot should live in for a given user on a given server
+     *
+     * @param directory is the directory snapshots are stored in
+     * @param serverKey identifies the server (like "host:port")
+     * @param username is the user the snapshot belongs to
+     * @return the snapshot file (which may or may not exist)
+     */
+    public static File getSnapshotFile(File directory, String serverKey, String username) {
+        // (a full hash, so two users never end up sharing a file)
+        byte[] key = (serverKey + "/" + username).getBytes(StandardCharsets.UTF_8);
+        byte[] digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256").digest(key);
+        } catch (NoSuchAlgorithmException err) {
+            throw new IllegalStateException("Every Java platform is supposed to support SHA-256", err);
+        }
+        StringBuilder name = new StringBuilder("snapshot-");
+        for (byte digestByte : digest) {
+            name.append(Character.forDigit((digestByte >> 4) & 0xf, 16));
+            name.append(Character.forDigit(digestByte & 0xf, 16));
+        }
+        name.append("-v").append(FORMAT_VERSION).append(".bin");
+        return new File(directory, name.toString());
+    }
+
+    /**
+     * Writes a snapshot to disk. The snapshot is written to a temporary file first and then
+     * renamed, so a crash part way through never leaves a half-written snapshot behind.
+     *
+     * @param file is the file to write the snapshot to
+     * @param serverKey identifies the server the data came from
+     * @param username is the user the data belongs to
+     * @param persons are the persons to save
+     * @param events are the events to save
+     * @throws IOException when the file can't be written
+     */
+    public static void write(File file, String serverKey, String username, Person[] persons, Event[] events) throws IOException {
+        Map<String, Integer> stringIndexes = new HashMap<>();
+        List<String> strings = new ArrayList<>();
+        for (Person person : persons) {
+            CacheSnapshot.indexString(person.getPersonID(), stringIndexes, strings);
+            CacheSnapshot.indexString(person.getAssociatedUsername(), stringIndexes, strings);
+            CacheSnapshot.indexString(person.getFirstName(), stringIndexes, strings);
+            CacheSnapshot.indexString(person.getLastName(), stringIndexes, strings);
+            CacheSnapshot.indexString(person.getGender(), stringIndexes, strings);
+            CacheSnapshot.indexString(person.getFatherID(), stringIndexes, strings);
+            CacheSnapshot.indexString(person.getMotherID(), stringIndexes, strings);
+            CacheSnapshot.indexString(person.getSpouseID(), stringIndexes, strings);
+        }
+        for (Event event : events) {
+            CacheSnapshot.indexString(event.getEventID(), stringIndexes, strings);
+            CacheSnapshot.indexString(event.getAssociatedUsername(), stringIndexes, strings);
+            CacheSnapshot.indexString(event.getPersonID(), stringIndexes, strings);
+            CacheSnapshot.indexString(event.getCountry(), stringIndexes, strings);
+            CacheSnapshot.indexString(event.getCity(), stringIndexes, strings);
+            CacheSnapshot.indexString(event.getEventType(), stringIndexes, strings);
+        }
+
+        File directory = file.getAbsoluteFile().getParentFile();
+        if (directory != null && !directory.exists() && !directory.mkdirs()) {
+            throw new IOException("Could not create snapshot directory " + directory);
+        }
+        File tempFile = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeUTF(serverKey);
+            out.writeUTF(username);
+
+            out.writeInt(strings.size());
+            for (String string : strings) {
+                byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+
+            out.writeInt(persons.length);
+            for (Person person : persons) {
+                out.writeInt(CacheSnapshot.lookupString(person.getPersonID(), stringIndexes));
+                out.writeInt(CacheSnapshot.lookupString(person.getAssociatedUsername(), stringIndexes));
+                out.writeInt(CacheSnapshot.lookupString(person.getFirstName(), stringIndexes));
+                out.writeInt(CacheSnapshot.lookupString(person.getLastName(), stringIndexes));
+                out.writeInt(CacheSnapshot.lookupString(person.getGender(), stringIndexes));
+                out.writeInt(CacheSnapshot.lookupString(person.getFatherID(), stringIndexes));
+                out.writeInt(CacheSnapshot.lookupString(person.getMotherID(), stringIndexes));
+                out.writeInt(CacheSnapshot.lookupString(person.getSpouseID(), stringIndexes));
+            }
+
+            out.writeInt(events.length);
+            for (Event event : events) {
+                out.writeInt(CacheSnapshot.lookupString(event.getEventID(), stringIndexes));
+                out.writeInt(CacheSnapshot.lookupString(event.getAssociatedUsername(), stringIndexes));
+                out.writeInt(CacheSnapshot.lookupString(event.getPersonID(), stringIndexes));
+                out.writeFloat(event.getLatitude());
+                out.writeFloat(event.getLongitude());
+                out.writeInt(CacheSnapshot.lookupString(event.getCountry(), stringIndexes));
+                out.writeInt(CacheSnapshot.lookupString(event.getCity(), stringIndexes));
+                out.writeInt(CacheSnapshot.lookupString(event.getEventType(), stringIndexes));
+                out.writeInt(event.getYear());
+            }
+        }
+
+        if (!tempFile.renameTo(file)) {
+            // some platforms won't rename over an existing file
+            file.delete();
+            if (!tempFile.renameTo(file)) {
+                tempFile.delete();
+                throw new IOException("Could not move snapshot into place at " + file);
+            }
+        }
+    }
+
+    /**
+     * Reads a snapshot from disk. The file is memory-mapped rather than streamed, so reading
+     * it costs little more than decoding the records themselves.
+     *
+     * @param file is the file to read the snapshot from
+     * @param serverKey identifies the server the snapshot has to be from
+     * @param username is the user the snapshot has to belong to
+     * @return the snapshot, or null if there is no usable snapshot (for this user) in the file
+     */
+    public static CacheSnapshot read(File file, String serverKey, String username) {
+        if (!file.isFile()) {
+            return null;
+        }
+
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+             FileChannel channel = randomAccessFile.getChannel()) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION) {
+                return null;
+            }
+            if (!serverKey.equals(CacheSnapshot.readUTF(buffer)) || !username.equals(CacheSnapshot.readUTF(buffer))) {
+                return null;
+            }
+
+            String[] strings = new String[buffer.getInt()];
+            byte[] scratch = new byte[64];
+            for (int stringIdx = 0; stringIdx < strings.length; ++stringIdx) {
+                int length = buffer.getInt();
+                if (length > scratch.length) {
+                    scratch = new byte[Math.max(length, scratch.length * 2)];
+                }
+                buffer.get(scratch, 0, length);
+                strings[stringIdx] = new String(scratch, 0, length, StandardCharsets.UTF_8);
+            }
+
+            Person[] persons = new Person[buffer.getInt()];
+            for (int personIdx = 0; personIdx < persons.length; ++personIdx) {
+                persons[personIdx] = new Person(
+                        CacheSnapshot.readString(buffer, strings),
+                        CacheSnapshot.readString(buffer, strings),
+                        CacheSnapshot.readString(buffer, strings),
+                        CacheSnapshot.readString(buffer, strings),
+                        CacheSnapshot.readString(buffer, strings),
+                        CacheSnapshot.readString(buffer, strings),
+                        CacheSnapshot.readString(buffer, strings),
+                        CacheSnapshot.readString(buffer, strings)
+                );
+            }
+
+            Event[] events = new Event[buffer.getInt()];
+            for (int eventIdx = 0; eventIdx < events.length; ++eventIdx) {
+                String eventID = CacheSnapshot.readString(buffer, strings);
+                String associatedUsername = CacheSnapshot.readString(buffer, strings);
+                String personID = CacheSnapshot.readString(buffer, strings);
+                float latitude = buffer.getFloat();
+                float longitude = buffer.getFloat();
+                String country = CacheSnapshot.readString(buffer, strings);
+                String city = CacheSnapshot.readString(buffer, strings);
+                String eventType = CacheSnapshot.readString(buffer, strings);
+                int year = buffer.getInt();
+                events[eventIdx] = new Event(
+                        eventID, associatedUsername, personID, latitude, longitude,
+                        country, city, eventType, year
+                );
+            }
+
+            return new CacheSnapshot(persons, events);
+        } catch (IOException | BufferUnderflowException | IndexOutOfBoundsException | NegativeArraySizeException err) {
+            // damaged snapshots are no better than missing ones
+            return null;
+        }
+    }
+
+    private static void indexString(String string, Map<String, Integer> stringIndexes, List<String> strings) {
+        if (string != null && !stringIndexes.containsKey(string)) {
+            stringIndexes.put(string, strings.size());
+            strings.add(string);
+        }
+    }
+
+    private static int lookupString(String string, Map<String, Integer> stringIndexes) {
+        if (string == null) {
+            return NULL_STRING;
+        }
+        return stringIndexes.get(string);
+    }
+
+    /**
+     * Reads a string written by DataOutputStream.writeUTF() (which only differs from UTF-8 for
+     * null characters and characters outside the BMP, neither of which show up in server keys
+     * or usernames)
+     */
+    private static String readUTF(MappedByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getShort() & 0xffff];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static String readString(MappedByteBuffer buffer, String[] strings) {
+        int stringIdx = buffer.getInt();
+        if (stringIdx == NULL_STRING) {
+            return null;
+        }
+        return strings[stringIdx];
+    }
+
+    /** All the persons in the snapshot */
+    private final Person[] persons;
+    /** All the events in the snapshot */
+    private final Event[] events;
+
+    private CacheSnapshot(Person[] persons, Event[] events) {
+        this.persons = persons;
+        this.events = events;
+    }
+
+    public Person[] getPersons() {
+        return this.persons;
+    }
+
+    public Event[] getEvents() {
+        return this.events;
+    }
+}
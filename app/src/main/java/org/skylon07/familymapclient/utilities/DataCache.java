@@ -1,12 +1,29 @@
 package org.skylon07.familymapclient.utilities;
 
+import org.skylon07.familymapclient.server.AsyncServerProxy;
 import org.skylon07.familymapclient.server.ServerProxy;
 
+import java.io.File;
 import java.io.IOException;
 import java.net.MalformedURLException;
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import models.*;
 
@@ -15,11 +32,22 @@ import services.responses.PersonResponse;
 
 /**
  * Provides a basic interface for getting data, while also implementing caching optimizations
- * to allow data retrieval to operate faster
+ * to allow data retrieval to operate faster.
+ *
+ * The cache is safe to use from many threads at once. Concurrent misses on the same person,
+ * event, or bulk collection are coalesced into a single server request that every caller
+ * waits on, and reads of already-loaded data never take a lock.
+ *
+ * When given a snapshot directory, the cache also saves every person and event to disk once
+ * they have all loaded. The next login for the same user on the same server starts from that
+ * snapshot immediately, and quietly refreshes it from the server in the background.
+ *
+ * Otherwise, recording a login starts downloading every person and event right away (both at
+ * once, off of the calling thread), so they are usually ready by the time anything asks for them.
  */
 public class DataCache {
     /** The singleton DataCache instance */
-    private static DataCache instance = new DataCache();
+    private static volatile DataCache instance = new DataCache();
     private static boolean TEST_MODE = false;
 
     static public DataCache getInstance() {
@@ -42,39 +70,53 @@ public class DataCache {
         DataCache data = new DataCache();
 
         data.currUserPersonID = currPersonID;
-        for (Person person : allPersons) {
-            data.personsByID.put(person.getPersonID(), person);
-        }
-        data.allPersonsCalled = true;
+        data.contents.cachePersons(allPersons);
+        data.contents.allPersonsLoaded = true;
 
-        for (Event event : allEvents) {
-            data.eventsByID.put(event.getEventID(), event);
-        }
-        data.allEventsCalled = true;
+        data.contents.cacheEvents(allEvents);
+        data.contents.allEventsLoaded = true;
 
         DataCache.instance = data;
     }
 
+    /** The key used to coalesce loads of all persons */
+    private static final String ALL_PERSONS_KEY = "/person";
+    /** The key used to coalesce loads of all events */
+    private static final String ALL_EVENTS_KEY = "/event";
+    /** How many persons getPersonsByIDs() has to be missing before it just downloads everyone */
+    public static final int BULK_PERSON_LOOKUP_THRESHOLD = 16;
+    /** How many persons getPersonsByIDs() will request from the server at once */
+    public static final int MAX_PARALLEL_PERSON_LOOKUPS = AsyncServerProxy.MAX_IO_THREADS;
+
     /** The currently active proxy to use */
-    private ServerProxy server;
+    private volatile ServerProxy server;
     /** The current user's login token */
-    private AuthToken currAuthToken;
+    private volatile AuthToken currAuthToken;
     /** The current user's username */
-    private String currUserPersonID;
-    /** A map containing Person objects by their Person ID */
-    private Map<String, Person> personsByID;
-    /** A map containing Event objects by their Event ID */
-    private Map<String, Event> eventsByID;
-    /** A value indicating if getAllPersons() has ever been invoked */
-    private boolean allPersonsCalled;
-    /** A value indicating if getAllEvents() has ever been invoked */
-    private boolean allEventsCalled;
+    private volatile String currUserPersonID;
+    /** Everything cached for the current login (swapped out wholesale when invalidated) */
+    private volatile Contents contents;
+    /** The directory snapshots are saved in (or null to not use snapshots) */
+    private volatile File snapshotDirectory;
+    /** Runs snapshot saves and background refreshes so they never block a caller */
+    private final ExecutorService snapshotExecutor;
+    /** Whether recordLogin() should start downloading everything right away */
+    private volatile boolean prefetchOnLogin;
+    /** When the current login was recorded (from System.nanoTime()) */
+    private volatile long loginTimeNanos;
 
     /**
      * The private constructor for the DataCache, enforcing the singleton policy
      */
     private DataCache() {
         this.server = null;
+        this.snapshotDirectory = null;
+        this.prefetchOnLogin = true;
+        this.snapshotExecutor = Executors.newSingleThreadExecutor((Runnable task) -> {
+            Thread thread = new Thread(task, "DataCache-snapshots");
+            thread.setDaemon(true);
+            return thread;
+        });
         // initialize the cache variables
         this.invalidateCache();
     }
@@ -89,27 +131,86 @@ public class DataCache {
     }
 
     /**
-     * Records a successful login attempt for a user
+     * Sets the directory to save snapshots of the cache in
+     *
+     * @param snapshotDirectory is the directory to use (or null to stop using snapshots)
+     */
+    public void useSnapshotDirectory(File snapshotDirectory) {
+        this.snapshotDirectory = snapshotDirectory;
+    }
+
+    /**
+     * Sets whether recording a login should start downloading everything right away
+     *
+     * @param prefetchOnLogin is true to prefetch (the default), or false to only download
+     *      things as they are asked for
+     */
+    public void usePrefetchOnLogin(boolean prefetchOnLogin) {
+        this.prefetchOnLogin = prefetchOnLogin;
+    }
+
+    /**
+     * Records a successful login attempt for a user. If a snapshot was saved for this user on
+     * this server, the cache is filled from it right away and refreshed in the background.
+     * Otherwise every person and event starts downloading (see awaitPrefetch()).
      *
      * @param currUserPersonID is the user who just logged in
      * @param loginAuthToken is the login token received
      */
     public void recordLogin(String currUserPersonID, AuthToken loginAuthToken) {
+        this.loginTimeNanos = System.nanoTime();
         this.currUserPersonID = currUserPersonID;
         this.currAuthToken = loginAuthToken;
+        this.recordSnapshotOwner(this.contents, loginAuthToken);
+        this.warmStartFromSnapshot();
+        if (this.prefetchOnLogin) {
+            this.startPrefetch();
+        }
+    }
+
+    /**
+     * Waits for the downloads started by recordLogin() to finish, so every person and event
+     * (and every index built from them) is ready to use. This returns right away if nothing
+     * was prefetched.
+     *
+     * @throws IOException when one of the downloads failed (later calls will try again)
+     */
+    public void awaitPrefetch() throws IOException {
+        CompletableFuture<Void> prefetch = this.contents.prefetch;
+        if (prefetch != null) {
+            SingleFlight.await(prefetch);
+        }
+    }
+
+    /**
+     * Returns the background refresh started when a login was filled from a snapshot. Anything
+     * built from the cache while the snapshot was being shown (like the map's markers) should be
+     * built again once this finishes with true. Ask for this before reading from the cache, so
+     * a refresh that finishes in between isn't missed.
+     *
+     * @return a future that finishes with true once fresh data has replaced the snapshot (or
+     *      with false if it couldn't), or null if the cache wasn't filled from a snapshot
+     */
+    public CompletableFuture<Boolean> getSnapshotRefresh() {
+        return this.contents.snapshotRefresh;
+    }
+
+    /**
+     * @return when the current login was recorded (as a System.nanoTime() value)
+     */
+    public long getLoginTimeNanos() {
+        return this.loginTimeNanos;
     }
 
     /**
      * Resets the cache. This should be used when the cache is no longer holding relevant
-     * information, like when the User logs out.
+     * information, like when the User logs out. Loads still running for the old contents
+     * finish into those (now discarded) contents, so they can never leak into the new ones.
      */
-    public void invalidateCache() {
+    public synchronized void invalidateCache() {
         this.currAuthToken = null;
         this.currUserPersonID = null;
-        this.personsByID = new HashMap<>();
-        this.eventsByID = new HashMap<>();
-        this.allPersonsCalled = false;
-        this.allEventsCalled = false;
+        this.contents = new Contents();
     }
 
     public String getCurrUserPersonID() {
@@ -130,22 +231,77 @@ public class DataCache {
      */
     public Person getPersonByID(String personID) throws MalformedURLException, IOException {
         this.ensureActiveLogin();
-        Person person = this.personsByID.get(personID);
+        if (personID == null) {
+            return null;
+        }
+        Contents contents = this.contents;
+        Person person = contents.personsByID.get(personID);
         boolean shouldRetrieveFromServer = person == null;
         if (shouldRetrieveFromServer) {
-            PersonResponse response = this.server.getPerson(personID, this.currAuthToken.getAuthtoken());
-            if (response.success) {
-                person = new Person(
+            ServerProxy server = this.server;
+            String authToken = this.currAuthToken.getAuthtoken();
+            person = contents.personLoads.run(personID, () -> {
+                // someone else may have finished loading them right before we got here
+                Person loadedPerson = contents.personsByID.get(personID);
+                if (loadedPerson != null) {
+                    return loadedPerson;
+                }
+
+                PersonResponse response = server.getPerson(personID, authToken);
+                if (!response.success) {
+                    return null;
+                }
+                loadedPerson = new Person(
                         response.personID, response.associatedUsername, response.firstName,
                         response.lastName, response.gender, response.fatherID, response.motherID,
                         response.spouseID
                 );
-                this.personsByID.put(personID, person);
-            }
+                contents.cachePerson(loadedPerson);
+                return loadedPerson;
+            });
         }
         return person;
     }
 
+    /**
+     * Gets many persons at once. Persons that aren't cached yet are all loaded together, instead
+     * of with one round trip after another: when enough of them are missing, everyone is
+     * downloaded with a single bulk request; otherwise the missing persons are requested a few at
+     * a time. This requires a login to be recorded first.
+     *
+     * @param personIDs are the person IDs of the persons to get (nulls are skipped)
+     * @return the persons that exist, by person ID (in the order they were asked for)
+     * @throws MalformedURLException when the ServerProxy chokes up on connecting to the server
+     * @throws IOException when the ServerProxy craps out and throws the connection into the trash
+     */
+    public Map<String, Person> getPersonsByIDs(Collection<String> personIDs) throws MalformedURLException, IOException {
+        this.ensureActiveLogin();
+        Contents contents = this.contents;
+        Set<String> missingIDs = new LinkedHashSet<>();
+        for (String personID : personIDs) {
+            if (personID != null && !contents.personsByID.containsKey(personID)) {
+                missingIDs.add(personID);
+            }
+        }
+        // once everyone is loaded, anyone still missing just doesn't exist
+        if (!missingIDs.isEmpty() && !contents.allPersonsLoaded) {
+            if (missingIDs.size() >= BULK_PERSON_LOOKUP_THRESHOLD) {
+                this.loadAllPersons(contents, this.server, this.currAuthToken.getAuthtoken());
+            } else {
+                this.loadPersonsInParallel(missingIDs);
+            }
+        }
+
+        Map<String, Person> persons = new LinkedHashMap<>();
+        for (String personID : personIDs) {
+            Person person = personID != null ? contents.personsByID.get(personID) : null;
+            if (person != null) {
+                persons.put(personID, person);
+            }
+        }
+        return persons;
+    }
+
     /**
      * Gets the cached Event given their eventID. This requires a login to be recorded first.
      *
@@ -156,18 +312,33 @@ public class DataCache {
      */
     public Event getEventByID(String eventID) throws MalformedURLException, IOException {
         this.ensureActiveLogin();
-        Event event = this.eventsByID.get(eventID);
+        if (eventID == null) {
+            return null;
+        }
+        Contents contents = this.contents;
+        Event event = contents.eventsByID.get(eventID);
         boolean shouldRetrieveFromServer = event == null;
         if (shouldRetrieveFromServer) {
-            EventResponse response = this.server.getEvent(eventID, this.currAuthToken.getAuthtoken());
-            if (response.success) {
-                event = new Event(
+            ServerProxy server = this.server;
+            String authToken = this.currAuthToken.getAuthtoken();
+            event = contents.eventLoads.run(eventID, () -> {
+                Event loadedEvent = contents.eventsByID.get(eventID);
+                if (loadedEvent != null) {
+                    return loadedEvent;
+                }
+
+                EventResponse response = server.getEvent(eventID, authToken);
+                if (!response.success) {
+                    return null;
+                }
+                loadedEvent = new Event(
                         response.eventID, response.associatedUsername, response.personID,
                         response.latitude, response.longitude, response.country, response.city,
                         response.eventType, response.year
                 );
-                this.eventsByID.put(eventID, event);
-            }
+                contents.cacheEvent(loadedEvent);
+                return loadedEvent;
+            });
         }
         return event;
     }
@@ -180,19 +351,9 @@ public class DataCache {
      * @throws IOException when the ServerProxy craps out and throws the connection into the trash
      */
     public Person[] getAllPersons() throws MalformedURLException, IOException {
-        this.ensureActiveLogin();
-        if (!this.allPersonsCalled) {
-            PersonResponse response = this.server.getAllPersons(this.currAuthToken.getAuthtoken());
-            for (Person person : response.data) {
-                this.personsByID.put(person.getPersonID(), person);
-            }
-
-            this.allPersonsCalled = true;
-            return response.data;
-        } else {
-            Collection<Person> values = this.personsByID.values();
-            return values.toArray(new Person[values.size()]);
-        }
+        Contents contents = this.ensureAllPersonsLoaded();
+        Collection<Person> values = contents.personsByID.values();
+        return values.toArray(new Person[values.size()]);
     }
 
     /**
@@ -203,19 +364,517 @@ public class DataCache {
      * @throws IOException when the ServerProxy craps out and throws the connection into the trash
      */
     public Event[] getAllEvents() throws MalformedURLException, IOException {
+        Contents contents = this.ensureAllEventsLoaded();
+        Collection<Event> values = contents.eventsByID.values();
+        return values.toArray(new Event[values.size()]);
+    }
+
+    /**
+     * Returns the children of a person (that is, everyone who lists them as a mother or father).
+     * Children are indexed as persons are cached, so this is a constant-time lookup.
+     *
+     * @param parentID is the ID of the parent to get children for
+     * @return an unmodifiable list of the parent's children (empty if they have none)
+     * @throws MalformedURLException when the ServerProxy chokes up on connecting to the server
+     * @throws IOException when the ServerProxy craps out and throws the connection into the trash
+     */
+    public List<Person> getChildrenOf(String parentID) throws MalformedURLException, IOException {
+        Contents contents = this.ensureAllPersonsLoaded();
+        List<Person> children = contents.childrenByParentID.get(parentID);
+        if (children == null) {
+            return Collections.emptyList();
+        }
+        return children;
+    }
+
+    /**
+     * Returns the events belonging to a person, sorted in the order they happened in their life
+     * (by year, with births first and deaths last). The list is indexed once when all events are
+     * loaded, so this is a constant-time lookup that does not copy anything.
+     *
+     * @param personID is the ID of the person to get events for
+     * @return an unmodifiable, sorted list of the person's events (empty if they have none)
+     * @throws MalformedURLException when the ServerProxy chokes up on connecting to the server
+     * @throws IOException when the ServerProxy craps out and throws the connection into the trash
+     */
+    public List<Event> getSortedEventsForPerson(String personID) throws MalformedURLException, IOException {
+        Contents contents = this.ensureAllEventsLoaded();
+        List<Event> timeline = contents.eventsByPersonID.get(personID);
+        if (timeline == null) {
+            return Collections.emptyList();
+        }
+        return timeline;
+    }
+
+    /**
+     * Returns an index for searching persons by first or last name. The index is built the
+     * first time it is asked for after the persons are loaded, and is then reused until the
+     * cache is invalidated.
+     *
+     * @return the person search index
+     * @throws MalformedURLException when the ServerProxy chokes up on connecting to the server
+     * @throws IOException when the ServerProxy craps out and throws the connection into the trash
+     */
+    public SearchIndex<Person> getPersonSearchIndex() throws MalformedURLException, IOException {
+        Contents contents = this.ensureAllPersonsLoaded();
+        SearchIndex<Person> index = contents.personSearchIndex;
+        if (index == null) {
+            synchronized (contents.indexLock) {
+                index = contents.personSearchIndex;
+                if (index == null) {
+                    index = new SearchIndex<>(
+                            contents.personsByID.values(),
+                            Person::getFirstName,
+                            Person::getLastName
+                    );
+                    contents.personSearchIndex = index;
+                }
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Returns an index for searching events by type, country, city, or year. The index is built
+     * the first time it is asked for after the events are loaded, and is then reused until the
+     * cache is invalidated.
+     *
+     * @return the event search index
+     * @throws MalformedURLException when the ServerProxy chokes up on connecting to the server
+     * @throws IOException when the ServerProxy craps out and throws the connection into the trash
+     */
+    public SearchIndex<Event> getEventSearchIndex() throws MalformedURLException, IOException {
+        Contents contents = this.ensureAllEventsLoaded();
+        SearchIndex<Event> index = contents.eventSearchIndex;
+        if (index == null) {
+            synchronized (contents.indexLock) {
+                index = contents.eventSearchIndex;
+                if (index == null) {
+                    index = new SearchIndex<>(
+                            contents.eventsByID.values(),
+                            Event::getEventType,
+                            Event::getCountry,
+                            Event::getCity,
+                            (Event event) -> Integer.toString(event.getYear())
+                    );
+                    contents.eventSearchIndex = index;
+                }
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Returns the color of every event type (see EventColorTable). The table is built the first
+     * time it is asked for after the events are loaded, and is then reused until the cache is
+     * invalidated.
+     *
+     * @return the event color table
+     * @throws MalformedURLException when the ServerProxy chokes up on connecting to the server
+     * @throws IOException when the ServerProxy craps out and throws the connection into the trash
+     */
+    public EventColorTable getEventColorTable() throws MalformedURLException, IOException {
+        Contents contents = this.ensureAllEventsLoaded();
+        EventColorTable table = contents.eventColorTable;
+        if (table == null) {
+            synchronized (contents.indexLock) {
+                table = contents.eventColorTable;
+                if (table == null) {
+                    List<String> eventTypes = new ArrayList<>();
+                    for (Event event : contents.eventsByID.values()) {
+                        eventTypes.add(event.getEventType());
+                    }
+                    table = new EventColorTable(eventTypes);
+                    contents.eventColorTable = table;
+                }
+            }
+        }
+        return table;
+    }
+
+    /**
+     * Returns the family tree (and everyone's events) as int handles (see FamilyGraph). The
+     * graph is built the first time it is asked for after everything is loaded, and is then
+     * reused until the cache is invalidated.
+     *
+     * @return the family graph
+     * @throws MalformedURLException when the ServerProxy chokes up on connecting to the server
+     * @throws IOException when the ServerProxy craps out and throws the connection into the trash
+     */
+    public FamilyGraph getFamilyGraph() throws MalformedURLException, IOException {
+        this.ensureAllPersonsLoaded();
+        return this.getFamilyGraph(this.ensureAllEventsLoaded());
+    }
+
+    /**
+     * Returns the family graph, but only if everything it needs is already loaded, so that
+     * callers with a slower way around it never wait on a download just to get it
+     *
+     * @return the family graph (or null if not everything has been loaded)
+     */
+    FamilyGraph getLoadedFamilyGraph() {
+        Contents contents = this.contents;
+        if (!contents.allPersonsLoaded || !contents.allEventsLoaded) {
+            return null;
+        }
+        return this.getFamilyGraph(contents);
+    }
+
+    private FamilyGraph getFamilyGraph(Contents contents) {
+        FamilyGraph graph = contents.familyGraph;
+        if (graph == null) {
+            synchronized (contents.indexLock) {
+                graph = contents.familyGraph;
+                if (graph == null) {
+                    graph = new FamilyGraph(
+                            contents.personsByID.values().toArray(new Person[0]),
+                            contents.eventsByID.values().toArray(new Event[0])
+                    );
+                    contents.familyGraph = graph;
+                }
+            }
+        }
+        return graph;
+    }
+
+    /**
+     * Returns the filter that works out which events the map shows for each combination of
+     * settings. The filter is built the first time it is asked for after everything is loaded,
+     * and is then reused (along with everything it has worked out) until the cache is invalidated.
+     *
+     * @return the event filter
+     * @throws MalformedURLException when the ServerProxy chokes up on connecting to the server
+     * @throws IOException when the ServerProxy craps out and throws the connection into the trash
+     */
+    public EventFilter getEventFilter() throws MalformedURLException, IOException {
+        this.ensureAllPersonsLoaded();
+        Contents contents = this.ensureAllEventsLoaded();
+        EventFilter filter = contents.eventFilter;
+        if (filter == null) {
+            synchronized (contents.indexLock) {
+                filter = contents.eventFilter;
+                if (filter == null) {
+                    filter = new EventFilter(this);
+                    contents.eventFilter = filter;
+                }
+            }
+        }
+        return filter;
+    }
+
+    /**
+     * @return where Relationships keeps the ancestors it has found (cleared whenever the cache is)
+     */
+    Map<String, List<Relationships.Ancestor>> getAncestorCache() {
+        return this.contents.ancestorsByRootID;
+    }
+
+    /**
+     * Makes sure every person for the user has been downloaded. Only one download ever happens
+     * per login; callers that arrive while it is running wait for it to finish.
+     *
+     * @return the contents the persons were loaded into
+     * @throws IOException when the download fails
+     */
+    private Contents ensureAllPersonsLoaded() throws IOException {
         this.ensureActiveLogin();
-        if (!this.allEventsCalled) {
-            EventResponse response = this.server.getAllEvents(this.currAuthToken.getAuthtoken());
-            for (Event event : response.data) {
-                this.eventsByID.put(event.getEventID(), event);
+        Contents contents = this.contents;
+        if (!contents.allPersonsLoaded) {
+            this.loadAllPersons(contents, this.server, this.currAuthToken.getAuthtoken());
+        }
+        return contents;
+    }
+
+    /**
+     * Makes sure every event for the user has been downloaded (and indexed). Only one download
+     * ever happens per login; callers that arrive while it is running wait for it to finish.
+     *
+     * @return the contents the events were loaded into
+     * @throws IOException when the download fails
+     */
+    private Contents ensureAllEventsLoaded() throws IOException {
+        this.ensureActiveLogin();
+        Contents contents = this.contents;
+        if (!contents.allEventsLoaded) {
+            this.loadAllEvents(contents, this.server, this.currAuthToken.getAuthtoken());
+        }
+        return contents;
+    }
+
+    /**
+     * Loads some persons one at a time, but several at once. The calling thread loads persons
+     * too (rather than just waiting), so this still finishes even if every I/O thread is busy.
+     *
+     * @param personIDs are the person IDs of the persons to load
+     * @throws IOException when loading any of the persons fails
+     */
+    private void loadPersonsInParallel(Collection<String> personIDs) throws IOException {
+        Queue<String> toLoad = new ConcurrentLinkedQueue<>(personIDs);
+        int numHelpers = Math.min(MAX_PARALLEL_PERSON_LOOKUPS, personIDs.size()) - 1;
+        List<Future<?>> helpers = new ArrayList<>();
+        List<AtomicBoolean> helpersStarted = new ArrayList<>();
+        for (int helperIdx = 0; helperIdx < numHelpers; ++helperIdx) {
+            AtomicBoolean started = new AtomicBoolean(false);
+            helpersStarted.add(started);
+            helpers.add(AsyncServerProxy.getIOExecutor().submit(() -> {
+                if (started.compareAndSet(false, true)) {
+                    this.loadPersonsFrom(toLoad);
+                }
+                return null;
+            }));
+        }
+
+        try {
+            this.loadPersonsFrom(toLoad);
+        } finally {
+            toLoad.clear();
+        }
+        for (int helperIdx = 0; helperIdx < numHelpers; ++helperIdx) {
+            // helpers that haven't started yet have nothing left to do, and waiting on them could
+            // deadlock when this is already running on one of the I/O threads
+            if (helpersStarted.get(helperIdx).compareAndSet(false, true)) {
+                helpers.get(helperIdx).cancel(false);
+            } else {
+                SingleFlight.await(helpers.get(helperIdx));
+            }
+        }
+    }
+
+    /**
+     * Loads persons from a queue until it runs out
+     *
+     * @param toLoad are the person IDs of the persons to load
+     * @throws IOException when loading one of the persons fails
+     */
+    private void loadPersonsFrom(Queue<String> toLoad) throws IOException {
+        for (String personID = toLoad.poll(); personID != null; personID = toLoad.poll()) {
+            this.getPersonByID(personID);
+        }
+    }
+
+    /**
+     * Downloads every person into some contents (unless someone else already has)
+     *
+     * @param contents are the contents to load the persons into
+     * @param server is the server to download from
+     * @param authToken is the auth token of the login the contents belong to
+     * @throws IOException when the download fails
+     */
+    private void loadAllPersons(Contents contents, ServerProxy server, String authToken) throws IOException {
+        contents.bulkLoads.run(ALL_PERSONS_KEY, () -> {
+            if (!contents.allPersonsLoaded) {
+                // persons go straight into the cache as they are parsed; there is never
+                // a second copy of the whole list sitting around in memory
+                PersonResponse response = server.streamAllPersons(authToken, contents::cachePerson);
+                if (!response.success) {
+                    throw new IOException("Could not get persons: " + response.message);
+                }
+                contents.allPersonsLoaded = true;
+                this.saveSnapshotWhenLoaded(contents);
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Downloads (and indexes) every event into some contents (unless someone else already has)
+     *
+     * @param contents are the contents to load the events into
+     * @param server is the server to download from
+     * @param authToken is the auth token of the login the contents belong to
+     * @throws IOException when the download fails
+     */
+    private void loadAllEvents(Contents contents, ServerProxy server, String authToken) throws IOException {
+        contents.bulkLoads.run(ALL_EVENTS_KEY, () -> {
+            if (!contents.allEventsLoaded) {
+                EventResponse response = server.streamAllEvents(authToken, contents::cacheEvent);
+                if (!response.success) {
+                    throw new IOException("Could not get events: " + response.message);
+                }
+                contents.indexEventTimelines();
+                contents.allEventsLoaded = true;
+                this.saveSnapshotWhenLoaded(contents);
             }
+            return null;
+        });
+    }
 
-            this.allEventsCalled = true;
-            return response.data;
-        } else {
-            Collection<Event> values = this.eventsByID.values();
-            return values.toArray(new Event[values.size()]);
+    /**
+     * Starts downloading every person and every event at the same time on the I/O executor.
+     * Anyone who asks for them before they finish just joins the download in progress.
+     */
+    private void startPrefetch() {
+        Contents contents = this.contents;
+        ServerProxy server = this.server;
+        AuthToken authToken = this.currAuthToken;
+        if (server == null || authToken == null || (contents.allPersonsLoaded && contents.allEventsLoaded)) {
+            return;
         }
+
+        Executor ioExecutor = AsyncServerProxy.getIOExecutor();
+        CompletableFuture<Void> personsLoad = CompletableFuture.runAsync(() -> {
+            try {
+                this.loadAllPersons(contents, server, authToken.getAuthtoken());
+            } catch (IOException err) {
+                throw new CompletionException(err);
+            }
+        }, ioExecutor);
+        CompletableFuture<Void> eventsLoad = CompletableFuture.runAsync(() -> {
+            try {
+                this.loadAllEvents(contents, server, authToken.getAuthtoken());
+            } catch (IOException err) {
+                throw new CompletionException(err);
+            }
+        }, ioExecutor);
+        contents.prefetch = CompletableFuture.allOf(personsLoad, eventsLoad);
+    }
+
+    /**
+     * Fills the (empty) cache from a saved snapshot, if there is one for the current login,
+     * then schedules a refresh from the server to replace it with up-to-date data
+     */
+    private void warmStartFromSnapshot() {
+        Contents contents = this.contents;
+        File snapshotFile = contents.snapshotFile;
+        if (snapshotFile == null || contents.allPersonsLoaded || contents.allEventsLoaded) {
+            return;
+        }
+
+        CacheSnapshot snapshot = CacheSnapshot.read(snapshotFile, contents.snapshotServerKey, contents.snapshotUsername);
+        if (snapshot == null) {
+            return;
+        }
+        contents.cachePersons(snapshot.getPersons());
+        contents.allPersonsLoaded = true;
+        contents.cacheEvents(snapshot.getEvents());
+        contents.allEventsLoaded = true;
+        contents.snapshotSaved = true;
+
+        contents.snapshotRefresh = this.refreshFromServer(contents, this.server, this.currAuthToken.getAuthtoken());
+    }
+
+    /**
+     * Downloads everything again (persons and events at the same time, on the I/O executor) and
+     * swaps it in for contents that were loaded from a snapshot, as long as nobody has logged out
+     * in the meantime. The fresh data is then saved to disk.
+     *
+     * @param staleContents are the contents that were loaded from the snapshot
+     * @param server is the server to refresh from
+     * @param authToken is the auth token of the login the snapshot was loaded for
+     * @return a future that finishes with true once the fresh contents have been swapped in (or
+     *      with false if the refresh failed or was no longer wanted)
+     */
+    private CompletableFuture<Boolean> refreshFromServer(Contents staleContents, ServerProxy server, String authToken) {
+        Contents freshContents = new Contents();
+        Executor ioExecutor = AsyncServerProxy.getIOExecutor();
+        CompletableFuture<PersonResponse> personsLoad = CompletableFuture.supplyAsync(() -> {
+            try {
+                return server.streamAllPersons(authToken, freshContents::cachePerson);
+            } catch (IOException err) {
+                throw new CompletionException(err);
+            }
+        }, ioExecutor);
+        CompletableFuture<EventResponse> eventsLoad = CompletableFuture.supplyAsync(() -> {
+            try {
+                return server.streamAllEvents(authToken, freshContents::cacheEvent);
+            } catch (IOException err) {
+                throw new CompletionException(err);
+            }
+        }, ioExecutor);
+
+        return personsLoad.thenCombineAsync(eventsLoad, (PersonResponse personResponse, EventResponse eventResponse) -> {
+            if (!personResponse.success || !eventResponse.success) {
+                return false;
+            }
+            freshContents.allPersonsLoaded = true;
+            freshContents.indexEventTimelines();
+            freshContents.allEventsLoaded = true;
+            freshContents.snapshotSaved = true;
+            freshContents.snapshotFile = staleContents.snapshotFile;
+            freshContents.snapshotServerKey = staleContents.snapshotServerKey;
+            freshContents.snapshotUsername = staleContents.snapshotUsername;
+            synchronized (this) {
+                if (this.contents != staleContents) {
+                    return false;
+                }
+                this.contents = freshContents;
+            }
+
+            // (saved separately, so whoever is waiting on the refresh doesn't wait on the disk too)
+            this.snapshotExecutor.submit(() -> {
+                try {
+                    DataCache.writeSnapshot(freshContents);
+                } catch (IOException err) {
+                    // the old snapshot is still usable; we'll just try again next login
+                }
+            });
+            return true;
+        }, this.snapshotExecutor).exceptionally((Throwable err) -> false);
+    }
+
+    /**
+     * Saves a snapshot in the background once every person and event has been loaded
+     *
+     * @param contents are the contents that just finished a bulk load
+     */
+    private void saveSnapshotWhenLoaded(Contents contents) {
+        if (contents.snapshotFile == null) {
+            return;
+        }
+
+        synchronized (contents) {
+            if (!contents.allPersonsLoaded || !contents.allEventsLoaded || contents.snapshotSaved) {
+                return;
+            }
+            contents.snapshotSaved = true;
+        }
+        this.snapshotExecutor.submit(() -> {
+            try {
+                DataCache.writeSnapshot(contents);
+            } catch (IOException err) {
+                // not having a snapshot only makes the next login slower
+            }
+        });
+    }
+
+    /**
+     * Writes every person and event in some contents to their snapshot file
+     *
+     * @param contents are the (fully loaded) contents to save
+     * @throws IOException when the snapshot can't be written
+     */
+    private static void writeSnapshot(Contents contents) throws IOException {
+        Collection<Person> persons = contents.personsByID.values();
+        Collection<Event> events = contents.eventsByID.values();
+        CacheSnapshot.write(
+                contents.snapshotFile,
+                contents.snapshotServerKey,
+                contents.snapshotUsername,
+                persons.toArray(new Person[persons.size()]),
+                events.toArray(new Event[events.size()])
+        );
+    }
+
+    /**
+     * Records which login some contents belong to, and so which snapshot they are read from
+     * and saved to. The contents remember this themselves, so loads that finish after a logout
+     * can never save one user's data into the next user's snapshot.
+     *
+     * @param contents are the contents of the login
+     * @param authToken is the auth token of the login
+     */
+    private void recordSnapshotOwner(Contents contents, AuthToken authToken) {
+        File snapshotDirectory = this.snapshotDirectory;
+        ServerProxy server = this.server;
+        if (snapshotDirectory == null || server == null || authToken == null) {
+            contents.snapshotFile = null;
+            return;
+        }
+        contents.snapshotServerKey = server.getServerKey();
+        contents.snapshotUsername = authToken.getUsername();
+        contents.snapshotFile = CacheSnapshot.getSnapshotFile(
+                snapshotDirectory, contents.snapshotServerKey, contents.snapshotUsername
+        );
     }
 
     /**
@@ -231,4 +890,173 @@ public class DataCache {
         assert this.currAuthToken != null
                 : "DataCache was never called with the login method; call recordLogin() to fix this";
     }
+
+    /**
+     * Holds everything cached for a single login. Reads go straight to the concurrent maps
+     * (or to indexes that are swapped in whole), so they never lock; writes that have to keep
+     * several maps in sync are serialized on the Contents object itself.
+     */
+    private static class Contents {
+        /** A map containing Person objects by their Person ID */
+        final Map<String, Person> personsByID = new ConcurrentHashMap<>();
+        /** A map containing the (unmodifiable) children of each person by their parent's Person ID */
+        final Map<String, List<Person>> childrenByParentID = new ConcurrentHashMap<>();
+        /** A map containing Event objects by their Event ID */
+        final Map<String, Event> eventsByID = new ConcurrentHashMap<>();
+        /** A map containing each person's (sorted, unmodifiable) event timeline by their Person ID */
+        volatile Map<String, List<Event>> eventsByPersonID = Collections.emptyMap();
+        /** A value indicating if every person has been loaded */
+        volatile boolean allPersonsLoaded = false;
+        /** A value indicating if every event has been loaded */
+        volatile boolean allEventsLoaded = false;
+        /** A value indicating if these contents already have (or are being written to) a snapshot */
+        volatile boolean snapshotSaved = false;
+        /** The file these contents are saved to (or null to not save them) */
+        volatile File snapshotFile = null;
+        /** The server key saved with (and checked against) the snapshot */
+        volatile String snapshotServerKey = null;
+        /** The username saved with (and checked against) the snapshot */
+        volatile String snapshotUsername = null;
+        /** The index for searching persons (built the first time it's needed) */
+        volatile SearchIndex<Person> personSearchIndex = null;
+        /** The index for searching events (built the first time it's needed) */
+        volatile SearchIndex<Event> eventSearchIndex = null;
+        /** The ancestors Relationships has found, by the person ID of who they were found for */
+        final Map<String, List<Relationships.Ancestor>> ancestorsByRootID = new ConcurrentHashMap<>();
+        /** The filter for the map's event settings (built the first time it's needed) */
+        volatile EventFilter eventFilter = null;
+        /** The family tree as int handles (built the first time it's needed) */
+        volatile FamilyGraph familyGraph = null;
+        /** The color of every event type (built the first time it's needed) */
+        volatile EventColorTable eventColorTable = null;
+        /**
+         * Guards building the search indexes, event filter, family graph and color
+         * table. This is kept separate from the Contents lock so that a slow build doesn't hold up
+         * persons and events being cached.
+         */
+        final Object indexLock = new Object();
+        /** Finishes when the downloads started right after login do (null if none were started) */
+        volatile CompletableFuture<Void> prefetch = null;
+        /** Finishes when the refresh of contents loaded from a snapshot does (null if not loaded from one) */
+        volatile CompletableFuture<Boolean> snapshotRefresh = null;
+
+        /**
+         * Keeps one shared instance of each value of the fields that repeat a lot (usernames,
+         * last names, event types, countries and cities), so a whole tree's worth of them doesn't
+         * take up one String each. Sharing instances also makes comparing them (or looking them
+         * up in a map) mostly a matter of comparing references.
+         */
+        final StringDictionary sharedStrings = new StringDictionary();
+
+        /** Coalesces concurrent misses on single persons */
+        final SingleFlight<String, Person> personLoads = new SingleFlight<>();
+        /** Coalesces concurrent misses on single events */
+        final SingleFlight<String, Event> eventLoads = new SingleFlight<>();
+        /** Coalesces concurrent loads of all persons/events */
+        final SingleFlight<String, Void> bulkLoads = new SingleFlight<>();
+
+        /**
+         * Stores many persons in the cache at once
+         *
+         * @param persons are the persons to cache
+         */
+        synchronized void cachePersons(Person[] persons) {
+            for (Person person : persons) {
+                this.cachePerson(person);
+            }
+        }
+
+        /**
+         * Stores a person in the cache, keeping the children index in sync. If a person with
+         * the same ID was already cached, they are replaced (in both the cache and the index).
+         *
+         * @param person is the person to cache
+         */
+        synchronized void cachePerson(Person person) {
+            person.setAssociatedUsername(this.sharedStrings.intern(person.getAssociatedUsername()));
+            person.setLastName(this.sharedStrings.intern(person.getLastName()));
+            Person replacedPerson = this.personsByID.put(person.getPersonID(), person);
+            if (replacedPerson != null) {
+                this.removeChild(replacedPerson.getFatherID(), replacedPerson);
+                this.removeChild(replacedPerson.getMotherID(), replacedPerson);
+            }
+            this.addChild(person.getFatherID(), person);
+            this.addChild(person.getMotherID(), person);
+        }
+
+        /**
+         * Helper for cachePerson() that records a child under one of its parents. The child
+         * list is copied rather than changed in place so readers never see it mid-update.
+         *
+         * @param parentID is the ID of the parent (may be null, in which case nothing happens)
+         * @param child is the child to record
+         */
+        private void addChild(String parentID, Person child) {
+            if (parentID == null) {
+                return;
+            }
+
+            List<Person> children = this.childrenByParentID.get(parentID);
+            List<Person> newChildren = new ArrayList<>();
+            if (children != null) {
+                newChildren.addAll(children);
+            }
+            newChildren.add(child);
+            this.childrenByParentID.put(parentID, Collections.unmodifiableList(newChildren));
+        }
+
+        /**
+         * Helper for cachePerson() that forgets a child under one of its parents
+         *
+         * @param parentID is the ID of the parent (may be null, in which case nothing happens)
+         * @param child is the child to forget
+         */
+        private void removeChild(String parentID, Person child) {
+            if (parentID == null) {
+                return;
+            }
+
+            List<Person> children = this.childrenByParentID.get(parentID);
+            if (children != null) {
+                List<Person> newChildren = new ArrayList<>(children);
+                newChildren.remove(child);
+                this.childrenByParentID.put(parentID, Collections.unmodifiableList(newChildren));
+            }
+        }
+
+        /**
+         * Stores many events in the cache at once, then rebuilds the timeline index
+         *
+         * @param events are the events to cache
+         */
+        synchronized void cacheEvents(Event[] events) {
+            for (Event event : events) {
+                this.cacheEvent(event);
+            }
+            this.indexEventTimelines();
+        }
+
+        /**
+         * Stores a single event in the cache (sharing its repeated fields; see sharedStrings).
+         * The timeline index is not updated until indexEventTimelines() is called, so bulk loads
+         * can call this many times cheaply.
+         *
+         * @param event is the event to cache
+         */
+        void cacheEvent(Event event) {
+            event.setAssociatedUsername(this.sharedStrings.intern(event.getAssociatedUsername()));
+            event.setEventType(this.sharedStrings.intern(event.getEventType()));
+            event.setCountry(this.sharedStrings.intern(event.getCountry()));
+            event.setCity(this.sharedStrings.intern(event.getCity()));
+            this.eventsByID.put(event.getEventID(), event);
+        }
+
+        /**
+         * Groups every loaded event by the person it belongs to, then sorts each group into a
+         * timeline. This should be called whenever the set of all events is (re)loaded.
+         */
+        synchronized void indexEventTimelines() {
+            this.eventsByPersonID = TimelineSorter.groupByPerson(this.eventsByID.values().toArray(new Event[0]));
+        }
+    }
 }
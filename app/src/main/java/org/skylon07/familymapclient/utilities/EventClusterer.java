@@ -0,0 +1,296 @@
+package org.skylon07.familymapclient.utilities;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import models.Event;
+
+/**
+ * Groups events that would be drawn on top of each other into clusters, so the map only has to
+ * draw (and hit-test) one marker per cluster instead of one per event.
+ *
+ * Events are placed on the same (Web Mercator) grid the map itself uses, and each zoom level
+ * gets a grid of cells about CELL_SIZE_PIXELS across on screen; everything in one cell becomes
+ * one cluster. Each zoom level is only worked out once, and from MAX_CLUSTER_ZOOM on in, every
+ * event is its own cluster.
+ */
+public class EventClusterer {
+    /** How wide (and tall) each cluster cell is on screen, in (density independent) pixels */
+    public static final int CELL_SIZE_PIXELS = 64;
+    /** The zoom level from which events are no longer clustered at all */
+    public static final int MAX_CLUSTER_ZOOM = 16;
+    /** How wide the whole world is at zoom level 0, in pixels (the size of a map tile) */
+    private static final int WORLD_SIZE_PIXELS = 256;
+    /** The farthest north or south Web Mercator goes, in degrees */
+    private static final double MAX_LATITUDE = 85.05112878;
+
+    /** The events to cluster */
+    private final Event[] events;
+    /** Where each event is on the map, from 0 (west) to 1 (east) */
+    private final double[] xs;
+    /** Where each event is on the map, from 0 (north) to 1 (south) */
+    private final double[] ys;
+    /** The clusters for each zoom level that has been worked out so far, by zoom level */
+    private final Map<Integer, List<Cluster>> clustersByZoom;
+    /** The spatial index of the clusters for each zoom level that has been indexed, by zoom level */
+    private final Map<Integer, SpatialIndex<Cluster>> clusterIndexesByZoom;
+
+    /**
+     * Creates a new clusterer
+     *
+     * @param events are the events to cluster
+     */
+    public EventClusterer(Event[] events) {
+        this.events = events.clone();
+        this.xs = new double[this.events.length];
+        this.ys = new double[this.events.length];
+        for (int eventIdx = 0; eventIdx < this.events.length; ++eventIdx) {
+            Event event = this.events[eventIdx];
+            this.xs[eventIdx] = EventClusterer.toMapX(event.getLongitude());
+            this.ys[eventIdx] = EventClusterer.toMapY(event.getLatitude());
+        }
+        this.clustersByZoom = new HashMap<>();
+        this.clusterIndexesByZoom = new HashMap<>();
+    }
+
+    /**
+     * Returns the clusters for a zoom level. This does real work the first time a zoom level is
+     * asked for, so it shouldn't be called on the UI thread.
+     *
+     * @param zoom is the zoom level of the map (fractions are dropped)
+     * @return the (unmodifiable) clusters; every event is in exactly one of them
+     */
+    public synchronized List<Cluster> getClusters(float zoom) {
+        int zoomLevel = Math.max(0, Math.min((int) zoom, MAX_CLUSTER_ZOOM));
+        List<Cluster> clusters = this.clustersByZoom.get(zoomLevel);
+        if (clusters == null) {
+            clusters = this.buildClusters(zoomLevel);
+            this.clustersByZoom.put(zoomLevel, clusters);
+        }
+        return clusters;
+    }
+
+    /**
+     * Returns a spatial index of the clusters for a zoom level, for finding just the clusters on
+     * screen. Like getClusters(), this does real work the first time a zoom level is asked for.
+     *
+     * @param zoom is the zoom level of the map (fractions are dropped)
+     * @return the index of the clusters
+     */
+    public synchronized SpatialIndex<Cluster> getClusterIndex(float zoom) {
+        int zoomLevel = Math.max(0, Math.min((int) zoom, MAX_CLUSTER_ZOOM));
+        SpatialIndex<Cluster> index = this.clusterIndexesByZoom.get(zoomLevel);
+        if (index == null) {
+            index = new SpatialIndex<>(this.getClusters(zoomLevel), new SpatialIndex.Locator<Cluster>() {
+                @Override
+                public double getLatitude(Cluster cluster) {
+                    return cluster.getLatitude();
+                }
+
+                @Override
+                public double getLongitude(Cluster cluster) {
+                    return cluster.getLongitude();
+                }
+            });
+            this.clusterIndexesByZoom.put(zoomLevel, index);
+        }
+        return index;
+    }
+
+    /**
+     * @return how many events are being clustered
+     */
+    public int getEventCount() {
+        return this.events.length;
+    }
+
+    /**
+     * Puts every event in a cell of the grid for a zoom level
+     *
+     * @param zoomLevel is the zoom level to build clusters for
+     * @return the (unmodifiable) clusters
+     */
+    private List<Cluster> buildClusters(int zoomLevel) {
+        List<Cluster> clusters = new ArrayList<>();
+        if (zoomLevel >= MAX_CLUSTER_ZOOM) {
+            for (int eventIdx = 0; eventIdx < this.events.length; ++eventIdx) {
+                Cluster cluster = new Cluster(zoomLevel, eventIdx);
+                cluster.add(this.events[eventIdx]);
+                clusters.add(cluster);
+            }
+            return Collections.unmodifiableList(clusters);
+        }
+
+        double cellsAcross = (double) (WORLD_SIZE_PIXELS << zoomLevel) / CELL_SIZE_PIXELS;
+        Map<Long, Cluster> clustersByCell = new LinkedHashMap<>();
+        for (int eventIdx = 0; eventIdx < this.events.length; ++eventIdx) {
+            long cellX = (long) (this.xs[eventIdx] * cellsAcross);
+            long cellY = (long) (this.ys[eventIdx] * cellsAcross);
+            Long cell = (cellX << 32) | cellY;
+            Cluster cluster = clustersByCell.get(cell);
+            if (cluster == null) {
+                cluster = new Cluster(zoomLevel, cell);
+                clustersByCell.put(cell, cluster);
+            }
+            cluster.add(this.events[eventIdx]);
+        }
+        clusters.addAll(clustersByCell.values());
+        return Collections.unmodifiableList(clusters);
+    }
+
+    /**
+     * @param longitude is a longitude, in degrees
+     * @return how far east it is on the map, from 0 to 1
+     */
+    static double toMapX(double longitude) {
+        double x = (longitude + 180) / 360;
+        return Math.max(0, Math.min(x, 1));
+    }
+
+    /**
+     * @param latitude is a latitude, in degrees
+     * @return how far south it is on the map, from 0 to 1
+     */
+    static double toMapY(double latitude) {
+        double sinLatitude = Math.sin(Math.toRadians(Math.max(-MAX_LATITUDE, Math.min(latitude, MAX_LATITUDE))));
+        double y = 0.5 - Math.log((1 + sinLatitude) / (1 - sinLatitude)) / (4 * Math.PI);
+        return Math.max(0, Math.min(y, 1));
+    }
+
+    /**
+     * A group of events that are close together (at some zoom level)
+     */
+    public static class Cluster {
+        /** the zoom level the cluster was made for */
+        private final int zoomLevel;
+        /** the grid cell the cluster covers (at its zoom level) */
+        private final long cell;
+        private final List<Event> events = new ArrayList<>(1);
+        private double latitudeSum = 0;
+        private double longitudeSum = 0;
+        /** the sum of the hash codes of every event ID in the cluster */
+        private int eventIDHashSum = 0;
+        /** the key of the cluster (made the first time it's asked for) */
+        private Object key = null;
+
+        private Cluster(int zoomLevel, long cell) {
+            this.zoomLevel = zoomLevel;
+            this.cell = cell;
+        }
+
+        private void add(Event event) {
+            this.events.add(event);
+            this.latitudeSum += event.getLatitude();
+            this.longitudeSum += event.getLongitude();
+            this.eventIDHashSum += event.getEventID().hashCode();
+        }
+
+        /**
+         * @return the events in the cluster
+         */
+        public List<Event> getEvents() {
+            return Collections.unmodifiableList(this.events);
+        }
+
+        public int getSize() {
+            return this.events.size();
+        }
+
+        /**
+         * @return true when the cluster is just one event (which should be drawn like any other event)
+         */
+        public boolean isSingleEvent() {
+            return this.events.size() == 1;
+        }
+
+        /**
+         * @return the first (or only) event in the cluster
+         */
+        public Event getFirstEvent() {
+            return this.events.get(0);
+        }
+
+        /**
+         * Returns something that identifies this cluster, even across clusterers. A single event
+         * is identified by its event ID, and a bigger cluster by its cell and the event IDs in it,
+         * so the same events filtered again (like after the settings change) give equal keys
+         * for every cluster that didn't change, and different keys for every one that did. The
+         * key doesn't depend on what order the events were added in.
+         *
+         * @return the key for the cluster (with working equals() and hashCode())
+         */
+        public Object getKey() {
+            if (this.isSingleEvent()) {
+                return this.getFirstEvent().getEventID();
+            }
+            if (this.key == null) {
+                String[] eventIDs = new String[this.events.size()];
+                for (int eventIdx = 0; eventIdx < eventIDs.length; ++eventIdx) {
+                    eventIDs[eventIdx] = this.events.get(eventIdx).getEventID();
+                }
+                Arrays.sort(eventIDs);
+                this.key = new ClusterKey(this.zoomLevel, this.cell, eventIDs, this.eventIDHashSum);
+            }
+            return this.key;
+        }
+
+        /**
+         * @return the average latitude of the events in the cluster
+         */
+        public double getLatitude() {
+            return this.latitudeSum / this.events.size();
+        }
+
+        /**
+         * @return the average longitude of the events in the cluster
+         */
+        public double getLongitude() {
+            return this.longitudeSum / this.events.size();
+        }
+    }
+
+    /**
+     * Identifies a cluster of more than one event by its cell and the (sorted) IDs of the events
+     * in it, so two keys are only equal when they are for exactly the same events. The sum of
+     * the IDs' hash codes is only used to make hashCode() (and most unequal keys) quick, since
+     * different sets of events can add up to the same sum.
+     */
+    private static class ClusterKey {
+        private final int zoomLevel;
+        private final long cell;
+        /** the IDs of the events in the cluster, sorted */
+        private final String[] eventIDs;
+        private final int eventIDHashSum;
+
+        private ClusterKey(int zoomLevel, long cell, String[] eventIDs, int eventIDHashSum) {
+            this.zoomLevel = zoomLevel;
+            this.cell = cell;
+            this.eventIDs = eventIDs;
+            this.eventIDHashSum = eventIDHashSum;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof ClusterKey)) {
+                return false;
+            }
+            ClusterKey other = (ClusterKey) obj;
+            return this.zoomLevel == other.zoomLevel && this.cell == other.cell
+                    && this.eventIDHashSum == other.eventIDHashSum && Arrays.equals(this.eventIDs, other.eventIDs);
+        }
+
+        @Override
+        public int hashCode() {
+            int hash = Long.hashCode(this.cell);
+            hash = 31 * hash + this.zoomLevel;
+            hash = 31 * hash + this.eventIDs.length;
+            hash = 31 * hash + this.eventIDHashSum;
+            return hash;
+        }
+    }
+}
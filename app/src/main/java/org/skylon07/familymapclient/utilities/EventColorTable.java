@@ -0,0 +1,163 @@
+package org.skylon07.familymapclient.utilities;
+
+import com.google.android.gms.maps.model.BitmapDescriptor;
+import com.google.android.gms.maps.model.BitmapDescriptorFactory;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * The color of every event type in a set of events, worked out once (per cache load) instead
+ * of every time an event is drawn.
+ *
+ * Event types are compared ignoring case. Births, marriages, and deaths always get the same
+ * colors; every other type gets the next free color, in alphabetical order, so the same events
+ * are always colored the same way (on every launch, too). Each type is given a code (its place
+ * in that order), so once a type's code is known its color and marker icon are just array
+ * lookups.
+ *
+ * The table never changes after it is built, so it can be read from any thread without locking.
+ */
+public class EventColorTable {
+    /** The code given to types that aren't in the table */
+    public static final int UNKNOWN_TYPE = -1;
+
+    /** The types that always get the same color, and what that color is */
+    private static final String[] FIXED_TYPES = {"birth", "marriage", "death"};
+    private static final float[] FIXED_HUES = {
+            BitmapDescriptorFactory.HUE_BLUE,
+            BitmapDescriptorFactory.HUE_GREEN,
+            BitmapDescriptorFactory.HUE_MAGENTA,
+    };
+    /** The colors handed out to every other type, in order (starting over once they run out) */
+    private static final float[] FREE_HUES = {
+            BitmapDescriptorFactory.HUE_RED,
+            BitmapDescriptorFactory.HUE_ORANGE,
+            BitmapDescriptorFactory.HUE_YELLOW,
+            BitmapDescriptorFactory.HUE_CYAN,
+            BitmapDescriptorFactory.HUE_AZURE,
+            BitmapDescriptorFactory.HUE_VIOLET,
+            BitmapDescriptorFactory.HUE_ROSE,
+    };
+
+    /** The code of every type, by every spelling of it that was seen */
+    private final Map<String, Integer> codesByExactType;
+    /** Every (lowercased) type, by code */
+    private final String[] types;
+    /** The hue of every type, by code */
+    private final float[] hues;
+    /** The marker icon of every type, by code (each made the first time it's needed) */
+    private final BitmapDescriptor[] markerIcons;
+
+    /**
+     * Builds a new table
+     *
+     * @param exactTypes are the event types to color, spelled however the events spell them
+     *      (repeats are fine)
+     */
+    public EventColorTable(Iterable<String> exactTypes) {
+        TreeSet<String> sortedTypes = new TreeSet<>();
+        for (String exactType : exactTypes) {
+            if (exactType != null) {
+                sortedTypes.add(exactType.toLowerCase(Locale.ROOT));
+            }
+        }
+        this.types = sortedTypes.toArray(new String[0]);
+        this.hues = new float[this.types.length];
+        this.markerIcons = new BitmapDescriptor[this.types.length];
+        int numFreeUsed = 0;
+        for (int code = 0; code < this.types.length; ++code) {
+            int fixedIdx = Arrays.asList(FIXED_TYPES).indexOf(this.types[code]);
+            if (fixedIdx >= 0) {
+                this.hues[code] = FIXED_HUES[fixedIdx];
+            } else {
+                this.hues[code] = FREE_HUES[numFreeUsed++ % FREE_HUES.length];
+            }
+        }
+
+        this.codesByExactType = new HashMap<>();
+        for (String exactType : exactTypes) {
+            if (exactType != null && !this.codesByExactType.containsKey(exactType)) {
+                this.codesByExactType.put(exactType, Arrays.binarySearch(this.types, exactType.toLowerCase(Locale.ROOT)));
+            }
+        }
+    }
+
+    /**
+     * @return how many (distinct, ignoring case) types are in the table
+     */
+    public int getTypeCount() {
+        return this.types.length;
+    }
+
+    /**
+     * Returns the code of an event type. Spellings the table was built from are found right
+     * away; any other spelling has to be lowercased first.
+     *
+     * @param exactType is an event type, spelled however the event spells it
+     * @return the type's code (or UNKNOWN_TYPE if it isn't in the table)
+     */
+    public int getTypeCode(String exactType) {
+        if (exactType == null) {
+            return UNKNOWN_TYPE;
+        }
+        Integer code = this.codesByExactType.get(exactType);
+        if (code != null) {
+            return code;
+        }
+        int foundCode = Arrays.binarySearch(this.types, exactType.toLowerCase(Locale.ROOT));
+        return foundCode >= 0 ? foundCode : UNKNOWN_TYPE;
+    }
+
+    /**
+     * @param code is the code of a type in the table
+     * @return the hue of that type's markers
+     */
+    public float getHue(int code) {
+        return this.hues[code];
+    }
+
+    /**
+     * Returns the hue of an event type. Types that aren't in the table (like the type of an
+     * event that was never loaded with the rest) get a free color based on their name, so they
+     * are still always the same color.
+     *
+     * @param exactType is an event type, spelled however the event spells it
+     * @return the hue of that type's markers
+     */
+    public float getHue(String exactType) {
+        int code = this.getTypeCode(exactType);
+        if (code != UNKNOWN_TYPE) {
+            return this.hues[code];
+        }
+        if (exactType == null) {
+            return 0;
+        }
+        String type = exactType.toLowerCase(Locale.ROOT);
+        int fixedIdx = Arrays.asList(FIXED_TYPES).indexOf(type);
+        if (fixedIdx >= 0) {
+            return FIXED_HUES[fixedIdx];
+        }
+        return FREE_HUES[Math.floorMod(type.hashCode(), FREE_HUES.length)];
+    }
+
+    /**
+     * Returns the marker icon for a type. Each icon is only made once, and then handed out to
+     * every marker of that type.
+     *
+     * @param code is the code of a type in the table
+     * @return the icon for that type's markers
+     */
+    public BitmapDescriptor getMarkerIcon(int code) {
+        BitmapDescriptor icon = this.markerIcons[code];
+        if (icon == null) {
+            // (two threads could both make the icon here, but they'd make the same one)
+            icon = BitmapDescriptorFactory.defaultMarker(this.hues[code]);
+            this.markerIcons[code] = icon;
+        }
+        return icon;
+    }
+}
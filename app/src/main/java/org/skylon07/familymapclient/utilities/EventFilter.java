@@ -0,0 +1,199 @@
+package org.skylon07.familymapclient.utilities;
+
+import android.content.SharedPreferences;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.BitSet;
+
+import models.Event;
+
+/**
+ * Works out which events are shown on the map for each combination of the four event filter
+ * settings (father's side, mother's side, male, and female events).
+ *
+ * Walking the family tree to find who is on which side is the expensive part, and it doesn't
+ * depend on the settings at all, so it is only done once (per cache load) by a PersonClassifier.
+ * The persons each combination of settings hides are then just a few BitSet ors, and finding the
+ * shown events is a single scan over the events' person indexes. Each of the 16 possible
+ * combinations of settings is worked out at most once.
+ */
+public class EventFilter {
+    /** The group of the user's father and all of his ancestors */
+    public static final int FATHERS_SIDE = 1;
+    /** The group of the user's mother and all of her ancestors */
+    public static final int MOTHERS_SIDE = 1 << 1;
+    /** The group of the user (if male) and all of their male ancestors */
+    public static final int MALES = 1 << 2;
+    /** The group of the user (if female) and all of their female ancestors */
+    public static final int FEMALES = 1 << 3;
+    /** How many groups there are */
+    private static final int NUM_GROUPS = 4;
+
+    /** The preference keys that show each group, in the same order as the group bits */
+    private static final String[] GROUP_PREFERENCE_KEYS = {
+            "fathersEvents", "mothersEvents", "maleEvents", "femaleEvents"
+    };
+
+    /**
+     * Reads which groups should be hidden from the settings
+     *
+     * @param prefs are the preferences from the settings screen
+     * @return the groups (bitwise or'd together) to hide
+     */
+    public static int getHiddenGroups(SharedPreferences prefs) {
+        int hiddenGroups = 0;
+        for (int groupIdx = 0; groupIdx < NUM_GROUPS; ++groupIdx) {
+            if (!prefs.getBoolean(GROUP_PREFERENCE_KEYS[groupIdx], false)) {
+                hiddenGroups |= 1 << groupIdx;
+            }
+        }
+        return hiddenGroups;
+    }
+
+    /**
+     * @param key is the key of a preference that changed
+     * @return true if the preference is one of the event filter settings
+     */
+    public static boolean isFilterPreference(String key) {
+        return Arrays.asList(GROUP_PREFERENCE_KEYS).contains(key);
+    }
+
+    /** Has every person sorted into groups */
+    private final PersonClassifier classifier;
+    /** Every event that could be shown */
+    private final Event[] events;
+    /** The (classifier's) index of the person each event belongs to (-1 if unknown), by event */
+    private final int[] eventPersonIndexes;
+    /** The indexes of every person to hide, for each combination of hidden groups */
+    private final BitSet[] hiddenPersonsByHiddenGroups;
+    /** The shown events for each combination of hidden groups (null until worked out) */
+    private final Event[][] shownEventsByHiddenGroups;
+
+    /**
+     * Creates a new filter for everything in the cache
+     *
+     * @param data is the (loaded) cache to filter events from
+     * @throws IOException when the cache has trouble getting persons or events
+     */
+    EventFilter(DataCache data) throws IOException {
+        this(new PersonClassifier(data.getFamilyGraph(), data.getCurrUserPersonID()));
+    }
+
+    /**
+     * Creates a new filter for every event in the classifier's family graph. The graph already
+     * knows whose every event is, so no person IDs have to be looked up at all.
+     *
+     * @param classifier has sorted every person (in its graph) into groups
+     */
+    public EventFilter(PersonClassifier classifier) {
+        this(
+                classifier,
+                EventFilter.getGraphEvents(classifier.getGraph()),
+                EventFilter.getGraphEventPersons(classifier.getGraph())
+        );
+    }
+
+    /**
+     * Creates a new filter, working out which persons each combination of settings hides
+     *
+     * @param classifier has sorted every person into groups
+     * @param events are all of the events to filter
+     */
+    public EventFilter(PersonClassifier classifier, Event[] events) {
+        this(classifier, events.clone(), EventFilter.getEventPersons(classifier, events));
+    }
+
+    private EventFilter(PersonClassifier classifier, Event[] events, int[] eventPersonIndexes) {
+        this.classifier = classifier;
+        this.events = events;
+        this.eventPersonIndexes = eventPersonIndexes;
+
+        BitSet[] personsByGroup = new BitSet[NUM_GROUPS];
+        personsByGroup[0] = classifier.getFathersSide();
+        personsByGroup[1] = classifier.getMothersSide();
+        // the gender filters cover the user and all of their ancestors (of that gender)
+        BitSet family = classifier.getSelf();
+        family.or(personsByGroup[0]);
+        family.or(personsByGroup[1]);
+        personsByGroup[2] = classifier.getMales();
+        personsByGroup[2].and(family);
+        personsByGroup[3] = classifier.getFemales();
+        personsByGroup[3].and(family);
+
+        this.hiddenPersonsByHiddenGroups = new BitSet[1 << NUM_GROUPS];
+        for (int hiddenGroups = 0; hiddenGroups < this.hiddenPersonsByHiddenGroups.length; ++hiddenGroups) {
+            BitSet hiddenPersons = new BitSet(classifier.getPersonCount());
+            for (int groupIdx = 0; groupIdx < NUM_GROUPS; ++groupIdx) {
+                if ((hiddenGroups & (1 << groupIdx)) != 0) {
+                    hiddenPersons.or(personsByGroup[groupIdx]);
+                }
+            }
+            this.hiddenPersonsByHiddenGroups[hiddenGroups] = hiddenPersons;
+        }
+        this.shownEventsByHiddenGroups = new Event[1 << NUM_GROUPS][];
+    }
+
+    private static Event[] getGraphEvents(FamilyGraph graph) {
+        Event[] events = new Event[graph.getEventCount()];
+        for (int eventIdx = 0; eventIdx < events.length; ++eventIdx) {
+            events[eventIdx] = graph.getEvent(eventIdx);
+        }
+        return events;
+    }
+
+    private static int[] getGraphEventPersons(FamilyGraph graph) {
+        int[] eventPersonIndexes = new int[graph.getEventCount()];
+        for (int eventIdx = 0; eventIdx < eventPersonIndexes.length; ++eventIdx) {
+            eventPersonIndexes[eventIdx] = graph.getEventPersonIndex(eventIdx);
+        }
+        return eventPersonIndexes;
+    }
+
+    private static int[] getEventPersons(PersonClassifier classifier, Event[] events) {
+        int[] eventPersonIndexes = new int[events.length];
+        for (int eventIdx = 0; eventIdx < events.length; ++eventIdx) {
+            eventPersonIndexes[eventIdx] = classifier.getPersonIndex(events[eventIdx].getPersonID());
+        }
+        return eventPersonIndexes;
+    }
+
+    /**
+     * Returns the events shown when some groups are hidden. The same array is handed out to
+     * everyone asking for the same combination, so it must not be modified.
+     *
+     * @param hiddenGroups are the groups (bitwise or'd together) to hide
+     * @return the events that are not in any hidden group
+     */
+    public synchronized Event[] getShownEvents(int hiddenGroups) {
+        Event[] shownEvents = this.shownEventsByHiddenGroups[hiddenGroups];
+        if (shownEvents != null) {
+            return shownEvents;
+        }
+
+        BitSet hiddenPersons = this.hiddenPersonsByHiddenGroups[hiddenGroups];
+        shownEvents = new Event[this.events.length];
+        int numShown = 0;
+        for (int eventIdx = 0; eventIdx < this.events.length; ++eventIdx) {
+            int personIdx = this.eventPersonIndexes[eventIdx];
+            if (personIdx < 0 || !hiddenPersons.get(personIdx)) {
+                shownEvents[numShown++] = this.events[eventIdx];
+            }
+        }
+        shownEvents = Arrays.copyOf(shownEvents, numShown);
+        this.shownEventsByHiddenGroups[hiddenGroups] = shownEvents;
+        return shownEvents;
+    }
+
+    /**
+     * Checks if a single event is shown when some groups are hidden
+     *
+     * @param event is the event to check
+     * @param hiddenGroups are the groups (bitwise or'd together) to hide
+     * @return true if the event isn't in any hidden group
+     */
+    public boolean isShown(Event event, int hiddenGroups) {
+        int personIdx = this.classifier.getPersonIndex(event.getPersonID());
+        return personIdx < 0 || !this.hiddenPersonsByHiddenGroups[hiddenGroups].get(personIdx);
+    }
+}
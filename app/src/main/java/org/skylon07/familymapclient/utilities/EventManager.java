@@ -6,16 +6,9 @@ import android.content.SharedPreferences;
 import androidx.annotation.Nullable;
 import androidx.preference.PreferenceManager;
 
-import com.google.android.gms.maps.model.BitmapDescriptorFactory;
-
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Locale;
+import java.util.List;
 import java.util.Map;
-import java.util.Random;
 import java.util.Set;
 
 import models.Event;
@@ -26,9 +19,16 @@ import models.Person;
  * The EventManager has you covered!
  */
 public class EventManager {
-    /** a map containing event colors given their event types */
-    private static HashMap<String, Float> eventColors = new HashMap<>();
     private static SharedPreferences mockedPrefs;
+    /** The (real) preferences being watched for changes to the event filter settings */
+    private static SharedPreferences watchedPrefs;
+    /**
+     * Keeps the event filter settings up to date. SharedPreferences only hold weak references
+     * to their listeners, so this has to be held onto here or it would be garbage collected
+     */
+    private static SharedPreferences.OnSharedPreferenceChangeListener settingsListener;
+    /** The event groups (see EventFilter) the settings currently say to hide */
+    private static volatile int hiddenGroups;
 
     public static void mockSharedPreferences(boolean fathersEvents, boolean mothersEvents, boolean maleEvents, boolean femaleEvents) {
         // ideally I'd abstract out the preferences from this class entirely to make it testable
@@ -87,158 +87,75 @@ public class EventManager {
     }
 
     /**
-     * Returns a new EventManager, while also making sure some predefined colors are defined
-     */
-    public EventManager() {
-        // I already implemented EventManager and didn't want
-        // to make it a singleton so don't judge me
-        EventManager.eventColors.put("birth", BitmapDescriptorFactory.HUE_BLUE);
-        EventManager.eventColors.put("marriage", BitmapDescriptorFactory.HUE_GREEN);
-        EventManager.eventColors.put("death", BitmapDescriptorFactory.HUE_MAGENTA);
-    }
-
-    /**
-     * This function is used by the map to obtain only the events the user wishes to display
+     * This function is used by the map to obtain only the events the user wishes to display.
+     * The result for each combination of settings is remembered (until the cache is reset), so
+     * this is cheap to call again and again. The returned array is shared, so don't modify it.
      *
-     * @return
+     * @param context is the context to read the settings from
+     * @return the events to show, according to the settings
      */
     public Event[] getEventsWithSettingsFilter(Context context) {
-        SharedPreferences prefs = EventManager.mockedPrefs;
-        if (prefs == null) {
-            prefs = PreferenceManager.getDefaultSharedPreferences(context);
-        }
         try {
-            Event[] allEvents = DataCache.getInstance().getAllEvents();
-            HashSet<Event> eventSet = new HashSet<>(Arrays.asList(allEvents));
-
-            this.filterFatherEvents(prefs, eventSet);
-            this.filterMotherEvents(prefs, eventSet);
-            this.filterMaleEvents(prefs, eventSet);
-            this.filterFemaleEvents(prefs, eventSet);
-
-            return eventSet.toArray(new Event[eventSet.size()]);
+            EventFilter filter = DataCache.getInstance().getEventFilter();
+            return filter.getShownEvents(this.getHiddenGroups(context));
         } catch (IOException err) {
             throw new RuntimeException("Server couldn't get events");
         }
     }
 
     /**
-     * Removes events that are on the father's side of the userd (according to preferences screen)
+     * Checks if a single event is one the user wishes to display (without making a list of
+     * all the events to display)
      *
-     * @param prefs is the SharedPreferences from the preferences screen
-     * @param eventSet is the set of all Events to filter from
-     * @throws IOException when the server just doesn't feel good
+     * @param event is the event to check
+     * @param context is the context to read the settings from
+     * @return true if the settings allow the event to be shown
      */
-    private void filterFatherEvents(SharedPreferences prefs, Set<Event> eventSet) throws IOException {
-        boolean showFatherEvents = prefs.getBoolean("fathersEvents", false);
-        if (!showFatherEvents) {
-            DataCache data = DataCache.getInstance();
-
-            Person userPerson = data.getPersonByID(data.getCurrUserPersonID());
-            Person fatherPerson = data.getPersonByID(userPerson.getFatherID());
-            Set<Person> personsOnFathersSide = Relationships.getAllParentsOf(fatherPerson);
-            personsOnFathersSide.add(fatherPerson);
-            Set<String> personIDsOnFathersSide = Relationships.mapToIDs(personsOnFathersSide);
-
-            ArrayList<Event> eventsToRemove = new ArrayList<>();
-            for (Event event : eventSet) {
-                if (personIDsOnFathersSide.contains(event.getPersonID())) {
-                    eventsToRemove.add(event);
-                }
-            }
-            for (Event eventToRemove : eventsToRemove) {
-                eventSet.remove(eventToRemove);
-            }
+    public boolean isShownWithSettingsFilter(Event event, Context context) {
+        try {
+            EventFilter filter = DataCache.getInstance().getEventFilter();
+            return filter.isShown(event, this.getHiddenGroups(context));
+        } catch (IOException err) {
+            throw new RuntimeException("Server couldn't get events");
         }
     }
 
     /**
-     * Removes events that are on the mother's side of the user (according to preferences screen)
+     * Gets which event groups the settings say to hide. Rather than reading the preferences
+     * every time, they are read once and then kept up to date by a change listener.
      *
-     * @param prefs is the SharedPreferences from the preferences screen
-     * @param eventSet is the set of all Events to filter from
-     * @throws IOException when the server just doesn't feel good
+     * @param context is the context to read the settings from
+     * @return the groups (see EventFilter) to hide, bitwise or'd together
      */
-    private void filterMotherEvents(SharedPreferences prefs, Set<Event> eventSet) throws IOException {
-        boolean showMotherEvents = prefs.getBoolean("mothersEvents", false);
-        if (!showMotherEvents) {
-            DataCache data = DataCache.getInstance();
-            Person userPerson = data.getPersonByID(data.getCurrUserPersonID());
-            Person motherPerson = data.getPersonByID(userPerson.getMotherID());
-            Set<Person> personsOnMothersSide = Relationships.getAllParentsOf(motherPerson);
-            personsOnMothersSide.add(motherPerson);
-            Set<String> personIDsOnMothersSide = Relationships.mapToIDs(personsOnMothersSide);
-
-            ArrayList<Event> eventsToRemove = new ArrayList<>();
-            for (Event event : eventSet) {
-                if (personIDsOnMothersSide.contains(event.getPersonID())) {
-                    eventsToRemove.add(event);
-                }
-            }
-            for (Event eventToRemove : eventsToRemove) {
-                eventSet.remove(eventToRemove);
-            }
+    private int getHiddenGroups(Context context) {
+        SharedPreferences prefs = EventManager.mockedPrefs;
+        if (prefs != null) {
+            return EventFilter.getHiddenGroups(prefs);
         }
-    }
-
-    /**
-     * Removes events that are associated with males (according to preferences screen)
-     *
-     * @param prefs is the SharedPreferences from the preferences screen
-     * @param eventSet is the set of all Events to filter from
-     * @throws IOException when the server just doesn't feel good
-     */
-    private void filterMaleEvents(SharedPreferences prefs, Set<Event> eventSet) throws IOException {
-        boolean showMaleEvents = prefs.getBoolean("maleEvents", false);
-        if (!showMaleEvents) {
-            DataCache data = DataCache.getInstance();
-            Person userPerson = data.getPersonByID(data.getCurrUserPersonID());
-            Set<Person> allMalePersons = Relationships.getAllMaleAncestors(userPerson);
-            if ("m".equals(userPerson.getGender())) {
-                allMalePersons.add(userPerson);
-            }
-            Set<String> allMalePersonIDs = Relationships.mapToIDs(allMalePersons);
 
-            ArrayList<Event> eventsToRemove = new ArrayList<>();
-            for (Event event : eventSet) {
-                if (allMalePersonIDs.contains(event.getPersonID())) {
-                    eventsToRemove.add(event);
-                }
-            }
-            for (Event eventToRemove : eventsToRemove) {
-                eventSet.remove(eventToRemove);
-            }
-        }
+        EventManager.watchSettings(context);
+        return EventManager.hiddenGroups;
     }
 
     /**
-     * Removes events that are associated with females (according to preferences screen)
+     * Starts listening for changes to the event filter settings (if not already listening)
      *
-     * @param prefs is the SharedPreferences from the preferences screen
-     * @param eventSet is the set of all Events to filter from
-     * @throws IOException when the server just doesn't feel good
+     * @param context is the context to read the settings from
      */
-    private void filterFemaleEvents(SharedPreferences prefs, Set<Event> eventSet) throws IOException {
-        boolean showFemaleEvents = prefs.getBoolean("femaleEvents", false);
-        if (!showFemaleEvents) {
-            DataCache data = DataCache.getInstance();
-            Person userPerson = data.getPersonByID(data.getCurrUserPersonID());
-            Set<Person> allFemalePersons = Relationships.getAllFemaleAncestors(userPerson);
-            if ("f".equals(userPerson.getGender())) {
-                allFemalePersons.add(userPerson);
-            }
-            Set<String> allFemalePersonIDs = Relationships.mapToIDs(allFemalePersons);
+    private static synchronized void watchSettings(Context context) {
+        if (EventManager.watchedPrefs != null) {
+            return;
+        }
 
-            ArrayList<Event> eventsToRemove = new ArrayList<>();
-            for (Event event : eventSet) {
-                if (allFemalePersonIDs.contains(event.getPersonID())) {
-                    eventsToRemove.add(event);
-                }
-            }
-            for (Event eventToRemove : eventsToRemove) {
-                eventSet.remove(eventToRemove);
+        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(context);
+        EventManager.hiddenGroups = EventFilter.getHiddenGroups(prefs);
+        EventManager.settingsListener = (SharedPreferences changedPrefs, String key) -> {
+            if (EventFilter.isFilterPreference(key)) {
+                EventManager.hiddenGroups = EventFilter.getHiddenGroups(changedPrefs);
             }
-        }
+        };
+        prefs.registerOnSharedPreferenceChangeListener(EventManager.settingsListener);
+        EventManager.watchedPrefs = prefs;
     }
 
     /**
@@ -247,56 +164,19 @@ public class EventManager {
      * @param personID is the ID of the person to match events for
      * @return a list of events belonging to that person (sorted, too!)
      */
-    public Event[] getSortedEventsForPerson(String personID) {
+    public List<Event> getSortedEventsForPerson(String personID) {
         if (personID == null) {
             return null;
         }
 
-        ArrayList<Event> eventsForPerson = new ArrayList<>();
         try {
-            for (Event event : DataCache.getInstance().getAllEvents()) {
-                if (event.getPersonID().equals(personID)) {
-                    eventsForPerson.add(event);
-                }
-            }
+            return DataCache.getInstance().getSortedEventsForPerson(personID);
         } catch (IOException err) {
             throw new RuntimeException("Server couldn't get events");
         }
-
-        Event[] eventsArr = eventsForPerson.toArray(new Event[eventsForPerson.size()]);
-        // sort first by event type... (secondary)
-        Arrays.sort(eventsArr, (Event event1, Event event2) -> {
-            String type1 = event1.getEventType().toLowerCase();
-            String type2 = event2.getEventType().toLowerCase();
-            // special case: birth/death events
-            if (type1.equals("birth") || type2.equals("death")) {
-                return -1;
-            } else if (type1.equals("death") || type2.equals("birth")) {
-                return 1;
-            }
-            for (int idx = 0; idx <= type1.length(); ++idx) {
-                if (idx == type1.length() && idx < type2.length()) {
-                    return -1;
-                } else if (idx == type2.length() && idx < type1.length()) {
-                    return 1;
-                } else if (idx == type1.length() && idx == type2.length()) {
-                    return 0;
-                } else if (type1.charAt(idx) < type2.charAt(idx)) {
-                    return -1;
-                } else if (type1.charAt(idx) > type2.charAt(idx)) {
-                    return 1;
-                } else if (type1.charAt(idx) == type2.charAt(idx)) {
-                    continue;
-                }
-            }
-            return 0;
-        });
-        // then sort by year (primary; same year should still be sorted by event type)
-        Arrays.sort(eventsArr, (Event event1, Event event2) -> event1.getYear() - event2.getYear());
-        return eventsArr;
     }
 
-    public Event[] getSortedEventsForPerson(Person person) {
+    public List<Event> getSortedEventsForPerson(Person person) {
         if (person == null) {
             return null;
         }
@@ -306,8 +186,9 @@ public class EventManager {
 
     /**
      * Returns the color a given event should be. This function guarantees the same color is
-     * returned for all events of the same event type. If a new event type is encountered,
-     * a new color will be assigned and returned for that type.
+     * returned for all events of the same event type (ignoring case), and that the same events
+     * are always given the same colors. The colors are worked out once per cache load (see
+     * EventColorTable), so this is just a lookup.
      *
      * @param event is the event to get a color for
      * @return a float, reperesenting the color to use for the event
@@ -317,49 +198,20 @@ public class EventManager {
             return 0;
         }
 
-        String type = event.getEventType().toLowerCase();
-        if (EventManager.eventColors.containsKey(type)) {
-            return EventManager.eventColors.get(type);
-        } else {
-            float newColor = this.generateNewEventColor();
-            EventManager.eventColors.put(type, newColor);
-            return newColor;
-        }
+        return this.getEventColorTable().getHue(event.getEventType());
     }
 
     /**
-     * Helper function that returns the next valid event color
+     * Returns the colors of every event type, so that callers coloring lots of events (like the
+     * map) can look up each type's code once and then index straight into the table
      *
-     * @return a float representing a new event color which can be used
+     * @return the event color table
      */
-    private float generateNewEventColor() {
-        // TODO: put as a static value
-        Float[] allColorsArr = {
-                BitmapDescriptorFactory.HUE_RED,
-                BitmapDescriptorFactory.HUE_ORANGE,
-                BitmapDescriptorFactory.HUE_YELLOW,
-                BitmapDescriptorFactory.HUE_GREEN,
-                BitmapDescriptorFactory.HUE_CYAN,
-                BitmapDescriptorFactory.HUE_AZURE,
-                BitmapDescriptorFactory.HUE_VIOLET,
-                BitmapDescriptorFactory.HUE_MAGENTA,
-                BitmapDescriptorFactory.HUE_ROSE
-        };
-        // TODO: can probably save this state instead of generating it every time...
-        HashSet<Float> allColorsSet = new HashSet<>(Arrays.asList(allColorsArr));
-        for (Float color : EventManager.eventColors.values()) {
-            allColorsSet.remove(color);
-        }
-
-        if (allColorsSet.isEmpty()) {
-            // return any random color (don't know why this is the specification... but whatever)
-            int randIdx = new Random().nextInt(allColorsArr.length);
-            return allColorsArr[randIdx];
-        } else {
-            // return a random unused color
-            ArrayList<Float> allColorsList = new ArrayList<>(allColorsSet);
-            int randIdx = new Random().nextInt(allColorsList.size());
-            return allColorsList.get(randIdx);
+    public EventColorTable getEventColorTable() {
+        try {
+            return DataCache.getInstance().getEventColorTable();
+        } catch (IOException err) {
+            throw new RuntimeException("Server couldn't get events");
         }
     }
 }
@@ -0,0 +1,192 @@
+package org.skylon07.familymapclient.utilities;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import models.Event;
+import models.Person;
+
+/**
+ * The family tree (and everyone's events) as plain int arrays.
+ *
+ * Every person is given a dense handle (0, 1, 2, ...), and their father, mother, and spouse are
+ * stored as handles too (NONE if they don't have one, or if that person wasn't loaded). Events
+ * get handles the same way, grouped by person and sorted into each person's timeline, so a
+ * person's events are just a range of handles. Once a person's handle has been looked up (the
+ * only place a person ID is ever hashed), walking the tree from them never has to hash a string
+ * or allocate anything.
+ *
+ * Events for persons that aren't in the graph get handles after everyone else's, and belong to
+ * the person NONE.
+ */
+public class FamilyGraph {
+    /** The handle used for "nobody" (or "no event") */
+    public static final int NONE = -1;
+
+    /** Every person, by handle */
+    private final Person[] persons;
+    /** The handle of every person, by person ID */
+    private final Map<String, Integer> personHandles;
+    private final int[] fatherIdx;
+    private final int[] motherIdx;
+    private final int[] spouseIdx;
+
+    /** Every event, by handle (grouped by person, each group in timeline order) */
+    private final Event[] events;
+    /** The handle of the person each event belongs to, by event handle */
+    private final int[] eventPersonIdx;
+    /**
+     * Where each person's events start; a person's events run up to the next person's start.
+     * The extra entries at the end mark where the events of unknown persons start and end.
+     */
+    private final int[] timelineStarts;
+
+    /**
+     * Builds a new graph
+     *
+     * @param persons are all of the persons in the tree (the handle of each is their place here)
+     * @param events are all of the events of those persons
+     */
+    public FamilyGraph(Person[] persons, Event[] events) {
+        int numPersons = persons.length;
+        this.persons = persons.clone();
+        this.personHandles = new HashMap<>(numPersons * 4 / 3 + 1);
+        for (int personIdx = 0; personIdx < numPersons; ++personIdx) {
+            this.personHandles.put(this.persons[personIdx].getPersonID(), personIdx);
+        }
+
+        this.fatherIdx = new int[numPersons];
+        this.motherIdx = new int[numPersons];
+        this.spouseIdx = new int[numPersons];
+        for (int personIdx = 0; personIdx < numPersons; ++personIdx) {
+            Person person = this.persons[personIdx];
+            this.fatherIdx[personIdx] = this.getPersonIndex(person.getFatherID());
+            this.motherIdx[personIdx] = this.getPersonIndex(person.getMotherID());
+            this.spouseIdx[personIdx] = this.getPersonIndex(person.getSpouseID());
+        }
+
+        // a counting sort by person (with the unknown persons as one more "person" at the end),
+        // then a sort of each person's (short) run of events
+        long[] eventKeys = TimelineSorter.getSortKeys(events);
+        long[] sortKeys = new long[events.length];
+        int[] personIndexes = new int[events.length];
+        this.timelineStarts = new int[numPersons + 2];
+        for (int eventIdx = 0; eventIdx < events.length; ++eventIdx) {
+            int personIdx = this.getPersonIndex(events[eventIdx].getPersonID());
+            personIndexes[eventIdx] = personIdx;
+            int group = personIdx == NONE ? numPersons : personIdx;
+            ++this.timelineStarts[group + 1];
+        }
+        for (int group = 0; group <= numPersons; ++group) {
+            this.timelineStarts[group + 1] += this.timelineStarts[group];
+        }
+        this.events = new Event[events.length];
+        this.eventPersonIdx = new int[events.length];
+        int[] nextHandles = Arrays.copyOf(this.timelineStarts, numPersons + 1);
+        for (int eventIdx = 0; eventIdx < events.length; ++eventIdx) {
+            int personIdx = personIndexes[eventIdx];
+            int handle = nextHandles[personIdx == NONE ? numPersons : personIdx]++;
+            this.events[handle] = events[eventIdx];
+            this.eventPersonIdx[handle] = personIdx;
+            sortKeys[handle] = eventKeys[eventIdx];
+        }
+        for (int personIdx = 0; personIdx < numPersons; ++personIdx) {
+            int start = this.timelineStarts[personIdx];
+            int end = this.timelineStarts[personIdx + 1];
+            TimelineSorter.sortRange(this.events, sortKeys, start, end);
+        }
+    }
+
+    /**
+     * @param personID is the ID of the person to look up
+     * @return the person's handle (or NONE if they aren't in the graph)
+     */
+    public int getPersonIndex(String personID) {
+        if (personID == null) {
+            return NONE;
+        }
+        Integer personIdx = this.personHandles.get(personID);
+        return personIdx == null ? NONE : personIdx;
+    }
+
+    /**
+     * @return how many persons are in the graph (every handle is less than this)
+     */
+    public int getPersonCount() {
+        return this.persons.length;
+    }
+
+    public Person getPerson(int personIdx) {
+        return this.persons[personIdx];
+    }
+
+    /**
+     * @param personIdx is the handle of a person
+     * @return the handle of their father (or NONE)
+     */
+    public int getFatherIndex(int personIdx) {
+        return this.fatherIdx[personIdx];
+    }
+
+    /**
+     * @param personIdx is the handle of a person
+     * @return the handle of their mother (or NONE)
+     */
+    public int getMotherIndex(int personIdx) {
+        return this.motherIdx[personIdx];
+    }
+
+    /**
+     * @param personIdx is the handle of a person
+     * @return the handle of their spouse (or NONE)
+     */
+    public int getSpouseIndex(int personIdx) {
+        return this.spouseIdx[personIdx];
+    }
+
+    /**
+     * @return how many events are in the graph (every event handle is less than this)
+     */
+    public int getEventCount() {
+        return this.events.length;
+    }
+
+    public Event getEvent(int eventIdx) {
+        return this.events[eventIdx];
+    }
+
+    /**
+     * @param eventIdx is the handle of an event
+     * @return the handle of the person the event belongs to (or NONE if they aren't in the graph)
+     */
+    public int getEventPersonIndex(int eventIdx) {
+        return this.eventPersonIdx[eventIdx];
+    }
+
+    /**
+     * @param personIdx is the handle of a person
+     * @return the handle of the person's first event (the start of their timeline)
+     */
+    public int getTimelineStart(int personIdx) {
+        return this.timelineStarts[personIdx];
+    }
+
+    /**
+     * @param personIdx is the handle of a person
+     * @return one past the handle of the person's last event (so the timeline is empty if this
+     *      is the same as the start)
+     */
+    public int getTimelineEnd(int personIdx) {
+        return this.timelineStarts[personIdx + 1];
+    }
+
+    /**
+     * @param personIdx is the handle of a person
+     * @return the handle of the person's earliest event (or NONE if they don't have any)
+     */
+    public int getFirstEventIndex(int personIdx) {
+        int start = this.timelineStarts[personIdx];
+        return start < this.timelineStarts[personIdx + 1] ? start : NONE;
+    }
+}
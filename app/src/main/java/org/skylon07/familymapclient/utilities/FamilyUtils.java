@@ -1,8 +1,7 @@
 package org.skylon07.familymapclient.utilities;
 
 import java.io.IOException;
-import java.util.HashSet;
-import java.util.Set;
+import java.util.List;
 
 import models.Person;
 
@@ -43,18 +42,11 @@ public class FamilyUtils {
         return DataCache.getInstance().getPersonByID(spouseID);
     }
 
-    public Person[] getChildrenOf(Person parent) throws IOException {
+    public List<Person> getChildrenOf(Person parent) throws IOException {
         if (parent == null) {
             return null;
         }
 
-        Set<Person> children = new HashSet<>();
-        String parentID = parent.getPersonID();
-        for (Person person : DataCache.getInstance().getAllPersons()) {
-            if (parentID.equals(person.getMotherID()) || parentID.equals(person.getFatherID())) {
-                children.add(person);
-            }
-        }
-        return children.toArray(new Person[children.size()]);
+        return DataCache.getInstance().getChildrenOf(parent.getPersonID());
     }
 }
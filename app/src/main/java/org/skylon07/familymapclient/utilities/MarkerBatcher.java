@@ -0,0 +1,247 @@
+package org.skylon07.familymapclient.utilities;
+
+import java.util.Collection;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hands items prepared on a background thread over to the UI thread in frame-sized batches.
+ *
+ * Posting one message to the UI thread per item (like one per map marker) floods the looper,
+ * and nothing else (like drawing, or handling touches) gets a turn until every last one has run.
+ * Instead, this only ever has one message waiting on the UI thread. Each time it runs, it
+ * applies items until its time budget is used up, and then posts itself again for the rest, so
+ * the UI gets to draw a frame in between.
+ *
+ * This only works if the UI executor always queues the batch for later (like Handler::post). An
+ * executor that runs tasks right away when it's already on the UI thread (like
+ * Activity::runOnUiThread) would run every batch inside one message. Batches run that way are
+ * run one after another (never nested inside each other), but the UI never gets its frame back.
+ *
+ * @param <ItemType> is the type of (already prepared) item to apply
+ */
+public class MarkerBatcher<ItemType> {
+    /** How long a batch may run for by default (about half of a 60 fps frame), in nanoseconds */
+    public static final long DEFAULT_FRAME_BUDGET_NANOS = 8_000_000;
+
+    /**
+     * Applies a single item (always called on the UI thread)
+     *
+     * @param <ItemType> is the type of item to apply
+     */
+    public interface Applier<ItemType> {
+        public void apply(ItemType item);
+    }
+
+    /**
+     * Hears about progress (always called on the UI thread, after each batch)
+     */
+    public interface ProgressListener {
+        public void onBatchApplied(MarkerBatcher<?> batcher);
+    }
+
+    /** Runs tasks on the UI thread */
+    private final Executor uiExecutor;
+    /** How long a batch may run for, in nanoseconds */
+    private final long frameBudgetNanos;
+    /** Applies each item */
+    private final Applier<ItemType> applier;
+    /** Items that have been added but not applied yet */
+    private final Queue<ItemType> pending;
+    /** Whether a batch has been posted to the UI thread and hasn't finished yet */
+    private final AtomicBoolean batchPosted;
+    /** How many items have been added */
+    private final AtomicInteger addedCount;
+    /** Whether finish() has been called (so no more items will be added) */
+    private volatile boolean finished;
+    /** Whether cancel() has been called */
+    private volatile boolean cancelled;
+    private volatile ProgressListener progressListener;
+    /** Whether a batch is running right now (only used on the UI thread) */
+    private boolean inBatch;
+    /** Whether a batch was asked to run while another one was running (only used on the UI thread) */
+    private boolean batchDeferred;
+
+    // these are only written on the UI thread
+    private volatile int appliedCount;
+    private volatile int batchCount;
+    private volatile long totalBatchNanos;
+    private volatile long maxBatchNanos;
+
+    /**
+     * Creates a new batcher that uses the default frame budget
+     *
+     * @param uiExecutor queues tasks to run on the UI thread (like Handler::post)
+     * @param applier applies each item
+     */
+    public MarkerBatcher(Executor uiExecutor, Applier<ItemType> applier) {
+        this(uiExecutor, DEFAULT_FRAME_BUDGET_NANOS, applier);
+    }
+
+    /**
+     * Creates a new batcher
+     *
+     * @param uiExecutor queues tasks to run on the UI thread (like Handler::post)
+     * @param frameBudgetNanos is how long each batch may run for (at least one item is always applied)
+     * @param applier applies each item
+     */
+    public MarkerBatcher(Executor uiExecutor, long frameBudgetNanos, Applier<ItemType> applier) {
+        this.uiExecutor = uiExecutor;
+        this.frameBudgetNanos = frameBudgetNanos;
+        this.applier = applier;
+        this.pending = new ConcurrentLinkedQueue<>();
+        this.batchPosted = new AtomicBoolean(false);
+        this.addedCount = new AtomicInteger();
+        this.finished = false;
+        this.cancelled = false;
+        this.progressListener = null;
+        this.inBatch = false;
+        this.batchDeferred = false;
+    }
+
+    /**
+     * @param listener will hear about progress after every batch (or null to stop listening)
+     */
+    public void setProgressListener(ProgressListener listener) {
+        this.progressListener = listener;
+    }
+
+    /**
+     * Queues up some (prepared) items to be applied on the UI thread. Adding items in chunks
+     * lets the first ones show up while the rest are still being prepared.
+     *
+     * @param items are the items to apply
+     */
+    public void addAll(Collection<ItemType> items) {
+        if (this.cancelled || items.isEmpty()) {
+            return;
+        }
+        this.pending.addAll(items);
+        this.addedCount.addAndGet(items.size());
+        this.postBatch();
+    }
+
+    /**
+     * Marks that every item has been added. (The batcher is only done once this is called and
+     * every item has been applied.)
+     */
+    public void finish() {
+        this.finished = true;
+        this.postBatch();
+    }
+
+    /**
+     * Drops every item that hasn't been applied yet, and ignores anything added from now on
+     */
+    public void cancel() {
+        this.cancelled = true;
+        this.pending.clear();
+    }
+
+    /**
+     * @return true once finish() has been called and every item has been applied
+     */
+    public boolean isDone() {
+        return this.finished && this.appliedCount == this.addedCount.get();
+    }
+
+    public int getAppliedCount() {
+        return this.appliedCount;
+    }
+
+    public int getAddedCount() {
+        return this.addedCount.get();
+    }
+
+    /**
+     * @return how many batches have run on the UI thread
+     */
+    public int getBatchCount() {
+        return this.batchCount;
+    }
+
+    /**
+     * @return the average time a batch held up the UI thread, in milliseconds
+     */
+    public double getAverageBatchMillis() {
+        int batches = this.batchCount;
+        if (batches == 0) {
+            return 0;
+        }
+        return this.totalBatchNanos / 1e6 / batches;
+    }
+
+    /**
+     * @return the longest time a batch held up the UI thread, in milliseconds
+     */
+    public double getMaxBatchMillis() {
+        return this.maxBatchNanos / 1e6;
+    }
+
+    /**
+     * Posts a batch to the UI thread, unless one is already waiting there
+     */
+    private void postBatch() {
+        if (this.batchPosted.compareAndSet(false, true)) {
+            this.uiExecutor.execute(this::runBatch);
+        }
+    }
+
+    /**
+     * Runs a batch (on the UI thread). If the UI executor ran this right away from inside another
+     * batch, it is left for that batch to run once it's done instead, so batches never nest.
+     */
+    private void runBatch() {
+        if (this.inBatch) {
+            this.batchDeferred = true;
+            return;
+        }
+        this.inBatch = true;
+        try {
+            do {
+                this.batchDeferred = false;
+                this.applyBatch();
+            } while (this.batchDeferred);
+        } finally {
+            this.inBatch = false;
+        }
+    }
+
+    /**
+     * Applies items until the frame budget is used up (runs on the UI thread)
+     */
+    private void applyBatch() {
+        long start = System.nanoTime();
+        int applied = this.appliedCount;
+        ItemType item = this.pending.poll();
+        while (item != null && !this.cancelled) {
+            this.applier.apply(item);
+            ++applied;
+            if (System.nanoTime() - start >= this.frameBudgetNanos) {
+                break;
+            }
+            item = this.pending.poll();
+        }
+        if (applied != this.appliedCount) {
+            long elapsedNanos = System.nanoTime() - start;
+            this.appliedCount = applied;
+            this.batchCount = this.batchCount + 1;
+            this.totalBatchNanos = this.totalBatchNanos + elapsedNanos;
+            this.maxBatchNanos = Math.max(this.maxBatchNanos, elapsedNanos);
+        }
+
+        this.batchPosted.set(false);
+        // items may have been added after the last poll, but before batchPosted was reset
+        if (!this.pending.isEmpty() && !this.cancelled) {
+            this.postBatch();
+        }
+
+        ProgressListener listener = this.progressListener;
+        if (listener != null) {
+            listener.onBatchApplied(this);
+        }
+    }
+}
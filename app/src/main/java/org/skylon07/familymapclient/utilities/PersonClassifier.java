@@ -0,0 +1,170 @@
+package org.skylon07.familymapclient.utilities;
+
+import java.util.BitSet;
+
+import models.Event;
+import models.Person;
+
+/**
+ * Sorts every person into the groups the event filters care about (the user, the father's side,
+ * the mother's side, males, and females), all in one go.
+ *
+ * Every person is given a dense index (0, 1, 2, ...; their FamilyGraph handle), and each group
+ * is a BitSet of those indexes. This way any combination of filters is just a few bitwise operations, instead of
+ * building (and hashing) a new Set of persons for every filter like Relationships does.
+ */
+public class PersonClassifier {
+    /** Has every person's index, and their parents' indexes */
+    private final FamilyGraph graph;
+    /** Just the user (empty if the user isn't one of the persons) */
+    private final BitSet self;
+    /** The user's father and all of his ancestors */
+    private final BitSet fathersSide;
+    /** The user's mother and all of her ancestors */
+    private final BitSet mothersSide;
+    /** Every male person */
+    private final BitSet males;
+    /** Every female person */
+    private final BitSet females;
+
+    /**
+     * Classifies a set of persons
+     *
+     * @param persons are all of the persons to classify
+     * @param userPersonID is the person ID of the user (everyone else is classified relative to them)
+     */
+    public PersonClassifier(Person[] persons, String userPersonID) {
+        this(new FamilyGraph(persons, new Event[0]), userPersonID);
+    }
+
+    /**
+     * Classifies everyone in a family graph (using the graph's handles as the person indexes)
+     *
+     * @param graph has all of the persons to classify
+     * @param userPersonID is the person ID of the user (everyone else is classified relative to them)
+     */
+    public PersonClassifier(FamilyGraph graph, String userPersonID) {
+        int numPersons = graph.getPersonCount();
+        this.graph = graph;
+        this.self = new BitSet(numPersons);
+        this.fathersSide = new BitSet(numPersons);
+        this.mothersSide = new BitSet(numPersons);
+        this.males = new BitSet(numPersons);
+        this.females = new BitSet(numPersons);
+
+        for (int personIdx = 0; personIdx < numPersons; ++personIdx) {
+            Person person = graph.getPerson(personIdx);
+            if ("m".equals(person.getGender())) {
+                this.males.set(personIdx);
+            } else if ("f".equals(person.getGender())) {
+                this.females.set(personIdx);
+            }
+        }
+
+        int userIdx = graph.getPersonIndex(userPersonID);
+        if (userIdx != FamilyGraph.NONE) {
+            this.self.set(userIdx);
+            this.markAncestors(graph.getFatherIndex(userIdx), this.fathersSide);
+            this.markAncestors(graph.getMotherIndex(userIdx), this.mothersSide);
+        }
+    }
+
+    /**
+     * @param personID is the ID of the person to look up
+     * @return the index of the person (or -1 if they aren't one of the classified persons)
+     */
+    public int getPersonIndex(String personID) {
+        return this.graph.getPersonIndex(personID);
+    }
+
+    /**
+     * @param personIdx is the index of a person
+     * @return the person with that index
+     */
+    public Person getPerson(int personIdx) {
+        return this.graph.getPerson(personIdx);
+    }
+
+    /**
+     * @return how many persons were classified
+     */
+    public int getPersonCount() {
+        return this.graph.getPersonCount();
+    }
+
+    /**
+     * @return the graph the person indexes are handles into
+     */
+    public FamilyGraph getGraph() {
+        return this.graph;
+    }
+
+    /**
+     * @return the index of the user (as a set, so it can be combined with the other groups)
+     */
+    public BitSet getSelf() {
+        return (BitSet) this.self.clone();
+    }
+
+    /**
+     * @return the indexes of the user's father and all of his ancestors
+     */
+    public BitSet getFathersSide() {
+        return (BitSet) this.fathersSide.clone();
+    }
+
+    /**
+     * @return the indexes of the user's mother and all of her ancestors
+     */
+    public BitSet getMothersSide() {
+        return (BitSet) this.mothersSide.clone();
+    }
+
+    /**
+     * @return the indexes of every male person
+     */
+    public BitSet getMales() {
+        return (BitSet) this.males.clone();
+    }
+
+    /**
+     * @return the indexes of every female person
+     */
+    public BitSet getFemales() {
+        return (BitSet) this.females.clone();
+    }
+
+    /**
+     * Marks a person and all of their ancestors as part of a group. This walks the tree with a
+     * stack (instead of recursing), and never walks past someone already in the group, so each
+     * person is only looked at once no matter how the tree loops back on itself.
+     *
+     * @param startIdx is the index of the first person to mark (or -1 for nobody)
+     * @param group is the group to mark them in
+     */
+    private void markAncestors(int startIdx, BitSet group) {
+        // nobody is walked past twice, and each walk pushes at most two parents, so the
+        // stack never needs more room than this
+        int[] toVisit = new int[2 * this.graph.getPersonCount() + 1];
+        int numToVisit = 0;
+        if (startIdx != FamilyGraph.NONE) {
+            toVisit[numToVisit++] = startIdx;
+        }
+        while (numToVisit > 0) {
+            int personIdx = toVisit[--numToVisit];
+            if (group.get(personIdx)) {
+                continue;
+            }
+            group.set(personIdx);
+
+            int fatherIdx = this.graph.getFatherIndex(personIdx);
+            if (fatherIdx != FamilyGraph.NONE) {
+                toVisit[numToVisit++] = fatherIdx;
+            }
+            int motherIdx = this.graph.getMotherIndex(personIdx);
+            if (motherIdx != FamilyGraph.NONE) {
+                toVisit[numToVisit++] = motherIdx;
+            }
+        }
+    }
+}
@@ -1,12 +1,55 @@
 package org.skylon07.familymapclient.utilities;
 
 import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
 
 import models.Person;
 
 public class Relationships {
+    /** Marks an ancestor found through the person's father */
+    public static final int PATERNAL_LINE = 1;
+    /** Marks an ancestor found through the person's mother */
+    public static final int MATERNAL_LINE = 1 << 1;
+
+    /**
+     * Returns every ancestor of a person, along with how many generations back they are and
+     * which side of the family they are on. The tree is walked breadth-first with a loop (so
+     * deep trees can't overflow the stack), and each ancestor is only looked up once, even when
+     * they show up on both sides of the tree. The result is remembered until the DataCache is
+     * reset, so asking for the same person again is free.
+     *
+     * @param person is the person to find the ancestors of
+     * @return the ancestors, closest generations first (or null if the person was null)
+     * @throws IOException whenever DataCache brokens
+     */
+    public static List<Ancestor> getAncestorsOf(Person person) throws IOException {
+        if (person == null) {
+            return null;
+        }
+
+        Map<String, List<Ancestor>> ancestorCache = DataCache.getInstance().getAncestorCache();
+        List<Ancestor> ancestors = ancestorCache.get(person.getPersonID());
+        if (ancestors == null) {
+            FamilyGraph graph = DataCache.getInstance().getLoadedFamilyGraph();
+            if (graph != null) {
+                ancestors = Relationships.findAncestorsIn(graph, person);
+            } else {
+                ancestors = Relationships.findAncestorsOf(person);
+            }
+            ancestorCache.put(person.getPersonID(), ancestors);
+        }
+        return ancestors;
+    }
+
     /**
      * Returns all parent ancestors for a given person
      *
@@ -20,111 +63,260 @@ public class Relationships {
         }
 
         Set<Person> parents = new HashSet<>();
-        Relationships.addAncestorsFor(person, parents);
+        for (Ancestor ancestor : Relationships.getAncestorsOf(person)) {
+            parents.add(ancestor.getPerson());
+        }
         return parents;
     }
 
     /**
-     * Takes a person and a Set of parents and adds each person's parents to the set recursively
+     * Returns a Set of all male ancestors for a given person
      *
-     * @param person is the person whose parents should be added to the set
-     * @param parents is the Set of parents to add to
+     * @param person is the person to return male parents for
+     * @return a Set of male parents for the person
      * @throws IOException whenever DataCache brokens
      */
-    private static void addAncestorsFor(Person person, Set<Person> parents) throws IOException {
-        DataCache data = DataCache.getInstance();
-
-        if (person.getFatherID() != null) {
-            Person father = data.getPersonByID(person.getFatherID());
-            parents.add(father);
-            Relationships.addAncestorsFor(father, parents);
-        }
-
-        if (person.getMotherID() != null) {
-            Person mother = data.getPersonByID(person.getMotherID());
-            parents.add(mother);
-            Relationships.addAncestorsFor(mother, parents);
-        }
+    public static Set<Person> getAllMaleAncestors(Person person) throws IOException {
+        return Relationships.getAncestorsWithGender(person, "m");
     }
 
     /**
-     * Takes a person and a Set of parents and adds each person's parents to the set recursively.
-     * This method will also check and only add family members of a certian gender.
+     * Returns a Set of all female ancestors for a given person
      *
-     * @param person is the person whose parents should be added to the set
-     * @param parents is the Set of parents to add to
-     * @param genderFilter is the gender to match for adding people to the set
+     * @param person is the person to return female parents for
+     * @return a Set of female parents for the person
      * @throws IOException whenever DataCache brokens
      */
-    private static void addAncestorsFor(Person person, Set<Person> parents, String genderFilter) throws IOException {
-        DataCache data = DataCache.getInstance();
+    public static Set<Person> getAllFemaleAncestors(Person person) throws IOException {
+        return Relationships.getAncestorsWithGender(person, "f");
+    }
 
-        if (person.getFatherID() != null) {
-            Person father = data.getPersonByID(person.getFatherID());
-            if (genderFilter.equals("m")) {
-                parents.add(father);
-            }
-            Relationships.addAncestorsFor(father, parents, genderFilter);
+    /**
+     * Maps a set of Persons to a Set of their IDs
+     *
+     * @param persons is the set of Persons to convert
+     * @return a Set of Strings representing the Persons IDs
+     */
+    public static Set<String> mapToIDs(Set<Person> persons) {
+        if (persons == null) {
+            throw new NullPointerException("Persons set cannot be null");
         }
 
-        if (person.getMotherID() != null) {
-            Person mother = data.getPersonByID(person.getMotherID());
-            if (genderFilter.equals("f")) {
-                parents.add(mother);
-            }
-            Relationships.addAncestorsFor(mother, parents, genderFilter);
+        Set<String> personIDs = new HashSet<>();
+        for (Person person : persons) {
+            personIDs.add(person.getPersonID());
         }
+        return personIDs;
     }
 
     /**
-     * Returns a Set of all male ancestors for a given person
+     * Returns a Set of the ancestors of a person that have a certain gender
      *
-     * @param person is the person to return male parents for
-     * @return a Set of male parents for the person
+     * @param person is the person to return the ancestors of
+     * @param gender is the gender to match
+     * @return a Set of the matching ancestors
      * @throws IOException whenever DataCache brokens
      */
-    public static Set<Person> getAllMaleAncestors(Person person) throws IOException {
+    private static Set<Person> getAncestorsWithGender(Person person, String gender) throws IOException {
         if (person == null) {
             return null;
         }
 
         Set<Person> ancestors = new HashSet<>();
-        Relationships.addAncestorsFor(person, ancestors, "m");
+        for (Ancestor ancestor : Relationships.getAncestorsOf(person)) {
+            if (gender.equals(ancestor.getPerson().getGender())) {
+                ancestors.add(ancestor.getPerson());
+            }
+        }
         return ancestors;
     }
 
     /**
-     * Returns a Set of all female ancestors for a given person
+     * Walks the tree above a person (without looking at the cache of results). Each generation's
+     * parents are looked up together, so anyone missing from the DataCache is loaded in one batch
+     * per generation instead of with a round trip each.
      *
-     * @param person is the person to return female parents for
-     * @return a Set of female parents for the person
+     * @param person is the person to find the ancestors of
+     * @return the (unmodifiable) ancestors, closest generations first
      * @throws IOException whenever DataCache brokens
      */
-    public static Set<Person> getAllFemaleAncestors(Person person) throws IOException {
-        if (person == null) {
-            return null;
+    private static List<Ancestor> findAncestorsOf(Person person) throws IOException {
+        DataCache data = DataCache.getInstance();
+        List<Ancestor> ancestors = new ArrayList<>();
+        Map<String, Ancestor> ancestorsByID = new HashMap<>();
+        Queue<Ancestor> toVisit = new ArrayDeque<>();
+
+        Map<String, Person> parents = data.getPersonsByIDs(Arrays.asList(person.getFatherID(), person.getMotherID()));
+        Relationships.visitParent(person.getFatherID(), parents, 1, PATERNAL_LINE, ancestors, ancestorsByID, toVisit);
+        Relationships.visitParent(person.getMotherID(), parents, 1, MATERNAL_LINE, ancestors, ancestorsByID, toVisit);
+        while (!toVisit.isEmpty()) {
+            List<Ancestor> children = new ArrayList<>(toVisit);
+            toVisit.clear();
+            List<String> parentIDs = new ArrayList<>();
+            for (Ancestor child : children) {
+                Relationships.addIfNotFound(child.getPerson().getFatherID(), ancestorsByID, parentIDs);
+                Relationships.addIfNotFound(child.getPerson().getMotherID(), ancestorsByID, parentIDs);
+            }
+            parents = data.getPersonsByIDs(parentIDs);
+
+            for (Ancestor child : children) {
+                int generation = child.generation + 1;
+                Person childPerson = child.getPerson();
+                Relationships.visitParent(childPerson.getFatherID(), parents, generation, child.lines, ancestors, ancestorsByID, toVisit);
+                Relationships.visitParent(childPerson.getMotherID(), parents, generation, child.lines, ancestors, ancestorsByID, toVisit);
+            }
         }
+        return Collections.unmodifiableList(ancestors);
+    }
 
-        Set<Person> ancestors = new HashSet<>();
-        Relationships.addAncestorsFor(person, ancestors, "f");
-        return ancestors;
+    /**
+     * Walks the tree above a person the same way findAncestorsOf() does, but through the handles
+     * of a family graph (so once everything is loaded, nothing is looked up by person ID past
+     * the person's own parents)
+     *
+     * @param graph has every person in the tree
+     * @param person is the person to find the ancestors of
+     * @return the (unmodifiable) ancestors, closest generations first
+     */
+    private static List<Ancestor> findAncestorsIn(FamilyGraph graph, Person person) {
+        List<Ancestor> ancestors = new ArrayList<>();
+        Ancestor[] ancestorsByIdx = new Ancestor[graph.getPersonCount()];
+        // everyone is queued once when they're found, and at most once more for each side of
+        // the family they're later found on, so the queue never needs more room than this
+        int[] toVisit = new int[3 * graph.getPersonCount()];
+        int numQueued = 0;
+
+        numQueued = Relationships.visitParent(graph.getPersonIndex(person.getFatherID()), graph, 1, PATERNAL_LINE,
+                ancestors, ancestorsByIdx, toVisit, numQueued);
+        numQueued = Relationships.visitParent(graph.getPersonIndex(person.getMotherID()), graph, 1, MATERNAL_LINE,
+                ancestors, ancestorsByIdx, toVisit, numQueued);
+        for (int queueIdx = 0; queueIdx < numQueued; ++queueIdx) {
+            int childIdx = toVisit[queueIdx];
+            Ancestor child = ancestorsByIdx[childIdx];
+            int generation = child.generation + 1;
+            numQueued = Relationships.visitParent(graph.getFatherIndex(childIdx), graph, generation, child.lines,
+                    ancestors, ancestorsByIdx, toVisit, numQueued);
+            numQueued = Relationships.visitParent(graph.getMotherIndex(childIdx), graph, generation, child.lines,
+                    ancestors, ancestorsByIdx, toVisit, numQueued);
+        }
+        return Collections.unmodifiableList(ancestors);
+    }
+
+    private static void addIfNotFound(String parentID, Map<String, Ancestor> ancestorsByID, List<String> parentIDs) {
+        if (parentID != null && !ancestorsByID.containsKey(parentID)) {
+            parentIDs.add(parentID);
+        }
     }
 
     /**
-     * Maps a set of Persons to a Set of their IDs
+     * Records that a parent was reached while walking the tree. Someone reached for the first
+     * time is queued to have their own parents visited. Someone reached again (when the tree
+     * loops back on itself) is only queued again if they were reached from a side of the family
+     * they weren't already known to be on, so that side can be passed up.
      *
-     * @param persons is the set of Persons to convert
-     * @return a Set of Strings representing the Persons IDs
+     * @param parentID is the person ID of the parent (or null if there isn't one)
+     * @param parents are the parents that were looked up this generation, by person ID
+     * @param generation is how many generations back the parent is
+     * @param lines are the sides of the family the parent was reached from
+     * @param ancestors is the list of every ancestor found so far
+     * @param ancestorsByID has every ancestor found so far, by person ID
+     * @param toVisit are the ancestors whose parents still need to be visited
      */
-    public static Set<String> mapToIDs(Set<Person> persons) {
-        if (persons == null) {
-            throw new NullPointerException("Persons set cannot be null");
+    private static void visitParent(String parentID, Map<String, Person> parents, int generation, int lines,
+                                    List<Ancestor> ancestors, Map<String, Ancestor> ancestorsByID,
+                                    Queue<Ancestor> toVisit) {
+        if (parentID == null) {
+            return;
         }
 
-        Set<String> personIDs = new HashSet<>();
-        for (Person person : persons) {
-            personIDs.add(person.getPersonID());
+        Ancestor ancestor = ancestorsByID.get(parentID);
+        if (ancestor == null) {
+            Person parent = parents.get(parentID);
+            if (parent == null) {
+                return;
+            }
+            ancestor = new Ancestor(parent, generation, lines);
+            ancestorsByID.put(parentID, ancestor);
+            ancestors.add(ancestor);
+            toVisit.add(ancestor);
+        } else if ((ancestor.lines | lines) != ancestor.lines) {
+            ancestor.lines |= lines;
+            toVisit.add(ancestor);
+        }
+    }
+
+    /**
+     * The same as the other visitParent(), but for walking a family graph
+     *
+     * @param parentIdx is the handle of the parent (or FamilyGraph.NONE if there isn't one)
+     * @param graph is the graph being walked
+     * @param generation is how many generations back the parent is
+     * @param lines are the sides of the family the parent was reached from
+     * @param ancestors is the list of every ancestor found so far
+     * @param ancestorsByIdx has every ancestor found so far, by handle
+     * @param toVisit is the queue of handles whose parents still need to be visited
+     * @param numQueued is how many handles have been put in the queue so far
+     * @return how many handles have been put in the queue now
+     */
+    private static int visitParent(int parentIdx, FamilyGraph graph, int generation, int lines,
+                                   List<Ancestor> ancestors, Ancestor[] ancestorsByIdx,
+                                   int[] toVisit, int numQueued) {
+        if (parentIdx == FamilyGraph.NONE) {
+            return numQueued;
+        }
+
+        Ancestor ancestor = ancestorsByIdx[parentIdx];
+        if (ancestor == null) {
+            ancestor = new Ancestor(graph.getPerson(parentIdx), generation, lines);
+            ancestorsByIdx[parentIdx] = ancestor;
+            ancestors.add(ancestor);
+            toVisit[numQueued++] = parentIdx;
+        } else if ((ancestor.lines | lines) != ancestor.lines) {
+            ancestor.lines |= lines;
+            toVisit[numQueued++] = parentIdx;
+        }
+        return numQueued;
+    }
+
+    /**
+     * An ancestor of some person, and how they are related to that person
+     */
+    public static class Ancestor {
+        private final Person person;
+        private final int generation;
+        private int lines;
+
+        private Ancestor(Person person, int generation, int lines) {
+            this.person = person;
+            this.generation = generation;
+            this.lines = lines;
+        }
+
+        public Person getPerson() {
+            return this.person;
+        }
+
+        /**
+         * @return how many generations back the ancestor is (1 for parents, 2 for grandparents...),
+         *      taking the closest path if there is more than one
+         */
+        public int getGeneration() {
+            return this.generation;
+        }
+
+        /**
+         * @return the sides of the family (PATERNAL_LINE and/or MATERNAL_LINE) the ancestor is on
+         */
+        public int getLines() {
+            return this.lines;
+        }
+
+        public boolean isPaternal() {
+            return (this.lines & PATERNAL_LINE) != 0;
+        }
+
+        public boolean isMaternal() {
+            return (this.lines & MATERNAL_LINE) != 0;
         }
-        return personIDs;
     }
 }
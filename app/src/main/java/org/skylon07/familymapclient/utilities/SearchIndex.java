@@ -0,0 +1,284 @@
+package org.skylon07.familymapclient.utilities;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.function.BooleanSupplier;
+
+/**
+ * A case-insensitive substring index over some text fields of a set of records, built once so
+ * that each search doesn't have to look at (or lowercase) every field of every record again.
+ *
+ * Records tend to share field values (lots of events happen in the same city, or have the same
+ * type), so the index first boils every field down to a dictionary of distinct lowercased values,
+ * each with a list of the records that have it. Searches then only have to find which values
+ * contain the query. Short queries just scan the dictionary; longer ones use a trigram index to
+ * narrow the dictionary down to the few values that could possibly match before checking them.
+ *
+ * @param <RecordType> is the type of record being indexed
+ */
+public class SearchIndex<RecordType> {
+    /** How many characters each gram in the gram index covers */
+    private static final int GRAM_LENGTH = 3;
+    /** How many values are checked between each check for whether a search was cancelled */
+    private static final int CANCEL_CHECK_INTERVAL = 1024;
+
+    /**
+     * Gets one of the searchable fields of a record
+     *
+     * @param <RecordType> is the type of record the field belongs to
+     */
+    public interface FieldGetter<RecordType> {
+        public String get(RecordType record);
+    }
+
+    /** Every record in the index, by record ID */
+    private final List<RecordType> records;
+    /** Every distinct (lowercased) field value, by value ID */
+    private final String[] values;
+    /** The (sorted) IDs of the records having each value, by value ID */
+    private final int[][] recordIDsByValueID;
+    /** The (sorted) IDs of the values containing each trigram, by the (packed) trigram */
+    private final Map<Long, int[]> valueIDsByGram;
+
+    /**
+     * Builds a new index
+     *
+     * @param records are the records to index (search results come back in this same order)
+     * @param fields get each of the fields to make searchable
+     */
+    @SafeVarargs
+    public SearchIndex(Collection<RecordType> records, FieldGetter<RecordType>... fields) {
+        this.records = Collections.unmodifiableList(new ArrayList<>(records));
+
+        Map<String, Integer> valueIDs = new HashMap<>();
+        // most field values repeat (and are usually even the same instance; see DataCache), so
+        // each distinct one is only lowercased once
+        Map<String, Integer> valueIDsByExactValue = new HashMap<>();
+        List<String> values = new ArrayList<>();
+        List<IntList> recordIDsByValueID = new ArrayList<>();
+        for (int recordID = 0; recordID < this.records.size(); ++recordID) {
+            RecordType record = this.records.get(recordID);
+            for (FieldGetter<RecordType> field : fields) {
+                String exactValue = field.get(record);
+                if (exactValue == null) {
+                    continue;
+                }
+                Integer valueID = valueIDsByExactValue.get(exactValue);
+                if (valueID == null) {
+                    String value = exactValue.toLowerCase(Locale.ROOT);
+                    valueID = valueIDs.get(value);
+                    if (valueID == null) {
+                        valueID = values.size();
+                        valueIDs.put(value, valueID);
+                        values.add(value);
+                        recordIDsByValueID.add(new IntList());
+                    }
+                    valueIDsByExactValue.put(exactValue, valueID);
+                }
+                recordIDsByValueID.get(valueID).addIfNotLast(recordID);
+            }
+        }
+
+        this.values = values.toArray(new String[values.size()]);
+        this.recordIDsByValueID = new int[this.values.length][];
+        Map<Long, IntList> valueIDsByGram = new HashMap<>();
+        for (int valueID = 0; valueID < this.values.length; ++valueID) {
+            this.recordIDsByValueID[valueID] = recordIDsByValueID.get(valueID).toArray();
+            String value = this.values[valueID];
+            for (int start = 0; start + GRAM_LENGTH <= value.length(); ++start) {
+                Long gram = SearchIndex.packGram(value, start);
+                IntList gramValueIDs = valueIDsByGram.get(gram);
+                if (gramValueIDs == null) {
+                    gramValueIDs = new IntList();
+                    valueIDsByGram.put(gram, gramValueIDs);
+                }
+                gramValueIDs.addIfNotLast(valueID);
+            }
+        }
+        this.valueIDsByGram = new HashMap<>();
+        for (Map.Entry<Long, IntList> entry : valueIDsByGram.entrySet()) {
+            this.valueIDsByGram.put(entry.getKey(), entry.getValue().toArray());
+        }
+    }
+
+    /**
+     * Finds every record with a field containing the query (ignoring case). The query is taken
+     * literally; no characters in it have any special meaning.
+     *
+     * @param query is the text to search for
+     * @return the matching records, in the order they were given to the index
+     */
+    public List<RecordType> search(String query) {
+        return this.search(query, () -> false);
+    }
+
+    /**
+     * Like search(String), but gives up partway through once the search is cancelled (like when
+     * the user has already typed something else)
+     *
+     * @param query is the text to search for
+     * @param isCancelled is checked every so often, and should return true once the search isn't wanted
+     * @return the matching records, in the order they were given to the index
+     * @throws CancellationException when the search was cancelled before it finished
+     */
+    public List<RecordType> search(String query, BooleanSupplier isCancelled) {
+        String lowerQuery = query.toLowerCase(Locale.ROOT);
+        BitSet matchingRecordIDs = new BitSet(this.records.size());
+        if (lowerQuery.length() < GRAM_LENGTH) {
+            for (int valueID = 0; valueID < this.values.length; ++valueID) {
+                SearchIndex.checkCancelled(valueID, isCancelled);
+                this.markIfMatching(valueID, lowerQuery, matchingRecordIDs);
+            }
+        } else {
+            int[] candidateValueIDs = this.findCandidateValueIDs(lowerQuery);
+            for (int candidateIdx = 0; candidateIdx < candidateValueIDs.length; ++candidateIdx) {
+                SearchIndex.checkCancelled(candidateIdx, isCancelled);
+                this.markIfMatching(candidateValueIDs[candidateIdx], lowerQuery, matchingRecordIDs);
+            }
+        }
+
+        List<RecordType> matches = new ArrayList<>(matchingRecordIDs.cardinality());
+        for (int recordID = matchingRecordIDs.nextSetBit(0); recordID >= 0; recordID = matchingRecordIDs.nextSetBit(recordID + 1)) {
+            matches.add(this.records.get(recordID));
+        }
+        return matches;
+    }
+
+    /**
+     * @return how many distinct field values are in the index
+     */
+    public int getValueCount() {
+        return this.values.length;
+    }
+
+    /**
+     * Finds the values that contain every trigram of a query. Every value containing the query
+     * is in here, but not everything in here necessarily contains the query.
+     *
+     * @param lowerQuery is the lowercased query (at least GRAM_LENGTH characters long)
+     * @return the (sorted) IDs of the candidate values
+     */
+    private int[] findCandidateValueIDs(String lowerQuery) {
+        int numGrams = lowerQuery.length() - GRAM_LENGTH + 1;
+        int[][] gramValueIDs = new int[numGrams][];
+        for (int start = 0; start < numGrams; ++start) {
+            int[] valueIDs = this.valueIDsByGram.get(SearchIndex.packGram(lowerQuery, start));
+            if (valueIDs == null) {
+                return new int[0];
+            }
+            gramValueIDs[start] = valueIDs;
+        }
+
+        // intersecting the shortest lists first keeps every step as small as possible
+        Arrays.sort(gramValueIDs, (int[] list1, int[] list2) -> Integer.compare(list1.length, list2.length));
+        int[] candidates = gramValueIDs[0];
+        for (int listIdx = 1; listIdx < gramValueIDs.length && candidates.length > 0; ++listIdx) {
+            candidates = SearchIndex.intersect(candidates, gramValueIDs[listIdx]);
+        }
+        return candidates;
+    }
+
+    /**
+     * Marks every record having a value, if that value contains the query
+     *
+     * @param valueID is the ID of the value to check
+     * @param lowerQuery is the lowercased query
+     * @param matchingRecordIDs is where matching records are marked
+     */
+    private void markIfMatching(int valueID, String lowerQuery, BitSet matchingRecordIDs) {
+        if (this.values[valueID].contains(lowerQuery)) {
+            for (int recordID : this.recordIDsByValueID[valueID]) {
+                matchingRecordIDs.set(recordID);
+            }
+        }
+    }
+
+    /**
+     * Throws if a search was cancelled (only actually checking every CANCEL_CHECK_INTERVAL steps,
+     * to keep the check cheap)
+     *
+     * @param step is how many values the search has checked so far
+     * @param isCancelled returns true once the search was cancelled
+     * @throws CancellationException when the search was cancelled
+     */
+    static void checkCancelled(int step, BooleanSupplier isCancelled) {
+        if (step % CANCEL_CHECK_INTERVAL == 0 && isCancelled.getAsBoolean()) {
+            throw new CancellationException("Search was cancelled");
+        }
+    }
+
+    /**
+     * Packs the trigram starting at some index of a string into a single number
+     *
+     * @param string is the string to take the trigram from
+     * @param start is the index the trigram starts at
+     * @return the packed trigram
+     */
+    private static Long packGram(String string, int start) {
+        long gram = 0;
+        for (int charIdx = start; charIdx < start + GRAM_LENGTH; ++charIdx) {
+            gram = (gram << Character.SIZE) | string.charAt(charIdx);
+        }
+        return gram;
+    }
+
+    /**
+     * @param list1 is a sorted list of IDs
+     * @param list2 is another sorted list of IDs
+     * @return a (sorted) list of the IDs in both lists
+     */
+    private static int[] intersect(int[] list1, int[] list2) {
+        int[] both = new int[Math.min(list1.length, list2.length)];
+        int numBoth = 0;
+        int idx1 = 0;
+        int idx2 = 0;
+        while (idx1 < list1.length && idx2 < list2.length) {
+            if (list1[idx1] < list2[idx2]) {
+                ++idx1;
+            } else if (list1[idx1] > list2[idx2]) {
+                ++idx2;
+            } else {
+                both[numBoth++] = list1[idx1];
+                ++idx1;
+                ++idx2;
+            }
+        }
+        return Arrays.copyOf(both, numBoth);
+    }
+
+    /**
+     * A growable list of ints (to avoid boxing every ID while the index is built)
+     */
+    private static class IntList {
+        private int[] items = new int[4];
+        private int size = 0;
+
+        /**
+         * Adds an item, unless it is the same as the last item added. Since IDs are always
+         * added in increasing order, this keeps the list sorted and free of duplicates.
+         *
+         * @param item is the item to add
+         */
+        void addIfNotLast(int item) {
+            if (this.size > 0 && this.items[this.size - 1] == item) {
+                return;
+            }
+            if (this.size == this.items.length) {
+                this.items = Arrays.copyOf(this.items, this.size * 2);
+            }
+            this.items[this.size++] = item;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(this.items, this.size);
+        }
+    }
+}
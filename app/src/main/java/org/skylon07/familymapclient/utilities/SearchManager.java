@@ -3,82 +3,91 @@ package org.skylon07.familymapclient.utilities;
 import android.content.Context;
 
 import java.io.IOException;
-import java.util.HashSet;
-import java.util.Set;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.function.BooleanSupplier;
 
 import models.Event;
 import models.Person;
 
+/**
+ * Searches persons and events for text typed in by the user. The actual matching is done by
+ * SearchIndexes that the DataCache builds once per load, so searching doesn't have to look at
+ * every field of every person or event on every keystroke.
+ */
 public class SearchManager {
+    /**
+     * Finds every person whose first or last name contains some text (ignoring case)
+     *
+     * @param query is the text to search for (taken literally)
+     * @return the matching persons (or null if the query was null)
+     * @throws IOException when the persons couldn't be loaded
+     */
     public Person[] searchPeople(String query) throws IOException {
+        return this.searchPeople(query, () -> false);
+    }
+
+    /**
+     * Like searchPeople(String), but gives up partway through once the search is cancelled
+     *
+     * @param query is the text to search for (taken literally)
+     * @param isCancelled is checked every so often, and should return true once the search isn't wanted
+     * @return the matching persons (or null if the query was null)
+     * @throws IOException when the persons couldn't be loaded
+     * @throws CancellationException when the search was cancelled before it finished
+     */
+    public Person[] searchPeople(String query, BooleanSupplier isCancelled) throws IOException {
         if (query == null) {
             return null;
         }
 
-        String queryRegex = ".*" + query.toLowerCase() + ".*";
-        DataCache data = DataCache.getInstance();
-
-        PersonStringCallback[] dataCallbacksToSearch = {
-                Person::getFirstName,
-                Person::getLastName
-        };
-
-        Set<Person> filteredPeople = new HashSet<>();
-        for (Person person : data.getAllPersons()) {
-            boolean shouldAdd = false;
-            for (PersonStringCallback dataGetter : dataCallbacksToSearch) {
-                String personData = dataGetter.call(person);
-                if (personData.toLowerCase().matches(queryRegex)) {
-                    shouldAdd = true;
-                    break;
-                }
-            }
-            if (shouldAdd) {
-                filteredPeople.add(person);
-            }
-        }
-        return filteredPeople.toArray(new Person[filteredPeople.size()]);
+        List<Person> matches = DataCache.getInstance().getPersonSearchIndex().search(query, isCancelled);
+        return matches.toArray(new Person[matches.size()]);
     }
 
+    /**
+     * Finds every event shown on the map (according to the settings) whose type, country, city,
+     * or year contains some text (ignoring case)
+     *
+     * @param query is the text to search for (taken literally)
+     * @param activity is the context to read the settings from
+     * @return the matching events (or null if the query was null)
+     * @throws IOException when the events couldn't be loaded
+     */
     public Event[] searchEvents(String query, Context activity) throws IOException {
+        return this.searchEvents(query, activity, () -> false);
+    }
+
+    /**
+     * Like searchEvents(String, Context), but gives up partway through once the search is cancelled
+     *
+     * @param query is the text to search for (taken literally)
+     * @param activity is the context to read the settings from
+     * @param isCancelled is checked every so often, and should return true once the search isn't wanted
+     * @return the matching events (or null if the query was null)
+     * @throws IOException when the events couldn't be loaded
+     * @throws CancellationException when the search was cancelled before it finished
+     */
+    public Event[] searchEvents(String query, Context activity, BooleanSupplier isCancelled) throws IOException {
         if (query == null) {
             return null;
         }
 
-        String queryRegex = ".*" + query.toLowerCase() + ".*";
-        EventManager data = new EventManager();
-
-        EventStringCallback[] dataCallbacksToSearch = {
-                Event::getEventType,
-                Event::getCountry,
-                Event::getCity,
-                (Event event) -> {
-                    return Integer.toString(event.getYear());
-                }
-        };
+        List<Event> matches = DataCache.getInstance().getEventSearchIndex().search(query, isCancelled);
+        if (matches.isEmpty()) {
+            return new Event[0];
+        }
 
-        Set<Event> filteredEvents = new HashSet<>();
-        for (Event event : data.getEventsWithSettingsFilter(activity)) {
-            boolean shouldAdd = false;
-            for (EventStringCallback dataGetter : dataCallbacksToSearch) {
-                String eventData = dataGetter.call(event);
-                if (eventData.toLowerCase().matches(queryRegex)) {
-                    shouldAdd = true;
-                    break;
-                }
-            }
-            if (shouldAdd) {
+        EventManager data = new EventManager();
+        List<Event> filteredEvents = new ArrayList<>();
+        for (int eventIdx = 0; eventIdx < matches.size(); ++eventIdx) {
+            SearchIndex.checkCancelled(eventIdx, isCancelled);
+            Event event = matches.get(eventIdx);
+            if (data.isShownWithSettingsFilter(event, activity)) {
                 filteredEvents.add(event);
             }
         }
         return filteredEvents.toArray(new Event[filteredEvents.size()]);
     }
-
-    private interface PersonStringCallback {
-        public String call(Person person);
-    }
-
-    private interface EventStringCallback {
-        public String call(Event event);
-    }
 }
@@ -0,0 +1,177 @@
+package org.skylon07.familymapclient.utilities;
+
+import java.io.IOException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Runs searches one at a time on a dedicated worker thread, where each new query supersedes the
+ * one before it.
+ *
+ * Every query gets a generation number. Submitting a new query (or calling cancel()) bumps the
+ * latest generation, which the running search notices the next time it checks isCancelled, so
+ * it stops early instead of finishing a scan nobody wants anymore. Queries still waiting in line
+ * are skipped outright. Results are also checked against the latest generation right before
+ * they are delivered, so a slow, older search can never overwrite a newer one's results.
+ *
+ * @param <ResultType> is the type of result a search gives
+ */
+public class SearchPipeline<ResultType> {
+    /**
+     * Does the actual searching (on the worker thread)
+     *
+     * @param <ResultType> is the type of result a search gives
+     */
+    public interface Searcher<ResultType> {
+        /**
+         * @param query is the query to search for
+         * @param isCancelled should be checked every so often; once it returns true, the search
+         *      should stop (by returning anything, or by throwing a CancellationException)
+         * @return the results of the search
+         * @throws IOException when the search couldn't be done
+         */
+        public ResultType search(String query, BooleanSupplier isCancelled) throws IOException;
+    }
+
+    /**
+     * Hears about the results of the latest query (on the delivery executor)
+     *
+     * @param <ResultType> is the type of result a search gives
+     */
+    public interface Listener<ResultType> {
+        public void onResults(String query, ResultType results);
+        public void onError(String query, IOException err);
+    }
+
+    private final Searcher<ResultType> searcher;
+    /** Where results are delivered (like Activity::runOnUiThread) */
+    private final Executor deliveryExecutor;
+    private final Listener<ResultType> listener;
+    /** The one thread searches run on */
+    private final ExecutorService worker;
+    /** The generation of the latest query; anything older is stale */
+    private final AtomicInteger latestGeneration;
+
+    private final AtomicInteger completedCount;
+    private final AtomicInteger cancelledCount;
+    private final AtomicInteger droppedCount;
+
+    /**
+     * Creates a new pipeline (with its own worker thread)
+     *
+     * @param searcher does the actual searching
+     * @param deliveryExecutor is where results are delivered (like Activity::runOnUiThread)
+     * @param listener hears about the results
+     */
+    public SearchPipeline(Searcher<ResultType> searcher, Executor deliveryExecutor, Listener<ResultType> listener) {
+        this.searcher = searcher;
+        this.deliveryExecutor = deliveryExecutor;
+        this.listener = listener;
+        this.worker = Executors.newSingleThreadExecutor((Runnable task) -> {
+            Thread thread = new Thread(task, "SearchPipeline-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.latestGeneration = new AtomicInteger();
+        this.completedCount = new AtomicInteger();
+        this.cancelledCount = new AtomicInteger();
+        this.droppedCount = new AtomicInteger();
+    }
+
+    /**
+     * Starts searching for a query, superseding (and cancelling) any earlier query
+     *
+     * @param query is the query to search for
+     * @return the generation number of the new query
+     */
+    public int submit(String query) {
+        int generation = this.latestGeneration.incrementAndGet();
+        this.worker.execute(() -> this.runSearch(query, generation));
+        return generation;
+    }
+
+    /**
+     * Cancels the query that is running or waiting (if any), without starting a new one
+     */
+    public void cancel() {
+        this.latestGeneration.incrementAndGet();
+    }
+
+    /**
+     * Cancels everything and stops the worker thread (the pipeline can't be used after this)
+     */
+    public void shutdown() {
+        this.cancel();
+        this.worker.shutdown();
+    }
+
+    /**
+     * @return how many searches finished and had their results delivered
+     */
+    public int getCompletedCount() {
+        return this.completedCount.get();
+    }
+
+    /**
+     * @return how many searches were skipped or stopped early because a newer query came along
+     */
+    public int getCancelledCount() {
+        return this.cancelledCount.get();
+    }
+
+    /**
+     * @return how many searches finished, but had their results dropped for being out of date
+     */
+    public int getDroppedCount() {
+        return this.droppedCount.get();
+    }
+
+    private void runSearch(String query, int generation) {
+        BooleanSupplier isCancelled = () -> generation != this.latestGeneration.get();
+        if (isCancelled.getAsBoolean()) {
+            this.cancelledCount.incrementAndGet();
+            return;
+        }
+
+        ResultType results;
+        try {
+            results = this.searcher.search(query, isCancelled);
+        } catch (CancellationException err) {
+            this.cancelledCount.incrementAndGet();
+            return;
+        } catch (IOException err) {
+            this.deliver(generation, () -> this.listener.onError(query, err));
+            return;
+        }
+        if (isCancelled.getAsBoolean()) {
+            // the searcher returned early (or just finished too late)
+            this.cancelledCount.incrementAndGet();
+            return;
+        }
+        this.deliver(generation, () -> {
+            this.completedCount.incrementAndGet();
+            this.listener.onResults(query, results);
+        });
+    }
+
+    /**
+     * Delivers something to the listener, unless a newer query has come along by the time it
+     * gets to the delivery executor
+     *
+     * @param generation is the generation of the query being delivered
+     * @param delivery tells the listener
+     */
+    private void deliver(int generation, Runnable delivery) {
+        this.deliveryExecutor.execute(() -> {
+            if (generation != this.latestGeneration.get()) {
+                this.droppedCount.incrementAndGet();
+                return;
+            }
+            delivery.run();
+        });
+    }
+}
@@ -0,0 +1,90 @@
+package org.skylon07.familymapclient.utilities;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * Coalesces concurrent loads of the same key. The first caller to miss on a key performs the
+ * load, and every other caller that misses on that key while the load is still running waits
+ * for (and shares) its result instead of starting a load of their own.
+ *
+ * @param <K> is the type of key being loaded
+ * @param <V> is the type of value a load produces
+ */
+class SingleFlight<K, V> {
+    /**
+     * The work that a single flight performs
+     *
+     * @param <V> is the type of value the load produces
+     */
+    interface Loader<V> {
+        public V load() throws IOException;
+    }
+
+    /** The loads currently running, by the key they are loading */
+    private final ConcurrentHashMap<K, CompletableFuture<V>> inFlight;
+
+    public SingleFlight() {
+        this.inFlight = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Runs a load for a key, or waits on the load already running for that key
+     *
+     * @param key is the key to load
+     * @param loader is the work to do if no load is running for the key yet
+     * @return the value produced by whichever load ended up running
+     * @throws IOException when the load (ours or someone else's) fails
+     */
+    public V run(K key, Loader<V> loader) throws IOException {
+        CompletableFuture<V> flight = new CompletableFuture<>();
+        CompletableFuture<V> runningFlight = this.inFlight.putIfAbsent(key, flight);
+        if (runningFlight != null) {
+            return SingleFlight.await(runningFlight);
+        }
+
+        try {
+            V value = loader.load();
+            flight.complete(value);
+            return value;
+        } catch (IOException | RuntimeException | Error err) {
+            // waiters need to hear about failures too, otherwise they'd wait forever
+            flight.completeExceptionally(err);
+            throw err;
+        } finally {
+            this.inFlight.remove(key, flight);
+        }
+    }
+
+    /**
+     * Waits on a future, translating its failures back into the exceptions loads can throw
+     *
+     * @param future is the future to wait on
+     * @param <V> is the type of value the future produces
+     * @return the value the future completed with
+     * @throws IOException when the future failed with an IOException (or was interrupted)
+     */
+    static <V> V await(Future<V> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException err) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting on a load");
+        } catch (ExecutionException err) {
+            Throwable cause = err.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            } else {
+                throw new IOException("Load failed", cause);
+            }
+        }
+    }
+}
@@ -0,0 +1,336 @@
+package org.skylon07.familymapclient.utilities;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Finds the items inside a latitude/longitude box without looking at every item.
+ *
+ * The world is cut into a grid of buckets (sized so each holds only a handful of items), and
+ * the items are sorted by bucket into one packed array. A query only has to look at the items in
+ * the buckets overlapping the box, which for a phone-screen-sized box is a tiny fraction of them.
+ *
+ * @param <ItemType> is the type of item being indexed
+ */
+public class SpatialIndex<ItemType> {
+    /** About how many items each bucket should hold */
+    private static final int TARGET_ITEMS_PER_BUCKET = 8;
+    /** The most rows of buckets there can be (there are twice as many columns) */
+    private static final int MAX_BUCKET_ROWS = 1024;
+
+    /**
+     * Gets where an item is
+     *
+     * @param <ItemType> is the type of item to locate
+     */
+    public interface Locator<ItemType> {
+        public double getLatitude(ItemType item);
+        public double getLongitude(ItemType item);
+    }
+
+    /** Every item, sorted by bucket */
+    private final List<ItemType> items;
+    /** The latitude of each item (in the same order as the items) */
+    private final double[] latitudes;
+    /** The longitude of each item (in the same order as the items) */
+    private final double[] longitudes;
+    /** How many rows of buckets there are (from south to north) */
+    private final int bucketRows;
+    /** How many columns of buckets there are (from west to east) */
+    private final int bucketColumns;
+    /** Where each bucket's items start in the items list (with one extra at the end) */
+    private final int[] bucketStarts;
+
+    /**
+     * Builds a new index
+     *
+     * @param items are the items to index
+     * @param locator gets where each item is
+     */
+    public SpatialIndex(Collection<ItemType> items, Locator<ItemType> locator) {
+        int numItems = items.size();
+        int rows = (int) Math.ceil(Math.sqrt((double) numItems / TARGET_ITEMS_PER_BUCKET / 2));
+        this.bucketRows = Math.max(1, Math.min(rows, MAX_BUCKET_ROWS));
+        this.bucketColumns = 2 * this.bucketRows;
+
+        // a counting sort puts every item in its bucket in two passes
+        int[] itemBuckets = new int[numItems];
+        double[] itemLatitudes = new double[numItems];
+        double[] itemLongitudes = new double[numItems];
+        this.bucketStarts = new int[this.bucketRows * this.bucketColumns + 1];
+        int itemIdx = 0;
+        for (ItemType item : items) {
+            itemLatitudes[itemIdx] = locator.getLatitude(item);
+            itemLongitudes[itemIdx] = locator.getLongitude(item);
+            int bucket = this.getRow(itemLatitudes[itemIdx]) * this.bucketColumns + this.getColumn(itemLongitudes[itemIdx]);
+            itemBuckets[itemIdx] = bucket;
+            ++this.bucketStarts[bucket + 1];
+            ++itemIdx;
+        }
+        for (int bucket = 0; bucket < this.bucketStarts.length - 1; ++bucket) {
+            this.bucketStarts[bucket + 1] += this.bucketStarts[bucket];
+        }
+
+        int[] nextSlots = this.bucketStarts.clone();
+        Object[] sortedItems = new Object[numItems];
+        this.latitudes = new double[numItems];
+        this.longitudes = new double[numItems];
+        itemIdx = 0;
+        for (ItemType item : items) {
+            int slot = nextSlots[itemBuckets[itemIdx]]++;
+            sortedItems[slot] = item;
+            this.latitudes[slot] = itemLatitudes[itemIdx];
+            this.longitudes[slot] = itemLongitudes[itemIdx];
+            ++itemIdx;
+        }
+        List<ItemType> itemsList = new ArrayList<>(numItems);
+        for (Object item : sortedItems) {
+            @SuppressWarnings("unchecked")
+            ItemType typedItem = (ItemType) item;
+            itemsList.add(typedItem);
+        }
+        this.items = itemsList;
+    }
+
+    /**
+     * @return how many items are in the index
+     */
+    public int size() {
+        return this.items.size();
+    }
+
+    /**
+     * Finds the items inside a box. When there are more than the limit, the ones nearest the
+     * middle of the box are kept: buckets are visited in rings going out from the middle bucket,
+     * and the items of the ring that goes over the limit are sorted by how far they are from the
+     * middle. (So a screen-sized box drops the items around its edges, not everything north or
+     * east of some point.)
+     *
+     * @param bounds is the box to look in
+     * @param limit is the most items to return
+     * @return the items inside the box (edges included)
+     */
+    public List<ItemType> query(Bounds bounds, int limit) {
+        int firstRow = this.getRow(bounds.south);
+        int lastRow = this.getRow(bounds.north);
+        int firstColumn = this.getColumn(bounds.west);
+        // (columns past the last one wrap around to the first, for boxes across the antimeridian)
+        int numColumns = this.getColumn(bounds.east) - firstColumn + 1;
+        if (bounds.west > bounds.east) {
+            numColumns += this.bucketColumns;
+        }
+        numColumns = Math.max(1, Math.min(numColumns, this.bucketColumns));
+
+        int middleRow = (firstRow + lastRow) / 2;
+        int middleColumnOffset = (numColumns - 1) / 2;
+        int numRings = Math.max(
+                Math.max(middleRow - firstRow, lastRow - middleRow),
+                Math.max(middleColumnOffset, numColumns - 1 - middleColumnOffset)
+        ) + 1;
+        FoundItems found = new FoundItems();
+        for (int ring = 0; ring < numRings && found.count < limit; ++ring) {
+            int ringStart = found.count;
+            int ringWest = middleColumnOffset - ring;
+            int ringEast = middleColumnOffset + ring;
+            for (int row = Math.max(firstRow, middleRow - ring); row <= Math.min(lastRow, middleRow + ring); ++row) {
+                if (row == middleRow - ring || row == middleRow + ring) {
+                    // the top and bottom rows of the ring are whole...
+                    for (int columnOffset = Math.max(0, ringWest); columnOffset <= Math.min(numColumns - 1, ringEast); ++columnOffset) {
+                        this.findInBucket(row, firstColumn + columnOffset, bounds, found);
+                    }
+                } else {
+                    // ...and the rest only have their ends
+                    if (ringWest >= 0) {
+                        this.findInBucket(row, firstColumn + ringWest, bounds, found);
+                    }
+                    if (ringEast < numColumns) {
+                        this.findInBucket(row, firstColumn + ringEast, bounds, found);
+                    }
+                }
+            }
+            if (found.count > limit) {
+                this.sortByDistance(found.indexes, ringStart, found.count, bounds);
+                found.count = limit;
+            }
+        }
+
+        List<ItemType> foundItems = new ArrayList<>(found.count);
+        for (int foundIdx = 0; foundIdx < found.count; ++foundIdx) {
+            foundItems.add(this.items.get(found.indexes[foundIdx]));
+        }
+        return foundItems;
+    }
+
+    /**
+     * Finds the items of one bucket that are inside a box
+     *
+     * @param row is the row of the bucket
+     * @param column is the column of the bucket (which wraps around past the last column)
+     * @param bounds is the box to look in
+     * @param found collects the indexes of the items inside the box
+     */
+    private void findInBucket(int row, int column, Bounds bounds, FoundItems found) {
+        int bucket = row * this.bucketColumns + column % this.bucketColumns;
+        for (int itemIdx = this.bucketStarts[bucket]; itemIdx < this.bucketStarts[bucket + 1]; ++itemIdx) {
+            if (bounds.contains(this.latitudes[itemIdx], this.longitudes[itemIdx])) {
+                found.add(itemIdx);
+            }
+        }
+    }
+
+    /**
+     * Sorts some of the items found by a query by how far they are from the middle of the box
+     *
+     * @param found are the indexes of the items found
+     * @param start is the first of them to sort
+     * @param end is one past the last of them to sort
+     * @param bounds is the box that was queried
+     */
+    private void sortByDistance(int[] found, int start, int end, Bounds bounds) {
+        double middleLatitude = (bounds.south + bounds.north) / 2;
+        double middleLongitude = Bounds.wrapLongitude(bounds.west + bounds.getLongitudeSpan() / 2);
+        Integer[] ordered = new Integer[end - start];
+        double[] distances = new double[end - start];
+        for (int offset = 0; offset < ordered.length; ++offset) {
+            int itemIdx = found[start + offset];
+            double latitudeDistance = this.latitudes[itemIdx] - middleLatitude;
+            double longitudeDistance = Math.abs(this.longitudes[itemIdx] - middleLongitude);
+            longitudeDistance = Math.min(longitudeDistance, 360 - longitudeDistance);
+            distances[offset] = latitudeDistance * latitudeDistance + longitudeDistance * longitudeDistance;
+            ordered[offset] = offset;
+        }
+        Arrays.sort(ordered, (Integer offset1, Integer offset2) -> Double.compare(distances[offset1], distances[offset2]));
+        int[] sorted = new int[ordered.length];
+        for (int offset = 0; offset < ordered.length; ++offset) {
+            sorted[offset] = found[start + ordered[offset]];
+        }
+        System.arraycopy(sorted, 0, found, start, sorted.length);
+    }
+
+    private int getRow(double latitude) {
+        int row = (int) ((latitude + 90) / 180 * this.bucketRows);
+        return Math.max(0, Math.min(row, this.bucketRows - 1));
+    }
+
+    private int getColumn(double longitude) {
+        int column = (int) ((longitude + 180) / 360 * this.bucketColumns);
+        return Math.max(0, Math.min(column, this.bucketColumns - 1));
+    }
+
+    /**
+     * The indexes of the items a query has found so far
+     */
+    private static class FoundItems {
+        int[] indexes = new int[16];
+        int count = 0;
+
+        void add(int itemIdx) {
+            if (this.count == this.indexes.length) {
+                this.indexes = Arrays.copyOf(this.indexes, this.count * 2);
+            }
+            this.indexes[this.count++] = itemIdx;
+        }
+    }
+
+    /**
+     * A latitude/longitude box. When west is greater than east, the box wraps around the back of
+     * the world (across the 180th meridian).
+     */
+    public static class Bounds {
+        public final double south;
+        public final double west;
+        public final double north;
+        public final double east;
+
+        public Bounds(double south, double west, double north, double east) {
+            this.south = south;
+            this.west = west;
+            this.north = north;
+            this.east = east;
+        }
+
+        /**
+         * @param latitude is the latitude of a point
+         * @param longitude is the longitude of the point
+         * @return true if the point is inside this box (edges included)
+         */
+        public boolean contains(double latitude, double longitude) {
+            if (latitude < this.south || latitude > this.north) {
+                return false;
+            }
+            if (this.west <= this.east) {
+                return longitude >= this.west && longitude <= this.east;
+            }
+            return longitude >= this.west || longitude <= this.east;
+        }
+
+        /**
+         * @return a box covering the whole world
+         */
+        public static Bounds world() {
+            return new Bounds(-90, -180, 90, 180);
+        }
+
+        /**
+         * Makes a bigger box around this one, so small pans can stay inside of it
+         *
+         * @param margin is how much to grow each side by, as a fraction of the box's size
+         * @return the bigger box
+         */
+        public Bounds expand(double margin) {
+            double latitudeMargin = (this.north - this.south) * margin;
+            double south = Math.max(-90, this.south - latitudeMargin);
+            double north = Math.min(90, this.north + latitudeMargin);
+
+            double longitudeSpan = this.getLongitudeSpan();
+            double longitudeMargin = longitudeSpan * margin;
+            if (longitudeSpan + 2 * longitudeMargin >= 360) {
+                return new Bounds(south, -180, north, 180);
+            }
+            return new Bounds(
+                    south, Bounds.wrapLongitude(this.west - longitudeMargin),
+                    north, Bounds.wrapLongitude(this.east + longitudeMargin)
+            );
+        }
+
+        /**
+         * @param other is another box
+         * @return true if the other box is completely inside of this one
+         */
+        public boolean contains(Bounds other) {
+            if (other.south < this.south || other.north > this.north) {
+                return false;
+            }
+            if (this.getLongitudeSpan() >= 360) {
+                return true;
+            }
+            // measure everything eastwards from this box's west edge
+            double otherStart = Bounds.eastwardsDistance(this.west, other.west);
+            return otherStart + other.getLongitudeSpan() <= this.getLongitudeSpan();
+        }
+
+        private double getLongitudeSpan() {
+            if (this.west <= this.east) {
+                return this.east - this.west;
+            }
+            return this.east + 360 - this.west;
+        }
+
+        private static double eastwardsDistance(double fromLongitude, double toLongitude) {
+            double distance = toLongitude - fromLongitude;
+            return distance < 0 ? distance + 360 : distance;
+        }
+
+        private static double wrapLongitude(double longitude) {
+            if (longitude < -180) {
+                return longitude + 360;
+            }
+            if (longitude > 180) {
+                return longitude - 360;
+            }
+            return longitude;
+        }
+    }
+}
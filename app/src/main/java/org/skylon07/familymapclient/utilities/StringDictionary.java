@@ -0,0 +1,102 @@
+package org.skylon07.familymapclient.utilities;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Gives each distinct string a small integer code (0, 1, 2...), in the order they are first
+ * seen. Fields that repeat a lot (like event types, or country names) can then be stored as an
+ * int per record instead of a String each, and compared with == instead of equals().
+ *
+ * Encoding is synchronized, but decoding never locks, so a finished dictionary can be read from
+ * any number of threads at once.
+ */
+public class StringDictionary {
+    /** The code null is encoded as */
+    public static final int NULL_CODE = -1;
+    private static final int INITIAL_CAPACITY = 16;
+
+    /** The code of every string seen so far */
+    private final Map<String, Integer> codesByString;
+    /** Every string seen so far, by code (grown by replacing it, so readers never see it half copied) */
+    private volatile String[] stringsByCode;
+    private volatile int size;
+
+    /**
+     * Creates a new (empty) dictionary
+     */
+    public StringDictionary() {
+        this.codesByString = new HashMap<>();
+        this.stringsByCode = new String[INITIAL_CAPACITY];
+        this.size = 0;
+    }
+
+    /**
+     * Returns the code for a string, giving it a new one if it hasn't been seen before
+     *
+     * @param string is the string to encode (may be null)
+     * @return the string's code (or NULL_CODE for null)
+     */
+    public synchronized int encode(String string) {
+        if (string == null) {
+            return NULL_CODE;
+        }
+        Integer code = this.codesByString.get(string);
+        if (code == null) {
+            code = this.size;
+            String[] strings = this.stringsByCode;
+            if (code == strings.length) {
+                strings = Arrays.copyOf(strings, strings.length * 2);
+            }
+            strings[code] = string;
+            this.stringsByCode = strings;
+            this.codesByString.put(string, code);
+            this.size = code + 1;
+        }
+        return code;
+    }
+
+    /**
+     * Returns the code a string was given, without giving it one if it doesn't have one
+     *
+     * @param string is the string to look up (may be null)
+     * @return the string's code (or NULL_CODE if it is null or was never encoded)
+     */
+    public synchronized int getCode(String string) {
+        if (string == null) {
+            return NULL_CODE;
+        }
+        Integer code = this.codesByString.get(string);
+        return code == null ? NULL_CODE : code;
+    }
+
+    /**
+     * @param code is a code returned by encode()
+     * @return the string with that code (or null for NULL_CODE)
+     */
+    public String decode(int code) {
+        if (code == NULL_CODE) {
+            return null;
+        }
+        return this.stringsByCode[code];
+    }
+
+    /**
+     * Returns the copy of a string this dictionary keeps, so that equal strings from different
+     * places can all share one instance
+     *
+     * @param string is the string to intern (may be null)
+     * @return the shared instance equal to the string (or null if it was null)
+     */
+    public String intern(String string) {
+        return this.decode(this.encode(string));
+    }
+
+    /**
+     * @return how many distinct strings have been encoded
+     */
+    public int size() {
+        return this.size;
+    }
+}
@@ -0,0 +1,246 @@
+package org.skylon07.familymapclient.utilities;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs the app's background work on two shared pools, instead of a new thread for every action:
+ * an I/O pool (with a fixed number of threads) for work that waits on things, like the DataCache,
+ * and a CPU pool (with one thread per core) for work that just crunches numbers, like clustering
+ * markers.
+ *
+ * Screens submit their work through a TaskGroup, and cancel the group when they are destroyed,
+ * so nothing they queued up runs after they are gone. (Server calls themselves run on their own
+ * pool; see AsyncServerProxy. Keeping them apart means tasks here can wait on server calls
+ * without ever using up the threads those calls need.)
+ */
+public class TaskScheduler {
+    /** The most I/O tasks that will ever be running at once (more wait in line) */
+    public static final int MAX_IO_THREADS = 4;
+    /** How long an idle thread sticks around before it is stopped, in seconds */
+    private static final long THREAD_KEEP_ALIVE_SECONDS = 30;
+
+    private static final TaskScheduler instance = new TaskScheduler(
+            MAX_IO_THREADS,
+            Math.max(1, Runtime.getRuntime().availableProcessors())
+    );
+
+    /**
+     * @return the app-wide scheduler
+     */
+    public static TaskScheduler getInstance() {
+        return TaskScheduler.instance;
+    }
+
+    private final ThreadPoolExecutor ioExecutor;
+    private final ThreadPoolExecutor cpuExecutor;
+
+    /**
+     * Creates a new scheduler (the app should use getInstance(); this is mostly for tests)
+     *
+     * @param ioThreads is how many threads the I/O pool can have
+     * @param cpuThreads is how many threads the CPU pool can have
+     */
+    public TaskScheduler(int ioThreads, int cpuThreads) {
+        this.ioExecutor = TaskScheduler.createExecutor("TaskScheduler-io-", ioThreads);
+        this.cpuExecutor = TaskScheduler.createExecutor("TaskScheduler-cpu-", cpuThreads);
+    }
+
+    private static ThreadPoolExecutor createExecutor(String threadPrefix, int numThreads) {
+        AtomicInteger threadCount = new AtomicInteger();
+        ThreadFactory threadFactory = (Runnable task) -> {
+            Thread thread = new Thread(task, threadPrefix + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                numThreads, numThreads,
+                THREAD_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(),
+                threadFactory
+        );
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * @return a new (empty) group of tasks, for one screen to submit its work through
+     */
+    public TaskGroup newTaskGroup() {
+        return new TaskGroup(this);
+    }
+
+    /**
+     * @return the executor for tasks that wait on things (not tied to any TaskGroup)
+     */
+    public Executor getIOExecutor() {
+        return this.ioExecutor;
+    }
+
+    /**
+     * @return the executor for tasks that just compute things (not tied to any TaskGroup)
+     */
+    public Executor getCPUExecutor() {
+        return this.cpuExecutor;
+    }
+
+    /**
+     * @return how many threads the I/O pool has right now
+     */
+    public int getIOThreadCount() {
+        return this.ioExecutor.getPoolSize();
+    }
+
+    /**
+     * @return how many I/O tasks are running right now
+     */
+    public int getIOActiveCount() {
+        return this.ioExecutor.getActiveCount();
+    }
+
+    /**
+     * @return how many I/O tasks are waiting for a thread
+     */
+    public int getIOQueueDepth() {
+        return this.ioExecutor.getQueue().size();
+    }
+
+    /**
+     * @return how many threads the CPU pool has right now
+     */
+    public int getCPUThreadCount() {
+        return this.cpuExecutor.getPoolSize();
+    }
+
+    /**
+     * @return how many CPU tasks are running right now
+     */
+    public int getCPUActiveCount() {
+        return this.cpuExecutor.getActiveCount();
+    }
+
+    /**
+     * @return how many CPU tasks are waiting for a thread
+     */
+    public int getCPUQueueDepth() {
+        return this.cpuExecutor.getQueue().size();
+    }
+
+    /**
+     * @return a one-line summary of the metrics above (for logging)
+     */
+    public String describeMetrics() {
+        return String.format(
+                "io: %d threads, %d active, %d queued; cpu: %d threads, %d active, %d queued",
+                this.getIOThreadCount(), this.getIOActiveCount(), this.getIOQueueDepth(),
+                this.getCPUThreadCount(), this.getCPUActiveCount(), this.getCPUQueueDepth()
+        );
+    }
+
+    /**
+     * The tasks submitted by one owner (like an Activity or Fragment), which can all be cancelled
+     * together when the owner is destroyed
+     */
+    public static class TaskGroup {
+        private final TaskScheduler scheduler;
+        /** every task submitted that hasn't finished (or been cancelled) yet */
+        private final Set<Future<?>> unfinished;
+        private volatile boolean cancelled;
+
+        private TaskGroup(TaskScheduler scheduler) {
+            this.scheduler = scheduler;
+            this.unfinished = ConcurrentHashMap.newKeySet();
+            this.cancelled = false;
+        }
+
+        /**
+         * Runs a task that waits on things (like the DataCache)
+         *
+         * @param task is the task to run
+         * @return the future for the task
+         */
+        public Future<?> runIO(Runnable task) {
+            return this.submit(this.scheduler.ioExecutor, task);
+        }
+
+        /**
+         * Runs a task that just computes things
+         *
+         * @param task is the task to run
+         * @return the future for the task
+         */
+        public Future<?> runCPU(Runnable task) {
+            return this.submit(this.scheduler.cpuExecutor, task);
+        }
+
+        /**
+         * Cancels every task that hasn't started yet, along with any submitted from now on.
+         * Tasks already running are left to finish, since interrupting one partway through a
+         * (shared) DataCache load would fail that load for everyone waiting on it. Owners have to
+         * check isCancelled() before a running task touches them again (the map, search and
+         * person pages all do this for everything their tasks hand back to the UI thread).
+         */
+        public void cancelAll() {
+            this.cancelled = true;
+            for (Future<?> task : this.unfinished) {
+                task.cancel(false);
+            }
+            // drops the cancelled tasks from the queues, so they don't count towards the metrics
+            this.scheduler.ioExecutor.purge();
+            this.scheduler.cpuExecutor.purge();
+        }
+
+        /**
+         * @return true once cancelAll() has been called
+         */
+        public boolean isCancelled() {
+            return this.cancelled;
+        }
+
+        /**
+         * @return how many tasks have been submitted and haven't finished yet
+         */
+        public int getUnfinishedCount() {
+            return this.unfinished.size();
+        }
+
+        private Future<?> submit(ThreadPoolExecutor executor, Runnable task) {
+            FutureTask<Void> future = new FutureTask<Void>(task, null) {
+                // finished tasks are dropped before anyone waiting on get() wakes up...
+                @Override
+                protected void set(Void result) {
+                    TaskGroup.this.unfinished.remove(this);
+                    super.set(result);
+                }
+
+                @Override
+                protected void setException(Throwable err) {
+                    TaskGroup.this.unfinished.remove(this);
+                    super.setException(err);
+                }
+
+                // ...and cancelled ones as soon as they are cancelled
+                @Override
+                protected void done() {
+                    TaskGroup.this.unfinished.remove(this);
+                }
+            };
+            this.unfinished.add(future);
+            // checked after adding, so a cancelAll() running at the same time can't miss it
+            if (this.cancelled) {
+                future.cancel(false);
+                return future;
+            }
+            executor.execute(future);
+            return future;
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package org.skylon07.familymapclient.utilities;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeSet;
+
+import models.Event;
+
+/**
+ * Sorts events into timelines: by year first, then births first and deaths last within the same
+ * year, and anything else alphabetically by event type (ignoring case).
+ *
+ * Instead of comparing Events (and lowercasing both types on every comparison), every event is
+ * given a sort key up front: one long packing its year, its birth/death rank, and the
+ * alphabetical place of its (lowercased) type. Each distinct type is only lowercased once, and
+ * sorting is then just comparing longs.
+ */
+public class TimelineSorter {
+    /** Ranges up to this long are insertion sorted (timelines are almost always this short) */
+    private static final int INSERTION_SORT_LIMIT = 32;
+    /** The rank and type order are packed below the year */
+    private static final int YEAR_SHIFT = 32;
+    /** The type order is packed below the rank */
+    private static final int RANK_SHIFT = 30;
+
+    /**
+     * Works out the sort key of every event. Keys are only meaningful compared to other keys
+     * from the same call.
+     *
+     * @param events are the events to make keys for
+     * @return the sort key of every event, in the same order as the events
+     */
+    public static long[] getSortKeys(Event[] events) {
+        // every distinct type (as spelled) is lowercased once, and then the lowercased types are
+        // put in alphabetical order
+        Map<String, String> lowerTypesByType = new HashMap<>();
+        for (Event event : events) {
+            String type = event.getEventType();
+            if (!lowerTypesByType.containsKey(type)) {
+                lowerTypesByType.put(type, type == null ? "" : type.toLowerCase(Locale.ROOT));
+            }
+        }
+        String[] sortedLowerTypes = new TreeSet<>(lowerTypesByType.values()).toArray(new String[0]);
+        Map<String, Long> typeKeysByType = new HashMap<>(lowerTypesByType.size() * 4 / 3 + 1);
+        for (Map.Entry<String, String> entry : lowerTypesByType.entrySet()) {
+            String lowerType = entry.getValue();
+            long typeOrder = Arrays.binarySearch(sortedLowerTypes, lowerType);
+            long rank = TimelineSorter.timelineRank(lowerType);
+            typeKeysByType.put(entry.getKey(), (rank << RANK_SHIFT) | typeOrder);
+        }
+
+        long[] keys = new long[events.length];
+        for (int eventIdx = 0; eventIdx < events.length; ++eventIdx) {
+            Event event = events[eventIdx];
+            // (the low bits are never negative, so or-ing them in keeps negative years in order)
+            keys[eventIdx] = ((long) event.getYear() << YEAR_SHIFT) | typeKeysByType.get(event.getEventType());
+        }
+        return keys;
+    }
+
+    /**
+     * Sorts part of an array of events by their sort keys (keeping the keys lined up with their
+     * events). Events with the same key stay in the order they were in.
+     *
+     * @param events are the events to sort part of
+     * @param keys are the sort keys of the events (from getSortKeys())
+     * @param start is the first index to sort
+     * @param end is one past the last index to sort
+     */
+    public static void sortRange(Event[] events, long[] keys, int start, int end) {
+        if (end - start <= INSERTION_SORT_LIMIT) {
+            for (int idx = start + 1; idx < end; ++idx) {
+                long key = keys[idx];
+                Event event = events[idx];
+                int placeIdx = idx;
+                while (placeIdx > start && keys[placeIdx - 1] > key) {
+                    keys[placeIdx] = keys[placeIdx - 1];
+                    events[placeIdx] = events[placeIdx - 1];
+                    --placeIdx;
+                }
+                keys[placeIdx] = key;
+                events[placeIdx] = event;
+            }
+            return;
+        }
+
+        // (a stable sort of the positions, then the events and keys are put in that order)
+        Integer[] order = new Integer[end - start];
+        for (int offset = 0; offset < order.length; ++offset) {
+            order[offset] = start + offset;
+        }
+        Arrays.sort(order, (Integer idx1, Integer idx2) -> Long.compare(keys[idx1], keys[idx2]));
+        Event[] sortedEvents = new Event[order.length];
+        long[] sortedKeys = new long[order.length];
+        for (int offset = 0; offset < order.length; ++offset) {
+            sortedEvents[offset] = events[order[offset]];
+            sortedKeys[offset] = keys[order[offset]];
+        }
+        System.arraycopy(sortedEvents, 0, events, start, order.length);
+        System.arraycopy(sortedKeys, 0, keys, start, order.length);
+    }
+
+    /**
+     * Groups events by the person they belong to, and sorts each group into a timeline. This
+     * takes one pass to key the events and find everyone's group, one to put the events in
+     * group order, and then one sort per (short) group.
+     *
+     * @param events are the events to group (they are not changed)
+     * @return the (unmodifiable) timeline of every person with events, by person ID
+     */
+    public static Map<String, List<Event>> groupByPerson(Event[] events) {
+        long[] eventKeys = TimelineSorter.getSortKeys(events);
+        Map<String, Integer> groupsByPersonID = new HashMap<>();
+        String[] groupPersonIDs = new String[events.length];
+        int[] eventGroups = new int[events.length];
+        int[] groupStarts = new int[events.length + 2];
+        int numGroups = 0;
+        for (int eventIdx = 0; eventIdx < events.length; ++eventIdx) {
+            String personID = events[eventIdx].getPersonID();
+            Integer group = groupsByPersonID.get(personID);
+            if (group == null) {
+                group = numGroups++;
+                groupsByPersonID.put(personID, group);
+                groupPersonIDs[group] = personID;
+            }
+            eventGroups[eventIdx] = group;
+            ++groupStarts[group + 1];
+        }
+        for (int group = 0; group < numGroups; ++group) {
+            groupStarts[group + 1] += groupStarts[group];
+        }
+
+        Event[] groupedEvents = new Event[events.length];
+        long[] groupedKeys = new long[events.length];
+        int[] nextIdxs = Arrays.copyOf(groupStarts, numGroups);
+        for (int eventIdx = 0; eventIdx < events.length; ++eventIdx) {
+            int groupedIdx = nextIdxs[eventGroups[eventIdx]]++;
+            groupedEvents[groupedIdx] = events[eventIdx];
+            groupedKeys[groupedIdx] = eventKeys[eventIdx];
+        }
+
+        // every timeline is a (read only) view of its part of the one grouped array
+        List<Event> allTimelines = Collections.unmodifiableList(Arrays.asList(groupedEvents));
+        Map<String, List<Event>> timelines = new HashMap<>(numGroups * 4 / 3 + 1);
+        for (int group = 0; group < numGroups; ++group) {
+            int start = groupStarts[group];
+            int end = groupStarts[group + 1];
+            TimelineSorter.sortRange(groupedEvents, groupedKeys, start, end);
+            timelines.put(groupPersonIDs[group], allTimelines.subList(start, end));
+        }
+        return timelines;
+    }
+
+    /**
+     * Pins births to the start of a year and deaths to the end
+     *
+     * @param lowerType is the lowercased event type
+     * @return 0 for births, 2 for deaths, and 1 for everything else
+     */
+    private static int timelineRank(String lowerType) {
+        if (lowerType.equals("birth")) {
+            return 0;
+        } else if (lowerType.equals("death")) {
+            return 2;
+        } else {
+            return 1;
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package org.skylon07.familymapclient;
+
+import org.junit.*;
+import org.skylon07.familymapclient.server.AsyncServerProxy;
+
+import static org.junit.Assert.*;
+
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import services.responses.PersonResponse;
+
+/**
+ * Contains tests for the AsyncServerProxy
+ */
+public class AsyncServerProxyTest {
+    private StubServer server;
+    private AsyncServerProxy proxy;
+
+    @Before
+    public void setup() throws Exception {
+        this.server = new StubServer(TestData.persons, TestData.events);
+        this.proxy = new AsyncServerProxy(this.server.createProxy());
+    }
+
+    @After
+    public void cleanup() {
+        this.server.stop();
+    }
+
+    @Test
+    public void testCalls() throws Exception {
+        assertTrue(this.proxy.login("usersName", "password").get().success);
+        assertFalse(this.proxy.login("usersName", StubServer.BAD_PASSWORD).get().success);
+        assertEquals("root", this.proxy.getPerson("root", "stubToken").get().personID);
+        assertEquals(TestData.persons.length, this.proxy.getAllPersons("stubToken").get().data.length);
+        assertEquals(TestData.events[0].getEventID(), this.proxy.getEvent(TestData.events[0].getEventID(), "stubToken").get().eventID);
+        assertEquals(TestData.events.length, this.proxy.getAllEvents("stubToken").get().data.length);
+    }
+
+    @Test
+    public void testFailedCalls() throws Exception {
+        this.server.setLatency(500);
+        this.proxy.getServerProxy().setTimeouts(1000, 50);
+        try {
+            this.proxy.getPerson("root", "stubToken").get();
+            fail("the call should have failed");
+        } catch (ExecutionException err) {
+            assertTrue(AsyncServerProxy.unwrap(err) instanceof SocketTimeoutException);
+        }
+    }
+
+    @Test
+    public void testLoginAndLoadAll() throws Exception {
+        this.server.setLatency(300);
+        long start = System.nanoTime();
+        AsyncServerProxy.LoginData data = this.proxy.loginAndLoadAll("usersName", "password").get();
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+        assertTrue(data.login.success);
+        assertEquals(TestData.persons.length, data.persons.data.length);
+        assertEquals(TestData.events.length, data.events.data.length);
+        // the persons and events should have been fetched at the same time
+        assertTrue("took " + elapsedMillis + " ms", elapsedMillis < 3 * 300);
+    }
+
+    @Test
+    public void testLoginAndLoadAllWithBadLogin() throws Exception {
+        AsyncServerProxy.LoginData data = this.proxy.loginAndLoadAll("usersName", StubServer.BAD_PASSWORD).get();
+        assertFalse(data.login.success);
+        assertNull(data.persons);
+        assertNull(data.events);
+        assertEquals(0, this.server.getRequestCount("/person"));
+        assertEquals(0, this.server.getRequestCount("/event"));
+    }
+
+    @Test
+    public void testCancellation() throws Exception {
+        // fill up every I/O thread, so the next call has to wait in line
+        this.server.setLatency(300);
+        List<CompletableFuture<PersonResponse>> runningCalls = new ArrayList<>();
+        for (int callNum = 0; callNum < AsyncServerProxy.MAX_IO_THREADS; ++callNum) {
+            runningCalls.add(this.proxy.getPerson("root", "stubToken"));
+        }
+        CompletableFuture<PersonResponse> waitingCall = this.proxy.getPerson("father-root", "stubToken");
+        assertTrue(waitingCall.cancel(true));
+        assertTrue(waitingCall.isCancelled());
+        try {
+            waitingCall.join();
+            fail("a cancelled call shouldn't have a result");
+        } catch (CancellationException err) {
+            // expected
+        }
+
+        for (CompletableFuture<PersonResponse> call : runningCalls) {
+            assertTrue(call.get().success);
+        }
+        Thread.sleep(100);
+        assertEquals(0, this.server.getRequestCount("/person/father-root"));
+    }
+}
@@ -0,0 +1,166 @@
+package org.skylon07.familymapclient;
+
+import org.junit.Assume;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import models.Event;
+import models.Person;
+
+/**
+ * Shared helpers for the *Benchmark classes. Benchmarks run like any other unit test, but are
+ * skipped unless the build is started with -Dbenchmarks=true (they are slow, and their timings
+ * are printed rather than asserted on).
+ */
+public class Benchmarks {
+    public static String[] EVENT_TYPES = {
+            "Birth", "Baptism", "Christening", "Graduation", "Marriage", "Military Service",
+            "Retirement", "Death", "Burial"
+    };
+    public static String[] FIRST_NAMES = {
+            "James", "Mary", "John", "Patricia", "Robert", "Jennifer", "Michael", "Linda",
+            "William", "Elizabeth", "David", "Barbara", "Richard", "Susan", "Joseph", "Jessica",
+            "Thomas", "Sarah", "Charles", "Karen", "Taylor", "Tara", "Adam", "Ashlyn"
+    };
+    public static String[] LAST_NAMES = {
+            "Smith", "Johnson", "Williams", "Brown", "Jones", "Garcia", "Miller", "Davis",
+            "Rodriguez", "Martinez", "Hernandez", "Lopez", "Gonzalez", "Wilson", "Anderson"
+    };
+    public static int NUM_COUNTRIES = 60;
+    public static int CITIES_PER_COUNTRY = 12;
+
+    /**
+     * Skips the calling test unless benchmarks were asked for
+     */
+    public static void assumeEnabled() {
+        Assume.assumeTrue("benchmarks only run with -Dbenchmarks=true", Boolean.getBoolean("benchmarks"));
+    }
+
+    public interface Task {
+        public void run() throws Exception;
+    }
+
+    /**
+     * Times a task, printing (and returning) the median time of the measured runs
+     *
+     * @param label describes what is being measured
+     * @param warmupRuns is how many untimed runs to do first (to let the JIT settle)
+     * @param measuredRuns is how many timed runs to take the median of
+     * @param task is the work to time
+     * @return the median time of a measured run, in milliseconds
+     */
+    public static double measure(String label, int warmupRuns, int measuredRuns, Task task) throws Exception {
+        for (int run = 0; run < warmupRuns; ++run) {
+            task.run();
+        }
+
+        double[] timesMillis = new double[measuredRuns];
+        for (int run = 0; run < measuredRuns; ++run) {
+            long start = System.nanoTime();
+            task.run();
+            timesMillis[run] = (System.nanoTime() - start) / 1e6;
+        }
+        Arrays.sort(timesMillis);
+        double median = timesMillis[measuredRuns / 2];
+        System.out.printf("%-60s %12.3f ms%n", label, median);
+        return median;
+    }
+
+    /**
+     * @return roughly how many bytes of heap are in use right now (after asking for a GC)
+     */
+    public static long usedHeapBytes() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int gcs = 0; gcs < 3; ++gcs) {
+            System.gc();
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException err) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /**
+     * Generates a family tree of persons. Person 0 is the user; the parents of person i are
+     * persons 2i+1 (father) and 2i+2 (mother), for as long as there are persons to go around.
+     *
+     * @param count is how many persons to generate
+     * @param rand is the source of randomness to use
+     * @return the generated persons
+     */
+    public static Person[] generatePersons(int count, Random rand) {
+        String[] ids = new String[count];
+        for (int idx = 0; idx < count; ++idx) {
+            ids[idx] = Benchmarks.generateID(rand);
+        }
+
+        Person[] persons = new Person[count];
+        for (int idx = 0; idx < count; ++idx) {
+            int fatherIdx = 2 * idx + 1;
+            int motherIdx = 2 * idx + 2;
+            String gender;
+            String spouseID;
+            if (idx == 0) {
+                gender = "m";
+                spouseID = null;
+            } else if (idx % 2 == 1) {
+                gender = "m";
+                spouseID = ids[idx + 1 < count ? idx + 1 : idx];
+            } else {
+                gender = "f";
+                spouseID = ids[idx - 1];
+            }
+            persons[idx] = new Person(
+                    ids[idx],
+                    "benchmarkUser",
+                    FIRST_NAMES[rand.nextInt(FIRST_NAMES.length)],
+                    LAST_NAMES[rand.nextInt(LAST_NAMES.length)],
+                    gender,
+                    fatherIdx < count ? ids[fatherIdx] : null,
+                    motherIdx < count ? ids[motherIdx] : null,
+                    spouseID
+            );
+        }
+        return persons;
+    }
+
+    /**
+     * Generates events spread (about evenly) across a set of persons
+     *
+     * @param persons are the persons to generate events for
+     * @param count is how many events to generate
+     * @param rand is the source of randomness to use
+     * @return the generated events
+     */
+    public static Event[] generateEvents(Person[] persons, int count, Random rand) {
+        Event[] events = new Event[count];
+        for (int idx = 0; idx < count; ++idx) {
+            Person person = persons[idx % persons.length];
+            int country = rand.nextInt(NUM_COUNTRIES);
+            int city = rand.nextInt(CITIES_PER_COUNTRY);
+            events[idx] = new Event(
+                    Benchmarks.generateID(rand),
+                    person.getAssociatedUsername(),
+                    person.getPersonID(),
+                    rand.nextFloat() * 180 - 90,
+                    rand.nextFloat() * 360 - 180,
+                    "Country" + country,
+                    "City" + country + "-" + city,
+                    EVENT_TYPES[rand.nextInt(EVENT_TYPES.length)],
+                    1500 + rand.nextInt(520)
+            );
+        }
+        return events;
+    }
+
+    /**
+     * @param rand is the source of randomness to use
+     * @return a random ID shaped like the server's (UUID-length) IDs
+     */
+    public static String generateID(Random rand) {
+        return String.format("%016x-%016x", rand.nextLong(), rand.nextLong());
+    }
+}
@@ -0,0 +1,91 @@
+package org.skylon07.familymapclient;
+
+import com.google.gson.Gson;
+
+import org.junit.*;
+import org.junit.rules.TemporaryFolder;
+import org.skylon07.familymapclient.utilities.CacheSnapshot;
+
+import static org.junit.Assert.*;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import models.Event;
+import models.Person;
+import services.responses.EventResponse;
+import services.responses.PersonResponse;
+
+/**
+ * Compares a cold start (parsing the /person and /event JSON the server sends) against a warm
+ * start (reading a CacheSnapshot), at a few different tree sizes. Network time is left out, so
+ * this is the best case for the cold start.
+ */
+public class CacheSnapshotBenchmark {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void benchmarkColdVersusSnapshotLoad() throws Exception {
+        Benchmarks.assumeEnabled();
+
+        int[] eventCounts = {10_000, 100_000, 1_000_000};
+        for (int eventCount : eventCounts) {
+            this.benchmarkAt(eventCount);
+        }
+    }
+
+    private void benchmarkAt(int eventCount) throws Exception {
+        Random rand = new Random(eventCount);
+        Person[] persons = Benchmarks.generatePersons(eventCount / 3, rand);
+        Event[] events = Benchmarks.generateEvents(persons, eventCount, rand);
+
+        Gson gson = new Gson();
+        File personJson = this.folder.newFile("persons-" + eventCount + ".json");
+        File eventJson = this.folder.newFile("events-" + eventCount + ".json");
+        PersonResponse personResponse = new PersonResponse();
+        personResponse.data = persons;
+        personResponse.success = true;
+        EventResponse eventResponse = new EventResponse();
+        eventResponse.data = events;
+        eventResponse.success = true;
+        try (Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(personJson), StandardCharsets.UTF_8))) {
+            gson.toJson(personResponse, out);
+        }
+        try (Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(eventJson), StandardCharsets.UTF_8))) {
+            gson.toJson(eventResponse, out);
+        }
+
+        File snapshotFile = new File(this.folder.getRoot(), "snapshot-" + eventCount + ".bin");
+        CacheSnapshot.write(snapshotFile, "localhost:8080", "benchmark", persons, events);
+        persons = null;
+        events = null;
+        personResponse = null;
+        eventResponse = null;
+
+        int warmups = eventCount >= 1_000_000 ? 1 : 3;
+        int runs = eventCount >= 1_000_000 ? 3 : 7;
+        System.out.printf("%,d events (JSON %,d KB, snapshot %,d KB)%n", eventCount,
+                (personJson.length() + eventJson.length()) / 1024, snapshotFile.length() / 1024);
+        Benchmarks.measure("  cold: parse /person + /event JSON", warmups, runs, () -> {
+            try (Reader in = new BufferedReader(new InputStreamReader(new FileInputStream(personJson), StandardCharsets.UTF_8))) {
+                assertTrue(gson.fromJson(in, PersonResponse.class).success);
+            }
+            try (Reader in = new BufferedReader(new InputStreamReader(new FileInputStream(eventJson), StandardCharsets.UTF_8))) {
+                assertEquals(eventCount, gson.fromJson(in, EventResponse.class).data.length);
+            }
+        });
+        Benchmarks.measure("  warm: read memory-mapped snapshot", warmups, runs, () -> {
+            assertEquals(eventCount, CacheSnapshot.read(snapshotFile, "localhost:8080", "benchmark").getEvents().length);
+        });
+    }
+}
@@ -0,0 +1,223 @@
+package org.skylon07.familymapclient;
+
+import org.junit.*;
+import org.junit.rules.TemporaryFolder;
+import org.skylon07.familymapclient.server.ServerProxy;
+import org.skylon07.familymapclient.utilities.CacheSnapshot;
+import org.skylon07.familymapclient.utilities.DataCache;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import models.AuthToken;
+import models.Event;
+import models.Person;
+
+/**
+ * Contains tests for CacheSnapshot, and for how the DataCache uses snapshots to warm start
+ */
+public class CacheSnapshotTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        File file = new File(this.folder.getRoot(), "snapshot.bin");
+        CacheSnapshot.write(file, "localhost:8080", "someone", TestData.persons, TestData.events);
+        CacheSnapshot snapshot = CacheSnapshot.read(file, "localhost:8080", "someone");
+        assertNotNull(snapshot);
+
+        assertEquals(TestData.persons.length, snapshot.getPersons().length);
+        for (int idx = 0; idx < TestData.persons.length; ++idx) {
+            Person expected = TestData.persons[idx];
+            Person actual = snapshot.getPersons()[idx];
+            assertEquals(expected.getPersonID(), actual.getPersonID());
+            assertEquals(expected.getAssociatedUsername(), actual.getAssociatedUsername());
+            assertEquals(expected.getFirstName(), actual.getFirstName());
+            assertEquals(expected.getLastName(), actual.getLastName());
+            assertEquals(expected.getGender(), actual.getGender());
+            assertEquals(expected.getFatherID(), actual.getFatherID());
+            assertEquals(expected.getMotherID(), actual.getMotherID());
+            assertEquals(expected.getSpouseID(), actual.getSpouseID());
+        }
+
+        assertEquals(TestData.events.length, snapshot.getEvents().length);
+        for (int idx = 0; idx < TestData.events.length; ++idx) {
+            Event expected = TestData.events[idx];
+            Event actual = snapshot.getEvents()[idx];
+            assertEquals(expected.getEventID(), actual.getEventID());
+            assertEquals(expected.getAssociatedUsername(), actual.getAssociatedUsername());
+            assertEquals(expected.getPersonID(), actual.getPersonID());
+            assertEquals(expected.getLatitude(), actual.getLatitude(), 0);
+            assertEquals(expected.getLongitude(), actual.getLongitude(), 0);
+            assertEquals(expected.getCountry(), actual.getCountry());
+            assertEquals(expected.getCity(), actual.getCity());
+            assertEquals(expected.getEventType(), actual.getEventType());
+            assertEquals(expected.getYear(), actual.getYear());
+        }
+    }
+
+    @Test
+    public void testUnusableSnapshots() throws IOException {
+        assertNull(CacheSnapshot.read(new File(this.folder.getRoot(), "doesNotExist.bin"), "localhost:8080", "someone"));
+
+        File garbage = this.folder.newFile("garbage.bin");
+        try (FileOutputStream out = new FileOutputStream(garbage)) {
+            out.write(new byte[] {1, 2, 3, 4, 5, 6, 7, 8, 9});
+        }
+        assertNull(CacheSnapshot.read(garbage, "localhost:8080", "someone"));
+
+        File truncated = new File(this.folder.getRoot(), "truncated.bin");
+        CacheSnapshot.write(truncated, "localhost:8080", "someone", TestData.persons, TestData.events);
+        try (RandomAccessFile file = new RandomAccessFile(truncated, "rw")) {
+            file.setLength(file.length() / 2);
+        }
+        assertNull(CacheSnapshot.read(truncated, "localhost:8080", "someone"));
+
+        File otherVersion = new File(this.folder.getRoot(), "otherVersion.bin");
+        CacheSnapshot.write(otherVersion, "localhost:8080", "someone", TestData.persons, TestData.events);
+        try (RandomAccessFile file = new RandomAccessFile(otherVersion, "rw")) {
+            file.seek(4);
+            file.writeInt(-1);
+        }
+        assertNull(CacheSnapshot.read(otherVersion, "localhost:8080", "someone"));
+
+        // (a snapshot is only ever read back for the server and user it was written for)
+        File otherOwner = new File(this.folder.getRoot(), "otherOwner.bin");
+        CacheSnapshot.write(otherOwner, "localhost:8080", "someone", TestData.persons, TestData.events);
+        assertNotNull(CacheSnapshot.read(otherOwner, "localhost:8080", "someone"));
+        assertNull(CacheSnapshot.read(otherOwner, "localhost:8080", "someoneElse"));
+        assertNull(CacheSnapshot.read(otherOwner, "localhost:8081", "someone"));
+    }
+
+    @Test
+    public void testSnapshotsAreKeyedByUserAndServer() {
+        File dir = this.folder.getRoot();
+        File file = CacheSnapshot.getSnapshotFile(dir, "localhost:8080", "someone");
+        assertEquals(file, CacheSnapshot.getSnapshotFile(dir, "localhost:8080", "someone"));
+        assertNotEquals(file, CacheSnapshot.getSnapshotFile(dir, "localhost:8080", "someoneElse"));
+        assertNotEquals(file, CacheSnapshot.getSnapshotFile(dir, "localhost:8081", "someone"));
+    }
+
+    @Test
+    public void testWarmStart() throws Exception {
+        StubServer server = new StubServer(TestData.persons, TestData.events);
+        boolean serverStopped = false;
+        try {
+            File dir = this.folder.newFolder("snapshots");
+            ServerProxy proxy = server.createProxy();
+            DataCache data = DataCache.getInstance(proxy);
+            data.useSnapshotDirectory(dir);
+            data.invalidateCache();
+            data.recordLogin("root", new AuthToken("stubToken", "usersName"));
+
+            // a cold start has to download everything, then saves it in the background
+            assertEquals(TestData.events.length, data.getAllEvents().length);
+            assertEquals(TestData.persons.length, data.getAllPersons().length);
+            File snapshotFile = CacheSnapshot.getSnapshotFile(dir, proxy.getServerKey(), "usersName");
+            for (int waits = 0; waits < 100 && !snapshotFile.exists(); ++waits) {
+                Thread.sleep(20);
+            }
+            assertTrue(snapshotFile.exists());
+
+            // the next login starts from the snapshot, but still revalidates in the background
+            data.invalidateCache();
+            data.recordLogin("root", new AuthToken("stubToken", "usersName"));
+            assertEquals(TestData.events.length, data.getAllEvents().length);
+            for (int waits = 0; waits < 100 && server.getRequestCount("/event") < 2; ++waits) {
+                Thread.sleep(20);
+            }
+            assertEquals(2, server.getRequestCount("/person"));
+            assertEquals(2, server.getRequestCount("/event"));
+
+            // and when the server can't be reached, the snapshot is all we need
+            server.stop();
+            serverStopped = true;
+            data.invalidateCache();
+            data.recordLogin("root", new AuthToken("stubToken", "usersName"));
+            assertEquals(TestData.events.length, data.getAllEvents().length);
+            assertEquals(TestData.persons.length, data.getAllPersons().length);
+            assertEquals(3, data.getSortedEventsForPerson("father-root").size());
+            assertEquals("root", data.getChildrenOf("father-root").get(0).getPersonID());
+        } finally {
+            DataCache.getInstance().useSnapshotDirectory(null);
+            if (!serverStopped) {
+                server.stop();
+            }
+        }
+    }
+
+    @Test
+    public void testRefreshReplacesAStaleSnapshot() throws Exception {
+        StubServer server = new StubServer(TestData.persons, TestData.events);
+        try {
+            File dir = this.folder.newFolder("snapshots");
+            ServerProxy proxy = server.createProxy();
+            DataCache data = DataCache.getInstance(proxy);
+            data.useSnapshotDirectory(dir);
+            data.invalidateCache();
+
+            // the snapshot from last login is missing an event the server has since added
+            Event[] staleEvents = Arrays.copyOf(TestData.events, TestData.events.length - 1);
+            File snapshotFile = CacheSnapshot.getSnapshotFile(dir, proxy.getServerKey(), "usersName");
+            CacheSnapshot.write(snapshotFile, proxy.getServerKey(), "usersName", TestData.persons, staleEvents);
+
+            server.holdRequestsUntilConcurrent(2);
+            data.recordLogin("root", new AuthToken("stubToken", "usersName"));
+            CompletableFuture<Boolean> refresh = data.getSnapshotRefresh();
+            assertNotNull(refresh);
+            assertEquals(staleEvents.length, data.getAllEvents().length);
+
+            // the refresh says when the fresh data is in, so the map can redraw
+            assertTrue(refresh.get(10, TimeUnit.SECONDS));
+            assertEquals(TestData.events.length, data.getAllEvents().length);
+            assertNull(data.getSnapshotRefresh());
+            // (persons and events were downloaded at the same time)
+            assertEquals(2, server.getMaxConcurrentRequests());
+            assertEquals(1, server.getRequestCount("/person"));
+            assertEquals(1, server.getRequestCount("/event"));
+        } finally {
+            DataCache.getInstance().useSnapshotDirectory(null);
+            server.stop();
+        }
+    }
+
+    @Test
+    public void testLoadsAfterLogoutSaveToTheirOwnSnapshot() throws Exception {
+        StubServer server = new StubServer(TestData.persons, TestData.events);
+        try {
+            File dir = this.folder.newFolder("snapshots");
+            ServerProxy proxy = server.createProxy();
+            DataCache data = DataCache.getInstance(proxy);
+            data.useSnapshotDirectory(dir);
+            data.invalidateCache();
+            server.setLatency(200);
+
+            // the first user's prefetch is still downloading when they log out...
+            data.recordLogin("root", new AuthToken("stubToken", "firstUser"));
+            data.invalidateCache();
+            data.usePrefetchOnLogin(false);
+            data.recordLogin("root", new AuthToken("stubToken", "secondUser"));
+
+            // ...so it finishes into the first user's (discarded) contents and snapshot
+            File firstFile = CacheSnapshot.getSnapshotFile(dir, proxy.getServerKey(), "firstUser");
+            File secondFile = CacheSnapshot.getSnapshotFile(dir, proxy.getServerKey(), "secondUser");
+            for (int waits = 0; waits < 100 && !firstFile.exists(); ++waits) {
+                Thread.sleep(20);
+            }
+            assertTrue(firstFile.exists());
+            assertFalse(secondFile.exists());
+        } finally {
+            DataCache.getInstance().useSnapshotDirectory(null);
+            DataCache.getInstance().usePrefetchOnLogin(true);
+            server.stop();
+        }
+    }
+}
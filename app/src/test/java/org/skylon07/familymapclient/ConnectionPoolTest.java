@@ -0,0 +1,77 @@
+package org.skylon07.familymapclient;
+
+import org.junit.*;
+import org.skylon07.familymapclient.server.ServerProxy;
+import org.skylon07.familymapclient.server.handlers.ConnectionPool;
+
+import static org.junit.Assert.*;
+
+import java.net.SocketTimeoutException;
+import java.util.Map;
+
+import models.Person;
+
+/**
+ * Checks that ServerProxy reuses connections between calls, and that its timeouts and stats work
+ */
+public class ConnectionPoolTest {
+    private StubServer server;
+    private ServerProxy proxy;
+
+    @Before
+    public void setup() throws Exception {
+        this.server = new StubServer(TestData.persons, TestData.events);
+        this.proxy = this.server.createProxy();
+    }
+
+    @After
+    public void cleanup() {
+        this.server.stop();
+    }
+
+    @Test
+    public void testSequentialCallsShareAConnection() throws Exception {
+        for (Person person : TestData.persons) {
+            assertTrue(this.proxy.getPerson(person.getPersonID(), "stubToken").success);
+        }
+        assertTrue(this.proxy.getAllEvents("stubToken").success);
+        this.proxy.streamAllPersons("stubToken", (Person person) -> {});
+        // even failed lookups leave the connection usable
+        assertFalse(this.proxy.getPerson("nobody", "stubToken").success);
+        assertTrue(this.proxy.getEvent(TestData.events[0].getEventID(), "stubToken").success);
+
+        assertEquals(TestData.persons.length + 4, this.server.getTotalRequestCount());
+        assertEquals(1, this.server.getConnectionCount());
+    }
+
+    @Test
+    public void testReadTimeout() throws Exception {
+        this.server.setLatency(500);
+        this.proxy.setTimeouts(1000, 50);
+        try {
+            this.proxy.getPerson("root", "stubToken");
+            fail("the call should have timed out");
+        } catch (SocketTimeoutException err) {
+            // expected
+        }
+
+        // a timed out connection isn't reused, but new calls still work fine
+        this.server.setLatency(0);
+        assertTrue(this.proxy.getPerson("root", "stubToken").success);
+        assertEquals(2, this.server.getConnectionCount());
+    }
+
+    @Test
+    public void testEndpointStats() throws Exception {
+        this.proxy.getPerson("root", "stubToken");
+        this.proxy.getPerson("father-root", "stubToken");
+        this.proxy.getAllPersons("stubToken");
+
+        Map<String, ConnectionPool.EndpointStats> stats = this.proxy.getEndpointStats();
+        assertEquals(2, stats.size());
+        assertEquals(2, stats.get("GET /person/{personID}").getCallCount());
+        assertEquals(0, stats.get("GET /person/{personID}").getFailureCount());
+        assertEquals(1, stats.get("GET /person").getCallCount());
+        assertTrue(stats.get("GET /person").getMaxMillis() >= stats.get("GET /person").getAverageMillis());
+    }
+}
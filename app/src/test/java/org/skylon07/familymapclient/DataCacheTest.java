@@ -1,13 +1,264 @@
 package org.skylon07.familymapclient;
 
+import org.junit.*;
+import org.skylon07.familymapclient.utilities.DataCache;
+import org.skylon07.familymapclient.utilities.Relationships;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import models.AuthToken;
+import models.Event;
+import models.Person;
+
 /**
- * Contains tests for the DataCache object
+ * Contains tests for the DataCache object. These mostly hammer the cache from many threads at
+ * once (against a local StubServer) to make sure loads are shared instead of repeated.
  */
 public class DataCacheTest {
+    static int NUM_THREADS = 32;
+
+    private StubServer server;
+    private ExecutorService threads;
+
+    @Before
+    public void setupServer() throws IOException {
+        this.server = new StubServer(TestData.persons, TestData.events);
+        this.threads = Executors.newFixedThreadPool(NUM_THREADS);
+
+        DataCache data = DataCache.getInstance(this.server.createProxy());
+        // most of these tests count requests, so nothing should be downloaded behind their backs
+        data.usePrefetchOnLogin(false);
+        data.invalidateCache();
+        data.recordLogin("root", new AuthToken("stubToken", "usersName"));
+    }
+
+    @After
+    public void stopServer() {
+        DataCache.getInstance().usePrefetchOnLogin(true);
+        this.threads.shutdownNow();
+        this.server.stop();
+    }
+
     /**
-     * So I would write tests for this, except I am running low on time left to do this project,
-     * and these tests aren't required. Not to mention I do this as a job, so I'd rather spend
-     * my time making tests that I'm actually going to use in the future instead of this.
-     * Sorry CS 240 :(
+     * Runs a task on every thread at (as close to) the same time (as possible)
+     *
+     * @param task is the task to run
+     * @return the results of each run
      */
+    private <T> List<T> runAllAtOnce(Callable<T> task) throws Exception {
+        CountDownLatch startLine = new CountDownLatch(1);
+        List<Future<T>> futures = new ArrayList<>();
+        for (int threadNum = 0; threadNum < NUM_THREADS; ++threadNum) {
+            futures.add(this.threads.submit(() -> {
+                startLine.await();
+                return task.call();
+            }));
+        }
+        startLine.countDown();
+
+        List<T> results = new ArrayList<>();
+        for (Future<T> future : futures) {
+            results.add(future.get());
+        }
+        return results;
+    }
+
+    @Test
+    public void testBulkLoadsAreShared() throws Exception {
+        this.server.setLatency(50);
+        List<Event[]> results = this.runAllAtOnce(() -> {
+            Person[] persons = DataCache.getInstance().getAllPersons();
+            assertEquals(TestData.persons.length, persons.length);
+            return DataCache.getInstance().getAllEvents();
+        });
+
+        for (Event[] events : results) {
+            assertEquals(TestData.events.length, events.length);
+        }
+        assertEquals(1, this.server.getRequestCount("/person"));
+        assertEquals(1, this.server.getRequestCount("/event"));
+
+        // and once loaded, nobody should ever go back to the server for them
+        DataCache.getInstance().getAllPersons();
+        DataCache.getInstance().getAllEvents();
+        assertEquals(2, this.server.getTotalRequestCount());
+    }
+
+    @Test
+    public void testSingleMissesAreShared() throws Exception {
+        this.server.setLatency(50);
+        List<Person> results = this.runAllAtOnce(() -> {
+            return DataCache.getInstance().getPersonByID("father-root");
+        });
+
+        Person first = results.get(0);
+        assertEquals("father-root", first.getPersonID());
+        for (Person person : results) {
+            assertSame(first, person);
+        }
+        assertEquals(1, this.server.getRequestCount("/person/father-root"));
+        assertEquals(1, this.server.getTotalRequestCount());
+    }
+
+    @Test
+    public void testManyConcurrentReaders() throws Exception {
+        this.server.setLatency(2);
+        this.runAllAtOnce(() -> {
+            DataCache data = DataCache.getInstance();
+            Random rand = new Random();
+            for (int iter = 0; iter < 200; ++iter) {
+                int choice = rand.nextInt(5);
+                if (choice == 0) {
+                    Person expected = TestData.persons[rand.nextInt(TestData.persons.length)];
+                    Person person = data.getPersonByID(expected.getPersonID());
+                    assertEquals(expected.getFirstName(), person.getFirstName());
+                } else if (choice == 1) {
+                    Event expected = TestData.events[rand.nextInt(TestData.events.length)];
+                    Event event = data.getEventByID(expected.getEventID());
+                    assertEquals(expected.getEventType(), event.getEventType());
+                } else if (choice == 2) {
+                    assertEquals(3, data.getSortedEventsForPerson("father-root").size());
+                } else if (choice == 3) {
+                    assertEquals(1, data.getChildrenOf("father-root").size());
+                } else {
+                    assertEquals(TestData.events.length, data.getAllEvents().length);
+                }
+            }
+            return null;
+        });
+
+        assertTrue(this.server.getRequestCount("/person") <= 1);
+        assertTrue(this.server.getRequestCount("/event") <= 1);
+        for (Person person : TestData.persons) {
+            assertTrue(this.server.getRequestCount("/person/" + person.getPersonID()) <= 1);
+        }
+        for (Event event : TestData.events) {
+            assertTrue(this.server.getRequestCount("/event/" + event.getEventID()) <= 1);
+        }
+    }
+
+    @Test
+    public void testInvalidatingDuringLoad() throws Exception {
+        this.server.setLatency(100);
+        DataCache data = DataCache.getInstance();
+        Future<Event[]> staleLoad = this.threads.submit(data::getAllEvents);
+        Thread.sleep(30);
+        data.invalidateCache();
+        data.recordLogin("root", new AuthToken("stubToken", "usersName"));
+
+        // the old load still finishes, but into the old (discarded) contents
+        assertEquals(TestData.events.length, staleLoad.get().length);
+        assertEquals(TestData.events.length, data.getAllEvents().length);
+        assertEquals(2, this.server.getRequestCount("/event"));
+    }
+
+    @Test
+    public void testPrefetchAfterLogin() throws Exception {
+        this.server.holdRequestsUntilConcurrent(2);
+        DataCache data = DataCache.getInstance();
+        data.usePrefetchOnLogin(true);
+        data.invalidateCache();
+        data.recordLogin("root", new AuthToken("stubToken", "usersName"));
+        data.awaitPrefetch();
+
+        // both downloads should have happened at the same time (on their own connections)
+        assertEquals(2, this.server.getMaxConcurrentRequests());
+        assertEquals(2, this.server.getConnectionCount());
+        assertEquals(1, this.server.getRequestCount("/person"));
+        assertEquals(1, this.server.getRequestCount("/event"));
+
+        // and everything after that is served from the cache
+        assertEquals(TestData.persons.length, data.getAllPersons().length);
+        assertEquals(TestData.events.length, data.getAllEvents().length);
+        assertEquals(3, data.getSortedEventsForPerson("father-root").size());
+        assertEquals(1, data.getChildrenOf("father-root").size());
+        assertEquals("father-root", data.getPersonByID("father-root").getPersonID());
+        assertEquals(2, this.server.getTotalRequestCount());
+    }
+
+    @Test
+    public void testSmallBatchLookupsRunInParallel() throws Exception {
+        this.server.holdRequestsUntilConcurrent(4);
+        List<String> personIDs = Arrays.asList("father-root", "mother-root", null, "father-root", "mother-mother-root", "nobody");
+        Map<String, Person> persons = DataCache.getInstance().getPersonsByIDs(personIDs);
+
+        assertEquals(Arrays.asList("father-root", "mother-root", "mother-mother-root"), new ArrayList<>(persons.keySet()));
+        for (Map.Entry<String, Person> entry : persons.entrySet()) {
+            assertEquals(entry.getKey(), entry.getValue().getPersonID());
+        }
+        // four misses, all requested at the same time (instead of one after another)
+        assertEquals(4, this.server.getMaxConcurrentRequests());
+        assertEquals(4, this.server.getConnectionCount());
+        assertEquals(0, this.server.getRequestCount("/person"));
+        assertEquals(1, this.server.getRequestCount("/person/father-root"));
+        assertEquals(4, this.server.getTotalRequestCount());
+
+        // and now they're all cached
+        DataCache.getInstance().getPersonsByIDs(personIDs.subList(0, 5));
+        assertEquals(4, this.server.getTotalRequestCount());
+    }
+
+    @Test
+    public void testLargeBatchLookupsUseBulkLoad() throws Exception {
+        List<String> personIDs = new ArrayList<>();
+        for (int personIdx = 0; personIdx < DataCache.BULK_PERSON_LOOKUP_THRESHOLD; ++personIdx) {
+            personIDs.add(TestData.persons[personIdx].getPersonID());
+        }
+        Map<String, Person> persons = DataCache.getInstance().getPersonsByIDs(personIDs);
+
+        assertEquals(personIDs, new ArrayList<>(persons.keySet()));
+        assertEquals(1, this.server.getRequestCount("/person"));
+        assertEquals(1, this.server.getTotalRequestCount());
+    }
+
+    @Test
+    public void testAncestorWalkBatchesLookups() throws Exception {
+        Person root = DataCache.getInstance().getPersonByID("root");
+        assertEquals(2 + 4 + 8 + 16, Relationships.getAncestorsOf(root).size());
+        // root, then each generation's parents together (the last generation is big enough for a bulk load)
+        assertEquals(1 + 2 + 4 + 8 + 1, this.server.getTotalRequestCount());
+    }
+
+    @Test
+    public void testRepeatedFieldsShareInstances() throws Exception {
+        // the stub server sends JSON, so every field starts out as its own String
+        Map<String, String> firstSeen = new HashMap<>();
+        int numShared = 0;
+        for (Event event : DataCache.getInstance().getAllEvents()) {
+            for (String value : new String[]{event.getCountry(), event.getCity(), event.getEventType(), event.getAssociatedUsername()}) {
+                String first = firstSeen.get(value);
+                if (first == null) {
+                    firstSeen.put(value, value);
+                } else {
+                    assertSame(first, value);
+                    ++numShared;
+                }
+            }
+        }
+        for (Person person : DataCache.getInstance().getAllPersons()) {
+            for (String value : new String[]{person.getLastName(), person.getAssociatedUsername()}) {
+                String first = firstSeen.get(value);
+                if (first == null) {
+                    firstSeen.put(value, value);
+                } else {
+                    assertSame(first, value);
+                    ++numShared;
+                }
+            }
+        }
+        assertTrue(numShared > 0);
+    }
 }
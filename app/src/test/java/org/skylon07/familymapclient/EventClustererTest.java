@@ -0,0 +1,169 @@
+package org.skylon07.familymapclient;
+
+import org.junit.*;
+import org.skylon07.familymapclient.utilities.EventClusterer;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import models.Event;
+import models.Person;
+
+public class EventClustererTest {
+    private static Event createEvent(String eventID, float latitude, float longitude) {
+        return new Event(eventID, "user", "person", latitude, longitude, "Country", "City", "Birth", 2000);
+    }
+
+    @Test
+    public void testEveryEventIsInOneCluster() {
+        Random rand = new Random(16);
+        Person[] persons = Benchmarks.generatePersons(100, rand);
+        Event[] events = Benchmarks.generateEvents(persons, 2_000, rand);
+        EventClusterer clusterer = new EventClusterer(events);
+
+        int lastClusterCount = 0;
+        for (int zoom = 0; zoom <= 21; ++zoom) {
+            List<EventClusterer.Cluster> clusters = clusterer.getClusters(zoom);
+            Set<Event> clusteredEvents = new HashSet<>();
+            int numClustered = 0;
+            for (EventClusterer.Cluster cluster : clusters) {
+                clusteredEvents.addAll(cluster.getEvents());
+                numClustered += cluster.getSize();
+            }
+            assertEquals(events.length, numClustered);
+            assertEquals(events.length, clusteredEvents.size());
+            // zooming in only ever splits clusters up
+            assertTrue(clusters.size() >= lastClusterCount);
+            lastClusterCount = clusters.size();
+        }
+        assertEquals(events.length, clusterer.getClusters(EventClusterer.MAX_CLUSTER_ZOOM).size());
+    }
+
+    @Test
+    public void testNearbyEventsSplitUpWhenZoomingIn() {
+        // about 1.1 km apart, and nowhere near the third
+        Event[] events = {
+                EventClustererTest.createEvent("provo-1", 40.2338f, -111.6585f),
+                EventClustererTest.createEvent("provo-2", 40.2438f, -111.6585f),
+                EventClustererTest.createEvent("paris", 48.8566f, 2.3522f),
+        };
+        EventClusterer clusterer = new EventClusterer(events);
+
+        List<EventClusterer.Cluster> zoomedOut = clusterer.getClusters(3.7f);
+        assertEquals(2, zoomedOut.size());
+        EventClusterer.Cluster provo = zoomedOut.get(0);
+        assertEquals(2, provo.getSize());
+        assertFalse(provo.isSingleEvent());
+        assertEquals(40.2388, provo.getLatitude(), 0.0001);
+        assertEquals(-111.6585, provo.getLongitude(), 0.0001);
+        assertTrue(zoomedOut.get(1).isSingleEvent());
+        assertSame(events[2], zoomedOut.get(1).getFirstEvent());
+
+        List<EventClusterer.Cluster> zoomedIn = clusterer.getClusters(15);
+        assertEquals(3, zoomedIn.size());
+        for (EventClusterer.Cluster cluster : zoomedIn) {
+            assertTrue(cluster.isSingleEvent());
+        }
+    }
+
+    @Test
+    public void testClustersAreReused() {
+        EventClusterer clusterer = new EventClusterer(new Event[]{
+                EventClustererTest.createEvent("north", 89.9f, 179.9f),
+                EventClustererTest.createEvent("south", -89.9f, -180f),
+        });
+        assertSame(clusterer.getClusters(5), clusterer.getClusters(5.9f));
+        assertSame(clusterer.getClusters(-1), clusterer.getClusters(0));
+        assertSame(clusterer.getClusters(21), clusterer.getClusters(EventClusterer.MAX_CLUSTER_ZOOM));
+        assertEquals(2, clusterer.getClusters(0).size());
+        assertEquals(2, clusterer.getEventCount());
+    }
+
+    @Test
+    public void testKeysOnlyChangeForChangedClusters() {
+        Event[] events = {
+                EventClustererTest.createEvent("provo-1", 40.2338f, -111.6585f),
+                EventClustererTest.createEvent("provo-2", 40.2438f, -111.6585f),
+                EventClustererTest.createEvent("paris-1", 48.8566f, 2.3522f),
+                EventClustererTest.createEvent("paris-2", 48.8666f, 2.3522f),
+                EventClustererTest.createEvent("tokyo", 35.6762f, 139.6503f),
+        };
+        EventClusterer before = new EventClusterer(events);
+        // like a settings switch hiding one event
+        EventClusterer after = new EventClusterer(new Event[]{events[0], events[1], events[2], events[4]});
+        EventClusterer same = new EventClusterer(events.clone());
+
+        Set<Object> keysBefore = new HashSet<>();
+        for (EventClusterer.Cluster cluster : before.getClusters(3)) {
+            keysBefore.add(cluster.getKey());
+        }
+        Set<Object> keysAfter = new HashSet<>();
+        for (EventClusterer.Cluster cluster : after.getClusters(3)) {
+            keysAfter.add(cluster.getKey());
+        }
+        Set<Object> keysSame = new HashSet<>();
+        for (EventClusterer.Cluster cluster : same.getClusters(3)) {
+            keysSame.add(cluster.getKey());
+        }
+        assertEquals(keysBefore, keysSame);
+
+        // provo and tokyo are untouched, but paris went from a cluster to a single event
+        Set<Object> kept = new HashSet<>(keysBefore);
+        kept.retainAll(keysAfter);
+        assertEquals(2, kept.size());
+        assertTrue(kept.contains("tokyo"));
+        assertTrue(keysAfter.contains("paris-1"));
+        assertFalse(keysBefore.contains("paris-1"));
+    }
+
+    @Test
+    public void testKeysDoNotDependOnEventOrder() {
+        Random rand = new Random(18);
+        Event[] events = new Event[50];
+        for (int eventIdx = 0; eventIdx < events.length; ++eventIdx) {
+            events[eventIdx] = EventClustererTest.createEvent(
+                    "event-" + eventIdx,
+                    40 + rand.nextFloat() * 0.01f,
+                    -111 + rand.nextFloat() * 0.01f
+            );
+        }
+        Event[] shuffled = events.clone();
+        Collections.shuffle(Arrays.asList(shuffled), rand);
+        List<EventClusterer.Cluster> clusters = new EventClusterer(events).getClusters(3);
+        List<EventClusterer.Cluster> shuffledClusters = new EventClusterer(shuffled).getClusters(3);
+        assertEquals(1, clusters.size());
+        assertEquals(clusters.get(0).getKey(), shuffledClusters.get(0).getKey());
+
+        // the same cell and size, but one event swapped for another
+        Event[] swapped = events.clone();
+        swapped[7] = EventClustererTest.createEvent("someone-else", 40.005f, -110.995f);
+        assertNotEquals(
+                clusters.get(0).getKey(),
+                new EventClusterer(swapped).getClusters(3).get(0).getKey()
+        );
+    }
+
+    @Test
+    public void testKeysWithCollidingHashesAreNotEqual() {
+        // "Aa" and "BB" have the same hashCode(), so both clusters have the same hash sum
+        assertEquals("Aa".hashCode(), "BB".hashCode());
+        Event[] events = {
+                EventClustererTest.createEvent("0", 40.2338f, -111.6585f),
+                EventClustererTest.createEvent("Aa", 40.2438f, -111.6585f),
+        };
+        Event[] otherEvents = {
+                events[0],
+                EventClustererTest.createEvent("BB", 40.2438f, -111.6585f),
+        };
+        Object key = new EventClusterer(events).getClusters(3).get(0).getKey();
+        Object otherKey = new EventClusterer(otherEvents).getClusters(3).get(0).getKey();
+        assertEquals(key.hashCode(), otherKey.hashCode());
+        assertNotEquals(key, otherKey);
+    }
+}
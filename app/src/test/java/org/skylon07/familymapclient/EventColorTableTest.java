@@ -0,0 +1,72 @@
+package org.skylon07.familymapclient;
+
+import com.google.android.gms.maps.model.BitmapDescriptorFactory;
+
+import org.junit.*;
+import org.skylon07.familymapclient.utilities.EventColorTable;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+public class EventColorTableTest {
+    @Test
+    public void testFixedColors() {
+        EventColorTable colors = new EventColorTable(Arrays.asList("Birth", "death", "MARRIAGE", "graduation"));
+        assertEquals(BitmapDescriptorFactory.HUE_BLUE, colors.getHue("Birth"), 0);
+        assertEquals(BitmapDescriptorFactory.HUE_MAGENTA, colors.getHue("death"), 0);
+        assertEquals(BitmapDescriptorFactory.HUE_GREEN, colors.getHue("MARRIAGE"), 0);
+        // even when the table doesn't have them
+        EventColorTable emptyColors = new EventColorTable(Arrays.asList());
+        assertEquals(BitmapDescriptorFactory.HUE_BLUE, emptyColors.getHue("birth"), 0);
+    }
+
+    @Test
+    public void testTypesIgnoreCase() {
+        EventColorTable colors = new EventColorTable(Arrays.asList("Graduation", "graduation", "Birth"));
+        assertEquals(2, colors.getTypeCount());
+        assertEquals(colors.getTypeCode("Graduation"), colors.getTypeCode("graduation"));
+        assertEquals(colors.getTypeCode("Graduation"), colors.getTypeCode("GRADUATION"));
+        assertEquals(EventColorTable.UNKNOWN_TYPE, colors.getTypeCode("moved"));
+    }
+
+    @Test
+    public void testTypesIgnoreTheDefaultLocale() {
+        // in Turkish, "I" lowercases to a dotless "\u0131", which would turn "BIRTH" into "b\u0131rth"
+        Locale defaultLocale = Locale.getDefault();
+        Locale.setDefault(new Locale("tr", "TR"));
+        try {
+            EventColorTable colors = new EventColorTable(Arrays.asList("BIRTH", "birth", "MILITARY"));
+            assertEquals(2, colors.getTypeCount());
+            assertEquals(BitmapDescriptorFactory.HUE_BLUE, colors.getHue("BIRTH"), 0);
+            assertEquals(colors.getTypeCode("military"), colors.getTypeCode("MILITARY"));
+        } finally {
+            Locale.setDefault(defaultLocale);
+        }
+    }
+
+    @Test
+    public void testColorsAreDeterministic() {
+        EventColorTable colors = new EventColorTable(Arrays.asList("zoo trip", "baptism", "graduation", "birth"));
+        EventColorTable reorderedColors = new EventColorTable(Arrays.asList("graduation", "birth", "baptism", "zoo trip"));
+        Set<Float> hues = new HashSet<>();
+        for (String type : Arrays.asList("zoo trip", "baptism", "graduation", "birth")) {
+            assertEquals(colors.getHue(type), reorderedColors.getHue(type), 0);
+            hues.add(colors.getHue(type));
+        }
+        assertEquals(4, hues.size());
+        // unknown types are always the same color too
+        assertEquals(colors.getHue("moved"), reorderedColors.getHue("moved"), 0);
+    }
+
+    @Test
+    public void testMarkerIconsAreShared() {
+        EventColorTable colors = new EventColorTable(Arrays.asList("birth", "graduation"));
+        int typeCode = colors.getTypeCode("graduation");
+        assertSame(colors.getMarkerIcon(typeCode), colors.getMarkerIcon(typeCode));
+        assertNotSame(colors.getMarkerIcon(typeCode), colors.getMarkerIcon(colors.getTypeCode("birth")));
+    }
+}
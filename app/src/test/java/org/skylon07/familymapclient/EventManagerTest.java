@@ -3,10 +3,15 @@ package org.skylon07.familymapclient;
 import org.junit.*;
 import org.skylon07.familymapclient.utilities.DataCache;
 import org.skylon07.familymapclient.utilities.EventManager;
+import org.skylon07.familymapclient.utilities.Relationships;
 
 import static org.junit.Assert.*;
 
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 
 import models.Event;
 import models.Person;
@@ -114,12 +119,12 @@ public class EventManagerTest {
                 "father-father-father-root"
         };
         for (String personID : personIDsToTest) {
-            Event[] events = manager.getSortedEventsForPerson(personID);
-            assertEquals("Birth", events[0].getEventType());
-            assertEquals("Marriage", events[1].getEventType());
-            assertEquals("Death", events[2].getEventType());
-            assertTrue(events[0].getYear() < events[1].getYear());
-            assertTrue(events[1].getYear() < events[2].getYear());
+            List<Event> events = manager.getSortedEventsForPerson(personID);
+            assertEquals("Birth", events.get(0).getEventType());
+            assertEquals("Marriage", events.get(1).getEventType());
+            assertEquals("Death", events.get(2).getEventType());
+            assertTrue(events.get(0).getYear() < events.get(1).getYear());
+            assertTrue(events.get(1).getYear() < events.get(2).getYear());
         }
 
         assertNull(manager.getSortedEventsForPerson((String) null));
@@ -225,4 +230,83 @@ public class EventManagerTest {
 
         assertEquals(0, manager.getEventColor(null), 0);
     }
+
+    @Test
+    public void testFilterIsMemoized() {
+        EventManager manager = this.createEventManager(0b1010);
+        Event[] firstEvents = manager.getEventsWithSettingsFilter(null);
+
+        EventManager.mockSharedPreferences(true, true, true, true);
+        manager.getEventsWithSettingsFilter(null);
+        EventManager.mockSharedPreferences(true, false, true, false);
+        assertSame(firstEvents, manager.getEventsWithSettingsFilter(null));
+    }
+
+    @Test
+    public void testEverySettingCombination() throws IOException {
+        EventManager manager = this.createEventManager(0b1111);
+        // walking the combinations forwards, backwards, and in a jumbled order makes sure every
+        // combination is worked out from a few different starting points
+        int[] presets = new int[48];
+        for (int idx = 0; idx < 16; ++idx) {
+            presets[idx] = idx;
+            presets[16 + idx] = 15 - idx;
+            presets[32 + idx] = (idx * 7) % 16;
+        }
+        for (int preset : presets) {
+            EventManager.mockSharedPreferences(
+                    (preset & 0b1000) > 0,
+                    (preset & 0b0100) > 0,
+                    (preset & 0b0010) > 0,
+                    (preset & 0b0001) > 0
+            );
+            Set<Event> shownEvents = new HashSet<>(Arrays.asList(manager.getEventsWithSettingsFilter(null)));
+            assertEquals("preset " + preset, this.filterFromScratch(preset), shownEvents);
+            for (Event event : TestData.events) {
+                assertEquals(shownEvents.contains(event), manager.isShownWithSettingsFilter(event, null));
+            }
+        }
+    }
+
+    /**
+     * Works out which events should be shown for a preset, without any of the filter's tricks
+     *
+     * @param preset is a mask like the one given to createEventManager()
+     * @return the events to show
+     */
+    private Set<Event> filterFromScratch(int preset) throws IOException {
+        DataCache data = DataCache.getInstance();
+        Person user = data.getPersonByID(TestData.persons[0].getPersonID());
+        Set<String> hiddenPersonIDs = new HashSet<>();
+        if ((preset & 0b1000) == 0) {
+            Person father = data.getPersonByID(user.getFatherID());
+            hiddenPersonIDs.add(father.getPersonID());
+            hiddenPersonIDs.addAll(Relationships.mapToIDs(Relationships.getAllParentsOf(father)));
+        }
+        if ((preset & 0b0100) == 0) {
+            Person mother = data.getPersonByID(user.getMotherID());
+            hiddenPersonIDs.add(mother.getPersonID());
+            hiddenPersonIDs.addAll(Relationships.mapToIDs(Relationships.getAllParentsOf(mother)));
+        }
+        if ((preset & 0b0010) == 0) {
+            hiddenPersonIDs.addAll(Relationships.mapToIDs(Relationships.getAllMaleAncestors(user)));
+            if ("m".equals(user.getGender())) {
+                hiddenPersonIDs.add(user.getPersonID());
+            }
+        }
+        if ((preset & 0b0001) == 0) {
+            hiddenPersonIDs.addAll(Relationships.mapToIDs(Relationships.getAllFemaleAncestors(user)));
+            if ("f".equals(user.getGender())) {
+                hiddenPersonIDs.add(user.getPersonID());
+            }
+        }
+
+        Set<Event> shownEvents = new HashSet<>();
+        for (Event event : TestData.events) {
+            if (!hiddenPersonIDs.contains(event.getPersonID())) {
+                shownEvents.add(event);
+            }
+        }
+        return shownEvents;
+    }
 }
@@ -0,0 +1,90 @@
+package org.skylon07.familymapclient;
+
+import org.junit.*;
+import org.skylon07.familymapclient.utilities.DataCache;
+import org.skylon07.familymapclient.utilities.FamilyGraph;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.List;
+
+import models.Event;
+import models.Person;
+
+public class FamilyGraphTest {
+    private FamilyGraph graph;
+
+    @Before
+    public void setup() {
+        this.graph = new FamilyGraph(TestData.persons, TestData.events);
+    }
+
+    @Test
+    public void testPersonHandles() {
+        assertEquals(TestData.persons.length, this.graph.getPersonCount());
+        for (Person person : TestData.persons) {
+            int personIdx = this.graph.getPersonIndex(person.getPersonID());
+            assertSame(person, this.graph.getPerson(personIdx));
+        }
+        assertEquals(FamilyGraph.NONE, this.graph.getPersonIndex("nobody"));
+        assertEquals(FamilyGraph.NONE, this.graph.getPersonIndex(null));
+    }
+
+    @Test
+    public void testLinks() {
+        for (Person person : TestData.persons) {
+            int personIdx = this.graph.getPersonIndex(person.getPersonID());
+            assertEquals(this.graph.getPersonIndex(person.getFatherID()), this.graph.getFatherIndex(personIdx));
+            assertEquals(this.graph.getPersonIndex(person.getMotherID()), this.graph.getMotherIndex(personIdx));
+            assertEquals(this.graph.getPersonIndex(person.getSpouseID()), this.graph.getSpouseIndex(personIdx));
+        }
+    }
+
+    @Test
+    public void testTimelinesMatchDataCache() throws IOException {
+        DataCache.setTestMode();
+        DataCache.setTestInstance("root", TestData.persons, TestData.events);
+        DataCache data = DataCache.getInstance();
+
+        assertEquals(TestData.events.length, this.graph.getEventCount());
+        for (Person person : TestData.persons) {
+            int personIdx = this.graph.getPersonIndex(person.getPersonID());
+            List<Event> expectedTimeline = data.getSortedEventsForPerson(person.getPersonID());
+            int start = this.graph.getTimelineStart(personIdx);
+            int end = this.graph.getTimelineEnd(personIdx);
+            assertEquals(expectedTimeline.size(), end - start);
+            for (int eventIdx = start; eventIdx < end; ++eventIdx) {
+                assertSame(expectedTimeline.get(eventIdx - start), this.graph.getEvent(eventIdx));
+                assertEquals(personIdx, this.graph.getEventPersonIndex(eventIdx));
+            }
+            int expectedFirst = expectedTimeline.isEmpty() ? FamilyGraph.NONE : start;
+            assertEquals(expectedFirst, this.graph.getFirstEventIndex(personIdx));
+        }
+    }
+
+    @Test
+    public void testMissingPersons() {
+        Person[] persons = {
+                new Person("child", "user", "Child", "Last", "m", "dad", "gone", "nobody"),
+                new Person("dad", "user", "Dad", "Last", "m", null, null, null),
+        };
+        Event[] events = {
+                new Event("e1", "user", "stranger", 0f, 0f, "Country", "City", "birth", 1900),
+                new Event("e2", "user", "dad", 0f, 0f, "Country", "City", "birth", 1900),
+        };
+        FamilyGraph graph = new FamilyGraph(persons, events);
+
+        int childIdx = graph.getPersonIndex("child");
+        assertEquals(graph.getPersonIndex("dad"), graph.getFatherIndex(childIdx));
+        assertEquals(FamilyGraph.NONE, graph.getMotherIndex(childIdx));
+        assertEquals(FamilyGraph.NONE, graph.getSpouseIndex(childIdx));
+        assertEquals(FamilyGraph.NONE, graph.getFirstEventIndex(childIdx));
+
+        // the stranger's event is still there, just not in anyone's timeline
+        assertEquals(2, graph.getEventCount());
+        assertEquals("e2", graph.getEvent(graph.getFirstEventIndex(graph.getPersonIndex("dad"))).getEventID());
+        assertEquals("e1", graph.getEvent(1).getEventID());
+        assertEquals(FamilyGraph.NONE, graph.getEventPersonIndex(1));
+    }
+}
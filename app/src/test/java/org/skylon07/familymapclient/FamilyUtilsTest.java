@@ -10,6 +10,7 @@ import static org.junit.Assert.*;
 import java.io.IOException;
 import java.util.Arrays;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 import models.Event;
@@ -109,20 +110,20 @@ public class FamilyUtilsTest {
 
         Person mother = utils.getMotherOf(root);
         Person father = utils.getFatherOf(root);
-        Person[] motherChildren = utils.getChildrenOf(mother);
-        Person[] fatherChildren = utils.getChildrenOf(father);
-        assertArrayEquals(motherChildren, fatherChildren);
-        assertEquals(1, fatherChildren.length);
-        assertEquals(root, fatherChildren[0]);
+        List<Person> motherChildren = utils.getChildrenOf(mother);
+        List<Person> fatherChildren = utils.getChildrenOf(father);
+        assertEquals(motherChildren, fatherChildren);
+        assertEquals(1, fatherChildren.size());
+        assertEquals(root, fatherChildren.get(0));
 
         Person someone = utils.getFatherOf(utils.getMotherOf(root));
         Person grandma = utils.getMotherOf(someone);
         Person grandpa = utils.getFatherOf(someone);
-        Person[] grandmaChildren = utils.getChildrenOf(grandma);
-        Person[] grandpaChildren = utils.getChildrenOf(grandpa);
-        assertArrayEquals(grandmaChildren, grandpaChildren);
-        assertEquals(1, grandmaChildren.length);
-        assertEquals(someone, grandmaChildren[0]);
+        List<Person> grandmaChildren = utils.getChildrenOf(grandma);
+        List<Person> grandpaChildren = utils.getChildrenOf(grandpa);
+        assertEquals(grandmaChildren, grandpaChildren);
+        assertEquals(1, grandmaChildren.size());
+        assertEquals(someone, grandmaChildren.get(0));
 
         // but that's booooring... I want a REAL family!
         // well okay, here's mine!
@@ -191,11 +192,11 @@ public class FamilyUtilsTest {
         Event[] allEvents = {};
         DataCache.setTestInstance("taylor", allPeople, allEvents);
 
-        Person[] mySiblingsAndMe = utils.getChildrenOf(david);
-        Person[] mySiblingsAndMeAccordingToMom = utils.getChildrenOf(tara);
-        assertArrayEquals(mySiblingsAndMe, mySiblingsAndMeAccordingToMom);
-        assertEquals(3, mySiblingsAndMe.length);
-        Set<Person> siblingSet = new HashSet<>(Arrays.asList(mySiblingsAndMe));
+        List<Person> mySiblingsAndMe = utils.getChildrenOf(david);
+        List<Person> mySiblingsAndMeAccordingToMom = utils.getChildrenOf(tara);
+        assertEquals(mySiblingsAndMe, mySiblingsAndMeAccordingToMom);
+        assertEquals(3, mySiblingsAndMe.size());
+        Set<Person> siblingSet = new HashSet<>(mySiblingsAndMe);
         assertTrue(siblingSet.contains(taylor));
         assertTrue(siblingSet.contains(ashlyn));
         assertTrue(siblingSet.contains(adam));
@@ -0,0 +1,58 @@
+package org.skylon07.familymapclient;
+
+import com.google.gson.Gson;
+
+import org.junit.*;
+import org.skylon07.familymapclient.server.adapters.JsonAdapters;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import models.Event;
+import models.Person;
+import services.responses.EventResponse;
+import services.responses.PersonResponse;
+
+/**
+ * Compares how fast /person and /event responses are parsed with Gson's reflection based
+ * binding against the hand-written TypeAdapters
+ */
+public class JsonAdaptersBenchmark {
+    @Test
+    public void benchmarkParseThroughput() throws Exception {
+        Benchmarks.assumeEnabled();
+
+        int eventCount = 100_000;
+        Random rand = new Random(eventCount);
+        Person[] persons = Benchmarks.generatePersons(eventCount / 3, rand);
+        Event[] events = Benchmarks.generateEvents(persons, eventCount, rand);
+        Gson reflectiveGson = new Gson();
+        Gson adaptedGson = JsonAdapters.createGson();
+
+        PersonResponse personResponse = new PersonResponse();
+        personResponse.data = persons;
+        personResponse.success = true;
+        EventResponse eventResponse = new EventResponse();
+        eventResponse.data = events;
+        eventResponse.success = true;
+        String personJson = reflectiveGson.toJson(personResponse);
+        String eventJson = reflectiveGson.toJson(eventResponse);
+
+        System.out.printf("%,d persons and %,d events%n", persons.length, events.length);
+        double reflectivePersons = Benchmarks.measure("  reflection: parse /person", 5, 11, () -> {
+            assertEquals(persons.length, reflectiveGson.fromJson(personJson, PersonResponse.class).data.length);
+        });
+        double adaptedPersons = Benchmarks.measure("  adapters:   parse /person", 5, 11, () -> {
+            assertEquals(persons.length, adaptedGson.fromJson(personJson, PersonResponse.class).data.length);
+        });
+        double reflectiveEvents = Benchmarks.measure("  reflection: parse /event", 5, 11, () -> {
+            assertEquals(events.length, reflectiveGson.fromJson(eventJson, EventResponse.class).data.length);
+        });
+        double adaptedEvents = Benchmarks.measure("  adapters:   parse /event", 5, 11, () -> {
+            assertEquals(events.length, adaptedGson.fromJson(eventJson, EventResponse.class).data.length);
+        });
+        System.out.printf("  persons/s: %,.0f -> %,.0f%n", persons.length / reflectivePersons * 1000, persons.length / adaptedPersons * 1000);
+        System.out.printf("  events/s:  %,.0f -> %,.0f%n", events.length / reflectiveEvents * 1000, events.length / adaptedEvents * 1000);
+    }
+}
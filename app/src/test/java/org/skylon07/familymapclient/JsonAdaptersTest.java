@@ -0,0 +1,111 @@
+package org.skylon07.familymapclient;
+
+import com.google.gson.Gson;
+
+import org.junit.*;
+import org.skylon07.familymapclient.server.adapters.JsonAdapters;
+
+import static org.junit.Assert.*;
+
+import models.Event;
+import models.Person;
+import services.responses.EventResponse;
+import services.responses.LoginResponse;
+import services.responses.PersonResponse;
+
+/**
+ * Checks that the hand-written TypeAdapters read and write exactly what Gson's reflection based
+ * binding would
+ */
+public class JsonAdaptersTest {
+    private Gson reflectiveGson;
+    private Gson adaptedGson;
+
+    @Before
+    public void setup() {
+        this.reflectiveGson = new Gson();
+        this.adaptedGson = JsonAdapters.createGson();
+    }
+
+    @Test
+    public void testWritesMatchReflection() {
+        PersonResponse personResponse = new PersonResponse();
+        personResponse.data = TestData.persons;
+        personResponse.success = true;
+        assertEquals(this.reflectiveGson.toJson(personResponse), this.adaptedGson.toJson(personResponse));
+
+        EventResponse eventResponse = new EventResponse();
+        eventResponse.data = TestData.events;
+        eventResponse.success = true;
+        assertEquals(this.reflectiveGson.toJson(eventResponse), this.adaptedGson.toJson(eventResponse));
+
+        LoginResponse loginResponse = new LoginResponse();
+        loginResponse.message = "Error: bad password";
+        assertEquals(this.reflectiveGson.toJson(loginResponse), this.adaptedGson.toJson(loginResponse));
+    }
+
+    @Test
+    public void testReadsMatchReflection() {
+        PersonResponse personResponse = new PersonResponse();
+        personResponse.data = TestData.persons;
+        personResponse.success = true;
+        String personJson = this.reflectiveGson.toJson(personResponse);
+        PersonResponse readPersons = this.adaptedGson.fromJson(personJson, PersonResponse.class);
+        assertTrue(readPersons.success);
+        assertEquals(TestData.persons.length, readPersons.data.length);
+        for (int idx = 0; idx < TestData.persons.length; ++idx) {
+            Person expected = TestData.persons[idx];
+            Person actual = readPersons.data[idx];
+            assertEquals(expected.getPersonID(), actual.getPersonID());
+            assertEquals(expected.getAssociatedUsername(), actual.getAssociatedUsername());
+            assertEquals(expected.getFirstName(), actual.getFirstName());
+            assertEquals(expected.getLastName(), actual.getLastName());
+            assertEquals(expected.getGender(), actual.getGender());
+            assertEquals(expected.getFatherID(), actual.getFatherID());
+            assertEquals(expected.getMotherID(), actual.getMotherID());
+            assertEquals(expected.getSpouseID(), actual.getSpouseID());
+        }
+
+        EventResponse eventResponse = new EventResponse();
+        eventResponse.data = TestData.events;
+        eventResponse.success = true;
+        String eventJson = this.reflectiveGson.toJson(eventResponse);
+        EventResponse readEvents = this.adaptedGson.fromJson(eventJson, EventResponse.class);
+        assertTrue(readEvents.success);
+        assertEquals(TestData.events.length, readEvents.data.length);
+        for (int idx = 0; idx < TestData.events.length; ++idx) {
+            Event expected = TestData.events[idx];
+            Event actual = readEvents.data[idx];
+            assertEquals(expected.getEventID(), actual.getEventID());
+            assertEquals(expected.getAssociatedUsername(), actual.getAssociatedUsername());
+            assertEquals(expected.getPersonID(), actual.getPersonID());
+            assertEquals(expected.getLatitude(), actual.getLatitude(), 0);
+            assertEquals(expected.getLongitude(), actual.getLongitude(), 0);
+            assertEquals(expected.getCountry(), actual.getCountry());
+            assertEquals(expected.getCity(), actual.getCity());
+            assertEquals(expected.getEventType(), actual.getEventType());
+            assertEquals(expected.getYear(), actual.getYear());
+        }
+    }
+
+    @Test
+    public void testOddResponses() {
+        // unknown fields are skipped, and nulls leave primitives alone (just like reflection)
+        String json = "{\"extra\":{\"nested\":[1,2,3]},\"eventID\":null,\"year\":null,\"latitude\":\"12.5\","
+                + "\"data\":null,\"message\":\"hi\",\"success\":true}";
+        EventResponse reflected = this.reflectiveGson.fromJson(json, EventResponse.class);
+        EventResponse adapted = this.adaptedGson.fromJson(json, EventResponse.class);
+        assertNull(adapted.eventID);
+        assertNull(adapted.data);
+        assertEquals(reflected.year, adapted.year);
+        assertEquals(reflected.latitude, adapted.latitude, 0);
+        assertEquals(reflected.message, adapted.message);
+        assertEquals(reflected.success, adapted.success);
+
+        assertNull(this.adaptedGson.fromJson("null", PersonResponse.class));
+        LoginResponse failed = this.adaptedGson.fromJson("{\"message\":\"Error: nope\",\"success\":false}", LoginResponse.class);
+        assertFalse(failed.success);
+        assertNull(failed.authtoken);
+        assertEquals("Error: nope", failed.message);
+    }
+}
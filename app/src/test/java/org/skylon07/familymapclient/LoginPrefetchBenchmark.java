@@ -0,0 +1,58 @@
+package org.skylon07.familymapclient;
+
+import org.junit.*;
+import org.skylon07.familymapclient.utilities.DataCache;
+import org.skylon07.familymapclient.utilities.EventManager;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import models.AuthToken;
+import models.Event;
+import models.Person;
+
+/**
+ * Measures how long it takes from a login being recorded until the map has its (filtered)
+ * events to draw, with and without prefetching, against a StubServer with some latency.
+ * Hiding the father's side makes the filter walk that whole side of the tree, which used to
+ * mean one request per ancestor when persons hadn't been downloaded yet.
+ */
+public class LoginPrefetchBenchmark {
+    static int LATENCY_MILLIS = 5;
+
+    @Test
+    public void benchmarkLoginToFirstMarker() throws Exception {
+        Benchmarks.assumeEnabled();
+
+        Random rand = new Random(1234);
+        Person[] persons = Benchmarks.generatePersons(1_000, rand);
+        Event[] events = Benchmarks.generateEvents(persons, 3_000, rand);
+        StubServer server = new StubServer(persons, events);
+        server.setLatency(LATENCY_MILLIS);
+        DataCache data = DataCache.getInstance(server.createProxy());
+        EventManager.mockSharedPreferences(false, true, true, true);
+        try {
+            System.out.printf("%,d persons and %,d events, %d ms of latency per request%n",
+                    persons.length, events.length, LATENCY_MILLIS);
+            data.usePrefetchOnLogin(false);
+            // (one run is plenty; this is slow)
+            Benchmarks.measure("  lazy: login -> filtered events", 0, 1, () -> {
+                data.invalidateCache();
+                data.recordLogin(persons[0].getPersonID(), new AuthToken("stubToken", "benchmarkUser"));
+                assertTrue(new EventManager().getEventsWithSettingsFilter(null).length > 0);
+            });
+            data.usePrefetchOnLogin(true);
+            Benchmarks.measure("  prefetch: login -> filtered events", 1, 3, () -> {
+                data.invalidateCache();
+                data.recordLogin(persons[0].getPersonID(), new AuthToken("stubToken", "benchmarkUser"));
+                data.awaitPrefetch();
+                assertTrue(new EventManager().getEventsWithSettingsFilter(null).length > 0);
+            });
+        } finally {
+            data.usePrefetchOnLogin(true);
+            EventManager.mockSharedPreferences(true, true, true, true);
+            server.stop();
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package org.skylon07.familymapclient;
+
+import org.junit.*;
+import org.skylon07.familymapclient.utilities.MarkerBatcher;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class MarkerBatcherTest {
+    /** Stands in for the UI thread */
+    private ExecutorService uiThread;
+    /** How many tasks are waiting to run on the "UI thread" */
+    private AtomicInteger queuedTasks;
+    /** The most tasks that were ever waiting on the "UI thread" at once */
+    private AtomicInteger maxQueuedTasks;
+
+    @Before
+    public void setup() {
+        this.uiThread = Executors.newSingleThreadExecutor();
+        this.queuedTasks = new AtomicInteger();
+        this.maxQueuedTasks = new AtomicInteger();
+    }
+
+    @After
+    public void teardown() {
+        this.uiThread.shutdownNow();
+    }
+
+    private void runOnUiThread(Runnable task) {
+        int queued = this.queuedTasks.incrementAndGet();
+        this.maxQueuedTasks.accumulateAndGet(queued, Math::max);
+        this.uiThread.execute(() -> {
+            this.queuedTasks.decrementAndGet();
+            task.run();
+        });
+    }
+
+    /**
+     * Like Activity.runOnUiThread(), which runs the task right away when it's already on the UI
+     * thread (and only queues it otherwise)
+     */
+    private void runInlineOnUiThread(Thread uiThread, Runnable task) {
+        if (Thread.currentThread() == uiThread) {
+            task.run();
+        } else {
+            this.runOnUiThread(task);
+        }
+    }
+
+    private static List<Integer> range(int start, int end) {
+        List<Integer> items = new ArrayList<>();
+        for (int item = start; item < end; ++item) {
+            items.add(item);
+        }
+        return items;
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException err) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Test
+    public void testItemsAreAppliedInFrameSizedBatches() throws Exception {
+        List<Integer> applied = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch done = new CountDownLatch(1);
+        long budgetNanos = TimeUnit.MILLISECONDS.toNanos(5);
+        MarkerBatcher<Integer> batcher = new MarkerBatcher<>(this::runOnUiThread, budgetNanos, (Integer item) -> {
+            MarkerBatcherTest.sleep(1);
+            applied.add(item);
+        });
+        batcher.setProgressListener((MarkerBatcher<?> markers) -> {
+            if (markers.isDone()) {
+                done.countDown();
+            }
+        });
+
+        for (int chunkStart = 0; chunkStart < 100; chunkStart += 10) {
+            batcher.addAll(MarkerBatcherTest.range(chunkStart, chunkStart + 10));
+        }
+        batcher.finish();
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+
+        assertEquals(MarkerBatcherTest.range(0, 100), applied);
+        assertEquals(100, batcher.getAppliedCount());
+        assertEquals(100, batcher.getAddedCount());
+        // each batch holds about 5 items, and there is never more than one waiting at once
+        assertTrue(batcher.getBatchCount() >= 100 / 6);
+        assertTrue(batcher.getBatchCount() < 100);
+        assertEquals(1, this.maxQueuedTasks.get());
+    }
+
+    @Test
+    public void testProgressIsReportedOnTheUiThread() throws Exception {
+        Thread[] uiThread = new Thread[1];
+        this.uiThread.submit(() -> uiThread[0] = Thread.currentThread()).get();
+        List<Integer> progress = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch done = new CountDownLatch(1);
+        MarkerBatcher<Integer> batcher = new MarkerBatcher<>(this::runOnUiThread, 0, (Integer item) -> {
+            assertSame(uiThread[0], Thread.currentThread());
+        });
+        batcher.setProgressListener((MarkerBatcher<?> markers) -> {
+            assertSame(uiThread[0], Thread.currentThread());
+            progress.add(markers.getAppliedCount());
+            if (markers.isDone()) {
+                done.countDown();
+            }
+        });
+
+        batcher.addAll(MarkerBatcherTest.range(0, 20));
+        batcher.finish();
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+
+        // with no budget, every batch applies exactly one item
+        assertEquals(20, batcher.getBatchCount());
+        for (int idx = 1; idx < progress.size(); ++idx) {
+            assertTrue(progress.get(idx) >= progress.get(idx - 1));
+        }
+        assertEquals(Integer.valueOf(20), progress.get(progress.size() - 1));
+    }
+
+    @Test
+    public void testCancel() throws Exception {
+        CountDownLatch firstApplied = new CountDownLatch(1);
+        CountDownLatch cancelled = new CountDownLatch(1);
+        AtomicInteger appliedCount = new AtomicInteger();
+        MarkerBatcher<Integer> batcher = new MarkerBatcher<>(this::runOnUiThread, 0, (Integer item) -> {
+            appliedCount.incrementAndGet();
+            firstApplied.countDown();
+            try {
+                cancelled.await();
+            } catch (InterruptedException err) {
+                Thread.currentThread().interrupt();
+            }
+        });
+
+        batcher.addAll(MarkerBatcherTest.range(0, 50));
+        assertTrue(firstApplied.await(10, TimeUnit.SECONDS));
+        batcher.cancel();
+        cancelled.countDown();
+        batcher.addAll(MarkerBatcherTest.range(50, 100));
+        this.uiThread.submit(() -> null).get();
+
+        assertEquals(1, appliedCount.get());
+        assertEquals(50, batcher.getAddedCount());
+    }
+
+    @Test
+    public void testInlineUiExecutorDoesNotNestBatches() throws Exception {
+        Thread[] uiThread = new Thread[1];
+        this.uiThread.submit(() -> uiThread[0] = Thread.currentThread()).get();
+        List<Integer> applied = Collections.synchronizedList(new ArrayList<>());
+        List<Integer> stackDepths = Collections.synchronizedList(new ArrayList<>());
+        List<Integer> progress = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch done = new CountDownLatch(1);
+        MarkerBatcher<Integer> batcher = new MarkerBatcher<>(
+                (Runnable task) -> this.runInlineOnUiThread(uiThread[0], task),
+                0,
+                (Integer item) -> {
+                    applied.add(item);
+                    stackDepths.add(Thread.currentThread().getStackTrace().length);
+                }
+        );
+        batcher.setProgressListener((MarkerBatcher<?> markers) -> {
+            progress.add(markers.getAppliedCount());
+            if (markers.isDone()) {
+                done.countDown();
+            }
+        });
+
+        // (like MapFragment, the batcher is filled from the UI thread, so every batch runs inline)
+        this.uiThread.submit(() -> {
+            batcher.addAll(MarkerBatcherTest.range(0, 200));
+            batcher.finish();
+        }).get();
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+
+        assertEquals(MarkerBatcherTest.range(0, 200), applied);
+        // batches run one after another instead of inside each other...
+        assertEquals(stackDepths.get(0), stackDepths.get(stackDepths.size() - 1));
+        // ...so progress is reported in order
+        for (int idx = 1; idx < progress.size(); ++idx) {
+            assertTrue(progress.get(idx) >= progress.get(idx - 1));
+        }
+        assertEquals(Integer.valueOf(200), progress.get(progress.size() - 1));
+    }
+}
@@ -0,0 +1,81 @@
+package org.skylon07.familymapclient;
+
+import org.junit.*;
+import org.skylon07.familymapclient.utilities.PersonClassifier;
+
+import static org.junit.Assert.*;
+
+import java.util.BitSet;
+
+import models.Person;
+
+public class PersonClassifierTest {
+    private PersonClassifier classifier;
+
+    @Before
+    public void setup() {
+        this.classifier = new PersonClassifier(TestData.persons, "root");
+    }
+
+    @Test
+    public void testIndexes() {
+        assertEquals(TestData.persons.length, this.classifier.getPersonCount());
+        for (Person person : TestData.persons) {
+            int personIdx = this.classifier.getPersonIndex(person.getPersonID());
+            assertSame(person, this.classifier.getPerson(personIdx));
+        }
+        assertEquals(-1, this.classifier.getPersonIndex("nobody"));
+        assertEquals(-1, this.classifier.getPersonIndex(null));
+    }
+
+    @Test
+    public void testSides() {
+        BitSet self = this.classifier.getSelf();
+        BitSet fathersSide = this.classifier.getFathersSide();
+        BitSet mothersSide = this.classifier.getMothersSide();
+        assertEquals(1, self.cardinality());
+        assertTrue(self.get(this.classifier.getPersonIndex("root")));
+
+        for (Person person : TestData.persons) {
+            int personIdx = this.classifier.getPersonIndex(person.getPersonID());
+            String personID = person.getPersonID();
+            assertEquals(personID, personID.endsWith("father-root"), fathersSide.get(personIdx));
+            assertEquals(personID, personID.endsWith("mother-root"), mothersSide.get(personIdx));
+        }
+    }
+
+    @Test
+    public void testGenders() {
+        BitSet males = this.classifier.getMales();
+        BitSet females = this.classifier.getFemales();
+        assertFalse(males.intersects(females));
+        for (Person person : TestData.persons) {
+            int personIdx = this.classifier.getPersonIndex(person.getPersonID());
+            assertEquals("m".equals(person.getGender()), males.get(personIdx));
+            assertEquals("f".equals(person.getGender()), females.get(personIdx));
+        }
+    }
+
+    @Test
+    public void testReturnedSetsAreCopies() {
+        this.classifier.getFathersSide().clear();
+        assertFalse(this.classifier.getFathersSide().isEmpty());
+    }
+
+    @Test
+    public void testSharedAncestor() {
+        // the same grandparent on both sides shouldn't be walked (or counted) twice
+        Person[] persons = {
+                new Person("me", "user", "Me", "Me", "f", "dad", "mom", null),
+                new Person("dad", "user", "Dad", "Me", "m", "grandpa", null, "mom"),
+                new Person("mom", "user", "Mom", "Me", "f", "grandpa", null, "dad"),
+                new Person("grandpa", "user", "Grandpa", "Me", "m", null, null, null),
+        };
+        PersonClassifier classifier = new PersonClassifier(persons, "me");
+        int grandpaIdx = classifier.getPersonIndex("grandpa");
+        assertTrue(classifier.getFathersSide().get(grandpaIdx));
+        assertTrue(classifier.getMothersSide().get(grandpaIdx));
+        assertEquals(2, classifier.getFathersSide().cardinality());
+        assertEquals(2, classifier.getMothersSide().cardinality());
+    }
+}
@@ -0,0 +1,112 @@
+package org.skylon07.familymapclient;
+
+import org.junit.*;
+import org.skylon07.familymapclient.utilities.DataCache;
+import org.skylon07.familymapclient.utilities.Relationships;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import models.AuthToken;
+import models.Event;
+import models.Person;
+
+/**
+ * Compares looking persons up one round trip at a time against DataCache.getPersonsByIDs(),
+ * against a StubServer with some latency. Every run starts from an empty cache.
+ */
+public class PersonLookupBenchmark {
+    static int LATENCY_MILLIS = 5;
+
+    @Test
+    public void benchmarkPersonLookups() throws Exception {
+        Benchmarks.assumeEnabled();
+
+        Random rand = new Random(4321);
+        Person[] persons = Benchmarks.generatePersons(2_000, rand);
+        StubServer server = new StubServer(persons, new Event[0]);
+        server.setLatency(LATENCY_MILLIS);
+        DataCache data = DataCache.getInstance(server.createProxy());
+        data.usePrefetchOnLogin(false);
+        try {
+            System.out.printf("%,d persons, %d ms of latency per request%n", persons.length, LATENCY_MILLIS);
+            int[] batchSizes = {4, DataCache.BULK_PERSON_LOOKUP_THRESHOLD - 1, DataCache.BULK_PERSON_LOOKUP_THRESHOLD, 100};
+            for (int batchSize : batchSizes) {
+                List<String> personIDs = new ArrayList<>();
+                for (int personIdx = 0; personIdx < batchSize; ++personIdx) {
+                    personIDs.add(persons[personIdx].getPersonID());
+                }
+                Benchmarks.measure("  " + batchSize + " persons, one at a time", 1, 5, () -> {
+                    PersonLookupBenchmark.resetCache(data);
+                    for (String personID : personIDs) {
+                        assertNotNull(data.getPersonByID(personID));
+                    }
+                });
+                Benchmarks.measure("  " + batchSize + " persons, getPersonsByIDs", 1, 5, () -> {
+                    PersonLookupBenchmark.resetCache(data);
+                    assertEquals(batchSize, data.getPersonsByIDs(personIDs).size());
+                });
+            }
+
+            // persons 0-62 are the user and their ancestors up to 5 generations back
+            Person[] family = new Person[63];
+            System.arraycopy(persons, 0, family, 0, family.length);
+            Person[] familyPersons = PersonLookupBenchmark.withoutParentsPast(family);
+            server.stop();
+            server = new StubServer(familyPersons, new Event[0]);
+            server.setLatency(LATENCY_MILLIS);
+            data.useServer(server.createProxy());
+            Benchmarks.measure("  " + (familyPersons.length - 1) + " ancestors, one at a time", 1, 5, () -> {
+                PersonLookupBenchmark.resetCache(data);
+                List<Person> toVisit = new ArrayList<>();
+                toVisit.add(data.getPersonByID(familyPersons[0].getPersonID()));
+                int numFound = 0;
+                while (!toVisit.isEmpty()) {
+                    Person person = toVisit.remove(toVisit.size() - 1);
+                    for (String parentID : new String[]{person.getFatherID(), person.getMotherID()}) {
+                        if (parentID != null) {
+                            toVisit.add(data.getPersonByID(parentID));
+                            ++numFound;
+                        }
+                    }
+                }
+                assertEquals(familyPersons.length - 1, numFound);
+            });
+            Benchmarks.measure("  " + (familyPersons.length - 1) + " ancestors, Relationships.getAncestorsOf", 1, 5, () -> {
+                PersonLookupBenchmark.resetCache(data);
+                Person user = data.getPersonByID(familyPersons[0].getPersonID());
+                assertEquals(familyPersons.length - 1, Relationships.getAncestorsOf(user).size());
+            });
+        } finally {
+            data.usePrefetchOnLogin(true);
+            server.stop();
+        }
+    }
+
+    private static void resetCache(DataCache data) {
+        data.invalidateCache();
+        data.recordLogin("stub", new AuthToken("stubToken", "benchmarkUser"));
+    }
+
+    /**
+     * @return copies of some persons, with any parents that aren't one of them removed
+     */
+    private static Person[] withoutParentsPast(Person[] persons) {
+        Person[] trimmed = new Person[persons.length];
+        for (int personIdx = 0; personIdx < persons.length; ++personIdx) {
+            Person person = persons[personIdx];
+            boolean hasParents = 2 * personIdx + 2 < persons.length;
+            trimmed[personIdx] = new Person(
+                    person.getPersonID(), person.getAssociatedUsername(), person.getFirstName(),
+                    person.getLastName(), person.getGender(),
+                    hasParents ? person.getFatherID() : null,
+                    hasParents ? person.getMotherID() : null,
+                    person.getSpouseID()
+            );
+        }
+        return trimmed;
+    }
+}
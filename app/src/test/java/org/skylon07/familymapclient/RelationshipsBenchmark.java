@@ -0,0 +1,91 @@
+package org.skylon07.familymapclient;
+
+import org.junit.*;
+import org.skylon07.familymapclient.utilities.DataCache;
+import org.skylon07.familymapclient.utilities.Relationships;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import models.Event;
+import models.Person;
+
+/**
+ * Compares finding every ancestor with Relationships against the recursive walk it used to do,
+ * on synthetic 20-generation trees: a full one (every ancestor distinct) and a fully collapsed
+ * one (every generation is the same couple's parents), where the old walk re-visits shared
+ * ancestors over and over.
+ */
+public class RelationshipsBenchmark {
+    static final int NUM_GENERATIONS = 20;
+
+    @Test
+    public void benchmarkFullTree() throws Exception {
+        Benchmarks.assumeEnabled();
+
+        Person[] persons = Benchmarks.generatePersons((1 << NUM_GENERATIONS) - 1, new Random(NUM_GENERATIONS));
+        System.out.printf("full tree, %d generations (%,d persons)%n", NUM_GENERATIONS, persons.length);
+        RelationshipsBenchmark.compare(persons, persons.length - 1);
+    }
+
+    @Test
+    public void benchmarkCollapsedTree() throws Exception {
+        Benchmarks.assumeEnabled();
+
+        // generation g is a couple whose parents are both members of generation g + 1
+        Person[] persons = new Person[1 + 2 * NUM_GENERATIONS];
+        persons[0] = new Person("root", "user", "Root", "Last", "m", "m1", "f1", null);
+        for (int generation = 1; generation <= NUM_GENERATIONS; ++generation) {
+            String fatherID = generation < NUM_GENERATIONS ? "m" + (generation + 1) : null;
+            String motherID = generation < NUM_GENERATIONS ? "f" + (generation + 1) : null;
+            persons[2 * generation - 1] = new Person("m" + generation, "user", "Father", "Last", "m", fatherID, motherID, "f" + generation);
+            persons[2 * generation] = new Person("f" + generation, "user", "Mother", "Last", "f", fatherID, motherID, "m" + generation);
+        }
+        System.out.printf("collapsed tree, %d generations (%,d persons)%n", NUM_GENERATIONS, persons.length);
+        RelationshipsBenchmark.compare(persons, persons.length - 1);
+    }
+
+    private static void compare(Person[] persons, int expectedAncestors) throws Exception {
+        DataCache.setTestMode();
+        DataCache.setTestInstance(persons[0].getPersonID(), persons, new Event[0]);
+        Person root = persons[0];
+
+        Benchmarks.measure("  old recursive walk", 1, 5, () -> {
+            Set<Person> ancestors = new HashSet<>();
+            RelationshipsBenchmark.addAncestorsRecursively(root, ancestors);
+            assertEquals(expectedAncestors, ancestors.size());
+        });
+        int[] runs = new int[1];
+        Benchmarks.measure("  iterative walk (first call)", 1, 5, () -> {
+            // a new ID each run, so the result cache never has it yet
+            Person freshRoot = new Person("root-" + runs[0]++, "user", "Root", "Last", "m",
+                    root.getFatherID(), root.getMotherID(), null);
+            assertEquals(expectedAncestors, Relationships.getAncestorsOf(freshRoot).size());
+        });
+        Relationships.getAncestorsOf(root);
+        Benchmarks.measure("  iterative walk (cached)", 100, 1001, () -> {
+            assertEquals(expectedAncestors, Relationships.getAncestorsOf(root).size());
+        });
+    }
+
+    /**
+     * The walk Relationships.getAllParentsOf() used to do
+     */
+    private static void addAncestorsRecursively(Person person, Set<Person> ancestors) throws IOException {
+        DataCache data = DataCache.getInstance();
+        if (person.getFatherID() != null) {
+            Person father = data.getPersonByID(person.getFatherID());
+            ancestors.add(father);
+            RelationshipsBenchmark.addAncestorsRecursively(father, ancestors);
+        }
+        if (person.getMotherID() != null) {
+            Person mother = data.getPersonByID(person.getMotherID());
+            ancestors.add(mother);
+            RelationshipsBenchmark.addAncestorsRecursively(mother, ancestors);
+        }
+    }
+}
@@ -10,6 +10,7 @@ import static org.junit.Assert.*;
 import java.io.IOException;
 import java.util.Arrays;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 import models.Person;
@@ -177,4 +178,86 @@ public class RelationshipsTest {
             Relationships.mapToIDs(null);
         });
     }
+
+    @Test
+    public void testGetAncestors() throws IOException {
+        Person root = DataCache.getInstance().getPersonByID("root");
+        List<Relationships.Ancestor> ancestors = Relationships.getAncestorsOf(root);
+        assertEquals(2 + 4 + 8 + 16, ancestors.size());
+        int lastGeneration = 0;
+        for (Relationships.Ancestor ancestor : ancestors) {
+            String personID = ancestor.getPerson().getPersonID();
+            // every "father-"/"mother-" in the ID is one generation
+            int generation = (personID.length() - "root".length()) / "father-".length();
+            assertEquals(personID, generation, ancestor.getGeneration());
+            assertTrue(ancestor.getGeneration() >= lastGeneration);
+            lastGeneration = ancestor.getGeneration();
+
+            assertEquals(personID, personID.endsWith("father-root"), ancestor.isPaternal());
+            assertEquals(personID, personID.endsWith("mother-root"), ancestor.isMaternal());
+        }
+
+        assertSame(ancestors, Relationships.getAncestorsOf(root));
+        assertNull(Relationships.getAncestorsOf(null));
+    }
+
+    @Test
+    public void testPedigreeCollapse() throws IOException {
+        // grandpa is both the father's father and the mother's father, and is a parent of great-grandma too
+        Person[] persons = {
+                new Person("me", "user", "Me", "Me", "f", "dad", "mom", null),
+                new Person("dad", "user", "Dad", "Me", "m", "grandpa", null, "mom"),
+                new Person("mom", "user", "Mom", "Me", "f", "grandpa", "grandma", "dad"),
+                new Person("grandma", "user", "Grandma", "Me", "f", "grandpa", null, null),
+                new Person("grandpa", "user", "Grandpa", "Me", "m", "great-grandpa", null, null),
+                new Person("great-grandpa", "user", "Great-Grandpa", "Me", "m", null, null, null),
+        };
+        DataCache.setTestInstance("me", persons, TestData.events);
+
+        List<Relationships.Ancestor> ancestors = Relationships.getAncestorsOf(persons[0]);
+        assertEquals(5, ancestors.size());
+        for (Relationships.Ancestor ancestor : ancestors) {
+            switch (ancestor.getPerson().getPersonID()) {
+                case "dad":
+                    assertEquals(1, ancestor.getGeneration());
+                    assertEquals(Relationships.PATERNAL_LINE, ancestor.getLines());
+                    break;
+                case "mom":
+                    assertEquals(1, ancestor.getGeneration());
+                    assertEquals(Relationships.MATERNAL_LINE, ancestor.getLines());
+                    break;
+                case "grandma":
+                    assertEquals(2, ancestor.getGeneration());
+                    assertEquals(Relationships.MATERNAL_LINE, ancestor.getLines());
+                    break;
+                case "grandpa":
+                    assertEquals(2, ancestor.getGeneration());
+                    assertTrue(ancestor.isPaternal() && ancestor.isMaternal());
+                    break;
+                case "great-grandpa":
+                    assertEquals(3, ancestor.getGeneration());
+                    assertTrue(ancestor.isPaternal() && ancestor.isMaternal());
+                    break;
+                default:
+                    fail("Unexpected ancestor " + ancestor.getPerson().getPersonID());
+            }
+        }
+    }
+
+    @Test
+    public void testDeepTree() throws IOException {
+        // far deeper than any real tree, but a recursive walk would run out of stack on this
+        int numGenerations = 100_000;
+        Person[] persons = new Person[numGenerations];
+        for (int generation = 0; generation < numGenerations; ++generation) {
+            String fatherID = generation + 1 < numGenerations ? "person" + (generation + 1) : null;
+            persons[generation] = new Person("person" + generation, "user", "First", "Last", "m", fatherID, null, null);
+        }
+        DataCache.setTestInstance("person0", persons, TestData.events);
+
+        List<Relationships.Ancestor> ancestors = Relationships.getAncestorsOf(persons[0]);
+        assertEquals(numGenerations - 1, ancestors.size());
+        assertEquals(numGenerations - 1, ancestors.get(ancestors.size() - 1).getGeneration());
+        assertEquals(numGenerations - 1, Relationships.getAllMaleAncestors(persons[0]).size());
+    }
 }
@@ -0,0 +1,74 @@
+package org.skylon07.familymapclient;
+
+import org.junit.*;
+import org.skylon07.familymapclient.utilities.SearchIndex;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+
+import models.Event;
+import models.Person;
+
+/**
+ * Compares searching events with a SearchIndex against the old way of matching a ".*query.*"
+ * regex against every field of every event
+ */
+public class SearchIndexBenchmark {
+    @Test
+    public void benchmarkEventSearch() throws Exception {
+        Benchmarks.assumeEnabled();
+
+        int eventCount = 100_000;
+        Random rand = new Random(eventCount);
+        Person[] persons = Benchmarks.generatePersons(eventCount / 3, rand);
+        Event[] events = Benchmarks.generateEvents(persons, eventCount, rand);
+
+        System.out.printf("%,d events%n", eventCount);
+        AtomicReference<SearchIndex<Event>> index = new AtomicReference<>();
+        Benchmarks.measure("  build index", 2, 5, () -> {
+            index.set(new SearchIndex<>(
+                    Arrays.asList(events),
+                    Event::getEventType,
+                    Event::getCountry,
+                    Event::getCity,
+                    (Event event) -> Integer.toString(event.getYear())
+            ));
+        });
+
+        String[] queries = {"city42-1", "retire", "country5", "1999", "mil"};
+        for (String query : queries) {
+            int[] numMatches = new int[1];
+            Benchmarks.measure("  regex scan: \"" + query + "\"", 3, 7, () -> {
+                numMatches[0] = SearchIndexBenchmark.regexSearch(events, query).size();
+            });
+            Benchmarks.measure("  index:      \"" + query + "\" (" + numMatches[0] + " matches)", 20, 101, () -> {
+                assertEquals(numMatches[0], index.get().search(query).size());
+            });
+        }
+    }
+
+    /**
+     * The search SearchManager.searchEvents() used to do
+     */
+    private static Set<Event> regexSearch(Event[] events, String query) {
+        String queryRegex = ".*" + query.toLowerCase() + ".*";
+        Set<Event> matches = new HashSet<>();
+        for (Event event : events) {
+            String[] fields = {
+                    event.getEventType(), event.getCountry(), event.getCity(), Integer.toString(event.getYear())
+            };
+            for (String field : fields) {
+                if (field.toLowerCase().matches(queryRegex)) {
+                    matches.add(event);
+                    break;
+                }
+            }
+        }
+        return matches;
+    }
+}
@@ -0,0 +1,90 @@
+package org.skylon07.familymapclient;
+
+import org.junit.*;
+import org.skylon07.familymapclient.utilities.SearchIndex;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.CancellationException;
+
+import models.Event;
+import models.Person;
+
+/**
+ * Checks the SearchIndex against plain old String.contains()
+ */
+public class SearchIndexTest {
+    @Test
+    public void testMatchesContains() {
+        Random rand = new Random(10);
+        Person[] persons = Benchmarks.generatePersons(500, rand);
+        Event[] events = Benchmarks.generateEvents(persons, 2_000, rand);
+        SearchIndex<Event> index = new SearchIndex<>(
+                Arrays.asList(events),
+                Event::getEventType,
+                Event::getCountry,
+                Event::getCity,
+                (Event event) -> Integer.toString(event.getYear())
+        );
+
+        String[] queries = {
+                "", "a", "Y", "1", "19", "irt", "BIRTH", "ity1", "country3", "city3-1", "-",
+                "ret", "marriage", "military service", "nothing like this", "zzz", "17"
+        };
+        for (String query : queries) {
+            String lowerQuery = query.toLowerCase(Locale.ROOT);
+            List<Event> expected = new ArrayList<>();
+            for (Event event : events) {
+                if (event.getEventType().toLowerCase(Locale.ROOT).contains(lowerQuery)
+                        || event.getCountry().toLowerCase(Locale.ROOT).contains(lowerQuery)
+                        || event.getCity().toLowerCase(Locale.ROOT).contains(lowerQuery)
+                        || Integer.toString(event.getYear()).contains(lowerQuery)) {
+                    expected.add(event);
+                }
+            }
+            assertEquals("query: " + query, expected, index.search(query));
+        }
+    }
+
+    @Test
+    public void testRecordsWithRepeatedValues() {
+        // a person named "Taylor Taylor" should still only come back once
+        Person taylor = new Person("id1", "user", "Taylor", "Taylor", "m", null, null, null);
+        Person tara = new Person("id2", "user", "Tara", "Taylor", "f", null, null, null);
+        Person nobody = new Person("id3", "user", null, "Nobody", "f", null, null, null);
+        SearchIndex<Person> index = new SearchIndex<>(
+                Arrays.asList(taylor, tara, nobody),
+                Person::getFirstName,
+                Person::getLastName
+        );
+
+        assertEquals(Arrays.asList(taylor, tara), index.search("tay"));
+        assertEquals(Arrays.asList(taylor, tara, nobody), index.search("o"));
+        assertEquals(Arrays.asList(tara), index.search("TARA"));
+        assertEquals(3, index.getValueCount());
+    }
+
+    @Test
+    public void testCancelledSearchStops() {
+        List<Person> persons = new ArrayList<>();
+        for (int personIdx = 0; personIdx < 5_000; ++personIdx) {
+            persons.add(new Person("id" + personIdx, "user", "First" + personIdx, "Last" + personIdx, "f", null, null, null));
+        }
+        SearchIndex<Person> index = new SearchIndex<>(persons, Person::getFirstName, Person::getLastName);
+
+        int[] numChecks = new int[1];
+        try {
+            index.search("a", () -> ++numChecks[0] > 2);
+            fail("The search should have been cancelled");
+        } catch (CancellationException err) {
+            // expected
+        }
+        assertEquals(3, numChecks[0]);
+        assertEquals(5_000, index.search("a", () -> false).size());
+    }
+}
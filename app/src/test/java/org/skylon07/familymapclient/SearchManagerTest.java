@@ -111,4 +111,21 @@ public class SearchManagerTest {
 
         assertNull(searcher.searchEvents(null, nullActivity));
     }
+
+    @Test
+    public void testSearchingIsLiteral() throws IOException {
+        SearchManager searcher = this.createSearchManager();
+        Context nullActivity = null;
+
+        // none of these should be treated like regular expressions (or blow up)
+        assertEquals(0, searcher.searchPeople(".*").length);
+        assertEquals(0, searcher.searchPeople("(").length);
+        assertEquals(0, searcher.searchPeople("[a-z]").length);
+        assertEquals(0, searcher.searchEvents("\\", nullActivity).length);
+        assertEquals(0, searcher.searchEvents("a+", nullActivity).length);
+
+        // and an empty query matches everything, just like it always has
+        assertEquals(TestData.persons.length, searcher.searchPeople("").length);
+        assertEquals(TestData.events.length, searcher.searchEvents("", nullActivity).length);
+    }
 }
@@ -0,0 +1,137 @@
+package org.skylon07.familymapclient;
+
+import org.junit.*;
+import org.skylon07.familymapclient.utilities.SearchPipeline;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+public class SearchPipelineTest {
+    /**
+     * Remembers everything delivered to it
+     */
+    private static class RecordingListener implements SearchPipeline.Listener<String> {
+        final BlockingQueue<String> results = new LinkedBlockingQueue<>();
+        final List<String> errors = new ArrayList<>();
+
+        @Override
+        public void onResults(String query, String results) {
+            this.results.add(results);
+        }
+
+        @Override
+        public void onError(String query, IOException err) {
+            this.errors.add(query);
+        }
+    }
+
+    @Test
+    public void testNewQueryCancelsRunningSearch() throws Exception {
+        CountDownLatch firstStarted = new CountDownLatch(1);
+        CountDownLatch othersSubmitted = new CountDownLatch(1);
+        RecordingListener listener = new RecordingListener();
+        SearchPipeline<String> pipeline = new SearchPipeline<>((String query, BooleanSupplier isCancelled) -> {
+            if (query.equals("slow")) {
+                firstStarted.countDown();
+                try {
+                    othersSubmitted.await();
+                } catch (InterruptedException err) {
+                    Thread.currentThread().interrupt();
+                }
+                // a long scan that checks for cancellation as it goes
+                long giveUpAt = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+                while (!isCancelled.getAsBoolean()) {
+                    if (System.nanoTime() > giveUpAt) {
+                        return "slow finished";
+                    }
+                }
+                return "slow cancelled";
+            }
+            return "results for " + query;
+        }, Runnable::run, listener);
+        try {
+            pipeline.submit("slow");
+            assertTrue(firstStarted.await(5, TimeUnit.SECONDS));
+            // these queue up behind the slow one; only the last one is still wanted
+            pipeline.submit("fa");
+            int lastGeneration = pipeline.submit("fast");
+            othersSubmitted.countDown();
+
+            assertEquals("results for fast", listener.results.poll(5, TimeUnit.SECONDS));
+            assertEquals(3, lastGeneration);
+            assertTrue(listener.results.isEmpty());
+            assertEquals(1, pipeline.getCompletedCount());
+            assertEquals(2, pipeline.getCancelledCount());
+        } finally {
+            pipeline.shutdown();
+        }
+    }
+
+    @Test
+    public void testStaleResultsAreDropped() throws Exception {
+        // results wait here until the test delivers them, like a busy UI thread
+        BlockingQueue<Runnable> deliveries = new LinkedBlockingQueue<>();
+        RecordingListener listener = new RecordingListener();
+        SearchPipeline<String> pipeline = new SearchPipeline<>(
+                (String query, BooleanSupplier isCancelled) -> "results for " + query,
+                deliveries::add,
+                listener
+        );
+        try {
+            pipeline.submit("old");
+            Runnable oldDelivery = deliveries.poll(5, TimeUnit.SECONDS);
+            assertNotNull(oldDelivery);
+            pipeline.submit("new");
+            Runnable newDelivery = deliveries.poll(5, TimeUnit.SECONDS);
+            assertNotNull(newDelivery);
+
+            // the old results show up last, but never get shown
+            newDelivery.run();
+            oldDelivery.run();
+            assertEquals(1, listener.results.size());
+            assertEquals("results for new", listener.results.peek());
+            assertEquals(1, pipeline.getDroppedCount());
+
+            // cancelling without a new query drops whatever is in flight too
+            pipeline.submit("newest");
+            Runnable newestDelivery = deliveries.poll(5, TimeUnit.SECONDS);
+            pipeline.cancel();
+            newestDelivery.run();
+            assertEquals(1, listener.results.size());
+        } finally {
+            pipeline.shutdown();
+        }
+    }
+
+    @Test
+    public void testErrorsAreDelivered() throws Exception {
+        RecordingListener listener = new RecordingListener();
+        CountDownLatch delivered = new CountDownLatch(1);
+        SearchPipeline<String> pipeline = new SearchPipeline<>(
+                (String query, BooleanSupplier isCancelled) -> {
+                    throw new IOException("no connection");
+                },
+                (Runnable delivery) -> {
+                    delivery.run();
+                    delivered.countDown();
+                },
+                listener
+        );
+        try {
+            pipeline.submit("anything");
+            assertTrue(delivered.await(5, TimeUnit.SECONDS));
+            assertEquals(1, listener.errors.size());
+            assertEquals("anything", listener.errors.get(0));
+        } finally {
+            pipeline.shutdown();
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package org.skylon07.familymapclient;
+
+import org.junit.*;
+import org.skylon07.familymapclient.utilities.EventClusterer;
+import org.skylon07.familymapclient.utilities.SpatialIndex;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import models.Event;
+
+/**
+ * Compares finding the clusters on screen with a SpatialIndex against checking every cluster,
+ * for a map of 100k events zoomed all the way in (where every event is its own cluster).
+ */
+public class SpatialIndexBenchmark {
+    @Test
+    public void benchmarkViewportQueries() throws Exception {
+        Benchmarks.assumeEnabled();
+
+        Random rand = new Random(1717);
+        Event[] events = Benchmarks.generateEvents(Benchmarks.generatePersons(1_000, rand), 100_000, rand);
+        EventClusterer clusterer = new EventClusterer(events);
+        List<EventClusterer.Cluster> clusters = clusterer.getClusters(EventClusterer.MAX_CLUSTER_ZOOM);
+        Benchmarks.measure("build index of " + clusters.size() + " clusters", 1, 5, () -> {
+            new SpatialIndex<>(clusters, new SpatialIndex.Locator<EventClusterer.Cluster>() {
+                @Override
+                public double getLatitude(EventClusterer.Cluster cluster) {
+                    return cluster.getLatitude();
+                }
+
+                @Override
+                public double getLongitude(EventClusterer.Cluster cluster) {
+                    return cluster.getLongitude();
+                }
+            });
+        });
+        SpatialIndex<EventClusterer.Cluster> index = clusterer.getClusterIndex(EventClusterer.MAX_CLUSTER_ZOOM);
+
+        // a pan across a city-sized screen (plus margin), one step at a time
+        List<SpatialIndex.Bounds> screens = new ArrayList<>();
+        for (int step = 0; step < 100; ++step) {
+            double west = -112 + step * 0.05;
+            screens.add(new SpatialIndex.Bounds(40, west, 41, west + 1).expand(0.5));
+        }
+
+        int[] foundCounts = new int[2];
+        Benchmarks.measure("100 viewport queries, full scan", 1, 5, () -> {
+            int found = 0;
+            for (SpatialIndex.Bounds screen : screens) {
+                for (EventClusterer.Cluster cluster : clusters) {
+                    double latitude = cluster.getLatitude();
+                    double longitude = cluster.getLongitude();
+                    if (latitude >= screen.south && latitude <= screen.north
+                            && longitude >= screen.west && longitude <= screen.east) {
+                        ++found;
+                    }
+                }
+            }
+            foundCounts[0] = found;
+        });
+        Benchmarks.measure("100 viewport queries, spatial index", 1, 5, () -> {
+            int found = 0;
+            for (SpatialIndex.Bounds screen : screens) {
+                found += index.query(screen, Integer.MAX_VALUE).size();
+            }
+            foundCounts[1] = found;
+        });
+        assertEquals(foundCounts[0], foundCounts[1]);
+        System.out.printf("  %,d markers live on average%n", foundCounts[1] / screens.size());
+    }
+}
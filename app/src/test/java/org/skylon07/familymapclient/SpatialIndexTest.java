@@ -0,0 +1,182 @@
+package org.skylon07.familymapclient;
+
+import org.junit.*;
+import org.skylon07.familymapclient.utilities.EventClusterer;
+import org.skylon07.familymapclient.utilities.SpatialIndex;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+public class SpatialIndexTest {
+    private static final SpatialIndex.Locator<double[]> POINT_LOCATOR = new SpatialIndex.Locator<double[]>() {
+        @Override
+        public double getLatitude(double[] point) {
+            return point[0];
+        }
+
+        @Override
+        public double getLongitude(double[] point) {
+            return point[1];
+        }
+    };
+
+    private static boolean isInside(double[] point, SpatialIndex.Bounds bounds) {
+        if (point[0] < bounds.south || point[0] > bounds.north) {
+            return false;
+        }
+        if (bounds.west <= bounds.east) {
+            return point[1] >= bounds.west && point[1] <= bounds.east;
+        }
+        return point[1] >= bounds.west || point[1] <= bounds.east;
+    }
+
+    private static List<double[]> generatePoints(int numPoints, Random rand) {
+        List<double[]> points = new ArrayList<>();
+        for (int pointIdx = 0; pointIdx < numPoints; ++pointIdx) {
+            points.add(new double[] {rand.nextDouble() * 180 - 90, rand.nextDouble() * 360 - 180});
+        }
+        return points;
+    }
+
+    @Test
+    public void testQueryMatchesFullScan() {
+        Random rand = new Random(17);
+        List<double[]> points = SpatialIndexTest.generatePoints(20_000, rand);
+        SpatialIndex<double[]> index = new SpatialIndex<>(points, POINT_LOCATOR);
+        assertEquals(points.size(), index.size());
+
+        for (int queryIdx = 0; queryIdx < 200; ++queryIdx) {
+            double south = rand.nextDouble() * 180 - 90;
+            double north = Math.min(90, south + rand.nextDouble() * 40);
+            double west = rand.nextDouble() * 360 - 180;
+            double east = rand.nextDouble() * 360 - 180; // sometimes wraps around
+            SpatialIndex.Bounds bounds = new SpatialIndex.Bounds(south, west, north, east);
+
+            Set<double[]> expected = new HashSet<>();
+            for (double[] point : points) {
+                if (SpatialIndexTest.isInside(point, bounds)) {
+                    expected.add(point);
+                }
+            }
+            List<double[]> found = index.query(bounds, Integer.MAX_VALUE);
+            assertEquals(expected.size(), found.size());
+            assertEquals(expected, new HashSet<>(found));
+        }
+    }
+
+    @Test
+    public void testQueryAcrossTheAntimeridian() {
+        List<double[]> points = new ArrayList<>();
+        double[] fiji = {-17.7, 178.1};
+        double[] samoa = {-13.8, -172.1};
+        double[] provo = {40.2, -111.7};
+        points.add(fiji);
+        points.add(samoa);
+        points.add(provo);
+        SpatialIndex<double[]> index = new SpatialIndex<>(points, POINT_LOCATOR);
+
+        List<double[]> found = index.query(new SpatialIndex.Bounds(-30, 170, 0, -165), 10);
+        assertEquals(2, found.size());
+        assertTrue(found.contains(fiji));
+        assertTrue(found.contains(samoa));
+
+        assertEquals(3, index.query(SpatialIndex.Bounds.world(), 10).size());
+    }
+
+    @Test
+    public void testQueryStopsAtLimit() {
+        List<double[]> points = SpatialIndexTest.generatePoints(1_000, new Random(17));
+        SpatialIndex<double[]> index = new SpatialIndex<>(points, POINT_LOCATOR);
+        assertEquals(25, index.query(SpatialIndex.Bounds.world(), 25).size());
+        assertEquals(1_000, index.query(SpatialIndex.Bounds.world(), 5_000).size());
+    }
+
+    @Test
+    public void testLimitKeepsTheMiddleOfTheBox() {
+        List<double[]> points = SpatialIndexTest.generatePoints(20_000, new Random(17));
+        SpatialIndex<double[]> index = new SpatialIndex<>(points, POINT_LOCATOR);
+
+        // (the second box wraps around the antimeridian, with its middle at 180)
+        SpatialIndex.Bounds[] boxes = {
+                new SpatialIndex.Bounds(0, -60, 40, 20),
+                new SpatialIndex.Bounds(-20, 140, 20, -140),
+        };
+        double[] middleLongitudes = {-20, 180};
+        for (int boxIdx = 0; boxIdx < boxes.length; ++boxIdx) {
+            SpatialIndex.Bounds bounds = boxes[boxIdx];
+            int numInside = index.query(bounds, Integer.MAX_VALUE).size();
+            assertTrue(numInside > 500);
+
+            List<double[]> found = index.query(bounds, 50);
+            assertEquals(50, found.size());
+            double middleLatitude = (bounds.south + bounds.north) / 2;
+            for (double[] point : found) {
+                assertTrue(SpatialIndexTest.isInside(point, bounds));
+                double longitudeDistance = Math.abs(point[1] - middleLongitudes[boxIdx]);
+                longitudeDistance = Math.min(longitudeDistance, 360 - longitudeDistance);
+                assertTrue(Math.abs(point[0] - middleLatitude) < 10);
+                assertTrue(longitudeDistance < 10);
+            }
+        }
+    }
+
+    @Test
+    public void testEmptyIndex() {
+        SpatialIndex<double[]> index = new SpatialIndex<>(new ArrayList<>(), POINT_LOCATOR);
+        assertEquals(0, index.size());
+        assertTrue(index.query(SpatialIndex.Bounds.world(), 10).isEmpty());
+    }
+
+    @Test
+    public void testExpandAndContains() {
+        SpatialIndex.Bounds screen = new SpatialIndex.Bounds(10, 20, 20, 40);
+        SpatialIndex.Bounds expanded = screen.expand(0.5);
+        assertEquals(5, expanded.south, 1e-9);
+        assertEquals(25, expanded.north, 1e-9);
+        assertEquals(10, expanded.west, 1e-9);
+        assertEquals(50, expanded.east, 1e-9);
+        assertTrue(expanded.contains(screen));
+        assertFalse(screen.contains(expanded));
+        // a small pan stays inside the margin, but a big one doesn't
+        assertTrue(expanded.contains(new SpatialIndex.Bounds(12, 25, 22, 45)));
+        assertFalse(expanded.contains(new SpatialIndex.Bounds(12, 35, 22, 55)));
+
+        // expanding across the antimeridian wraps around
+        SpatialIndex.Bounds pacific = new SpatialIndex.Bounds(-20, 170, -10, 178).expand(0.5);
+        assertEquals(166, pacific.west, 1e-9);
+        assertEquals(-178, pacific.east, 1e-9);
+        assertTrue(pacific.contains(new SpatialIndex.Bounds(-20, 175, -10, -179)));
+        assertFalse(pacific.contains(new SpatialIndex.Bounds(-20, 160, -10, 170)));
+
+        // and expanding past the whole world just covers the whole world
+        SpatialIndex.Bounds wide = new SpatialIndex.Bounds(-10, -100, 10, 100).expand(0.5);
+        assertEquals(-180, wide.west, 1e-9);
+        assertEquals(180, wide.east, 1e-9);
+        assertTrue(wide.contains(new SpatialIndex.Bounds(-5, 170, 5, -170)));
+    }
+
+    @Test
+    public void testClusterIndexFindsClustersOnScreen() {
+        Random rand = new Random(17);
+        EventClusterer clusterer = new EventClusterer(
+                Benchmarks.generateEvents(Benchmarks.generatePersons(100, rand), 5_000, rand)
+        );
+        SpatialIndex<EventClusterer.Cluster> index = clusterer.getClusterIndex(6);
+        assertSame(index, clusterer.getClusterIndex(6.8f));
+        assertEquals(clusterer.getClusters(6).size(), index.size());
+
+        SpatialIndex.Bounds screen = new SpatialIndex.Bounds(30, -120, 45, -90);
+        int expected = 0;
+        for (EventClusterer.Cluster cluster : clusterer.getClusters(6)) {
+            if (SpatialIndexTest.isInside(new double[] {cluster.getLatitude(), cluster.getLongitude()}, screen)) {
+                ++expected;
+            }
+        }
+        assertEquals(expected, index.query(screen, Integer.MAX_VALUE).size());
+    }
+}
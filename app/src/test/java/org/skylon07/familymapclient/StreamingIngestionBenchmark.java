@@ -0,0 +1,117 @@
+package org.skylon07.familymapclient;
+
+import com.google.gson.Gson;
+
+import org.junit.*;
+import org.junit.rules.TemporaryFolder;
+import org.skylon07.familymapclient.server.ServerProxy;
+
+import static org.junit.Assert.*;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import models.Event;
+import models.Person;
+import services.responses.EventResponse;
+
+/**
+ * Compares the peak heap used while loading /event into a map the old way (parse the whole
+ * response into an array, then copy it into the map) against streaming each event straight
+ * into the map as it is parsed. Allocation (on the loading thread) and what is left on the heap
+ * afterwards are printed too, since the peak depends a lot on when the collector happens to run.
+ */
+public class StreamingIngestionBenchmark {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void benchmarkPeakHeap() throws Exception {
+        Benchmarks.assumeEnabled();
+
+        int eventCount = 1_000_000;
+        Random rand = new Random(eventCount);
+        Person[] persons = Benchmarks.generatePersons(eventCount / 3, rand);
+        File eventJson = this.folder.newFile("events.json");
+        EventResponse eventResponse = new EventResponse();
+        eventResponse.data = Benchmarks.generateEvents(persons, eventCount, rand);
+        eventResponse.success = true;
+        try (Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(eventJson), StandardCharsets.UTF_8))) {
+            new Gson().toJson(eventResponse, out);
+        }
+        eventResponse = null;
+
+        StubServer server = new StubServer(persons, new Event[0]);
+        persons = null;
+        try {
+            server.serveBulkFromFiles(null, eventJson);
+            ServerProxy proxy = server.createProxy();
+
+            long baseline = Benchmarks.usedHeapBytes();
+            StreamingIngestionBenchmark.resetPeakHeap();
+            long allocatedBefore = StreamingIngestionBenchmark.allocatedBytes();
+            Map<String, Event> materializedMap = new HashMap<>();
+            for (Event event : proxy.getAllEvents("stubToken").data) {
+                materializedMap.put(event.getEventID(), event);
+            }
+            long materializedAllocated = StreamingIngestionBenchmark.allocatedBytes() - allocatedBefore;
+            long materializedPeak = StreamingIngestionBenchmark.peakHeapBytes() - baseline;
+            long materializedRetained = Benchmarks.usedHeapBytes() - baseline;
+            assertEquals(eventCount, materializedMap.size());
+            materializedMap = null;
+
+            baseline = Benchmarks.usedHeapBytes();
+            StreamingIngestionBenchmark.resetPeakHeap();
+            allocatedBefore = StreamingIngestionBenchmark.allocatedBytes();
+            Map<String, Event> streamedMap = new HashMap<>();
+            proxy.streamAllEvents("stubToken", (Event event) -> streamedMap.put(event.getEventID(), event));
+            long streamedAllocated = StreamingIngestionBenchmark.allocatedBytes() - allocatedBefore;
+            long streamedPeak = StreamingIngestionBenchmark.peakHeapBytes() - baseline;
+            long streamedRetained = Benchmarks.usedHeapBytes() - baseline;
+            assertEquals(eventCount, streamedMap.size());
+
+            long mb = 1024 * 1024;
+            System.out.printf("%,d events (%,d KB of JSON)%n", eventCount, eventJson.length() / 1024);
+            System.out.printf("  parse whole array then copy: peak %,d MB, allocated %,d MB, retained %,d MB%n",
+                    materializedPeak / mb, materializedAllocated / mb, materializedRetained / mb);
+            System.out.printf("  stream into the map:         peak %,d MB, allocated %,d MB, retained %,d MB%n",
+                    streamedPeak / mb, streamedAllocated / mb, streamedRetained / mb);
+        } finally {
+            server.stop();
+        }
+    }
+
+    private static long allocatedBytes() {
+        // the response is parsed on the calling thread, so this catches all of the client's work
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private static void resetPeakHeap() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+            }
+        }
+    }
+
+    private static long peakHeapBytes() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+}
@@ -0,0 +1,67 @@
+package org.skylon07.familymapclient;
+
+import org.junit.*;
+import org.skylon07.familymapclient.server.ServerProxy;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import models.Event;
+import models.Person;
+import services.responses.EventResponse;
+import services.responses.PersonResponse;
+
+/**
+ * Ensures the streaming versions of the "get all" endpoints hand over exactly what the regular
+ * versions return, in the same order
+ */
+public class StreamingIngestionTest {
+    private StubServer server;
+    private ServerProxy proxy;
+
+    @Before
+    public void setupServer() throws IOException {
+        this.server = new StubServer(TestData.persons, TestData.events);
+        this.proxy = this.server.createProxy();
+    }
+
+    @After
+    public void stopServer() {
+        this.server.stop();
+    }
+
+    @Test
+    public void testStreamingPersons() throws IOException {
+        PersonResponse fullResponse = this.proxy.getAllPersons("stubToken");
+        List<Person> streamed = new ArrayList<>();
+        PersonResponse streamedResponse = this.proxy.streamAllPersons("stubToken", streamed::add);
+
+        assertTrue(streamedResponse.success);
+        assertNull(streamedResponse.data);
+        assertEquals(fullResponse.data.length, streamed.size());
+        for (int idx = 0; idx < streamed.size(); ++idx) {
+            assertEquals(fullResponse.data[idx].getPersonID(), streamed.get(idx).getPersonID());
+            assertEquals(fullResponse.data[idx].getFatherID(), streamed.get(idx).getFatherID());
+            assertEquals(fullResponse.data[idx].getSpouseID(), streamed.get(idx).getSpouseID());
+        }
+    }
+
+    @Test
+    public void testStreamingEvents() throws IOException {
+        EventResponse fullResponse = this.proxy.getAllEvents("stubToken");
+        List<Event> streamed = new ArrayList<>();
+        EventResponse streamedResponse = this.proxy.streamAllEvents("stubToken", streamed::add);
+
+        assertTrue(streamedResponse.success);
+        assertNull(streamedResponse.data);
+        assertEquals(fullResponse.data.length, streamed.size());
+        for (int idx = 0; idx < streamed.size(); ++idx) {
+            assertEquals(fullResponse.data[idx].getEventID(), streamed.get(idx).getEventID());
+            assertEquals(fullResponse.data[idx].getLatitude(), streamed.get(idx).getLatitude(), 0);
+            assertEquals(fullResponse.data[idx].getYear(), streamed.get(idx).getYear());
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package org.skylon07.familymapclient;
+
+import org.junit.*;
+import org.skylon07.familymapclient.utilities.StringDictionary;
+
+import static org.junit.Assert.*;
+
+public class StringDictionaryTest {
+    @Test
+    public void testCodesAreDenseAndStable() {
+        StringDictionary dictionary = new StringDictionary();
+        assertEquals(0, dictionary.encode("birth"));
+        assertEquals(1, dictionary.encode("death"));
+        assertEquals(0, dictionary.encode(new String("birth")));
+        assertEquals(StringDictionary.NULL_CODE, dictionary.encode(null));
+        assertEquals(2, dictionary.size());
+
+        assertEquals("death", dictionary.decode(1));
+        assertNull(dictionary.decode(StringDictionary.NULL_CODE));
+        assertEquals(1, dictionary.getCode("death"));
+        assertEquals(StringDictionary.NULL_CODE, dictionary.getCode("marriage"));
+        assertEquals(2, dictionary.size());
+    }
+
+    @Test
+    public void testInternSharesInstances() {
+        StringDictionary dictionary = new StringDictionary();
+        String first = new String("United States");
+        String second = new String("United States");
+        assertNotSame(first, second);
+        assertSame(first, dictionary.intern(first));
+        assertSame(first, dictionary.intern(second));
+        assertNull(dictionary.intern(null));
+    }
+
+    @Test
+    public void testGrowsPastInitialCapacity() {
+        StringDictionary dictionary = new StringDictionary();
+        for (int idx = 0; idx < 1_000; ++idx) {
+            assertEquals(idx, dictionary.encode("value" + idx));
+        }
+        for (int idx = 0; idx < 1_000; ++idx) {
+            assertEquals("value" + idx, dictionary.decode(idx));
+        }
+    }
+}
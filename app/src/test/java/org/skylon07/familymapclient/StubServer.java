@@ -0,0 +1,329 @@
+package org.skylon07.familymapclient;
+
+import com.google.gson.Gson;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import org.skylon07.familymapclient.server.ServerProxy;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import models.Event;
+import models.Person;
+import services.requests.LoginRequest;
+import services.responses.EventResponse;
+import services.responses.LoginResponse;
+import services.responses.PersonResponse;
+
+/**
+ * A tiny stand-in for the real FamilyMapServer that serves the /person and /event endpoints
+ * from in-memory data. It counts every request it gets (by path) so tests can check how many
+ * round trips the client actually made, and it can be slowed down to simulate a real network.
+ * It can also hold requests until several are in flight at once, so tests can check that the
+ * client makes requests in parallel without timing anything.
+ */
+public class StubServer {
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final Map<String, Person> personsByID;
+    private final Map<String, Event> eventsByID;
+    private final Person[] persons;
+    private final Event[] events;
+    private final Map<String, AtomicInteger> requestCounts;
+    private final Set<InetSocketAddress> clientAddresses;
+    private final Gson gson;
+    private volatile long latencyMillis;
+    /** How long a held request waits for the others before giving up (and being answered) */
+    private static final long HOLD_TIMEOUT_MILLIS = 5_000;
+    /** How many requests have to be in flight before held requests are answered (0 to not hold) */
+    private int holdUntilInFlight;
+    /** How many requests are being held or delayed right now */
+    private int inFlightRequests;
+    /** The most requests that were ever being handled at once */
+    private int maxInFlightRequests;
+
+    /** The one password the stub won't let anyone log in with */
+    public static final String BAD_PASSWORD = "badPassword";
+    private volatile File bulkPersonsFile;
+    private volatile File bulkEventsFile;
+
+    /**
+     * Creates and starts a new server on a free local port
+     *
+     * @param persons are all the persons the server should know about
+     * @param events are all the events the server should know about
+     * @throws IOException when the server can't bind to a port
+     */
+    public StubServer(Person[] persons, Event[] events) throws IOException {
+        this.persons = persons;
+        this.events = events;
+        this.personsByID = new HashMap<>();
+        for (Person person : persons) {
+            this.personsByID.put(person.getPersonID(), person);
+        }
+        this.eventsByID = new HashMap<>();
+        for (Event event : events) {
+            this.eventsByID.put(event.getEventID(), event);
+        }
+        this.requestCounts = new ConcurrentHashMap<>();
+        this.clientAddresses = ConcurrentHashMap.newKeySet();
+        this.gson = new Gson();
+        this.latencyMillis = 0;
+
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        this.server.createContext("/person", this::handlePerson);
+        this.server.createContext("/event", this::handleEvent);
+        this.server.createContext("/user/login", this::handleLogin);
+        this.executor = Executors.newCachedThreadPool();
+        this.server.setExecutor(this.executor);
+        this.server.start();
+    }
+
+    /**
+     * @return a new ServerProxy pointed at this server
+     */
+    public ServerProxy createProxy() {
+        return new ServerProxy("127.0.0.1", Integer.toString(this.server.getAddress().getPort()));
+    }
+
+    /**
+     * Makes every request take (at least) a given amount of time before it is answered
+     *
+     * @param latencyMillis is the delay to add to each request
+     */
+    public void setLatency(long latencyMillis) {
+        this.latencyMillis = latencyMillis;
+    }
+
+    /**
+     * Holds every request until a given number of them are being handled at once (or until
+     * HOLD_TIMEOUT_MILLIS passes, so a client that makes requests one at a time still finishes,
+     * just with getMaxConcurrentRequests() showing it). Once enough requests arrive, they and
+     * every later request are answered right away.
+     *
+     * @param numRequests is how many requests have to be in flight at once
+     */
+    public synchronized void holdRequestsUntilConcurrent(int numRequests) {
+        this.holdUntilInFlight = numRequests;
+    }
+
+    /**
+     * @return the most requests the server has been holding (or delaying) at once
+     */
+    public synchronized int getMaxConcurrentRequests() {
+        return this.maxInFlightRequests;
+    }
+
+    /**
+     * Makes the server answer /person and /event by streaming pre-written JSON files, instead
+     * of serializing its in-memory data. This keeps huge responses from taking up (much) memory
+     * on the server side, which matters when measuring the client's memory use.
+     *
+     * @param bulkPersonsFile is the JSON body to send for /person
+     * @param bulkEventsFile is the JSON body to send for /event
+     */
+    public void serveBulkFromFiles(File bulkPersonsFile, File bulkEventsFile) {
+        this.bulkPersonsFile = bulkPersonsFile;
+        this.bulkEventsFile = bulkEventsFile;
+    }
+
+    /**
+     * @param path is the request path to check (like "/event" or "/person/root")
+     * @return how many requests the server has received for that path
+     */
+    public int getRequestCount(String path) {
+        AtomicInteger count = this.requestCounts.get(path);
+        if (count == null) {
+            return 0;
+        }
+        return count.get();
+    }
+
+    /**
+     * @return how many requests the server has received in total
+     */
+    public int getTotalRequestCount() {
+        int total = 0;
+        for (AtomicInteger count : this.requestCounts.values()) {
+            total += count.get();
+        }
+        return total;
+    }
+
+    /**
+     * @return how many different connections requests have come in on (every new connection
+     *      comes from a new client port, so this counts the connections the server accepted)
+     */
+    public int getConnectionCount() {
+        return this.clientAddresses.size();
+    }
+
+    public void stop() {
+        this.server.stop(0);
+        this.executor.shutdownNow();
+    }
+
+    private void handlePerson(HttpExchange exchange) throws IOException {
+        String path = this.recordRequest(exchange);
+        PersonResponse response = new PersonResponse();
+        if (path.equals("/person") && this.bulkPersonsFile != null) {
+            this.respondWithFile(exchange, this.bulkPersonsFile);
+            return;
+        } else if (path.equals("/person")) {
+            response.data = this.persons;
+            response.success = true;
+        } else {
+            Person person = this.personsByID.get(path.substring("/person/".length()));
+            if (person != null) {
+                response.personID = person.getPersonID();
+                response.associatedUsername = person.getAssociatedUsername();
+                response.firstName = person.getFirstName();
+                response.lastName = person.getLastName();
+                response.gender = person.getGender();
+                response.fatherID = person.getFatherID();
+                response.motherID = person.getMotherID();
+                response.spouseID = person.getSpouseID();
+                response.success = true;
+            } else {
+                response.message = "Error: person not found";
+                response.success = false;
+            }
+        }
+        this.respond(exchange, response);
+    }
+
+    private void handleEvent(HttpExchange exchange) throws IOException {
+        String path = this.recordRequest(exchange);
+        EventResponse response = new EventResponse();
+        if (path.equals("/event") && this.bulkEventsFile != null) {
+            this.respondWithFile(exchange, this.bulkEventsFile);
+            return;
+        } else if (path.equals("/event")) {
+            response.data = this.events;
+            response.success = true;
+        } else {
+            Event event = this.eventsByID.get(path.substring("/event/".length()));
+            if (event != null) {
+                response.eventID = event.getEventID();
+                response.associatedUsername = event.getAssociatedUsername();
+                response.personID = event.getPersonID();
+                response.latitude = event.getLatitude();
+                response.longitude = event.getLongitude();
+                response.country = event.getCountry();
+                response.city = event.getCity();
+                response.eventType = event.getEventType();
+                response.year = event.getYear();
+                response.success = true;
+            } else {
+                response.message = "Error: event not found";
+                response.success = false;
+            }
+        }
+        this.respond(exchange, response);
+    }
+
+    private void handleLogin(HttpExchange exchange) throws IOException {
+        // (recordRequest() closes the body once this is done with it)
+        Reader requestBody = new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8);
+        LoginRequest request = this.gson.fromJson(requestBody, LoginRequest.class);
+        this.recordRequest(exchange);
+
+        // any password works, except for this one
+        LoginResponse response = new LoginResponse();
+        if (request != null && !BAD_PASSWORD.equals(request.password)) {
+            response.authtoken = "stubToken";
+            response.username = request.username;
+            response.personID = this.persons.length > 0 ? this.persons[0].getPersonID() : null;
+            response.success = true;
+        } else {
+            response.message = "Error: bad password";
+            response.success = false;
+        }
+        this.respond(exchange, response);
+    }
+
+    private String recordRequest(HttpExchange exchange) throws IOException {
+        try (InputStream requestBody = exchange.getRequestBody()) {
+            while (requestBody.read() != -1) {
+                // drain it; the stub never needs the body
+            }
+        }
+
+        String path = exchange.getRequestURI().getPath();
+        this.clientAddresses.add(exchange.getRemoteAddress());
+        this.requestCounts.computeIfAbsent(path, (String key) -> new AtomicInteger()).incrementAndGet();
+        this.waitForConcurrentRequests();
+        if (this.latencyMillis > 0) {
+            try {
+                Thread.sleep(this.latencyMillis);
+            } catch (InterruptedException err) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        this.finishWaiting();
+        return path;
+    }
+
+    /**
+     * Counts a request as in flight, and holds it (see holdRequestsUntilConcurrent()) if needed
+     */
+    private synchronized void waitForConcurrentRequests() {
+        ++this.inFlightRequests;
+        this.maxInFlightRequests = Math.max(this.maxInFlightRequests, this.inFlightRequests);
+        if (this.inFlightRequests >= this.holdUntilInFlight) {
+            this.holdUntilInFlight = 0;
+            this.notifyAll();
+        }
+        long deadline = System.currentTimeMillis() + HOLD_TIMEOUT_MILLIS;
+        long remainingMillis;
+        while (this.holdUntilInFlight > 0 && (remainingMillis = deadline - System.currentTimeMillis()) > 0) {
+            try {
+                this.wait(remainingMillis);
+            } catch (InterruptedException err) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+    }
+
+    private synchronized void finishWaiting() {
+        --this.inFlightRequests;
+    }
+
+    private void respondWithFile(HttpExchange exchange, File file) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, file.length());
+        try (InputStream in = new FileInputStream(file);
+             OutputStream responseBody = exchange.getResponseBody()) {
+            byte[] buffer = new byte[64 * 1024];
+            int numRead;
+            while ((numRead = in.read(buffer)) != -1) {
+                responseBody.write(buffer, 0, numRead);
+            }
+        }
+    }
+
+    private void respond(HttpExchange exchange, Object response) throws IOException {
+        byte[] body = this.gson.toJson(response).getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream responseBody = exchange.getResponseBody()) {
+            responseBody.write(body);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package org.skylon07.familymapclient;
+
+import org.junit.*;
+import org.skylon07.familymapclient.utilities.TaskScheduler;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class TaskSchedulerTest {
+    @Test
+    public void testTasksRunOnBothPools() throws Exception {
+        TaskScheduler scheduler = new TaskScheduler(2, 2);
+        TaskScheduler.TaskGroup tasks = scheduler.newTaskGroup();
+        String[] threadNames = new String[2];
+        Future<?> ioTask = tasks.runIO(() -> threadNames[0] = Thread.currentThread().getName());
+        Future<?> cpuTask = tasks.runCPU(() -> threadNames[1] = Thread.currentThread().getName());
+        ioTask.get(5, TimeUnit.SECONDS);
+        cpuTask.get(5, TimeUnit.SECONDS);
+        assertTrue(threadNames[0].startsWith("TaskScheduler-io-"));
+        assertTrue(threadNames[1].startsWith("TaskScheduler-cpu-"));
+        assertEquals(0, tasks.getUnfinishedCount());
+    }
+
+    @Test
+    public void testPoolsAreBounded() throws Exception {
+        TaskScheduler scheduler = new TaskScheduler(2, 1);
+        TaskScheduler.TaskGroup tasks = scheduler.newTaskGroup();
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(2);
+        for (int taskIdx = 0; taskIdx < 5; ++taskIdx) {
+            tasks.runIO(() -> {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException err) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        }
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        assertEquals(2, scheduler.getIOThreadCount());
+        assertEquals(2, scheduler.getIOActiveCount());
+        assertEquals(3, scheduler.getIOQueueDepth());
+        assertEquals(0, scheduler.getCPUQueueDepth());
+        assertEquals(5, tasks.getUnfinishedCount());
+        assertTrue(scheduler.describeMetrics().contains("3 queued"));
+        release.countDown();
+    }
+
+    @Test
+    public void testCancelAllDropsQueuedTasks() throws Exception {
+        TaskScheduler scheduler = new TaskScheduler(1, 1);
+        TaskScheduler.TaskGroup tasks = scheduler.newTaskGroup();
+        TaskScheduler.TaskGroup otherTasks = scheduler.newTaskGroup();
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(1);
+        AtomicInteger numRan = new AtomicInteger();
+        Future<?> running = tasks.runIO(() -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException err) {
+                Thread.currentThread().interrupt();
+            }
+            numRan.incrementAndGet();
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        for (int taskIdx = 0; taskIdx < 3; ++taskIdx) {
+            tasks.runIO(numRan::incrementAndGet);
+        }
+        Future<?> otherTask = otherTasks.runIO(numRan::incrementAndGet);
+        assertEquals(4, scheduler.getIOQueueDepth());
+
+        tasks.cancelAll();
+        assertTrue(tasks.isCancelled());
+        // only the other group's task is still waiting
+        assertEquals(1, scheduler.getIOQueueDepth());
+        Future<?> late = tasks.runIO(numRan::incrementAndGet);
+        assertTrue(late.isCancelled());
+
+        // the running task is left to finish (and the other group's task runs after it)
+        release.countDown();
+        otherTask.get(5, TimeUnit.SECONDS);
+        assertTrue(running.isCancelled());
+        assertEquals(2, numRan.get());
+        assertEquals(0, tasks.getUnfinishedCount());
+        assertFalse(otherTasks.isCancelled());
+    }
+}
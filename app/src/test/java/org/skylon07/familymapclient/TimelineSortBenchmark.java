@@ -0,0 +1,85 @@
+package org.skylon07.familymapclient;
+
+import org.junit.*;
+import org.skylon07.familymapclient.utilities.TimelineSorter;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import models.Event;
+import models.Person;
+
+/**
+ * Compares building every person's timeline the way DataCache used to (grouping into lists,
+ * then sorting each with a comparator that lowercases both event types on every comparison)
+ * against TimelineSorter, which keys every event once and sorts by the keys. Trees have either
+ * about three events per person (like the server generates) or much longer timelines, where the
+ * sorting itself is more of the work.
+ */
+public class TimelineSortBenchmark {
+    static final int[] NUM_EVENTS = {1_000, 10_000, 100_000};
+    /** How many events each person has in the "long timelines" runs */
+    static final int LONG_TIMELINE_LENGTH = 30;
+
+    @Test
+    public void benchmarkTimelines() throws Exception {
+        Benchmarks.assumeEnabled();
+
+        for (int numEvents : NUM_EVENTS) {
+            TimelineSortBenchmark.compare(numEvents, 3);
+        }
+    }
+
+    @Test
+    public void benchmarkLongTimelines() throws Exception {
+        Benchmarks.assumeEnabled();
+
+        for (int numEvents : NUM_EVENTS) {
+            TimelineSortBenchmark.compare(numEvents, LONG_TIMELINE_LENGTH);
+        }
+    }
+
+    private static void compare(int numEvents, int eventsPerPerson) throws Exception {
+        Random rand = new Random(numEvents);
+        Person[] persons = Benchmarks.generatePersons(numEvents / eventsPerPerson, rand);
+        Event[] events = Benchmarks.generateEvents(persons, numEvents, rand);
+        int runs = Math.max(20, 1_000_000 / numEvents);
+        System.out.printf("%,d events (%,d persons)%n", numEvents, persons.length);
+
+        Benchmarks.measure("  group, then sort with the lowercasing comparator", runs, runs, () -> {
+            assertEquals(persons.length, TimelineSortBenchmark.groupAndSortWithComparator(events).size());
+        });
+        Benchmarks.measure("  TimelineSorter (sort keys)", runs, runs, () -> {
+            assertEquals(persons.length, TimelineSorter.groupByPerson(events).size());
+        });
+    }
+
+    /**
+     * What DataCache.indexEventTimelines() used to do
+     */
+    private static Map<String, List<Event>> groupAndSortWithComparator(Event[] events) {
+        Map<String, List<Event>> timelines = new HashMap<>();
+        for (Event event : events) {
+            List<Event> timeline = timelines.get(event.getPersonID());
+            if (timeline == null) {
+                timeline = new ArrayList<>();
+                timelines.put(event.getPersonID(), timeline);
+            }
+            timeline.add(event);
+        }
+
+        Map<String, List<Event>> eventsByPersonID = new HashMap<>();
+        for (Map.Entry<String, List<Event>> entry : timelines.entrySet()) {
+            List<Event> timeline = entry.getValue();
+            Collections.sort(timeline, TimelineSorterTest::compareTimelineOrder);
+            eventsByPersonID.put(entry.getKey(), Collections.unmodifiableList(timeline));
+        }
+        return eventsByPersonID;
+    }
+}
@@ -0,0 +1,121 @@
+package org.skylon07.familymapclient;
+
+import org.junit.*;
+import org.skylon07.familymapclient.utilities.TimelineSorter;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+import models.Event;
+import models.Person;
+
+public class TimelineSorterTest {
+    /**
+     * The order timelines are supposed to be in, compared the slow (but obvious) way
+     */
+    static int compareTimelineOrder(Event event1, Event event2) {
+        int yearDiff = Integer.compare(event1.getYear(), event2.getYear());
+        if (yearDiff != 0) {
+            return yearDiff;
+        }
+        String type1 = event1.getEventType().toLowerCase();
+        String type2 = event2.getEventType().toLowerCase();
+        int rankDiff = Integer.compare(TimelineSorterTest.rank(type1), TimelineSorterTest.rank(type2));
+        if (rankDiff != 0) {
+            return rankDiff;
+        }
+        return type1.compareTo(type2);
+    }
+
+    private static int rank(String lowerType) {
+        return lowerType.equals("birth") ? 0 : lowerType.equals("death") ? 2 : 1;
+    }
+
+    private static Event makeEvent(String eventID, String personID, String type, int year) {
+        return new Event(eventID, "user", personID, 0f, 0f, "Country", "City", type, year);
+    }
+
+    @Test
+    public void testTimelineOrder() {
+        Event[] events = {
+                TimelineSorterTest.makeEvent("death", "p", "DEATH", 1950),
+                TimelineSorterTest.makeEvent("marriage", "p", "marriage", 1920),
+                TimelineSorterTest.makeEvent("same-year-death", "p", "death", 1900),
+                TimelineSorterTest.makeEvent("baptism", "p", "Baptism", 1900),
+                TimelineSorterTest.makeEvent("birth", "p", "Birth", 1900),
+                TimelineSorterTest.makeEvent("ancient", "p", "zoo trip", -40),
+        };
+        List<Event> timeline = TimelineSorter.groupByPerson(events).get("p");
+        List<String> eventIDs = new ArrayList<>();
+        for (Event event : timeline) {
+            eventIDs.add(event.getEventID());
+        }
+        assertEquals(Arrays.asList("ancient", "birth", "baptism", "same-year-death", "marriage", "death"), eventIDs);
+    }
+
+    @Test
+    public void testMatchesComparator() {
+        Random rand = new Random(25);
+        Person[] persons = Benchmarks.generatePersons(300, rand);
+        Event[] events = Benchmarks.generateEvents(persons, 3000, rand);
+        for (int eventIdx = 0; eventIdx < events.length; eventIdx += 3) {
+            // mixed case, and lots of ties on year
+            events[eventIdx].setEventType(events[eventIdx].getEventType().toUpperCase());
+            events[eventIdx].setYear(1900 + rand.nextInt(3));
+        }
+        // someone with more events than are insertion sorted
+        for (int eventIdx = 0; eventIdx < 100; ++eventIdx) {
+            events[eventIdx].setPersonID(persons[0].getPersonID());
+        }
+
+        Map<String, List<Event>> timelines = TimelineSorter.groupByPerson(events);
+        int numEvents = 0;
+        for (Person person : persons) {
+            List<Event> timeline = timelines.get(person.getPersonID());
+            List<Event> expected = new ArrayList<>();
+            for (Event event : events) {
+                if (event.getPersonID().equals(person.getPersonID())) {
+                    expected.add(event);
+                }
+            }
+            // (a stable sort, so ties have to come out in the same order too)
+            Collections.sort(expected, TimelineSorterTest::compareTimelineOrder);
+            assertEquals(expected, timeline);
+            numEvents += timeline.size();
+        }
+        assertEquals(events.length, numEvents);
+    }
+
+    @Test
+    public void testRanksIgnoreTheDefaultLocale() {
+        // in Turkish, "I" lowercases to a dotless "\u0131", so "BIRTH" wouldn't be a birth anymore
+        Locale defaultLocale = Locale.getDefault();
+        Locale.setDefault(new Locale("tr", "TR"));
+        try {
+            Event[] events = {
+                    TimelineSorterTest.makeEvent("death", "p", "DEATH", 1900),
+                    TimelineSorterTest.makeEvent("baptism", "p", "Baptism", 1900),
+                    TimelineSorterTest.makeEvent("birth", "p", "BIRTH", 1900),
+            };
+            List<Event> timeline = TimelineSorter.groupByPerson(events).get("p");
+            assertEquals("birth", timeline.get(0).getEventID());
+            assertEquals("baptism", timeline.get(1).getEventID());
+            assertEquals("death", timeline.get(2).getEventID());
+        } finally {
+            Locale.setDefault(defaultLocale);
+        }
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testTimelinesAreUnmodifiable() {
+        Event[] events = {TimelineSorterTest.makeEvent("birth", "p", "birth", 1900)};
+        TimelineSorter.groupByPerson(events).get("p").clear();
+    }
+}